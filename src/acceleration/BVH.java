@@ -0,0 +1,299 @@
+package acceleration;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import math.BoundingBox;
+import math.MutableRay;
+import shape.Hit;
+import shape.Shape;
+
+/**
+ * A bounding volume hierarchy over a collection of shapes, which itself
+ * behaves as a single shape.
+ * 
+ * The occlusion test stops as soon as any primitive has been intersected,
+ * while the closest hit intersection visits the children of a node front to
+ * back and skips all the nodes beyond the closest hit found so far. Every
+ * thread remembers the primitive which occluded its last ray, which is tested
+ * before the hierarchy is traversed, since consecutive shadow rays are
+ * usually blocked by the same primitive.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class BVH implements Shape {
+	
+	/**
+	 * The primitives of this hierarchy, ordered such that every leaf
+	 * references a contiguous range.
+	 */
+	private final Shape[] primitives;
+
+	/**
+	 * The root of the hierarchy.
+	 */
+	private final BVHNode root;
+
+	/**
+	 * For every primitive, its index in the list from which this hierarchy
+	 * has been constructed.
+	 */
+	private final int[] indices;
+
+	/**
+	 * The depth of the hierarchy, which bounds the size of the traversal
+	 * stack.
+	 */
+	private final int depth;
+
+	/**
+	 * The traversal state of every thread.
+	 */
+	private final ThreadLocal<Traversal> traversals;
+
+	/**
+	 * Creates a new bounding volume hierarchy over the given shapes, which is
+	 * constructed with the surface area heuristic.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the hierarchy for.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 */
+	public BVH(List<Shape> shapes) throws NullPointerException {
+		this(shapes, new SAHBuilder());
+	}
+
+	/**
+	 * Creates a new bounding volume hierarchy over the given shapes, which is
+	 * constructed by the given builder.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the hierarchy for.
+	 * @param builder
+	 *            the builder which constructs the hierarchy.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 * @throws NullPointerException
+	 *             when the given builder is null.
+	 */
+	public BVH(List<Shape> shapes, BVHBuilder builder)
+			throws NullPointerException {
+		if (shapes == null)
+			throw new NullPointerException("the given list of shapes is null!");
+		if (builder == null)
+			throw new NullPointerException("the given builder is null!");
+		for (Shape shape : shapes)
+			if (shape == null)
+				throw new NullPointerException(
+						"the given list of shapes contains null!");
+		this.primitives = shapes.toArray(new Shape[shapes.size()]);
+		Shape[] original = primitives.clone();
+		this.root = builder.build(primitives);
+		this.indices = indices(original, primitives);
+		this.depth = root.getDepth();
+
+		final int size = depth;
+		this.traversals = new ThreadLocal<Traversal>() {
+			@Override
+			protected Traversal initialValue() {
+				return new Traversal(size);
+			}
+		};
+	}
+
+	/**
+	 * Returns the root of this hierarchy.
+	 * 
+	 * @return the root of this hierarchy.
+	 */
+	public BVHNode getRoot() {
+		return root;
+	}
+
+	/**
+	 * Returns the primitives of this hierarchy in the order in which they are
+	 * referenced by the leaves.
+	 * 
+	 * @return the primitives of this hierarchy.
+	 */
+	Shape[] getPrimitives() {
+		return primitives;
+	}
+
+	/**
+	 * Returns for every primitive of this hierarchy its index in the list from
+	 * which this hierarchy has been constructed.
+	 * 
+	 * @return the original indices of the primitives of this hierarchy.
+	 */
+	int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * Returns for every reordered primitive its index in the original order.
+	 * Shapes which occur multiple times are matched in order of occurrence.
+	 * 
+	 * @param original
+	 *            the primitives in their original order.
+	 * @param reordered
+	 *            the primitives in the order of the leaves.
+	 * @return the original index of every reordered primitive.
+	 */
+	private static int[] indices(Shape[] original, Shape[] reordered) {
+		Map<Shape, Deque<Integer>> positions;
+		positions = new IdentityHashMap<Shape, Deque<Integer>>();
+		for (int i = 0; i < original.length; ++i) {
+			Deque<Integer> queue = positions.get(original[i]);
+			if (queue == null) {
+				queue = new ArrayDeque<Integer>(1);
+				positions.put(original[i], queue);
+			}
+			queue.add(i);
+		}
+		int[] indices = new int[reordered.length];
+		for (int i = 0; i < reordered.length; ++i)
+			indices[i] = positions.get(reordered[i]).poll();
+		return indices;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
+	 */
+	@Override
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
+		if (ray == null)
+			return false;
+		Traversal traversal = traversals.get();
+		int last = traversal.occluder;
+		if (last >= 0 && primitives[last].occluded(ray, tMin, tMax))
+			return true;
+
+		double ox = ray.origin.x;
+		double oy = ray.origin.y;
+		double oz = ray.origin.z;
+		ray.update();
+		double ix = ray.inverseX;
+		double iy = ray.inverseY;
+		double iz = ray.inverseZ;
+
+		BVHNode[] stack = traversal.stack;
+		int size = 0;
+		BVHNode node = root;
+		while (true) {
+			if (node.boundingBox
+					.intersect(ox, oy, oz, ix, iy, iz, tMin, tMax)) {
+				if (node.isLeaf()) {
+					for (int i = node.offset; i < node.offset + node.count; ++i)
+						if (i != last
+								&& primitives[i].occluded(ray, tMin, tMax)) {
+							traversal.occluder = i;
+							return true;
+						}
+				} else {
+					stack[size++] = node.right;
+					node = node.left;
+					continue;
+				}
+			}
+			if (size == 0)
+				return false;
+			node = stack[--size];
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null)
+			return false;
+		double ox = ray.origin.x;
+		double oy = ray.origin.y;
+		double oz = ray.origin.z;
+		ray.update();
+		double ix = ray.inverseX;
+		double iy = ray.inverseY;
+		double iz = ray.inverseZ;
+
+		boolean found = false;
+		BVHNode[] stack = traversals.get().stack;
+		int size = 0;
+		BVHNode node = root;
+		while (true) {
+			if (node.boundingBox
+					.intersect(ox, oy, oz, ix, iy, iz, tMin, tMax)) {
+				if (node.isLeaf()) {
+					for (int i = node.offset; i < node.offset + node.count; ++i)
+						if (primitives[i].intersect(ray, tMin, tMax, hit)) {
+							tMax = hit.t;
+							hit.id = indices[i];
+							found = true;
+						}
+				} else {
+					// visit the child closest to the origin of the ray first
+					if (ray.direction.get(node.axis) < 0) {
+						stack[size++] = node.left;
+						node = node.right;
+					} else {
+						stack[size++] = node.right;
+						node = node.left;
+					}
+					continue;
+				}
+			}
+			if (size == 0)
+				return found;
+			node = stack[--size];
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return root.boundingBox;
+	}
+
+	/**
+	 * The state of a single thread traversing the hierarchy.
+	 */
+	private static class Traversal {
+		/**
+		 * The stack of nodes which remain to be visited.
+		 */
+		private final BVHNode[] stack;
+
+		/**
+		 * The index of the primitive which occluded the last ray, or -1 when
+		 * no ray has been occluded yet.
+		 */
+		private int occluder = -1;
+
+		/**
+		 * Creates the traversal state for a hierarchy of the given depth.
+		 * 
+		 * @param depth
+		 *            the depth of the hierarchy.
+		 */
+		private Traversal(int depth) {
+			this.stack = new BVHNode[depth];
+		}
+	}
+}
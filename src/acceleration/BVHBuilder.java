@@ -0,0 +1,27 @@
+package acceleration;
+
+import shape.Shape;
+
+/**
+ * Interface which should be implemented by all the algorithms which construct
+ * a bounding volume hierarchy.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public interface BVHBuilder {
+	
+	/**
+	 * Constructs a bounding volume hierarchy over the given primitives.
+	 * 
+	 * The given array is reordered such that every leaf of the resulting
+	 * hierarchy references a contiguous range of primitives in the array.
+	 * 
+	 * @param primitives
+	 *            the primitives to construct the hierarchy for.
+	 * @throws NullPointerException
+	 *             when the given array is null.
+	 * @return the root of the constructed hierarchy.
+	 */
+	public BVHNode build(Shape[] primitives) throws NullPointerException;
+}
@@ -0,0 +1,180 @@
+package acceleration;
+
+import math.BoundingBox;
+
+/**
+ * A node of a bounding volume hierarchy.
+ * 
+ * A node is either an interior node with two children, or a leaf node which
+ * references a contiguous range of primitives in the primitive array of the
+ * hierarchy.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class BVHNode {
+	
+	/**
+	 * The bounding box enclosing all the primitives below this node.
+	 */
+	public final BoundingBox boundingBox;
+
+	/**
+	 * The first child of this node, or null when this node is a leaf.
+	 */
+	public final BVHNode left;
+
+	/**
+	 * The second child of this node, or null when this node is a leaf.
+	 */
+	public final BVHNode right;
+
+	/**
+	 * The axis along which the primitives of an interior node have been split
+	 * (0=x, 1=y, 2=z axis).
+	 */
+	public final int axis;
+
+	/**
+	 * The index of the first primitive of a leaf node.
+	 */
+	public final int offset;
+
+	/**
+	 * The number of primitives of a leaf node (zero for interior nodes).
+	 */
+	public final int count;
+
+	/**
+	 * Creates a new leaf node referencing the given range of primitives.
+	 * 
+	 * @param boundingBox
+	 *            the bounding box of the primitives.
+	 * @param offset
+	 *            the index of the first primitive.
+	 * @param count
+	 *            the number of primitives.
+	 * @throws NullPointerException
+	 *             when the given bounding box is null.
+	 * @throws IllegalArgumentException
+	 *             when the given offset or count is negative.
+	 */
+	public BVHNode(BoundingBox boundingBox, int offset, int count)
+			throws NullPointerException, IllegalArgumentException {
+		if (boundingBox == null)
+			throw new NullPointerException("the given bounding box is null!");
+		if (offset < 0)
+			throw new IllegalArgumentException("the offset cannot be negative!");
+		if (count < 0)
+			throw new IllegalArgumentException("the count cannot be negative!");
+		this.boundingBox = boundingBox;
+		this.left = null;
+		this.right = null;
+		this.axis = 0;
+		this.offset = offset;
+		this.count = count;
+	}
+
+	/**
+	 * Creates a new interior node with the given children.
+	 * 
+	 * @param axis
+	 *            the axis along which the primitives have been split.
+	 * @param left
+	 *            the first child.
+	 * @param right
+	 *            the second child.
+	 * @throws NullPointerException
+	 *             when one of the given children is null.
+	 */
+	public BVHNode(int axis, BVHNode left, BVHNode right)
+			throws NullPointerException {
+		if (left == null)
+			throw new NullPointerException("the first child is null!");
+		if (right == null)
+			throw new NullPointerException("the second child is null!");
+		this.boundingBox = left.boundingBox.union(right.boundingBox);
+		this.left = left;
+		this.right = right;
+		this.axis = axis;
+		this.offset = 0;
+		this.count = 0;
+	}
+
+	/**
+	 * Returns whether this node is a leaf node.
+	 * 
+	 * @return true when this node is a leaf node.
+	 */
+	public boolean isLeaf() {
+		return left == null;
+	}
+
+	/**
+	 * Returns the number of nodes in the subtree rooted at this node.
+	 * 
+	 * @return the number of nodes in the subtree rooted at this node.
+	 */
+	public int getNodeCount() {
+		if (isLeaf())
+			return 1;
+		return 1 + left.getNodeCount() + right.getNodeCount();
+	}
+
+	/**
+	 * Returns the number of leaves in the subtree rooted at this node.
+	 * 
+	 * @return the number of leaves in the subtree rooted at this node.
+	 */
+	public int getLeafCount() {
+		if (isLeaf())
+			return 1;
+		return left.getLeafCount() + right.getLeafCount();
+	}
+
+	/**
+	 * Returns the depth of the subtree rooted at this node. The depth of a
+	 * leaf is one.
+	 * 
+	 * @return the depth of the subtree rooted at this node.
+	 */
+	public int getDepth() {
+		if (isLeaf())
+			return 1;
+		return 1 + Math.max(left.getDepth(), right.getDepth());
+	}
+
+	/**
+	 * Returns the expected cost of intersecting a ray with the subtree rooted
+	 * at this node according to the surface area heuristic, relative to the
+	 * cost of intersecting a single primitive.
+	 * 
+	 * @param traversalCost
+	 *            the cost of traversing an interior node relative to the cost
+	 *            of intersecting a primitive.
+	 * @return the surface area heuristic cost of the subtree rooted at this
+	 *         node.
+	 */
+	public double getCost(double traversalCost) {
+		double area = boundingBox.getSurfaceArea();
+		if (area == 0)
+			return 0;
+		return cost(traversalCost) / area;
+	}
+
+	/**
+	 * Returns the surface area heuristic cost of the subtree rooted at this
+	 * node, multiplied by the surface area of this node.
+	 * 
+	 * @param traversalCost
+	 *            the cost of traversing an interior node.
+	 * @return the unnormalized cost of the subtree rooted at this node.
+	 */
+	private double cost(double traversalCost) {
+		double area = boundingBox.getSurfaceArea();
+		if (isLeaf())
+			return area * count;
+		return area * traversalCost + left.cost(traversalCost)
+				+ right.cost(traversalCost);
+	}
+}
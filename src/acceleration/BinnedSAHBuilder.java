@@ -0,0 +1,424 @@
+package acceleration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import gui.ProgressReporter;
+import math.BoundingBox;
+import math.Point;
+import shape.Shape;
+
+/**
+ * Constructs a bounding volume hierarchy top-down using a binned
+ * approximation of the surface area heuristic, in parallel.
+ * 
+ * At every node, the centroids of the primitives are distributed in at most
+ * {@link #BINS} bins along each axis, and only the partitions between the bins
+ * are evaluated. This reduces the cost of a node to a linear pass over its
+ * primitives. The two children of large nodes are constructed concurrently in
+ * the common fork/join pool, which is shared with the other parallel stages
+ * of the renderer instead of being created for every hierarchy. The resulting
+ * hierarchy does not depend on the number of workers.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class BinnedSAHBuilder implements BVHBuilder {
+	
+	/**
+	 * The maximum number of bins along each axis.
+	 */
+	public static final int BINS = 32;
+
+	/**
+	 * Nodes with fewer primitives than this threshold are constructed
+	 * sequentially by a single worker.
+	 */
+	public static final int SEQUENTIAL_THRESHOLD = 4096;
+
+	/**
+	 * The maximum number of primitives in a leaf.
+	 */
+	private final int maximumLeafSize;
+
+	/**
+	 * The progress reporter which is updated with the number of primitives
+	 * which have been placed in leaves, or null.
+	 */
+	private final ProgressReporter reporter;
+
+	/**
+	 * Creates a new builder with at most four primitives per leaf which does
+	 * not report its progress.
+	 */
+	public BinnedSAHBuilder() {
+		this(4, null);
+	}
+
+	/**
+	 * Creates a new builder with at most the given number of primitives per
+	 * leaf, which reports the number of primitives that have been placed in
+	 * leaves to the given progress reporter.
+	 * 
+	 * @param maximumLeafSize
+	 *            the maximum number of primitives per leaf.
+	 * @param reporter
+	 *            the progress reporter to update, or null.
+	 * @throws IllegalArgumentException
+	 *             when the given leaf size is smaller than one.
+	 */
+	public BinnedSAHBuilder(int maximumLeafSize, ProgressReporter reporter)
+			throws IllegalArgumentException {
+		if (maximumLeafSize < 1)
+			throw new IllegalArgumentException(
+					"the maximum leaf size must be at least one!");
+		this.maximumLeafSize = maximumLeafSize;
+		this.reporter = reporter;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see acceleration.BVHBuilder#build(shape.Shape[])
+	 */
+	@Override
+	public BVHNode build(Shape[] primitives) throws NullPointerException {
+		int n = primitives.length;
+		if (n == 0)
+			return new BVHNode(BoundingBox.EMPTY, 0, 0);
+
+		Construction construction = new Construction(primitives);
+		BVHNode root = ForkJoinPool.commonPool().invoke(
+				construction.new Build(0, n));
+
+		// reorder the primitives in the order of the leaves
+		Shape[] copy = primitives.clone();
+		for (int i = 0; i < n; ++i)
+			primitives[i] = copy[construction.indices[i]];
+		return root;
+	}
+
+	/**
+	 * The state which is shared during the construction of a single hierarchy.
+	 */
+	private class Construction {
+		/**
+		 * The bounding boxes of the primitives stored as six consecutive
+		 * values (minimum x, y, z and maximum x, y, z) per primitive.
+		 */
+		private final double[] bounds;
+
+		/**
+		 * The centroids of the bounding boxes of the primitives.
+		 */
+		private final double[] centroids;
+
+		/**
+		 * The primitive indices, which are partitioned in place such that
+		 * every node owns a contiguous range.
+		 */
+		private final int[] indices;
+
+		/**
+		 * Prepares the construction of a hierarchy over the given primitives.
+		 * 
+		 * @param primitives
+		 *            the primitives.
+		 */
+		private Construction(Shape[] primitives) {
+			int n = primitives.length;
+			bounds = new double[6 * n];
+			centroids = new double[3 * n];
+			indices = new int[n];
+			for (int i = 0; i < n; ++i) {
+				BoundingBox box = primitives[i].getBoundingBox();
+				bounds[6 * i] = box.minimum.x;
+				bounds[6 * i + 1] = box.minimum.y;
+				bounds[6 * i + 2] = box.minimum.z;
+				bounds[6 * i + 3] = box.maximum.x;
+				bounds[6 * i + 4] = box.maximum.y;
+				bounds[6 * i + 5] = box.maximum.z;
+				centroids[3 * i] = 0.5 * (box.minimum.x + box.maximum.x);
+				centroids[3 * i + 1] = 0.5 * (box.minimum.y + box.maximum.y);
+				centroids[3 * i + 2] = 0.5 * (box.minimum.z + box.maximum.z);
+				indices[i] = i;
+			}
+		}
+
+		/**
+		 * A task which constructs the subtree over a range of primitives.
+		 */
+		private class Build extends RecursiveTask<BVHNode> {
+			/**
+			 * A unique id required for serialization.
+			 */
+			private static final long serialVersionUID = 2675238130517716394L;
+
+			/**
+			 * The start of the range (inclusive).
+			 */
+			private final int start;
+
+			/**
+			 * The end of the range (exclusive).
+			 */
+			private final int end;
+
+			/**
+			 * Creates a new task which constructs the subtree over the given
+			 * range of primitives.
+			 * 
+			 * @param start
+			 *            the start of the range (inclusive).
+			 * @param end
+			 *            the end of the range (exclusive).
+			 */
+			private Build(int start, int end) {
+				this.start = start;
+				this.end = end;
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.util.concurrent.RecursiveTask#compute()
+			 */
+			@Override
+			protected BVHNode compute() {
+				if (end - start < SEQUENTIAL_THRESHOLD) {
+					BVHNode node = build(start, end);
+					if (reporter != null)
+						reporter.update(end - start);
+					return node;
+				}
+
+				int[] split = new int[2];
+				BVHNode leaf = split(start, end, split);
+				if (leaf != null) {
+					if (reporter != null)
+						reporter.update(end - start);
+					return leaf;
+				}
+				Build first = new Build(start, split[1]);
+				Build second = new Build(split[1], end);
+				first.fork();
+				BVHNode right = second.compute();
+				BVHNode left = first.join();
+				return new BVHNode(split[0], left, right);
+			}
+		}
+
+		/**
+		 * Constructs the subtree over the given range of primitives
+		 * sequentially.
+		 * 
+		 * @param start
+		 *            the start of the range (inclusive).
+		 * @param end
+		 *            the end of the range (exclusive).
+		 * @return the root of the subtree.
+		 */
+		private BVHNode build(int start, int end) {
+			int[] split = new int[2];
+			BVHNode leaf = split(start, end, split);
+			if (leaf != null)
+				return leaf;
+			BVHNode left = build(start, split[1]);
+			BVHNode right = build(split[1], end);
+			return new BVHNode(split[0], left, right);
+		}
+
+		/**
+		 * Determines the best partition of the given range of primitives and
+		 * partitions the range accordingly. Returns a leaf node when the
+		 * primitives should not be split.
+		 * 
+		 * @param start
+		 *            the start of the range (inclusive).
+		 * @param end
+		 *            the end of the range (exclusive).
+		 * @param split
+		 *            an array in which the axis and the first primitive of the
+		 *            second child are stored.
+		 * @return a leaf node over the given range, or null when the range has
+		 *         been partitioned.
+		 */
+		private BVHNode split(int start, int end, int[] split) {
+			int count = end - start;
+
+			// determine the bounds of the primitives and their centroids
+			double[] box = { Double.POSITIVE_INFINITY,
+					Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+					Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+					Double.NEGATIVE_INFINITY };
+			double[] centroidBox = box.clone();
+			for (int i = start; i < end; ++i) {
+				int p = indices[i];
+				for (int k = 0; k < 3; ++k) {
+					box[k] = Math.min(box[k], bounds[6 * p + k]);
+					box[k + 3] = Math.max(box[k + 3], bounds[6 * p + k + 3]);
+					double c = centroids[3 * p + k];
+					centroidBox[k] = Math.min(centroidBox[k], c);
+					centroidBox[k + 3] = Math.max(centroidBox[k + 3], c);
+				}
+			}
+			BoundingBox bounds = new BoundingBox(new Point(box[0], box[1],
+					box[2]), new Point(box[3], box[4], box[5]));
+			if (count == 1)
+				return new BVHNode(bounds, start, count);
+
+			double bestCost = Double.POSITIVE_INFINITY;
+			int bestAxis = -1;
+			int bestBin = -1;
+
+			// small nodes do not benefit from more bins than primitives
+			int bins = Math.min(BINS, count);
+			int[] binCounts = new int[bins];
+			double[] binBounds = new double[6 * bins];
+			double[] areas = new double[bins];
+			for (int axis = 0; axis < 3; ++axis) {
+				double minimum = centroidBox[axis];
+				double extent = centroidBox[axis + 3] - minimum;
+				if (!(extent > 0))
+					continue;
+				double scale = bins / extent;
+
+				// distribute the primitives in the bins
+				for (int b = 0; b < bins; ++b) {
+					binCounts[b] = 0;
+					for (int k = 0; k < 3; ++k) {
+						binBounds[6 * b + k] = Double.POSITIVE_INFINITY;
+						binBounds[6 * b + k + 3] = Double.NEGATIVE_INFINITY;
+					}
+				}
+				for (int i = start; i < end; ++i) {
+					int p = indices[i];
+					int b = bin(centroids[3 * p + axis], minimum, scale,
+							bins);
+					binCounts[b]++;
+					for (int k = 0; k < 3; ++k) {
+						binBounds[6 * b + k] = Math.min(binBounds[6 * b + k],
+								this.bounds[6 * p + k]);
+						binBounds[6 * b + k + 3] = Math.max(binBounds[6 * b
+								+ k + 3], this.bounds[6 * p + k + 3]);
+					}
+				}
+
+				// sweep from right to left to find the suffix areas
+				double[] acc = { Double.POSITIVE_INFINITY,
+						Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+						Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+						Double.NEGATIVE_INFINITY };
+				for (int b = bins - 1; b > 0; --b) {
+					grow(acc, binBounds, b);
+					areas[b] = area(acc);
+				}
+
+				// sweep from left to right and evaluate the partitions
+				acc = new double[] { Double.POSITIVE_INFINITY,
+						Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+						Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+						Double.NEGATIVE_INFINITY };
+				int leftCount = 0;
+				for (int b = 0; b < bins - 1; ++b) {
+					grow(acc, binBounds, b);
+					leftCount += binCounts[b];
+					int rightCount = count - leftCount;
+					if (leftCount == 0 || rightCount == 0)
+						continue;
+					double cost = area(acc) * leftCount + areas[b + 1]
+							* rightCount;
+					if (cost < bestCost) {
+						bestCost = cost;
+						bestAxis = axis;
+						bestBin = b + 1;
+					}
+				}
+			}
+
+			// compare the cost of splitting with the cost of a leaf
+			double area = bounds.getSurfaceArea();
+			double splitCost = area > 0 ? SAHBuilder.TRAVERSAL_COST + bestCost
+					/ area : Double.POSITIVE_INFINITY;
+			if (count <= maximumLeafSize && count <= splitCost)
+				return new BVHNode(bounds, start, count);
+
+			int mid;
+			if (bestAxis < 0) {
+				// all the centroids coincide, split the range in the middle
+				bestAxis = 0;
+				mid = start + count / 2;
+			} else {
+				double minimum = centroidBox[bestAxis];
+				double scale = bins / (centroidBox[bestAxis + 3] - minimum);
+				int i = start;
+				int j = end - 1;
+				while (i <= j) {
+					if (bin(centroids[3 * indices[i] + bestAxis], minimum,
+							scale, bins) < bestBin)
+						++i;
+					else {
+						int tmp = indices[i];
+						indices[i] = indices[j];
+						indices[j--] = tmp;
+					}
+				}
+				mid = i;
+			}
+
+			split[0] = bestAxis;
+			split[1] = mid;
+			return null;
+		}
+
+		/**
+		 * Grows the given bounds with the bounds of the given bin.
+		 * 
+		 * @param acc
+		 *            the bounds to grow.
+		 * @param binBounds
+		 *            the bounds of all the bins.
+		 * @param b
+		 *            the bin.
+		 */
+		private void grow(double[] acc, double[] binBounds, int b) {
+			for (int k = 0; k < 3; ++k) {
+				acc[k] = Math.min(acc[k], binBounds[6 * b + k]);
+				acc[k + 3] = Math.max(acc[k + 3], binBounds[6 * b + k + 3]);
+			}
+		}
+
+		/**
+		 * Returns the surface area of the given bounds, or zero when the
+		 * bounds are empty.
+		 * 
+		 * @param acc
+		 *            the bounds.
+		 * @return the surface area of the given bounds.
+		 */
+		private double area(double[] acc) {
+			if (acc[0] > acc[3])
+				return 0;
+			return SAHBuilder.area(acc[3] - acc[0], acc[4] - acc[1], acc[5]
+					- acc[2]);
+		}
+
+		/**
+		 * Returns the bin of the given centroid coordinate.
+		 * 
+		 * @param centroid
+		 *            the centroid coordinate.
+		 * @param minimum
+		 *            the minimum centroid coordinate of the node.
+		 * @param scale
+		 *            the number of bins divided by the extent of the centroids.
+		 * @param bins
+		 *            the number of bins.
+		 * @return the bin of the given centroid coordinate.
+		 */
+		private int bin(double centroid, double minimum, double scale,
+				int bins) {
+			return Math.min(bins - 1, (int) ((centroid - minimum) * scale));
+		}
+	}
+}
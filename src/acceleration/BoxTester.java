@@ -0,0 +1,50 @@
+package acceleration;
+
+/**
+ * Intersects a ray with the bounding boxes of all the children of a node of
+ * a wide bounding volume hierarchy at once.
+ * 
+ * The bounding boxes of the children of a node are stored as a structure of
+ * arrays: the minimum x coordinates of all the children, followed by the
+ * minimum y and z coordinates and the maximum x, y and z coordinates.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+interface BoxTester {
+	
+	/**
+	 * Intersects the ray with the given origin and inverse direction with the
+	 * bounding boxes of the children of a node within the interval [tMin, tMax].
+	 * 
+	 * @param bounds
+	 *            the array containing the bounding boxes.
+	 * @param offset
+	 *            the index of the bounding boxes of the node in the array.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param ix
+	 *            the inverse of the x coordinate of the direction of the ray.
+	 * @param iy
+	 *            the inverse of the y coordinate of the direction of the ray.
+	 * @param iz
+	 *            the inverse of the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray.
+	 * @param tMax
+	 *            the end of the interval along the ray.
+	 * @param distances
+	 *            an array with twice as many elements as there are children,
+	 *            in which the entry distance of every child is stored in the
+	 *            first half. The second half is used as scratch space.
+	 * @return a bit mask in which bit i is set when the ray overlaps the
+	 *         bounding box of child i.
+	 */
+	public int intersect(double[] bounds, int offset, double ox, double oy,
+			double oz, double ix, double iy, double iz, double tMin,
+			double tMax, double[] distances);
+}
@@ -0,0 +1,256 @@
+package acceleration;
+
+import java.util.Arrays;
+import java.util.List;
+
+import math.BoundingBox;
+import math.MutableRay;
+import math.RayBatch;
+import shape.Hit;
+import shape.HitBatch;
+import shape.Shape;
+
+/**
+ * A bounding volume hierarchy over moving shapes, which is updated between
+ * frames by refitting the bounding boxes of its nodes rather than by
+ * reconstructing it.
+ * 
+ * The shapes themselves are immutable, such that they can be shared by the
+ * threads of the renderer without synchronization. A shape is moved by
+ * replacing it with a new shape at its new position (see
+ * {@link #set(int, Shape)}), such as a new {@link shape.Instance} of the same
+ * shared shape, or a new {@link shape.SphereGroup} of the moved spheres.
+ * 
+ * Refitting keeps the topology of the hierarchy, such that its quality
+ * degrades when the shapes move far from their original positions. After
+ * every refit, the cost of the hierarchy according to the surface area
+ * heuristic is compared to its cost right after the last construction. When
+ * the ratio exceeds a threshold, the hierarchy is reconstructed.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class DynamicBVH implements Shape {
+	
+	/**
+	 * The default ratio between the current cost and the cost after
+	 * construction above which the hierarchy is reconstructed.
+	 */
+	public static final double DEFAULT_THRESHOLD = 1.5;
+
+	/**
+	 * The shapes of this hierarchy.
+	 */
+	private final List<Shape> shapes;
+
+	/**
+	 * The builder which constructs the hierarchy.
+	 */
+	private final BVHBuilder builder;
+
+	/**
+	 * The ratio between the current cost and the cost after construction
+	 * above which the hierarchy is reconstructed.
+	 */
+	private final double threshold;
+
+	/**
+	 * The current hierarchy.
+	 */
+	private FlatBVH hierarchy;
+
+	/**
+	 * The cost of the hierarchy right after its last construction.
+	 */
+	private double reference;
+
+	/**
+	 * The cost of the hierarchy after its last update.
+	 */
+	private double cost;
+
+	/**
+	 * The number of times the hierarchy has been reconstructed by an update.
+	 */
+	private int rebuilds;
+
+	/**
+	 * Creates a new dynamic bounding volume hierarchy over the given shapes,
+	 * which is constructed with the binned surface area heuristic and
+	 * reconstructed when its cost exceeds the default threshold.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the hierarchy for.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 */
+	public DynamicBVH(List<Shape> shapes) throws NullPointerException {
+		this(shapes, new BinnedSAHBuilder(), DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Creates a new dynamic bounding volume hierarchy over the given shapes,
+	 * which is constructed by the given builder and reconstructed when its
+	 * cost exceeds the given ratio of its cost after construction.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the hierarchy for.
+	 * @param builder
+	 *            the builder which constructs the hierarchy.
+	 * @param threshold
+	 *            the ratio between the current cost and the cost after
+	 *            construction above which the hierarchy is reconstructed.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 * @throws NullPointerException
+	 *             when the given builder is null.
+	 * @throws IllegalArgumentException
+	 *             when the given threshold is smaller than one or NaN.
+	 */
+	public DynamicBVH(List<Shape> shapes, BVHBuilder builder,
+			double threshold) throws NullPointerException,
+			IllegalArgumentException {
+		if (shapes == null)
+			throw new NullPointerException("the given list of shapes is null!");
+		if (builder == null)
+			throw new NullPointerException("the given builder is null!");
+		if (!(threshold >= 1))
+			throw new IllegalArgumentException(
+					"the threshold must be at least one!");
+		this.shapes = Arrays.asList(shapes.toArray(new Shape[shapes.size()]));
+		this.builder = builder;
+		this.threshold = threshold;
+		rebuild();
+	}
+
+	/**
+	 * Replaces the shape at the given index in the list from which this
+	 * hierarchy has been constructed by the given shape, typically the same
+	 * shape at a new position. The hierarchy takes the new shape into account
+	 * after the next {@link #update()}.
+	 * 
+	 * This method must not be called while rays are traversing this
+	 * hierarchy.
+	 * 
+	 * @param index
+	 *            the index of the shape to replace.
+	 * @param shape
+	 *            the shape which replaces it.
+	 * @throws NullPointerException
+	 *             when the given shape is null.
+	 * @throws IndexOutOfBoundsException
+	 *             when the given index does not refer to a shape.
+	 */
+	public void set(int index, Shape shape) throws NullPointerException,
+			IndexOutOfBoundsException {
+		if (shape == null)
+			throw new NullPointerException("the given shape is null!");
+		shapes.set(index, shape);
+		hierarchy.replace(index, shape);
+	}
+
+	/**
+	 * Updates this hierarchy after its shapes have been replaced. The
+	 * hierarchy is refitted, and reconstructed when its quality has degraded
+	 * too far.
+	 * 
+	 * This method must not be called while rays are traversing this
+	 * hierarchy.
+	 * 
+	 * @return true when the hierarchy has been reconstructed.
+	 */
+	public boolean update() {
+		hierarchy.refit();
+		cost = hierarchy.getCost();
+		if (cost > threshold * reference) {
+			rebuild();
+			++rebuilds;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reconstructs this hierarchy from scratch.
+	 * 
+	 * This method must not be called while rays are traversing this
+	 * hierarchy.
+	 */
+	public void rebuild() {
+		hierarchy = new FlatBVH(new BVH(shapes, builder));
+		reference = cost = hierarchy.getCost();
+	}
+
+	/**
+	 * Returns the cost of this hierarchy after its last update according to
+	 * the surface area heuristic.
+	 * 
+	 * @return the cost of this hierarchy.
+	 */
+	public double getCost() {
+		return cost;
+	}
+
+	/**
+	 * Returns the ratio between the cost of this hierarchy after its last
+	 * update and its cost after its last construction.
+	 * 
+	 * @return the degradation of this hierarchy (at least one after a
+	 *         construction).
+	 */
+	public double getDegradation() {
+		return reference > 0 ? cost / reference : 1;
+	}
+
+	/**
+	 * Returns the number of times this hierarchy has been reconstructed by an
+	 * update.
+	 * 
+	 * @return the number of reconstructions.
+	 */
+	public int getRebuildCount() {
+		return rebuilds;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
+	 */
+	@Override
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
+		return hierarchy.occluded(ray, tMin, tMax);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		return hierarchy.intersect(ray, tMin, tMax, hit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.RayBatch, shape.HitBatch)
+	 */
+	@Override
+	public int intersect(RayBatch rays, HitBatch hits)
+			throws NullPointerException, IllegalArgumentException {
+		return hierarchy.intersect(rays, hits);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return hierarchy.getBoundingBox();
+	}
+}
@@ -0,0 +1,942 @@
+package acceleration;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import math.BoundingBox;
+import math.MutableRay;
+import math.Point;
+import math.RayBatch;
+import shape.Hit;
+import shape.HitBatch;
+import shape.Shape;
+
+/**
+ * A bounding volume hierarchy which is stored in a depth-first order in
+ * arrays of primitive values, rather than as a tree of objects.
+ * 
+ * The bounding box of node i is stored at the indices [6i, 6i+6) of the bounds
+ * array (minimum x, y, z followed by maximum x, y, z). The first child of an
+ * interior node immediately follows its parent, which allows to store a node
+ * in two consecutive integers in the offsets array:
+ * <ul>
+ * <li>for an interior node, the index of its second child followed by the
+ * bitwise complement of its split axis.</li>
+ * <li>for a leaf node, the index of its first primitive followed by its number
+ * of primitives.</li>
+ * </ul>
+ * The primitives are reordered such that the leaves reference contiguous
+ * ranges in depth-first order. The traversal uses a per-thread integer stack
+ * and does not allocate any objects itself. Every thread also remembers the
+ * primitive which occluded its last ray, which is tested first by the next
+ * occlusion query.
+ * 
+ * A batch of coherent rays, such as the primary rays through a block of
+ * pixels, is traversed as a single packet, where a node is tested once for
+ * all the rays of the packet (see {@link #intersect(RayBatch, HitBatch)}).
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class FlatBVH implements Shape {
+	
+	/**
+	 * The number of levels of the hierarchy below which the subtrees are
+	 * refitted in parallel.
+	 */
+	public static final int PARALLEL_DEPTH = 8;
+
+	/**
+	 * The primitives of this hierarchy, ordered such that every leaf
+	 * references a contiguous range.
+	 */
+	private final Shape[] primitives;
+
+	/**
+	 * For every primitive, its index in the list from which this hierarchy
+	 * has been constructed.
+	 */
+	private final int[] indices;
+
+	/**
+	 * For every index in the list from which this hierarchy has been
+	 * constructed, the position of its primitive, i.e. the inverse of the
+	 * indices.
+	 */
+	private final int[] positions;
+
+	/**
+	 * The bounding boxes of the nodes.
+	 */
+	private final double[] bounds;
+
+	/**
+	 * The child and primitive offsets of the nodes.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * The depth of the hierarchy.
+	 */
+	private final int depth;
+
+	/**
+	 * The traversal state of every thread.
+	 */
+	private final ThreadLocal<Traversal> traversals;
+
+	/**
+	 * Creates a new flattened bounding volume hierarchy over the given shapes,
+	 * which is constructed with the surface area heuristic.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the hierarchy for.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 */
+	public FlatBVH(List<Shape> shapes) throws NullPointerException {
+		this(new BVH(shapes));
+	}
+
+	/**
+	 * Creates a new flattened bounding volume hierarchy over the given shapes,
+	 * which is constructed by the given builder.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the hierarchy for.
+	 * @param builder
+	 *            the builder which constructs the hierarchy.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 * @throws NullPointerException
+	 *             when the given builder is null.
+	 */
+	public FlatBVH(List<Shape> shapes, BVHBuilder builder)
+			throws NullPointerException {
+		this(new BVH(shapes, builder));
+	}
+
+	/**
+	 * Creates a flattened copy of the given bounding volume hierarchy.
+	 * 
+	 * @param bvh
+	 *            the bounding volume hierarchy to flatten.
+	 * @throws NullPointerException
+	 *             when the given hierarchy is null.
+	 */
+	public FlatBVH(BVH bvh) throws NullPointerException {
+		if (bvh == null)
+			throw new NullPointerException("the given hierarchy is null!");
+		BVHNode root = bvh.getRoot();
+		int count = root.getNodeCount();
+
+		this.primitives = bvh.getPrimitives().clone();
+		this.indices = bvh.getIndices().clone();
+		this.positions = new int[indices.length];
+		for (int i = 0; i < indices.length; ++i)
+			positions[indices[i]] = i;
+		this.bounds = new double[6 * count];
+		this.offsets = new int[2 * count];
+		this.depth = root.getDepth();
+		flatten(root, 0);
+
+		final int size = depth;
+		this.traversals = new ThreadLocal<Traversal>() {
+			@Override
+			protected Traversal initialValue() {
+				return new Traversal(size);
+			}
+		};
+	}
+
+	/**
+	 * Stores the subtree rooted at the given node in depth-first order,
+	 * starting at the given index.
+	 * 
+	 * @param node
+	 *            the root of the subtree.
+	 * @param index
+	 *            the index of the root of the subtree.
+	 * @return the index following the last node of the subtree.
+	 */
+	private int flatten(BVHNode node, int index) {
+		BoundingBox box = node.boundingBox;
+		bounds[6 * index] = box.minimum.x;
+		bounds[6 * index + 1] = box.minimum.y;
+		bounds[6 * index + 2] = box.minimum.z;
+		bounds[6 * index + 3] = box.maximum.x;
+		bounds[6 * index + 4] = box.maximum.y;
+		bounds[6 * index + 5] = box.maximum.z;
+
+		if (node.isLeaf()) {
+			offsets[2 * index] = node.offset;
+			offsets[2 * index + 1] = node.count;
+			return index + 1;
+		}
+
+		int second = flatten(node.left, index + 1);
+		offsets[2 * index] = second;
+		offsets[2 * index + 1] = ~node.axis;
+		return flatten(node.right, second);
+	}
+
+	/**
+	 * Returns the number of nodes of this hierarchy.
+	 * 
+	 * @return the number of nodes of this hierarchy.
+	 */
+	public int getNodeCount() {
+		return offsets.length / 2;
+	}
+
+	/**
+	 * Returns the depth of this hierarchy.
+	 * 
+	 * @return the depth of this hierarchy.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Replaces the primitive at the given index in the list from which this
+	 * hierarchy has been constructed by the given shape, which takes its
+	 * place in the same leaf. The bounding boxes of the nodes are updated by
+	 * the next {@link #refit()}.
+	 * 
+	 * This method must not be called while rays are traversing this
+	 * hierarchy.
+	 * 
+	 * @param index
+	 *            the index of the primitive in the original list.
+	 * @param shape
+	 *            the shape which replaces the primitive.
+	 * @throws IndexOutOfBoundsException
+	 *             when the given index does not refer to a primitive.
+	 */
+	void replace(int index, Shape shape) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= primitives.length)
+			throw new IndexOutOfBoundsException("the given index does not "
+					+ "refer to a primitive!");
+		primitives[positions[index]] = shape;
+	}
+
+	/**
+	 * Recomputes the bounding boxes of all the nodes bottom-up from the current
+	 * bounding boxes of the primitives, while the topology of the hierarchy is
+	 * left untouched. The subtrees of the upper levels are refitted in
+	 * parallel in the common fork/join pool, such that refitting every frame
+	 * creates no threads.
+	 * 
+	 * This method must not be called while rays are traversing this
+	 * hierarchy.
+	 */
+	public void refit() {
+		ForkJoinPool.commonPool().invoke(new Refit(0, 0));
+	}
+
+	/**
+	 * Recomputes the bounding boxes of the subtree rooted at the given node.
+	 * 
+	 * @param node
+	 *            the index of the root of the subtree.
+	 */
+	private void refit(int node) {
+		int count = offsets[2 * node + 1];
+		if (count >= 0)
+			refitLeaf(node);
+		else {
+			refit(node + 1);
+			refit(offsets[2 * node]);
+			refitInterior(node);
+		}
+	}
+
+	/**
+	 * Sets the bounding box of the given leaf to the union of the bounding
+	 * boxes of its primitives.
+	 * 
+	 * @param node
+	 *            the index of the leaf.
+	 */
+	private void refitLeaf(int node) {
+		int offset = offsets[2 * node];
+		int count = offsets[2 * node + 1];
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double maxZ = Double.NEGATIVE_INFINITY;
+		for (int i = offset; i < offset + count; ++i) {
+			BoundingBox box = primitives[i].getBoundingBox();
+			minX = Math.min(minX, box.minimum.x);
+			minY = Math.min(minY, box.minimum.y);
+			minZ = Math.min(minZ, box.minimum.z);
+			maxX = Math.max(maxX, box.maximum.x);
+			maxY = Math.max(maxY, box.maximum.y);
+			maxZ = Math.max(maxZ, box.maximum.z);
+		}
+		int b = 6 * node;
+		bounds[b] = minX;
+		bounds[b + 1] = minY;
+		bounds[b + 2] = minZ;
+		bounds[b + 3] = maxX;
+		bounds[b + 4] = maxY;
+		bounds[b + 5] = maxZ;
+	}
+
+	/**
+	 * Sets the bounding box of the given interior node to the union of the
+	 * bounding boxes of its children.
+	 * 
+	 * @param node
+	 *            the index of the interior node.
+	 */
+	private void refitInterior(int node) {
+		int b = 6 * node;
+		int l = 6 * (node + 1);
+		int r = 6 * offsets[2 * node];
+		for (int i = 0; i < 3; ++i) {
+			bounds[b + i] = Math.min(bounds[l + i], bounds[r + i]);
+			bounds[b + i + 3] = Math.max(bounds[l + i + 3], bounds[r + i + 3]);
+		}
+	}
+
+	/**
+	 * Returns the expected cost of intersecting a ray with this hierarchy
+	 * according to the surface area heuristic, relative to the cost of
+	 * intersecting a single primitive. The cost increases when the bounding
+	 * boxes of the nodes grow and overlap after the primitives have moved.
+	 * 
+	 * @return the surface area heuristic cost of this hierarchy.
+	 */
+	public double getCost() {
+		double root = area(0);
+		if (root == 0)
+			return 0;
+		double cost = 0;
+		for (int node = 0; node < getNodeCount(); ++node) {
+			int count = offsets[2 * node + 1];
+			cost += area(node)
+					* (count >= 0 ? count : SAHBuilder.TRAVERSAL_COST);
+		}
+		return cost / root;
+	}
+
+	/**
+	 * Returns the surface area of the bounding box of the given node, which is
+	 * zero when the bounding box is empty.
+	 * 
+	 * @param node
+	 *            the index of the node.
+	 * @return the surface area of the bounding box of the given node.
+	 */
+	private double area(int node) {
+		int b = 6 * node;
+		if (bounds[b] > bounds[b + 3])
+			return 0;
+		return SAHBuilder.area(bounds[b + 3] - bounds[b], bounds[b + 4]
+				- bounds[b + 1], bounds[b + 5] - bounds[b + 2]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
+	 */
+	@Override
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
+		if (ray == null)
+			return false;
+		Traversal traversal = traversals.get();
+		int last = traversal.occluder;
+		if (last >= 0 && primitives[last].occluded(ray, tMin, tMax))
+			return true;
+
+		double ox = ray.origin.x;
+		double oy = ray.origin.y;
+		double oz = ray.origin.z;
+		ray.update();
+		double ix = ray.inverseX;
+		double iy = ray.inverseY;
+		double iz = ray.inverseZ;
+
+		int[] stack = traversal.stack;
+		int size = 0;
+		int node = 0;
+		while (true) {
+			if (overlaps(node, ox, oy, oz, ix, iy, iz, tMin, tMax)) {
+				int count = offsets[2 * node + 1];
+				if (count >= 0) {
+					int offset = offsets[2 * node];
+					for (int i = offset; i < offset + count; ++i)
+						if (i != last
+								&& primitives[i].occluded(ray, tMin, tMax)) {
+							traversal.occluder = i;
+							return true;
+						}
+				} else {
+					stack[size++] = offsets[2 * node];
+					++node;
+					continue;
+				}
+			}
+			if (size == 0)
+				return false;
+			node = stack[--size];
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null)
+			return false;
+		double ox = ray.origin.x;
+		double oy = ray.origin.y;
+		double oz = ray.origin.z;
+		ray.update();
+		double ix = ray.inverseX;
+		double iy = ray.inverseY;
+		double iz = ray.inverseZ;
+		int sign = ray.sign;
+
+		boolean found = false;
+		int[] stack = traversals.get().stack;
+		int size = 0;
+		int node = 0;
+		while (true) {
+			if (overlaps(node, ox, oy, oz, ix, iy, iz, tMin, tMax)) {
+				int count = offsets[2 * node + 1];
+				if (count >= 0) {
+					int offset = offsets[2 * node];
+					for (int i = offset; i < offset + count; ++i)
+						if (primitives[i].intersect(ray, tMin, tMax, hit)) {
+							tMax = hit.t;
+							hit.id = indices[i];
+							found = true;
+						}
+				} else {
+					// visit the child closest to the origin of the ray first
+					if ((sign >> ~count & 1) != 0) {
+						stack[size++] = node + 1;
+						node = offsets[2 * node];
+					} else {
+						stack[size++] = offsets[2 * node];
+						++node;
+					}
+					continue;
+				}
+			}
+			if (size == 0)
+				return found;
+			node = stack[--size];
+		}
+	}
+
+	/**
+	 * Intersects the given batch of rays as a single packet when the rays
+	 * start at the same origin and the signs of their directions agree, as is
+	 * the case for the primary rays through a block of pixels. Otherwise, the
+	 * packet is said to diverge and the rays are traced one at a time.
+	 * 
+	 * A node is first tested against the first active ray of the packet. When
+	 * this ray misses, the node is tested once against the intervals of the
+	 * inverse directions of the packet, which bound the distances to the node
+	 * along all the rays at once. When these bounds miss the node, the whole
+	 * packet is culled. Otherwise, the next ray which overlaps the node
+	 * becomes the first active ray of its subtree, such that the rays which
+	 * have left the packet are not tested again below this node.
+	 * 
+	 * @see shape.Shape#intersect(math.RayBatch, shape.HitBatch)
+	 */
+	@Override
+	public int intersect(RayBatch rays, HitBatch hits)
+			throws NullPointerException, IllegalArgumentException {
+		if (rays == null)
+			throw new NullPointerException("the given rays are null!");
+		if (hits == null)
+			throw new NullPointerException("the given hits are null!");
+		int size = rays.size();
+		if (hits.capacity < size)
+			throw new IllegalArgumentException(
+					"the hit batch is smaller than the ray batch!");
+		Traversal traversal = traversals.get();
+		if (size < 2 || !traversal.load(rays, hits))
+			return Shape.super.intersect(rays, hits);
+
+		double[] ix = traversal.ix, iy = traversal.iy, iz = traversal.iz;
+		boolean negativeX = ix[0] < 0;
+		boolean negativeY = iy[0] < 0;
+		boolean negativeZ = iz[0] < 0;
+
+		int[] stack = traversal.stack;
+		int[] firsts = traversal.firsts;
+		int top = 0;
+		int node = 0;
+		int first = 0;
+		while (true) {
+			first = firstActive(node, first, size, traversal);
+			if (first < size) {
+				int count = offsets[2 * node + 1];
+				if (count >= 0) {
+					intersect(node, first, size, rays, hits, traversal);
+				} else {
+					// visit the child closest to the common origin first
+					int axis = ~count;
+					boolean negative = axis == 0 ? negativeX
+							: axis == 1 ? negativeY : negativeZ;
+					firsts[top] = first;
+					if (negative) {
+						stack[top++] = node + 1;
+						node = offsets[2 * node];
+					} else {
+						stack[top++] = offsets[2 * node];
+						++node;
+					}
+					continue;
+				}
+			}
+			if (top == 0)
+				break;
+			node = stack[--top];
+			first = firsts[top];
+		}
+
+		int updated = 0;
+		for (int i = 0; i < size; ++i)
+			if (traversal.updated[i])
+				++updated;
+		return updated;
+	}
+
+	/**
+	 * Returns the index of the first ray of the packet, starting at the given
+	 * index, which overlaps the bounding box of the given node, or the size of
+	 * the packet when the node can be culled for the whole packet.
+	 * 
+	 * @param node
+	 *            the index of the node.
+	 * @param first
+	 *            the index of the first active ray of the packet.
+	 * @param size
+	 *            the number of rays in the packet.
+	 * @param packet
+	 *            the traversal state which stores the packet.
+	 * @return the index of the first ray which overlaps the given node, or
+	 *         the size of the packet when no ray overlaps the node.
+	 */
+	private int firstActive(int node, int first, int size, Traversal packet) {
+		if (overlaps(node, first, packet))
+			return first;
+		if (!overlapsPacket(node, packet))
+			return size;
+		for (int i = first + 1; i < size; ++i)
+			if (overlaps(node, i, packet))
+				return i;
+		return size;
+	}
+
+	/**
+	 * Returns whether the ray of the packet with the given index overlaps the
+	 * bounding box of the given node within its current interval.
+	 * 
+	 * @param node
+	 *            the index of the node.
+	 * @param i
+	 *            the index of the ray in the packet.
+	 * @param packet
+	 *            the traversal state which stores the packet.
+	 * @return true when the ray overlaps the bounding box of the given node.
+	 */
+	private boolean overlaps(int node, int i, Traversal packet) {
+		return overlaps(node, packet.ox, packet.oy, packet.oz, packet.ix[i],
+				packet.iy[i], packet.iz[i], packet.tMin[i], packet.tMax[i]);
+	}
+
+	/**
+	 * Returns whether any ray of the packet may overlap the bounding box of
+	 * the given node. The distances to the slabs of the node are bounded by
+	 * the intervals of the inverse directions of the rays, which share their
+	 * origin. Since the product with a fixed distance is monotone in the
+	 * inverse direction, also after rounding, a node which is missed by these
+	 * bounds is missed by every ray of the packet.
+	 * 
+	 * @param node
+	 *            the index of the node.
+	 * @param packet
+	 *            the traversal state which stores the packet.
+	 * @return false when no ray of the packet overlaps the given node.
+	 */
+	private boolean overlapsPacket(int node, Traversal packet) {
+		int b = 6 * node;
+		double tMin = packet.minimumT;
+		double tMax = packet.maximumT;
+		for (int axis = 0; axis < 3; ++axis) {
+			double o = axis == 0 ? packet.ox : axis == 1 ? packet.oy
+					: packet.oz;
+			double low = packet.low[axis];
+			double high = packet.high[axis];
+			double near = (low < 0 ? bounds[b + axis + 3] : bounds[b + axis])
+					- o;
+			double far = (low < 0 ? bounds[b + axis] : bounds[b + axis + 3])
+					- o;
+			near *= near >= 0 ? low : high;
+			far *= far >= 0 ? high : low;
+			if (near > tMin)
+				tMin = near;
+			if (far < tMax)
+				tMax = far;
+		}
+		return tMin <= tMax;
+	}
+
+	/**
+	 * Intersects the primitives of the given leaf with the rays of the packet,
+	 * starting at the given index, which overlap the bounding box of the
+	 * leaf.
+	 * 
+	 * @param node
+	 *            the index of the leaf.
+	 * @param first
+	 *            the index of the first active ray, which is known to overlap
+	 *            the leaf.
+	 * @param size
+	 *            the number of rays in the packet.
+	 * @param rays
+	 *            the rays of the packet.
+	 * @param hits
+	 *            the closest hits found so far.
+	 * @param packet
+	 *            the traversal state which stores the packet.
+	 */
+	private void intersect(int node, int first, int size, RayBatch rays,
+			HitBatch hits, Traversal packet) {
+		int offset = offsets[2 * node];
+		int count = offsets[2 * node + 1];
+		MutableRay ray = packet.ray;
+		Hit hit = packet.hit;
+		boolean found = false;
+		for (int i = first; i < size; ++i) {
+			if (i != first && !overlaps(node, i, packet))
+				continue;
+			rays.get(i, ray);
+			double tMin = packet.tMin[i];
+			double tMax = packet.tMax[i];
+			boolean closer = false;
+			for (int j = offset; j < offset + count; ++j)
+				if (primitives[j].intersect(ray, tMin, tMax, hit)) {
+					tMax = hit.t;
+					hit.id = indices[j];
+					closer = true;
+				}
+			if (closer) {
+				hits.set(i, hit);
+				packet.tMax[i] = tMax;
+				packet.updated[i] = true;
+				found = true;
+			}
+		}
+
+		// the farthest end of the intervals shrinks with the hits
+		if (found) {
+			double maximum = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < size; ++i)
+				maximum = Math.max(maximum, packet.tMax[i]);
+			packet.maximumT = maximum;
+		}
+	}
+
+	/**
+	 * Returns whether the ray with the given origin and inverse direction
+	 * overlaps the bounding box of the given node within [tMin, tMax].
+	 * 
+	 * @param node
+	 *            the index of the node.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param ix
+	 *            the inverse of the x coordinate of the direction of the ray.
+	 * @param iy
+	 *            the inverse of the y coordinate of the direction of the ray.
+	 * @param iz
+	 *            the inverse of the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray.
+	 * @param tMax
+	 *            the end of the interval along the ray.
+	 * @return true when the ray overlaps the bounding box of the given node.
+	 */
+	private boolean overlaps(int node, double ox, double oy, double oz,
+			double ix, double iy, double iz, double tMin, double tMax) {
+		int b = 6 * node;
+
+		double t0 = (bounds[b] - ox) * ix;
+		double t1 = (bounds[b + 3] - ox) * ix;
+		if (t0 > t1) {
+			double tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		if (t0 > tMin)
+			tMin = t0;
+		if (t1 < tMax)
+			tMax = t1;
+
+		t0 = (bounds[b + 1] - oy) * iy;
+		t1 = (bounds[b + 4] - oy) * iy;
+		if (t0 > t1) {
+			double tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		if (t0 > tMin)
+			tMin = t0;
+		if (t1 < tMax)
+			tMax = t1;
+
+		t0 = (bounds[b + 2] - oz) * iz;
+		t1 = (bounds[b + 5] - oz) * iz;
+		if (t0 > t1) {
+			double tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		if (t0 > tMin)
+			tMin = t0;
+		if (t1 < tMax)
+			tMax = t1;
+
+		return tMin <= tMax;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		if (bounds[0] > bounds[3])
+			return BoundingBox.EMPTY;
+		return new BoundingBox(new Point(bounds[0], bounds[1], bounds[2]),
+				new Point(bounds[3], bounds[4], bounds[5]));
+	}
+
+	/**
+	 * A task which refits the subtree rooted at a node, where the subtrees of
+	 * the upper levels are refitted in parallel.
+	 */
+	private class Refit extends RecursiveAction {
+		/**
+		 * A unique id required for serialization.
+		 */
+		private static final long serialVersionUID = -3187406227317934823L;
+
+		/**
+		 * The index of the root of the subtree.
+		 */
+		private final int node;
+
+		/**
+		 * The level of the root of the subtree.
+		 */
+		private final int level;
+
+		/**
+		 * Creates a new task which refits the subtree rooted at the given
+		 * node.
+		 * 
+		 * @param node
+		 *            the index of the root of the subtree.
+		 * @param level
+		 *            the level of the root of the subtree.
+		 */
+		private Refit(int node, int level) {
+			this.node = node;
+			this.level = level;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (level >= PARALLEL_DEPTH || offsets[2 * node + 1] >= 0) {
+				refit(node);
+				return;
+			}
+			Refit first = new Refit(node + 1, level + 1);
+			first.fork();
+			new Refit(offsets[2 * node], level + 1).compute();
+			first.join();
+			refitInterior(node);
+		}
+	}
+
+	/**
+	 * The state of a single thread traversing the hierarchy.
+	 */
+	private static class Traversal {
+		/**
+		 * The stack of node indices which remain to be visited.
+		 */
+		private final int[] stack;
+
+		/**
+		 * For every node on the stack, the index of the first active ray of
+		 * the packet.
+		 */
+		private final int[] firsts;
+
+		/**
+		 * The index of the primitive which occluded the last ray, or -1 when
+		 * no ray has been occluded yet.
+		 */
+		private int occluder = -1;
+
+		/**
+		 * The common origin of the rays of the packet.
+		 */
+		private double ox, oy, oz;
+
+		/**
+		 * The inverse directions of the rays of the packet, which are cached
+		 * by the batch.
+		 */
+		private double[] ix, iy, iz;
+
+		/**
+		 * The current intervals along the rays of the packet.
+		 */
+		private double[] tMin, tMax;
+
+		/**
+		 * Whether the hits of the rays of the packet have been updated.
+		 */
+		private boolean[] updated;
+
+		/**
+		 * The smallest and largest inverse direction of the packet along
+		 * every axis.
+		 */
+		private final double[] low = new double[3], high = new double[3];
+
+		/**
+		 * The start of the earliest and the end of the latest interval of the
+		 * packet.
+		 */
+		private double minimumT, maximumT;
+
+		/**
+		 * The ray which is reused for the rays of the packet.
+		 */
+		private final MutableRay ray = new MutableRay();
+
+		/**
+		 * The hit which is reused for the rays of the packet.
+		 */
+		private final Hit hit = new Hit();
+
+		/**
+		 * Creates the traversal state for a hierarchy of the given depth.
+		 * 
+		 * @param depth
+		 *            the depth of the hierarchy.
+		 */
+		private Traversal(int depth) {
+			this.stack = new int[depth];
+			this.firsts = new int[depth];
+		}
+
+		/**
+		 * Loads the given batch of rays as a packet, when the rays share
+		 * their origin and the signs of their directions, and none of the
+		 * components of their directions is zero.
+		 * 
+		 * @param rays
+		 *            the rays of the packet.
+		 * @param hits
+		 *            the closest hits found so far, which bound the intervals
+		 *            of the rays.
+		 * @return false when the rays diverge too much to be traced as a
+		 *         packet.
+		 */
+		private boolean load(RayBatch rays, HitBatch hits) {
+			int size = rays.size();
+			if (tMin == null || tMin.length < size) {
+				tMin = new double[rays.capacity];
+				tMax = new double[rays.capacity];
+				updated = new boolean[rays.capacity];
+			}
+			ox = rays.ox[0];
+			oy = rays.oy[0];
+			oz = rays.oz[0];
+			for (int i = 1; i < size; ++i)
+				if (rays.ox[i] != ox || rays.oy[i] != oy || rays.oz[i] != oz)
+					return false;
+			ix = rays.ix;
+			iy = rays.iy;
+			iz = rays.iz;
+			if (!bound(ix, 0, size) || !bound(iy, 1, size)
+					|| !bound(iz, 2, size))
+				return false;
+
+			// the intervals along the rays end at the closest hits so far
+			minimumT = Double.POSITIVE_INFINITY;
+			maximumT = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < size; ++i) {
+				tMin[i] = rays.tMin[i];
+				tMax[i] = Math.min(rays.tMax[i], hits.t[i]);
+				updated[i] = false;
+				minimumT = Math.min(minimumT, tMin[i]);
+				maximumT = Math.max(maximumT, tMax[i]);
+			}
+			return true;
+		}
+
+		/**
+		 * Computes the interval of the given inverse directions along the
+		 * given axis.
+		 * 
+		 * @param inverse
+		 *            the inverse directions along the axis.
+		 * @param axis
+		 *            the axis.
+		 * @param size
+		 *            the number of rays in the packet.
+		 * @return false when the signs of the directions differ or when a
+		 *         direction is zero along the axis.
+		 */
+		private boolean bound(double[] inverse, int axis, int size) {
+			double minimum = inverse[0];
+			double maximum = inverse[0];
+			for (int i = 1; i < size; ++i) {
+				minimum = Math.min(minimum, inverse[i]);
+				maximum = Math.max(maximum, inverse[i]);
+			}
+			if (!(minimum > 0 || maximum < 0)
+					|| Double.isInfinite(minimum)
+					|| Double.isInfinite(maximum))
+				return false;
+			low[axis] = minimum;
+			high[axis] = maximum;
+			return true;
+		}
+	}
+}
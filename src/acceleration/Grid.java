@@ -0,0 +1,787 @@
+package acceleration;
+
+import java.util.Arrays;
+import java.util.List;
+
+import math.BoundingBox;
+import math.MutableRay;
+import shape.Hit;
+import shape.Shape;
+
+/**
+ * A regular grid over a collection of shapes, which itself behaves as a
+ * single shape.
+ * 
+ * The resolution of the grid is chosen automatically, such that the number of
+ * cells is proportional to the number of primitives, while the cells are
+ * roughly cubical. Every cell references the primitives whose bounding box
+ * overlaps the cell. Optionally, the cells which reference many primitives are
+ * refined into a grid of their own, which results in a two-level grid.
+ * 
+ * A ray walks through the cells it crosses in front to back order using a
+ * three dimensional digital differential analyzer (3D-DDA). Since a primitive
+ * can overlap many cells, every thread stamps the primitives it has tested
+ * with the id of its current ray (mailboxing), such that no primitive is
+ * tested twice for the same ray. The mailbox of a thread also remembers the
+ * primitive which occluded its last ray, which is tested before the walk
+ * starts.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class Grid implements Shape {
+	
+	/**
+	 * The default number of cells per primitive.
+	 */
+	public static final double DENSITY = 3.0;
+
+	/**
+	 * The maximum number of cells along every axis of a single level.
+	 */
+	public static final int MAXIMUM_RESOLUTION = 128;
+
+	/**
+	 * The minimum number of primitives in a cell before the cell is refined.
+	 */
+	public static final int REFINEMENT_THRESHOLD = 16;
+
+	/**
+	 * The maximum factor by which the refinement of a cell may multiply the
+	 * number of its primitive references. The cells of which most primitives
+	 * would overlap most of the cells of the refinement are kept flat.
+	 */
+	public static final int REFINEMENT_GROWTH = 4;
+
+	/**
+	 * The maximum number of primitive references of a level, i.e. the
+	 * maximum length of an array.
+	 */
+	private static final long MAXIMUM_REFERENCES = Integer.MAX_VALUE - 8;
+
+	/**
+	 * The primitives of this grid.
+	 */
+	private final Shape[] primitives;
+
+	/**
+	 * The top level of this grid.
+	 */
+	private final Level root;
+
+	/**
+	 * The bounding box of this grid.
+	 */
+	private final BoundingBox boundingBox;
+
+	/**
+	 * The mailbox of every thread.
+	 */
+	private final ThreadLocal<Mailbox> mailboxes;
+
+	/**
+	 * Creates a new single level grid over the given shapes.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the grid for.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 */
+	public Grid(List<Shape> shapes) throws NullPointerException {
+		this(shapes, false);
+	}
+
+	/**
+	 * Creates a new grid over the given shapes, in which the dense cells are
+	 * optionally refined.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the grid for.
+	 * @param refine
+	 *            whether the cells with many primitives are refined.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 */
+	public Grid(List<Shape> shapes, boolean refine)
+			throws NullPointerException {
+		this(shapes, DENSITY, refine);
+	}
+
+	/**
+	 * Creates a new grid over the given shapes with the given number of cells
+	 * per primitive, in which the dense cells are optionally refined.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the grid for.
+	 * @param density
+	 *            the number of cells per primitive.
+	 * @param refine
+	 *            whether the cells with many primitives are refined.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 * @throws IllegalArgumentException
+	 *             when the given density is smaller than or equal to zero,
+	 *             infinite or NaN.
+	 * @throws IllegalArgumentException
+	 *             when the primitives overlap so many cells that the
+	 *             references of the grid cannot be stored.
+	 */
+	public Grid(List<Shape> shapes, double density, boolean refine)
+			throws NullPointerException, IllegalArgumentException {
+		if (shapes == null)
+			throw new NullPointerException("the given list of shapes is null!");
+		if (!(density > 0) || Double.isInfinite(density))
+			throw new IllegalArgumentException(
+					"the density must be a positive number!");
+		for (Shape shape : shapes)
+			if (shape == null)
+				throw new NullPointerException(
+						"the given list of shapes contains null!");
+		this.primitives = shapes.toArray(new Shape[shapes.size()]);
+
+		int n = primitives.length;
+		double[] bounds = new double[6 * n];
+		int[] indices = new int[n];
+		BoundingBox box = BoundingBox.EMPTY;
+		for (int i = 0; i < n; ++i) {
+			BoundingBox b = primitives[i].getBoundingBox();
+			bounds[6 * i] = b.minimum.x;
+			bounds[6 * i + 1] = b.minimum.y;
+			bounds[6 * i + 2] = b.minimum.z;
+			bounds[6 * i + 3] = b.maximum.x;
+			bounds[6 * i + 4] = b.maximum.y;
+			bounds[6 * i + 5] = b.maximum.z;
+			indices[i] = i;
+			box = box.union(b);
+		}
+		this.boundingBox = box;
+		if (box.isEmpty())
+			this.root = null;
+		else
+			this.root = new Level(bounds, indices, box.minimum.x,
+					box.minimum.y, box.minimum.z, box.maximum.x,
+					box.maximum.y, box.maximum.z, density, refine);
+
+		this.mailboxes = new ThreadLocal<Mailbox>() {
+			@Override
+			protected Mailbox initialValue() {
+				return new Mailbox(primitives.length);
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of cells of the top level of this grid.
+	 * 
+	 * @return the number of cells of the top level of this grid.
+	 */
+	public int getCellCount() {
+		return root == null ? 0 : root.nx * root.ny * root.nz;
+	}
+
+	/**
+	 * Returns the number of cells of the top level which have been refined.
+	 * 
+	 * @return the number of refined cells.
+	 */
+	public int getRefinedCellCount() {
+		if (root == null || root.children == null)
+			return 0;
+		int count = 0;
+		for (Level child : root.children)
+			if (child != null)
+				++count;
+		return count;
+	}
+
+	/**
+	 * Returns the total number of primitive references stored in the cells of
+	 * all the levels of this grid.
+	 * 
+	 * @return the number of primitive references.
+	 */
+	public long getReferenceCount() {
+		return root == null ? 0 : root.getReferenceCount();
+	}
+
+	/**
+	 * Returns the resolution of the top level of this grid along the given
+	 * axis.
+	 * 
+	 * @param axis
+	 *            the axis (0=x, 1=y, 2=z axis).
+	 * @throws IllegalArgumentException
+	 *             when the given axis is smaller than zero or larger than two.
+	 * @return the number of cells along the given axis.
+	 */
+	public int getResolution(int axis) throws IllegalArgumentException {
+		if (axis < 0 || axis > 2)
+			throw new IllegalArgumentException(
+					"the axis must be between zero and two!");
+		if (root == null)
+			return 0;
+		return axis == 0 ? root.nx : axis == 1 ? root.ny : root.nz;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
+	 */
+	@Override
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
+		if (ray == null || root == null)
+			return false;
+		Mailbox mailbox = mailboxes.get();
+		int id = mailbox.next();
+		int last = mailbox.occluder;
+		if (last >= 0) {
+			mailbox.stamps[last] = id;
+			if (primitives[last].occluded(ray, tMin, tMax))
+				return true;
+		}
+		return traverse(root, ray, tMin, tMax, tMin, tMax, null, mailbox, id);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null || root == null)
+			return false;
+		Mailbox mailbox = mailboxes.get();
+		return traverse(root, ray, tMin, tMax, tMin, tMax, hit, mailbox,
+				mailbox.next());
+	}
+
+	/**
+	 * Walks the given ray through the cells of the given level within the
+	 * given interval and intersects the primitives it encounters.
+	 * 
+	 * @param level
+	 *            the level to traverse.
+	 * @param ray
+	 *            the ray to intersect.
+	 * @param tMin
+	 *            the start of the interval in which the primitives are
+	 *            intersected.
+	 * @param tMax
+	 *            the end of the interval in which the primitives are
+	 *            intersected.
+	 * @param tStart
+	 *            the start of the interval along the ray which is walked
+	 *            through the level.
+	 * @param tEnd
+	 *            the end of the interval along the ray which is walked through
+	 *            the level.
+	 * @param hit
+	 *            the hit in which the closest intersection is stored, or null
+	 *            to stop at the first intersected primitive.
+	 * @param mailbox
+	 *            the mailbox of the current thread.
+	 * @param id
+	 *            the id of the given ray.
+	 * @return true when a primitive has been intersected.
+	 */
+	private boolean traverse(Level level, MutableRay ray, double tMin,
+			double tMax, double tStart, double tEnd, Hit hit, Mailbox mailbox,
+			int id) {
+		ray.update();
+		double ox = ray.origin.x;
+		double oy = ray.origin.y;
+		double oz = ray.origin.z;
+		double dx = ray.direction.x;
+		double dy = ray.direction.y;
+		double dz = ray.direction.z;
+		double ix = WideBVH.clamp(ray.inverseX);
+		double iy = WideBVH.clamp(ray.inverseY);
+		double iz = WideBVH.clamp(ray.inverseZ);
+
+		// clip the interval against the bounds of the level
+		double t0 = tStart;
+		double t1 = tEnd;
+		double a = (level.minX - ox) * ix;
+		double b = (level.maxX - ox) * ix;
+		t0 = Math.max(t0, Math.min(a, b));
+		t1 = Math.min(t1, Math.max(a, b));
+		a = (level.minY - oy) * iy;
+		b = (level.maxY - oy) * iy;
+		t0 = Math.max(t0, Math.min(a, b));
+		t1 = Math.min(t1, Math.max(a, b));
+		a = (level.minZ - oz) * iz;
+		b = (level.maxZ - oz) * iz;
+		t0 = Math.max(t0, Math.min(a, b));
+		t1 = Math.min(t1, Math.max(a, b));
+		if (!(t0 <= t1))
+			return false;
+
+		// find the cell in which the ray enters the level
+		int cx = Level.cell(ox + t0 * dx - level.minX, level.inverseX,
+				level.nx);
+		int cy = Level.cell(oy + t0 * dy - level.minY, level.inverseY,
+				level.ny);
+		int cz = Level.cell(oz + t0 * dz - level.minZ, level.inverseZ,
+				level.nz);
+
+		// the distances to the next cell boundaries along every axis
+		int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+		int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+		int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+		double nextX = stepX == 0 ? Double.POSITIVE_INFINITY
+				: (level.minX + (cx + (stepX + 1) / 2) * level.sizeX - ox)
+						* ix;
+		double nextY = stepY == 0 ? Double.POSITIVE_INFINITY
+				: (level.minY + (cy + (stepY + 1) / 2) * level.sizeY - oy)
+						* iy;
+		double nextZ = stepZ == 0 ? Double.POSITIVE_INFINITY
+				: (level.minZ + (cz + (stepZ + 1) / 2) * level.sizeZ - oz)
+						* iz;
+		double deltaX = Math.abs(level.sizeX * ix);
+		double deltaY = Math.abs(level.sizeY * iy);
+		double deltaZ = Math.abs(level.sizeZ * iz);
+
+		boolean found = false;
+		double enter = t0;
+		while (true) {
+			int cell = (cz * level.ny + cy) * level.nx + cx;
+			double exit = Math.min(Math.min(nextX, nextY),
+					Math.min(nextZ, t1));
+
+			Level child = level.children == null ? null
+					: level.children[cell];
+			if (child != null) {
+				if (traverse(child, ray, tMin, tMax, enter, exit, hit, mailbox,
+						id)) {
+					if (hit == null)
+						return true;
+					tMax = hit.t;
+					found = true;
+				}
+			} else {
+				int[] stamps = mailbox.stamps;
+				for (int i = level.offsets[cell]; i < level.offsets[cell + 1]; ++i) {
+					int p = level.items[i];
+					if (stamps[p] == id)
+						continue;
+					stamps[p] = id;
+					if (hit == null) {
+						if (primitives[p].occluded(ray, tMin, tMax)) {
+							mailbox.occluder = p;
+							return true;
+						}
+					} else if (primitives[p].intersect(ray, tMin, tMax, hit)) {
+						tMax = hit.t;
+						hit.id = p;
+						found = true;
+					}
+				}
+			}
+
+			// a hit within the current cell cannot be occluded by the
+			// primitives in the cells further along the ray
+			if (tMax <= exit)
+				return found;
+
+			// advance to the neighboring cell along the closest boundary
+			if (nextX <= nextY && nextX <= nextZ) {
+				cx += stepX;
+				if (cx < 0 || cx >= level.nx)
+					return found;
+				enter = nextX;
+				nextX += deltaX;
+			} else if (nextY <= nextZ) {
+				cy += stepY;
+				if (cy < 0 || cy >= level.ny)
+					return found;
+				enter = nextY;
+				nextY += deltaY;
+			} else {
+				cz += stepZ;
+				if (cz < 0 || cz >= level.nz)
+					return found;
+				enter = nextZ;
+				nextZ += deltaZ;
+			}
+			if (enter > t1)
+				return found;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+
+	/**
+	 * A single level of the grid, of which the cells reference their
+	 * primitives in a compressed row format: the primitives of cell i are
+	 * stored at the indices [offsets[i], offsets[i + 1]) of the items array.
+	 */
+	private static class Level {
+		/**
+		 * The minimum corner of this level.
+		 */
+		private final double minX, minY, minZ;
+
+		/**
+		 * The maximum corner of this level.
+		 */
+		private final double maxX, maxY, maxZ;
+
+		/**
+		 * The number of cells along every axis.
+		 */
+		private final int nx, ny, nz;
+
+		/**
+		 * The size of a cell along every axis.
+		 */
+		private final double sizeX, sizeY, sizeZ;
+
+		/**
+		 * The inverse of the size of a cell along every axis, or zero when
+		 * the level is flat along that axis.
+		 */
+		private final double inverseX, inverseY, inverseZ;
+
+		/**
+		 * The index of the first primitive reference of every cell.
+		 */
+		private final int[] offsets;
+
+		/**
+		 * The primitive references of the cells.
+		 */
+		private final int[] items;
+
+		/**
+		 * The refinement of every cell, or null when no cell is refined.
+		 */
+		private final Level[] children;
+
+		/**
+		 * Creates a new level over the given primitives within the given
+		 * bounds.
+		 * 
+		 * @param bounds
+		 *            the bounding boxes of all the primitives.
+		 * @param indices
+		 *            the primitives of this level.
+		 * @param minX
+		 *            the minimum x coordinate of this level.
+		 * @param minY
+		 *            the minimum y coordinate of this level.
+		 * @param minZ
+		 *            the minimum z coordinate of this level.
+		 * @param maxX
+		 *            the maximum x coordinate of this level.
+		 * @param maxY
+		 *            the maximum y coordinate of this level.
+		 * @param maxZ
+		 *            the maximum z coordinate of this level.
+		 * @param density
+		 *            the number of cells per primitive.
+		 * @param refine
+		 *            whether the cells with many primitives are refined.
+		 * @throws IllegalArgumentException
+		 *             when the primitives have too many references to be
+		 *             stored.
+		 */
+		private Level(double[] bounds, int[] indices, double minX,
+				double minY, double minZ, double maxX, double maxY,
+				double maxZ, double density, boolean refine)
+				throws IllegalArgumentException {
+			this.minX = minX;
+			this.minY = minY;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.maxZ = maxZ;
+
+			double ex = maxX - minX;
+			double ey = maxY - minY;
+			double ez = maxZ - minZ;
+			int[] resolution = resolution(ex, ey, ez, density,
+					indices.length);
+			this.nx = resolution[0];
+			this.ny = resolution[1];
+			this.nz = resolution[2];
+			this.sizeX = ex / nx;
+			this.sizeY = ey / ny;
+			this.sizeZ = ez / nz;
+			this.inverseX = ex > 0 ? nx / ex : 0;
+			this.inverseY = ey > 0 ? ny / ey : 0;
+			this.inverseZ = ez > 0 ? nz / ez : 0;
+
+			// count the references in total first, since their prefix sums
+			// per cell are stored in integers
+			if (references(bounds, indices, 0, indices.length, minX, minY,
+					minZ, maxX, maxY, maxZ, resolution) > MAXIMUM_REFERENCES)
+				throw new IllegalArgumentException("the primitives overlap "
+						+ "too many cells to store their references!");
+
+			// count the references of every cell
+			int cells = nx * ny * nz;
+			this.offsets = new int[cells + 1];
+			for (int p : indices) {
+				int b = 6 * p;
+				int x0 = cell(bounds[b] - minX, inverseX, nx);
+				int y0 = cell(bounds[b + 1] - minY, inverseY, ny);
+				int z0 = cell(bounds[b + 2] - minZ, inverseZ, nz);
+				int x1 = cell(bounds[b + 3] - minX, inverseX, nx);
+				int y1 = cell(bounds[b + 4] - minY, inverseY, ny);
+				int z1 = cell(bounds[b + 5] - minZ, inverseZ, nz);
+				for (int z = z0; z <= z1; ++z)
+					for (int y = y0; y <= y1; ++y)
+						for (int x = x0; x <= x1; ++x)
+							++offsets[(z * ny + y) * nx + x + 1];
+			}
+			for (int i = 0; i < cells; ++i)
+				offsets[i + 1] += offsets[i];
+
+			// store the references
+			this.items = new int[offsets[cells]];
+			int[] fill = new int[cells];
+			for (int p : indices) {
+				int b = 6 * p;
+				int x0 = cell(bounds[b] - minX, inverseX, nx);
+				int y0 = cell(bounds[b + 1] - minY, inverseY, ny);
+				int z0 = cell(bounds[b + 2] - minZ, inverseZ, nz);
+				int x1 = cell(bounds[b + 3] - minX, inverseX, nx);
+				int y1 = cell(bounds[b + 4] - minY, inverseY, ny);
+				int z1 = cell(bounds[b + 5] - minZ, inverseZ, nz);
+				for (int z = z0; z <= z1; ++z)
+					for (int y = y0; y <= y1; ++y)
+						for (int x = x0; x <= x1; ++x) {
+							int cell = (z * ny + y) * nx + x;
+							items[offsets[cell] + fill[cell]++] = p;
+						}
+			}
+
+			// refine the dense cells into a grid of their own, unless the
+			// primitives of the cell would overlap most of its refinement
+			Level[] children = null;
+			if (refine) {
+				for (int z = 0; z < nz; ++z)
+					for (int y = 0; y < ny; ++y)
+						for (int x = 0; x < nx; ++x) {
+							int cell = (z * ny + y) * nx + x;
+							int count = offsets[cell + 1] - offsets[cell];
+							if (count < REFINEMENT_THRESHOLD)
+								continue;
+							double x0 = minX + x * sizeX;
+							double y0 = minY + y * sizeY;
+							double z0 = minZ + z * sizeZ;
+							double x1 = minX + (x + 1) * sizeX;
+							double y1 = minY + (y + 1) * sizeY;
+							double z1 = minZ + (z + 1) * sizeZ;
+							long references = references(bounds, items,
+									offsets[cell], offsets[cell + 1], x0, y0,
+									z0, x1, y1, z1, resolution(x1 - x0, y1
+											- y0, z1 - z0, density, count));
+							if (references > (long) REFINEMENT_GROWTH * count)
+								continue;
+							if (children == null)
+								children = new Level[cells];
+							int[] contents = new int[count];
+							System.arraycopy(items, offsets[cell], contents,
+									0, count);
+							children[cell] = new Level(bounds, contents, x0,
+									y0, z0, x1, y1, z1, density, false);
+						}
+			}
+			this.children = children;
+		}
+
+		/**
+		 * Returns the number of cells along the axes of a level with the
+		 * given extents over the given number of primitives. The cells are
+		 * roughly cubical, where flat extents are enlarged to keep the volume
+		 * positive.
+		 * 
+		 * @param ex
+		 *            the extent of the level along the x axis.
+		 * @param ey
+		 *            the extent of the level along the y axis.
+		 * @param ez
+		 *            the extent of the level along the z axis.
+		 * @param density
+		 *            the number of cells per primitive.
+		 * @param count
+		 *            the number of primitives of the level.
+		 * @return the number of cells along the x, y and z axis.
+		 */
+		private static int[] resolution(double ex, double ey, double ez,
+				double density, int count) {
+			double maximum = Math.max(ex, Math.max(ey, ez));
+			double minimum = maximum / MAXIMUM_RESOLUTION;
+			double volume = Math.max(ex, minimum) * Math.max(ey, minimum)
+					* Math.max(ez, minimum);
+			double cellsPerUnit = volume > 0 ? Math.cbrt(density * count
+					/ volume) : 0;
+			return new int[] { resolution(ex, cellsPerUnit),
+					resolution(ey, cellsPerUnit),
+					resolution(ez, cellsPerUnit) };
+		}
+
+		/**
+		 * Returns the number of references of a level with the given bounds
+		 * and resolution over the given range of primitives, without storing
+		 * them.
+		 * 
+		 * @param bounds
+		 *            the bounding boxes of all the primitives.
+		 * @param indices
+		 *            the primitives.
+		 * @param start
+		 *            the start of the range of primitives (inclusive).
+		 * @param end
+		 *            the end of the range of primitives (exclusive).
+		 * @param minX
+		 *            the minimum x coordinate of the level.
+		 * @param minY
+		 *            the minimum y coordinate of the level.
+		 * @param minZ
+		 *            the minimum z coordinate of the level.
+		 * @param maxX
+		 *            the maximum x coordinate of the level.
+		 * @param maxY
+		 *            the maximum y coordinate of the level.
+		 * @param maxZ
+		 *            the maximum z coordinate of the level.
+		 * @param resolution
+		 *            the number of cells along the x, y and z axis.
+		 * @return the number of references of the level.
+		 */
+		private static long references(double[] bounds, int[] indices,
+				int start, int end, double minX, double minY, double minZ,
+				double maxX, double maxY, double maxZ, int[] resolution) {
+			int nx = resolution[0];
+			int ny = resolution[1];
+			int nz = resolution[2];
+			double ex = maxX - minX;
+			double ey = maxY - minY;
+			double ez = maxZ - minZ;
+			double inverseX = ex > 0 ? nx / ex : 0;
+			double inverseY = ey > 0 ? ny / ey : 0;
+			double inverseZ = ez > 0 ? nz / ez : 0;
+			long references = 0;
+			for (int i = start; i < end; ++i) {
+				int b = 6 * indices[i];
+				long x = cell(bounds[b + 3] - minX, inverseX, nx)
+						- cell(bounds[b] - minX, inverseX, nx) + 1;
+				long y = cell(bounds[b + 4] - minY, inverseY, ny)
+						- cell(bounds[b + 1] - minY, inverseY, ny) + 1;
+				long z = cell(bounds[b + 5] - minZ, inverseZ, nz)
+						- cell(bounds[b + 2] - minZ, inverseZ, nz) + 1;
+				references += x * y * z;
+			}
+			return references;
+		}
+
+		/**
+		 * Returns the number of cells along an axis with the given extent.
+		 * 
+		 * @param extent
+		 *            the extent of the level along the axis.
+		 * @param cellsPerUnit
+		 *            the number of cells per unit of distance.
+		 * @return the number of cells along the axis.
+		 */
+		private static int resolution(double extent, double cellsPerUnit) {
+			double n = Math.round(extent * cellsPerUnit);
+			return (int) Math.max(1, Math.min(MAXIMUM_RESOLUTION, n));
+		}
+
+		/**
+		 * Returns the index of the cell along an axis which contains the given
+		 * coordinate, clamped to the cells of this level.
+		 * 
+		 * @param offset
+		 *            the coordinate relative to the minimum of the level.
+		 * @param inverse
+		 *            the inverse of the size of a cell along the axis.
+		 * @param n
+		 *            the number of cells along the axis.
+		 * @return the index of the cell which contains the coordinate.
+		 */
+		private static int cell(double offset, double inverse, int n) {
+			int index = (int) Math.floor(offset * inverse);
+			return Math.max(0, Math.min(n - 1, index));
+		}
+
+		/**
+		 * Returns the total number of primitive references in this level and
+		 * its refinements.
+		 * 
+		 * @return the number of primitive references.
+		 */
+		private long getReferenceCount() {
+			long count = 0;
+			int cells = nx * ny * nz;
+			for (int i = 0; i < cells; ++i)
+				if (children != null && children[i] != null)
+					count += children[i].getReferenceCount();
+				else
+					count += offsets[i + 1] - offsets[i];
+			return count;
+		}
+	}
+
+	/**
+	 * The primitives which have been tested by the current ray of a single
+	 * thread, together with the primitive which occluded its last ray.
+	 */
+	private static class Mailbox {
+		/**
+		 * The id of the last ray which tested every primitive.
+		 */
+		private final int[] stamps;
+
+		/**
+		 * The id of the current ray.
+		 */
+		private int ray;
+
+		/**
+		 * The index of the primitive which occluded the last ray, or -1 when
+		 * no ray has been occluded yet.
+		 */
+		private int occluder = -1;
+
+		/**
+		 * Creates a new mailbox for the given number of primitives.
+		 * 
+		 * @param count
+		 *            the number of primitives.
+		 */
+		private Mailbox(int count) {
+			this.stamps = new int[count];
+		}
+
+		/**
+		 * Returns the id of the next ray of the thread.
+		 * 
+		 * @return the id of the next ray.
+		 */
+		private int next() {
+			if (++ray == 0) {
+				// the ids wrapped around, such that the old stamps are reset
+				Arrays.fill(stamps, 0);
+				ray = 1;
+			}
+			return ray;
+		}
+	}
+}
@@ -0,0 +1,486 @@
+package acceleration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import math.BoundingBox;
+import shape.Shape;
+
+/**
+ * Constructs a linear bounding volume hierarchy, which trades some traversal
+ * performance for a construction which is an order of magnitude faster than
+ * the surface area heuristic builders.
+ * 
+ * The centroids of the primitives are quantized on a regular grid and mapped
+ * to Morton codes, which interleave the bits of the three grid coordinates.
+ * Sorting the primitives by Morton code orders them along a space filling
+ * curve. The codes are sorted with a parallel radix sort, after which the
+ * topology of the hierarchy is derived from the bits in which neighboring
+ * codes differ. Every interior node is determined independently from the
+ * others in a single linear pass over the sorted codes (Karras, "Maximizing
+ * Parallelism in the Construction of BVHs, Octrees, and k-d Trees", 2012).
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class LinearBVHBuilder implements BVHBuilder {
+	
+	/**
+	 * The number of bits which are sorted per pass of the radix sort.
+	 */
+	private static final int RADIX_BITS = 8;
+
+	/**
+	 * The number of primitives up to which the 30-bit Morton codes are
+	 * selected automatically.
+	 */
+	private static final int AUTOMATIC_THRESHOLD = 1 << 20;
+
+	/**
+	 * The number of bits of the Morton codes (30 or 63), or zero when the
+	 * number of bits is selected automatically.
+	 */
+	private final int bits;
+
+	/**
+	 * Creates a new builder which uses 30-bit Morton codes for scenes up to a
+	 * million primitives and 63-bit Morton codes for larger scenes.
+	 */
+	public LinearBVHBuilder() {
+		this.bits = 0;
+	}
+
+	/**
+	 * Creates a new builder which uses Morton codes with the given number of
+	 * bits.
+	 * 
+	 * @param bits
+	 *            the number of bits of the Morton codes (30 or 63).
+	 * @throws IllegalArgumentException
+	 *             when the given number of bits is neither 30 nor 63.
+	 */
+	public LinearBVHBuilder(int bits) throws IllegalArgumentException {
+		if (bits != 30 && bits != 63)
+			throw new IllegalArgumentException(
+					"the number of bits of the Morton codes must be 30 or 63!");
+		this.bits = bits;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see acceleration.BVHBuilder#build(shape.Shape[])
+	 */
+	@Override
+	public BVHNode build(Shape[] primitives) throws NullPointerException {
+		final int n = primitives.length;
+		if (n == 0)
+			return new BVHNode(BoundingBox.EMPTY, 0, 0);
+
+		int bits = this.bits;
+		if (bits == 0)
+			bits = n <= AUTOMATIC_THRESHOLD ? 30 : 63;
+
+		// the passes are distributed over the common fork/join pool, which
+		// is shared with the other parallel stages of the renderer
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+
+		// compute the bounding boxes and the Morton codes
+		BoundingBox[] boxes = new BoundingBox[n];
+		for (int i = 0; i < n; ++i)
+			boxes[i] = primitives[i].getBoundingBox();
+		long[] codes = encode(boxes, bits);
+		int[] indices = new int[n];
+		for (int i = 0; i < n; ++i)
+			indices[i] = i;
+
+		sort(pool, codes, indices, bits);
+
+		// reorder the primitives and their bounds along the curve
+		Shape[] copy = primitives.clone();
+		BoundingBox[] sortedBoxes = new BoundingBox[n];
+		for (int i = 0; i < n; ++i) {
+			primitives[i] = copy[indices[i]];
+			sortedBoxes[i] = boxes[indices[i]];
+		}
+		if (n == 1)
+			return new BVHNode(sortedBoxes[0], 0, 1);
+
+		Topology topology = new Topology(codes);
+		topology.emit(pool);
+		return topology.node(0, sortedBoxes);
+	}
+
+	/**
+	 * Computes the Morton codes of the centroids of the given bounding boxes,
+	 * quantized within the bounding box of the centroids.
+	 * 
+	 * @param boxes
+	 *            the bounding boxes of the primitives.
+	 * @param bits
+	 *            the number of bits of the Morton codes (30 or 63).
+	 * @return the Morton codes of the centroids of the given bounding boxes.
+	 */
+	private static long[] encode(BoundingBox[] boxes, int bits) {
+		int n = boxes.length;
+		double[] minimum = { Double.POSITIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] maximum = { Double.NEGATIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		double[] centroids = new double[3 * n];
+		for (int i = 0; i < n; ++i) {
+			BoundingBox box = boxes[i];
+			for (int k = 0; k < 3; ++k) {
+				double c = 0.5 * (box.minimum.get(k) + box.maximum.get(k));
+				centroids[3 * i + k] = c;
+				minimum[k] = Math.min(minimum[k], c);
+				maximum[k] = Math.max(maximum[k], c);
+			}
+		}
+
+		int resolution = 1 << (bits / 3);
+		double[] scale = new double[3];
+		for (int k = 0; k < 3; ++k) {
+			double extent = maximum[k] - minimum[k];
+			scale[k] = extent > 0 ? resolution / extent : 0;
+		}
+
+		long[] codes = new long[n];
+		for (int i = 0; i < n; ++i) {
+			long x = quantize(centroids[3 * i], minimum[0], scale[0],
+					resolution);
+			long y = quantize(centroids[3 * i + 1], minimum[1], scale[1],
+					resolution);
+			long z = quantize(centroids[3 * i + 2], minimum[2], scale[2],
+					resolution);
+			codes[i] = (expand(x) << 2) | (expand(y) << 1) | expand(z);
+		}
+		return codes;
+	}
+
+	/**
+	 * Quantizes the given coordinate on a grid with the given resolution.
+	 * 
+	 * @param value
+	 *            the coordinate.
+	 * @param minimum
+	 *            the minimum coordinate.
+	 * @param scale
+	 *            the resolution divided by the extent of the coordinates.
+	 * @param resolution
+	 *            the resolution of the grid.
+	 * @return the grid coordinate.
+	 */
+	private static long quantize(double value, double minimum, double scale,
+			int resolution) {
+		return Math.min(resolution - 1, (long) ((value - minimum) * scale));
+	}
+
+	/**
+	 * Spreads the lowest 21 bits of the given value such that two zero bits
+	 * are inserted between every two consecutive bits.
+	 * 
+	 * @param value
+	 *            the value to spread.
+	 * @return the spread value.
+	 */
+	static long expand(long value) {
+		long x = value & 0x1fffffL;
+		x = (x | x << 32) & 0x1f00000000ffffL;
+		x = (x | x << 16) & 0x1f0000ff0000ffL;
+		x = (x | x << 8) & 0x100f00f00f00f00fL;
+		x = (x | x << 4) & 0x10c30c30c30c30c3L;
+		x = (x | x << 2) & 0x1249249249249249L;
+		return x;
+	}
+
+	/**
+	 * Sorts the given codes and the accompanying indices with a parallel least
+	 * significant digit radix sort.
+	 * 
+	 * The codes are split in one chunk per worker. For every digit, the
+	 * workers first count the digits of their chunk concurrently, after which
+	 * the offsets of all the chunks are determined, and the workers scatter
+	 * their chunk concurrently. Since the chunks are scattered in order, the
+	 * sort is stable.
+	 * 
+	 * @param pool
+	 *            the pool which executes the workers.
+	 * @param codes
+	 *            the codes to sort.
+	 * @param indices
+	 *            the indices which are reordered with the codes.
+	 * @param bits
+	 *            the number of significant bits of the codes.
+	 */
+	private static void sort(ForkJoinPool pool, long[] codes, int[] indices,
+			int bits) {
+		final int n = codes.length;
+		final int buckets = 1 << RADIX_BITS;
+		final int chunks = Math.max(1,
+				Math.min(pool.getParallelism(), n / 65536));
+		final int chunkSize = (n + chunks - 1) / chunks;
+		final int[][] counts = new int[chunks][buckets];
+
+		long[] sourceCodes = codes;
+		int[] sourceIndices = indices;
+		long[] targetCodes = new long[n];
+		int[] targetIndices = new int[n];
+
+		for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+			final long[] inCodes = sourceCodes;
+			final int[] inIndices = sourceIndices;
+			final long[] outCodes = targetCodes;
+			final int[] outIndices = targetIndices;
+			final int s = shift;
+
+			// count the digits of every chunk
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int c = 0; c < chunks; ++c) {
+				final int chunk = c;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						int[] count = counts[chunk];
+						Arrays.fill(count, 0);
+						int end = Math.min(n, (chunk + 1) * chunkSize);
+						for (int i = chunk * chunkSize; i < end; ++i)
+							count[(int) (inCodes[i] >>> s) & (buckets - 1)]++;
+						return null;
+					}
+				});
+			}
+			invoke(pool, tasks);
+
+			// determine the offset of every digit in every chunk
+			int offset = 0;
+			for (int digit = 0; digit < buckets; ++digit)
+				for (int c = 0; c < chunks; ++c) {
+					int count = counts[c][digit];
+					counts[c][digit] = offset;
+					offset += count;
+				}
+
+			// scatter the chunks
+			tasks.clear();
+			for (int c = 0; c < chunks; ++c) {
+				final int chunk = c;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						int[] offsets = counts[chunk];
+						int end = Math.min(n, (chunk + 1) * chunkSize);
+						for (int i = chunk * chunkSize; i < end; ++i) {
+							int digit = (int) (inCodes[i] >>> s)
+									& (buckets - 1);
+							int target = offsets[digit]++;
+							outCodes[target] = inCodes[i];
+							outIndices[target] = inIndices[i];
+						}
+						return null;
+					}
+				});
+			}
+			invoke(pool, tasks);
+
+			sourceCodes = outCodes;
+			sourceIndices = outIndices;
+			targetCodes = inCodes;
+			targetIndices = inIndices;
+		}
+
+		if (sourceCodes != codes) {
+			System.arraycopy(sourceCodes, 0, codes, 0, n);
+			System.arraycopy(sourceIndices, 0, indices, 0, n);
+		}
+	}
+
+	/**
+	 * Executes the given tasks in the given pool and waits until all of them
+	 * have finished.
+	 * 
+	 * @param pool
+	 *            the pool to execute the tasks in.
+	 * @param tasks
+	 *            the tasks to execute.
+	 */
+	private static void invoke(ForkJoinPool pool, List<Callable<Void>> tasks) {
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("the construction was interrupted!",
+					e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * The topology of a linear bounding volume hierarchy over sorted Morton
+	 * codes. Interior node i covers a range of leaves which either starts or
+	 * ends at leaf i. Children are referenced by their index, where leaves are
+	 * encoded as the bitwise complement of their index.
+	 */
+	private static class Topology {
+		/**
+		 * The sorted Morton codes.
+		 */
+		private final long[] codes;
+
+		/**
+		 * The first child of every interior node.
+		 */
+		private final int[] left;
+
+		/**
+		 * The second child of every interior node.
+		 */
+		private final int[] right;
+
+		/**
+		 * The split axis of every interior node.
+		 */
+		private final int[] axes;
+
+		/**
+		 * Creates the topology for the given sorted Morton codes.
+		 * 
+		 * @param codes
+		 *            the sorted Morton codes.
+		 */
+		private Topology(long[] codes) {
+			this.codes = codes;
+			this.left = new int[codes.length - 1];
+			this.right = new int[codes.length - 1];
+			this.axes = new int[codes.length - 1];
+		}
+
+		/**
+		 * Determines the children of all the interior nodes concurrently.
+		 * 
+		 * @param pool
+		 *            the pool which executes the workers.
+		 */
+		private void emit(ForkJoinPool pool) {
+			final int internal = codes.length - 1;
+			int chunks = Math.max(1,
+					Math.min(pool.getParallelism(), internal / 65536));
+			final int chunkSize = (internal + chunks - 1) / chunks;
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int c = 0; c < chunks; ++c) {
+				final int start = c * chunkSize;
+				final int end = Math.min(internal, start + chunkSize);
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int i = start; i < end; ++i)
+							emit(i);
+						return null;
+					}
+				});
+			}
+			invoke(pool, tasks);
+		}
+
+		/**
+		 * Determines the range of leaves covered by the given interior node
+		 * and the position where it is split.
+		 * 
+		 * @param i
+		 *            the index of the interior node.
+		 */
+		private void emit(int i) {
+			// determine the direction of the range
+			int d = delta(i, i + 1) > delta(i, i - 1) ? 1 : -1;
+
+			// find the other end of the range with an exponential and a
+			// binary search
+			int minimum = delta(i, i - d);
+			int maximum = 2;
+			while (delta(i, i + maximum * d) > minimum)
+				maximum <<= 1;
+			int length = 0;
+			for (int t = maximum >> 1; t >= 1; t >>= 1)
+				if (delta(i, i + (length + t) * d) > minimum)
+					length += t;
+			int j = i + length * d;
+
+			// find the split position with a binary search
+			int prefix = delta(i, j);
+			int split = 0;
+			int divisor = 2;
+			int t;
+			do {
+				t = (length + divisor - 1) / divisor;
+				if (delta(i, i + (split + t) * d) > prefix)
+					split += t;
+				divisor <<= 1;
+			} while (t > 1);
+			int gamma = i + split * d + Math.min(d, 0);
+
+			left[i] = Math.min(i, j) == gamma ? ~gamma : gamma;
+			right[i] = Math.max(i, j) == gamma + 1 ? ~(gamma + 1) : gamma + 1;
+
+			// the highest differing bit determines the split axis, the bits of
+			// the x, y and z coordinates are interleaved from high to low
+			axes[i] = prefix < 64 ? 2 - (63 - prefix) % 3 : 0;
+		}
+
+		/**
+		 * Returns the length of the common prefix of the codes of the two
+		 * given leaves, where identical codes are distinguished by their
+		 * indices. Returns -1 when the second leaf is out of range.
+		 * 
+		 * @param i
+		 *            the first leaf.
+		 * @param j
+		 *            the second leaf.
+		 * @return the length of the common prefix of the two leaves.
+		 */
+		private int delta(int i, int j) {
+			if (j < 0 || j >= codes.length)
+				return -1;
+			long a = codes[i];
+			long b = codes[j];
+			if (a == b)
+				return 64 + Integer.numberOfLeadingZeros(i ^ j);
+			return Long.numberOfLeadingZeros(a ^ b);
+		}
+
+		/**
+		 * Creates the subtree rooted at the given interior node.
+		 * 
+		 * @param i
+		 *            the index of the interior node.
+		 * @param boxes
+		 *            the bounding boxes of the sorted primitives.
+		 * @return the subtree rooted at the given interior node.
+		 */
+		private BVHNode node(int i, BoundingBox[] boxes) {
+			return new BVHNode(axes[i], child(left[i], boxes), child(right[i],
+					boxes));
+		}
+
+		/**
+		 * Creates the subtree for the given child reference.
+		 * 
+		 * @param reference
+		 *            the reference to the child.
+		 * @param boxes
+		 *            the bounding boxes of the sorted primitives.
+		 * @return the subtree for the given child reference.
+		 */
+		private BVHNode child(int reference, BoundingBox[] boxes) {
+			if (reference < 0)
+				return new BVHNode(boxes[~reference], ~reference, 1);
+			return node(reference, boxes);
+		}
+	}
+}
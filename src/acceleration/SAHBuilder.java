@@ -0,0 +1,332 @@
+package acceleration;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import math.BoundingBox;
+import math.Point;
+import shape.Shape;
+
+/**
+ * Constructs a bounding volume hierarchy top-down using the surface area
+ * heuristic.
+ * 
+ * At every node, all the possible partitions of the primitives sorted by the
+ * centroids of their bounding boxes are evaluated along the three axes. The
+ * partition with the lowest expected cost is chosen. To avoid sorting the
+ * primitives at every node, they are sorted once along each axis, after which
+ * the sorted orders are partitioned stably.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class SAHBuilder implements BVHBuilder {
+	
+	/**
+	 * The cost of traversing an interior node relative to the cost of
+	 * intersecting a primitive.
+	 */
+	public static final double TRAVERSAL_COST = 0.125;
+
+	/**
+	 * The maximum number of primitives in a leaf.
+	 */
+	private final int maximumLeafSize;
+
+	/**
+	 * Creates a new builder with at most four primitives per leaf.
+	 */
+	public SAHBuilder() {
+		this(4);
+	}
+
+	/**
+	 * Creates a new builder with at most the given number of primitives per
+	 * leaf.
+	 * 
+	 * @param maximumLeafSize
+	 *            the maximum number of primitives per leaf.
+	 * @throws IllegalArgumentException
+	 *             when the given leaf size is smaller than one.
+	 */
+	public SAHBuilder(int maximumLeafSize) throws IllegalArgumentException {
+		if (maximumLeafSize < 1)
+			throw new IllegalArgumentException(
+					"the maximum leaf size must be at least one!");
+		this.maximumLeafSize = maximumLeafSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see acceleration.BVHBuilder#build(shape.Shape[])
+	 */
+	@Override
+	public BVHNode build(Shape[] primitives) throws NullPointerException {
+		int n = primitives.length;
+		if (n == 0)
+			return new BVHNode(BoundingBox.EMPTY, 0, 0);
+
+		Construction construction = new Construction(primitives);
+		BVHNode root = construction.build(0, n);
+
+		// reorder the primitives in the order of the leaves
+		Shape[] copy = primitives.clone();
+		int[] order = construction.sorted[0];
+		for (int i = 0; i < n; ++i)
+			primitives[i] = copy[order[i]];
+		return root;
+	}
+
+	/**
+	 * Returns the surface area of the box with the given extents.
+	 * 
+	 * @param dx
+	 *            the extent along the x axis.
+	 * @param dy
+	 *            the extent along the y axis.
+	 * @param dz
+	 *            the extent along the z axis.
+	 * @return the surface area of the box.
+	 */
+	static double area(double dx, double dy, double dz) {
+		return 2.0 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * The state which is shared during the construction of a single hierarchy.
+	 */
+	private class Construction {
+		/**
+		 * The bounding boxes of the primitives stored as six consecutive
+		 * values (minimum x, y, z and maximum x, y, z) per primitive.
+		 */
+		private final double[] bounds;
+
+		/**
+		 * The centroids of the bounding boxes of the primitives stored as
+		 * three consecutive values per primitive.
+		 */
+		private final double[] centroids;
+
+		/**
+		 * The primitive indices sorted by centroid along each axis. Every node
+		 * owns the same range of indices in all three arrays.
+		 */
+		private final int[][] sorted = new int[3][];
+
+		/**
+		 * The surface areas of the suffixes of a range during the sweep.
+		 */
+		private final double[] areas;
+
+		/**
+		 * Marks the primitives which go to the first child.
+		 */
+		private final boolean[] left;
+
+		/**
+		 * Scratch space for the partitioning of the sorted orders.
+		 */
+		private final int[] scratch;
+
+		/**
+		 * Prepares the construction of a hierarchy over the given primitives.
+		 * 
+		 * @param primitives
+		 *            the primitives.
+		 */
+		private Construction(Shape[] primitives) {
+			final int n = primitives.length;
+			bounds = new double[6 * n];
+			centroids = new double[3 * n];
+			for (int i = 0; i < n; ++i) {
+				BoundingBox box = primitives[i].getBoundingBox();
+				bounds[6 * i] = box.minimum.x;
+				bounds[6 * i + 1] = box.minimum.y;
+				bounds[6 * i + 2] = box.minimum.z;
+				bounds[6 * i + 3] = box.maximum.x;
+				bounds[6 * i + 4] = box.maximum.y;
+				bounds[6 * i + 5] = box.maximum.z;
+				centroids[3 * i] = 0.5 * (box.minimum.x + box.maximum.x);
+				centroids[3 * i + 1] = 0.5 * (box.minimum.y + box.maximum.y);
+				centroids[3 * i + 2] = 0.5 * (box.minimum.z + box.maximum.z);
+			}
+
+			for (int axis = 0; axis < 3; ++axis) {
+				final int a = axis;
+				Integer[] indices = new Integer[n];
+				for (int i = 0; i < n; ++i)
+					indices[i] = i;
+				Arrays.sort(indices, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer o1, Integer o2) {
+						return Double.compare(centroids[3 * o1 + a],
+								centroids[3 * o2 + a]);
+					}
+				});
+				sorted[axis] = new int[n];
+				for (int i = 0; i < n; ++i)
+					sorted[axis][i] = indices[i];
+			}
+
+			areas = new double[n];
+			left = new boolean[n];
+			scratch = new int[n];
+		}
+
+		/**
+		 * Constructs the subtree over the given range of primitives.
+		 * 
+		 * @param start
+		 *            the start of the range (inclusive).
+		 * @param end
+		 *            the end of the range (exclusive).
+		 * @return the root of the subtree.
+		 */
+		private BVHNode build(int start, int end) {
+			int count = end - start;
+			BoundingBox box = bounds(start, end);
+			if (count == 1)
+				return new BVHNode(box, start, count);
+
+			double bestCost = Double.POSITIVE_INFINITY;
+			int bestAxis = -1;
+			int bestSplit = -1;
+
+			for (int axis = 0; axis < 3; ++axis) {
+				int[] order = sorted[axis];
+
+				// sweep from right to left to find the suffix areas
+				double minX = Double.POSITIVE_INFINITY;
+				double minY = Double.POSITIVE_INFINITY;
+				double minZ = Double.POSITIVE_INFINITY;
+				double maxX = Double.NEGATIVE_INFINITY;
+				double maxY = Double.NEGATIVE_INFINITY;
+				double maxZ = Double.NEGATIVE_INFINITY;
+				for (int i = end - 1; i > start; --i) {
+					int b = 6 * order[i];
+					minX = Math.min(minX, bounds[b]);
+					minY = Math.min(minY, bounds[b + 1]);
+					minZ = Math.min(minZ, bounds[b + 2]);
+					maxX = Math.max(maxX, bounds[b + 3]);
+					maxY = Math.max(maxY, bounds[b + 4]);
+					maxZ = Math.max(maxZ, bounds[b + 5]);
+					areas[i] = area(maxX - minX, maxY - minY, maxZ - minZ);
+				}
+
+				// sweep from left to right and evaluate the partitions
+				minX = minY = minZ = Double.POSITIVE_INFINITY;
+				maxX = maxY = maxZ = Double.NEGATIVE_INFINITY;
+				for (int i = start; i < end - 1; ++i) {
+					int b = 6 * order[i];
+					minX = Math.min(minX, bounds[b]);
+					minY = Math.min(minY, bounds[b + 1]);
+					minZ = Math.min(minZ, bounds[b + 2]);
+					maxX = Math.max(maxX, bounds[b + 3]);
+					maxY = Math.max(maxY, bounds[b + 4]);
+					maxZ = Math.max(maxZ, bounds[b + 5]);
+					double leftArea = area(maxX - minX, maxY - minY, maxZ
+							- minZ);
+					int leftCount = i - start + 1;
+					double cost = leftArea * leftCount + areas[i + 1]
+							* (count - leftCount);
+					if (cost < bestCost) {
+						bestCost = cost;
+						bestAxis = axis;
+						bestSplit = i + 1;
+					}
+				}
+			}
+
+			// compare the cost of splitting with the cost of a leaf
+			double area = box.getSurfaceArea();
+			double splitCost = area > 0 ? TRAVERSAL_COST + bestCost / area
+					: Double.POSITIVE_INFINITY;
+			if (count <= maximumLeafSize && count <= splitCost)
+				return new BVHNode(box, start, count);
+
+			// when the centroids coincide along the best axis, or when no
+			// split is better than two children with the box of the parent
+			// (e.g. for overlapping primitives or a flat box), all the splits
+			// cost the same and the first one would peel off a single
+			// primitive per level, so split the range in the middle instead
+			int[] order = sorted[bestAxis];
+			if (centroids[3 * order[start] + bestAxis] == centroids[3
+					* order[end - 1] + bestAxis]
+					|| !(bestCost < area * count))
+				bestSplit = start + count / 2;
+
+			partition(bestAxis, start, bestSplit, end);
+			BVHNode first = build(start, bestSplit);
+			BVHNode second = build(bestSplit, end);
+			return new BVHNode(bestAxis, first, second);
+		}
+
+		/**
+		 * Partitions the sorted orders of the other axes stably, such that the
+		 * primitives in the range [start, split) of the given axis end up in
+		 * the same range for all axes.
+		 * 
+		 * @param axis
+		 *            the axis along which the primitives have been split.
+		 * @param start
+		 *            the start of the range (inclusive).
+		 * @param split
+		 *            the first primitive of the second child.
+		 * @param end
+		 *            the end of the range (exclusive).
+		 */
+		private void partition(int axis, int start, int split, int end) {
+			int[] order = sorted[axis];
+			for (int i = start; i < split; ++i)
+				left[order[i]] = true;
+			for (int i = split; i < end; ++i)
+				left[order[i]] = false;
+
+			for (int other = 0; other < 3; ++other) {
+				if (other == axis)
+					continue;
+				int[] o = sorted[other];
+				int l = start;
+				int r = 0;
+				for (int i = start; i < end; ++i)
+					if (left[o[i]])
+						o[l++] = o[i];
+					else
+						scratch[r++] = o[i];
+				System.arraycopy(scratch, 0, o, l, r);
+			}
+		}
+
+		/**
+		 * Returns the bounding box of the given range of primitives.
+		 * 
+		 * @param start
+		 *            the start of the range (inclusive).
+		 * @param end
+		 *            the end of the range (exclusive).
+		 * @return the bounding box of the given range of primitives.
+		 */
+		private BoundingBox bounds(int start, int end) {
+			int[] order = sorted[0];
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double minZ = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			double maxZ = Double.NEGATIVE_INFINITY;
+			for (int i = start; i < end; ++i) {
+				int b = 6 * order[i];
+				minX = Math.min(minX, bounds[b]);
+				minY = Math.min(minY, bounds[b + 1]);
+				minZ = Math.min(minZ, bounds[b + 2]);
+				maxX = Math.max(maxX, bounds[b + 3]);
+				maxY = Math.max(maxY, bounds[b + 4]);
+				maxZ = Math.max(maxZ, bounds[b + 5]);
+			}
+			return new BoundingBox(new Point(minX, minY, minZ), new Point(
+					maxX, maxY, maxZ));
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package acceleration;
+
+/**
+ * Tests the bounding boxes of the children of a node one after the other.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+class ScalarBoxTester implements BoxTester {
+	
+	/**
+	 * The number of children per node.
+	 */
+	private final int width;
+
+	/**
+	 * Creates a new tester for nodes with the given number of children.
+	 * 
+	 * @param width
+	 *            the number of children per node.
+	 */
+	ScalarBoxTester(int width) {
+		this.width = width;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see acceleration.BoxTester#intersect(double[], int, double, double,
+	 * double, double, double, double, double, double, double[])
+	 */
+	@Override
+	public int intersect(double[] bounds, int offset, double ox, double oy,
+			double oz, double ix, double iy, double iz, double tMin,
+			double tMax, double[] distances) {
+		int mask = 0;
+		for (int i = 0; i < width; ++i) {
+			int b = offset + i;
+			double near = tMin;
+			double far = tMax;
+
+			double t0 = (bounds[b] - ox) * ix;
+			double t1 = (bounds[b + 3 * width] - ox) * ix;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+
+			t0 = (bounds[b + width] - oy) * iy;
+			t1 = (bounds[b + 4 * width] - oy) * iy;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+
+			t0 = (bounds[b + 2 * width] - oz) * iz;
+			t1 = (bounds[b + 5 * width] - oz) * iz;
+			near = Math.max(near, Math.min(t0, t1));
+			far = Math.min(far, Math.max(t0, t1));
+
+			distances[i] = near;
+			if (near <= far)
+				mask |= 1 << i;
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,210 @@
+package acceleration;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Tests the bounding boxes of the children of a node together with the
+ * vector instructions of the processor, through the incubating vector API.
+ * 
+ * This class may only be loaded when the jdk.incubator.vector module has been
+ * resolved (i.e. when the virtual machine is started with
+ * <code>--add-modules jdk.incubator.vector</code>).
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+class VectorBoxTester implements BoxTester {
+	
+	/**
+	 * The species with the preferred number of lanes of the processor.
+	 */
+	private static final VectorSpecies<Double> PREFERRED = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * The species with four lanes, used when the preferred species contains
+	 * more lanes than there are children per node. The children of a node
+	 * of eight children are then tested four at a time.
+	 */
+	private static final VectorSpecies<Double> FOUR = DoubleVector.SPECIES_256;
+
+	/**
+	 * The number of children per node.
+	 */
+	private final int width;
+
+	/**
+	 * Whether the children are tested with the preferred species rather than
+	 * with the species with four lanes. Every species is only used through
+	 * its constant within a single method, such that the compiler can map the
+	 * operations onto vector instructions without boxing the vectors.
+	 */
+	private final boolean preferred;
+
+	/**
+	 * Creates a new tester for nodes with the given number of children, which
+	 * must be four or eight.
+	 * 
+	 * @param width
+	 *            the number of children per node.
+	 */
+	VectorBoxTester(int width) {
+		this.width = width;
+		this.preferred = PREFERRED.length() <= width;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see acceleration.BoxTester#intersect(double[], int, double, double,
+	 * double, double, double, double, double, double, double[])
+	 */
+	@Override
+	public int intersect(double[] bounds, int offset, double ox, double oy,
+			double oz, double ix, double iy, double iz, double tMin,
+			double tMax, double[] distances) {
+		int mask = 0;
+		if (preferred) {
+			for (int i = 0; i < width; i += PREFERRED.length())
+				mask |= intersectPreferred(bounds, offset, i, ox, oy, oz, ix,
+						iy, iz, tMin, tMax, distances) << i;
+		} else {
+			for (int i = 0; i < width; i += FOUR.length())
+				mask |= intersectFour(bounds, offset, i, ox, oy, oz, ix, iy,
+						iz, tMin, tMax, distances) << i;
+		}
+		return mask;
+	}
+
+	/**
+	 * Intersects the ray with the bounding boxes of as many children as the
+	 * preferred species has lanes, starting at the given child.
+	 * 
+	 * @param bounds
+	 *            the bounding boxes of the children of all the nodes.
+	 * @param offset
+	 *            the index of the bounding boxes of the node.
+	 * @param i
+	 *            the first child to test.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param ix
+	 *            the inverse of the x coordinate of the direction of the ray.
+	 * @param iy
+	 *            the inverse of the y coordinate of the direction of the ray.
+	 * @param iz
+	 *            the inverse of the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray.
+	 * @param tMax
+	 *            the end of the interval along the ray.
+	 * @param distances
+	 *            the array in which the entry distances are stored.
+	 * @return a bit mask of the intersected children, starting at the given
+	 *         child.
+	 */
+	private int intersectPreferred(double[] bounds, int offset, int i,
+			double ox, double oy, double oz, double ix, double iy, double iz,
+			double tMin, double tMax, double[] distances) {
+		int b = offset + i;
+		DoubleVector t0 = DoubleVector.fromArray(PREFERRED, bounds, b).sub(ox)
+				.mul(ix);
+		DoubleVector t1 = DoubleVector.fromArray(PREFERRED, bounds, b + 3 * width)
+				.sub(ox).mul(ix);
+		DoubleVector near = t0.min(t1).max(tMin);
+		DoubleVector far = t0.max(t1).min(tMax);
+
+		t0 = DoubleVector.fromArray(PREFERRED, bounds, b + width).sub(oy).mul(iy);
+		t1 = DoubleVector.fromArray(PREFERRED, bounds, b + 4 * width).sub(oy)
+				.mul(iy);
+		near = near.max(t0.min(t1));
+		far = far.min(t0.max(t1));
+
+		t0 = DoubleVector.fromArray(PREFERRED, bounds, b + 2 * width).sub(oz)
+				.mul(iz);
+		t1 = DoubleVector.fromArray(PREFERRED, bounds, b + 5 * width).sub(oz)
+				.mul(iz);
+		near = near.max(t0.min(t1));
+		far = far.min(t0.max(t1));
+
+		// the comparison is done on the stored distances, since converting a
+		// vector mask into bits is not always compiled without boxing
+		near.intoArray(distances, i);
+		far.intoArray(distances, width + i);
+		int mask = 0;
+		for (int j = 0; j < PREFERRED.length(); ++j)
+			if (distances[i + j] <= distances[width + i + j])
+				mask |= 1 << j;
+		return mask;
+	}
+
+	/**
+	 * Intersects the ray with the bounding boxes of four children of a node
+	 * with the species with four lanes, starting at the given child.
+	 * 
+	 * @param bounds
+	 *            the bounding boxes of the children of all the nodes.
+	 * @param offset
+	 *            the index of the bounding boxes of the node.
+	 * @param i
+	 *            the first child to test.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param ix
+	 *            the inverse of the x coordinate of the direction of the ray.
+	 * @param iy
+	 *            the inverse of the y coordinate of the direction of the ray.
+	 * @param iz
+	 *            the inverse of the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray.
+	 * @param tMax
+	 *            the end of the interval along the ray.
+	 * @param distances
+	 *            the array in which the entry distances are stored.
+	 * @return a bit mask of the intersected children, starting at the given
+	 *         child.
+	 */
+	private int intersectFour(double[] bounds, int offset, int i, double ox,
+			double oy, double oz, double ix, double iy, double iz,
+			double tMin, double tMax, double[] distances) {
+		int b = offset + i;
+		DoubleVector t0 = DoubleVector.fromArray(FOUR, bounds, b).sub(ox)
+				.mul(ix);
+		DoubleVector t1 = DoubleVector.fromArray(FOUR, bounds, b + 3 * width)
+				.sub(ox).mul(ix);
+		DoubleVector near = t0.min(t1).max(tMin);
+		DoubleVector far = t0.max(t1).min(tMax);
+
+		t0 = DoubleVector.fromArray(FOUR, bounds, b + width).sub(oy).mul(iy);
+		t1 = DoubleVector.fromArray(FOUR, bounds, b + 4 * width).sub(oy)
+				.mul(iy);
+		near = near.max(t0.min(t1));
+		far = far.min(t0.max(t1));
+
+		t0 = DoubleVector.fromArray(FOUR, bounds, b + 2 * width).sub(oz)
+				.mul(iz);
+		t1 = DoubleVector.fromArray(FOUR, bounds, b + 5 * width).sub(oz)
+				.mul(iz);
+		near = near.max(t0.min(t1));
+		far = far.min(t0.max(t1));
+
+		// the comparison is done on the stored distances, since converting a
+		// vector mask into bits is not always compiled without boxing
+		near.intoArray(distances, i);
+		far.intoArray(distances, width + i);
+		int mask = 0;
+		for (int j = 0; j < FOUR.length(); ++j)
+			if (distances[i + j] <= distances[width + i + j])
+				mask |= 1 << j;
+		return mask;
+	}
+}
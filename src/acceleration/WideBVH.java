@@ -0,0 +1,455 @@
+package acceleration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import math.BoundingBox;
+import math.MutableRay;
+import shape.Hit;
+import shape.Shape;
+
+/**
+ * A bounding volume hierarchy in which every node has four or eight children,
+ * obtained by collapsing the nodes of a binary bounding volume hierarchy.
+ * 
+ * The bounding boxes of the children of a node are stored together as a
+ * structure of arrays, such that a ray can be intersected with all of them at
+ * once. When the jdk.incubator.vector module is available, the children are
+ * tested with the vector instructions of the processor. Otherwise, a scalar
+ * implementation is selected automatically. Like the other hierarchies, every
+ * thread remembers the primitive which occluded its last ray.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class WideBVH implements Shape {
+	
+	/**
+	 * The number of children per node.
+	 */
+	private final int width;
+
+	/**
+	 * The primitives of this hierarchy, ordered such that every leaf
+	 * references a contiguous range.
+	 */
+	private final Shape[] primitives;
+
+	/**
+	 * For every primitive, its index in the list from which this hierarchy
+	 * has been constructed.
+	 */
+	private final int[] indices;
+
+	/**
+	 * The bounding boxes of the children of every node. The bounding boxes of
+	 * the children of node i start at index 6 * width * i, and are stored as
+	 * the minimum x, y, z and maximum x, y, z coordinates of all the children
+	 * one after the other. The bounding boxes of empty children are NaN.
+	 */
+	private final double[] bounds;
+
+	/**
+	 * For every child of every node, the index of the child node, the index
+	 * of the first primitive of a leaf, or -1 for an empty child.
+	 */
+	private final int[] children;
+
+	/**
+	 * For every child of every node, the number of primitives of a leaf, or
+	 * zero for an interior node or empty child.
+	 */
+	private final int[] counts;
+
+	/**
+	 * The bounding box of this hierarchy.
+	 */
+	private final BoundingBox boundingBox;
+
+	/**
+	 * The tester which intersects a ray with all the children of a node.
+	 */
+	private final BoxTester tester;
+
+	/**
+	 * The traversal state of every thread.
+	 */
+	private final ThreadLocal<Traversal> traversals;
+
+	/**
+	 * Creates a new wide bounding volume hierarchy with the given number of
+	 * children per node over the given shapes, which is constructed with the
+	 * surface area heuristic.
+	 * 
+	 * @param shapes
+	 *            the shapes to construct the hierarchy for.
+	 * @param width
+	 *            the number of children per node (4 or 8).
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null or contains null.
+	 * @throws IllegalArgumentException
+	 *             when the given width is neither 4 nor 8.
+	 */
+	public WideBVH(List<Shape> shapes, int width) throws NullPointerException,
+			IllegalArgumentException {
+		this(new BVH(shapes), width);
+	}
+
+	/**
+	 * Creates a wide bounding volume hierarchy with the given number of
+	 * children per node by collapsing the given binary hierarchy.
+	 * 
+	 * @param bvh
+	 *            the binary bounding volume hierarchy to collapse.
+	 * @param width
+	 *            the number of children per node (4 or 8).
+	 * @throws NullPointerException
+	 *             when the given hierarchy is null.
+	 * @throws IllegalArgumentException
+	 *             when the given width is neither 4 nor 8.
+	 */
+	public WideBVH(BVH bvh, int width) throws NullPointerException,
+			IllegalArgumentException {
+		if (bvh == null)
+			throw new NullPointerException("the given hierarchy is null!");
+		if (width != 4 && width != 8)
+			throw new IllegalArgumentException(
+					"the number of children per node must be 4 or 8!");
+		BVHNode root = bvh.getRoot();
+		int maximum = Math.max(1, root.getNodeCount() - root.getLeafCount());
+
+		this.width = width;
+		this.primitives = bvh.getPrimitives().clone();
+		this.indices = bvh.getIndices().clone();
+		this.boundingBox = root.boundingBox;
+
+		double[] bounds = new double[6 * width * maximum];
+		int[] children = new int[width * maximum];
+		int[] counts = new int[width * maximum];
+		int[] depth = new int[1];
+		int nodes = collapse(root, 0, 1, bounds, children, counts, depth);
+
+		this.bounds = Arrays.copyOf(bounds, 6 * width * nodes);
+		this.children = Arrays.copyOf(children, width * nodes);
+		this.counts = Arrays.copyOf(counts, width * nodes);
+		this.tester = createTester(width);
+
+		final int stackSize = depth[0] * (width - 1) + 1;
+		this.traversals = new ThreadLocal<Traversal>() {
+			@Override
+			protected Traversal initialValue() {
+				return new Traversal(stackSize, WideBVH.this.width);
+			}
+		};
+	}
+
+	/**
+	 * Creates a tester which uses the vector API when it is available, and
+	 * the scalar implementation otherwise.
+	 * 
+	 * @param width
+	 *            the number of children per node.
+	 * @return a tester for nodes with the given number of children.
+	 */
+	static BoxTester createTester(int width) {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				// load the class reflectively, such that it is never linked
+				// when the module is not available
+				return (BoxTester) Class
+						.forName("acceleration.VectorBoxTester")
+						.getDeclaredConstructor(int.class).newInstance(width);
+			} catch (ReflectiveOperationException e) {
+				// fall back on the scalar implementation
+			} catch (LinkageError e) {
+				// fall back on the scalar implementation
+			}
+		}
+		return new ScalarBoxTester(width);
+	}
+
+	/**
+	 * Returns whether the children of the nodes are tested with the vector
+	 * instructions of the processor.
+	 * 
+	 * @return true when the vector API is used.
+	 */
+	public boolean isVectorized() {
+		return !(tester instanceof ScalarBoxTester);
+	}
+
+	/**
+	 * Stores the wide node which is obtained by collapsing the given binary
+	 * node at the given index, followed by the wide nodes of its subtrees.
+	 * 
+	 * @param node
+	 *            the binary node to collapse.
+	 * @param index
+	 *            the index of the wide node.
+	 * @param level
+	 *            the depth of the wide node.
+	 * @param bounds
+	 *            the bounding boxes of the children.
+	 * @param children
+	 *            the child references.
+	 * @param counts
+	 *            the primitive counts of the children.
+	 * @param depth
+	 *            an array in which the depth of the hierarchy is stored.
+	 * @return the index following the last wide node of the subtree.
+	 */
+	private int collapse(BVHNode node, int index, int level, double[] bounds,
+			int[] children, int[] counts, int[] depth) {
+		depth[0] = Math.max(depth[0], level);
+
+		// repeatedly open the interior child with the largest surface area
+		List<BVHNode> nodes = new ArrayList<BVHNode>(width);
+		if (node.isLeaf())
+			nodes.add(node);
+		else {
+			nodes.add(node.left);
+			nodes.add(node.right);
+		}
+		while (nodes.size() < width) {
+			int best = -1;
+			double area = -1;
+			for (int i = 0; i < nodes.size(); ++i) {
+				BVHNode child = nodes.get(i);
+				if (!child.isLeaf()
+						&& child.boundingBox.getSurfaceArea() > area) {
+					best = i;
+					area = child.boundingBox.getSurfaceArea();
+				}
+			}
+			if (best < 0)
+				break;
+			BVHNode open = nodes.remove(best);
+			nodes.add(open.left);
+			nodes.add(open.right);
+		}
+
+		int next = index + 1;
+		int b = 6 * width * index;
+		for (int i = 0; i < width; ++i) {
+			int slot = width * index + i;
+			BoundingBox box = i < nodes.size() ? nodes.get(i).boundingBox
+					: BoundingBox.EMPTY;
+			if (box.isEmpty()) {
+				// comparisons with NaN are false, such that an empty child is
+				// never intersected
+				for (int axis = 0; axis < 6; ++axis)
+					bounds[b + axis * width + i] = Double.NaN;
+			} else {
+				bounds[b + i] = box.minimum.x;
+				bounds[b + width + i] = box.minimum.y;
+				bounds[b + 2 * width + i] = box.minimum.z;
+				bounds[b + 3 * width + i] = box.maximum.x;
+				bounds[b + 4 * width + i] = box.maximum.y;
+				bounds[b + 5 * width + i] = box.maximum.z;
+			}
+
+			if (i >= nodes.size() || nodes.get(i).isLeaf()
+					&& nodes.get(i).count == 0) {
+				children[slot] = -1;
+				counts[slot] = 0;
+			} else if (nodes.get(i).isLeaf()) {
+				children[slot] = nodes.get(i).offset;
+				counts[slot] = nodes.get(i).count;
+			} else {
+				children[slot] = next;
+				counts[slot] = 0;
+				next = collapse(nodes.get(i), next, level + 1, bounds,
+						children, counts, depth);
+			}
+		}
+		return next;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
+	 */
+	@Override
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
+		if (ray == null)
+			return false;
+		Traversal traversal = traversals.get();
+		int last = traversal.occluder;
+		if (last >= 0 && primitives[last].occluded(ray, tMin, tMax))
+			return true;
+
+		double ox = ray.origin.x;
+		double oy = ray.origin.y;
+		double oz = ray.origin.z;
+		ray.update();
+		double ix = clamp(ray.inverseX);
+		double iy = clamp(ray.inverseY);
+		double iz = clamp(ray.inverseZ);
+
+		int[] stack = traversal.nodes;
+		double[] distances = traversal.distances;
+		int size = 0;
+		int node = 0;
+		while (true) {
+			int mask = tester.intersect(bounds, 6 * width * node, ox, oy, oz,
+					ix, iy, iz, tMin, tMax, distances);
+			while (mask != 0) {
+				int i = Integer.numberOfTrailingZeros(mask);
+				mask &= mask - 1;
+				int slot = width * node + i;
+				int count = counts[slot];
+				if (count > 0) {
+					int offset = children[slot];
+					for (int p = offset; p < offset + count; ++p)
+						if (p != last
+								&& primitives[p].occluded(ray, tMin, tMax)) {
+							traversal.occluder = p;
+							return true;
+						}
+				} else if (children[slot] >= 0)
+					stack[size++] = children[slot];
+			}
+			if (size == 0)
+				return false;
+			node = stack[--size];
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null)
+			return false;
+		double ox = ray.origin.x;
+		double oy = ray.origin.y;
+		double oz = ray.origin.z;
+		ray.update();
+		double ix = clamp(ray.inverseX);
+		double iy = clamp(ray.inverseY);
+		double iz = clamp(ray.inverseZ);
+
+		Traversal traversal = traversals.get();
+		int[] stack = traversal.nodes;
+		double[] entries = traversal.entries;
+		double[] distances = traversal.distances;
+		boolean found = false;
+		int size = 0;
+		int node = 0;
+		while (true) {
+			int mask = tester.intersect(bounds, 6 * width * node, ox, oy, oz,
+					ix, iy, iz, tMin, tMax, distances);
+			int first = size;
+			while (mask != 0) {
+				int i = Integer.numberOfTrailingZeros(mask);
+				mask &= mask - 1;
+				int slot = width * node + i;
+				int count = counts[slot];
+				if (count > 0) {
+					int offset = children[slot];
+					for (int p = offset; p < offset + count; ++p)
+						if (primitives[p].intersect(ray, tMin, tMax, hit)) {
+							tMax = hit.t;
+							hit.id = indices[p];
+							found = true;
+						}
+				} else if (children[slot] >= 0) {
+					// insert the child such that the closest child ends up on
+					// top of the stack
+					double distance = distances[i];
+					int j = size++;
+					while (j > first && entries[j - 1] < distance) {
+						stack[j] = stack[j - 1];
+						entries[j] = entries[j - 1];
+						--j;
+					}
+					stack[j] = children[slot];
+					entries[j] = distance;
+				}
+			}
+
+			// skip the nodes beyond the closest hit found so far
+			do {
+				if (size == 0)
+					return found;
+				node = stack[--size];
+			} while (entries[size] > tMax);
+		}
+	}
+
+	/**
+	 * Returns the given inverse direction coordinate, where the infinities
+	 * are replaced by the largest finite values such that a ray which lies in
+	 * the plane of a bounding box does not result in NaN.
+	 * 
+	 * @param inverse
+	 *            the inverse direction coordinate (see
+	 *            {@link MutableRay#inverseX}).
+	 * @return the inverse direction coordinate without infinities.
+	 */
+	static double clamp(double inverse) {
+		if (Double.isInfinite(inverse))
+			return Math.copySign(Double.MAX_VALUE, inverse);
+		return inverse;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+
+	/**
+	 * The traversal stack, scratch space and last occluder of a single thread.
+	 */
+	private static class Traversal {
+		/**
+		 * The nodes on the traversal stack.
+		 */
+		private final int[] nodes;
+
+		/**
+		 * The entry distances of the nodes on the traversal stack.
+		 */
+		private final double[] entries;
+
+		/**
+		 * The entry distances of the children of the current node, followed
+		 * by scratch space for the tester.
+		 */
+		private final double[] distances;
+
+		/**
+		 * The index of the primitive which occluded the last ray, or -1 when
+		 * no ray has been occluded yet.
+		 */
+		private int occluder = -1;
+
+		/**
+		 * Creates the traversal state for a hierarchy with the given stack
+		 * size and number of children per node.
+		 * 
+		 * @param size
+		 *            the maximum size of the stack.
+		 * @param width
+		 *            the number of children per node.
+		 */
+		private Traversal(int size, int width) {
+			this.nodes = new int[size];
+			this.entries = new double[size];
+			this.distances = new double[2 * width];
+		}
+	}
+}
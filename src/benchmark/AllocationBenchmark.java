@@ -0,0 +1,209 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import math.MutableRay;
+import math.MutableVector3;
+import math.Point;
+import math.Ray;
+import math.Transformation;
+import math.Vector;
+import sampling.Sample;
+import shape.Hit;
+import shape.Instance;
+import shape.Shape;
+import shape.Sphere;
+import acceleration.BVH;
+import acceleration.BinnedSAHBuilder;
+import acceleration.FlatBVH;
+import camera.Camera;
+import camera.PerspectiveCamera;
+import film.FrameBuffer;
+import film.MutableSpectrum;
+import film.RGBSpectrum;
+
+/**
+ * Compares the time and the number of bytes allocated per sample of the
+ * per-pixel path of the renderer (a camera ray, a closest hit, a shadow ray
+ * and the accumulation in the frame buffer) with immutable and with mutable
+ * math types.
+ * 
+ * The immutable path allocates a new sample, ray, vector and spectrum for
+ * every intermediate result, whereas the mutable path reuses the same rays
+ * and spectrum for all the samples. The number of bytes is measured with the
+ * allocation counter of the current thread, and therefore only counts the
+ * objects which have not been eliminated by the just-in-time compiler.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class AllocationBenchmark {
+	
+	/**
+	 * The distance along a shadow ray below which intersections are ignored.
+	 */
+	private static final double EPSILON = 1e-4;
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of spheres in the scene and the resolution of the
+	 *            image (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 10000;
+		int resolution = arguments.length > 1 ? Integer
+				.parseInt(arguments[1]) : 320;
+
+		double size = Math.cbrt(count);
+		Shape spheres = new FlatBVH(new BVH(
+				BVHLayoutBenchmark.createSpheres(count, 1),
+				new BinnedSAHBuilder()));
+		Shape sphere = new Sphere(Transformation.IDENTITY);
+		List<Shape> placements = new ArrayList<Shape>(count);
+		for (Transformation t : InstancingBenchmark.createPlacements(count,
+				0.25, 1))
+			placements.add(new Instance(sphere, t));
+		Shape instances = new FlatBVH(new BVH(placements,
+				new BinnedSAHBuilder()));
+
+		final Camera camera = new PerspectiveCamera(resolution, resolution,
+				new Point(0, 0, size), new Point(), new Vector(0, 1, 0), 60);
+		final Point light = new Point(size, size, size);
+		final FrameBuffer buffer = new FrameBuffer(resolution, resolution);
+
+		Shape[] scenes = { spheres, instances };
+		String[] names = { "Spheres", "Instances" };
+		for (int i = 0; i < scenes.length; ++i) {
+			final Shape scene = scenes[i];
+			measure(new Benchmark(names[i] + " immutable", resolution
+					* resolution) {
+				@Override
+				protected long execute() {
+					return traceImmutable(camera, scene, light, buffer);
+				}
+			});
+			measure(new Benchmark(names[i] + " mutable", resolution
+					* resolution) {
+				@Override
+				protected long execute() {
+					return traceMutable(camera, scene, light, buffer);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Runs the given benchmark and reports the number of bytes which are
+	 * allocated per operation by one more execution.
+	 * 
+	 * @param benchmark
+	 *            the benchmark to run.
+	 */
+	private static void measure(Benchmark benchmark) {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory
+						.getThreadMXBean();
+		benchmark.run();
+		long start = threads.getCurrentThreadAllocatedBytes();
+		benchmark.execute();
+		long bytes = threads.getCurrentThreadAllocatedBytes() - start;
+		System.out.format(Locale.ENGLISH, "%-40s %12.2f bytes/op\n",
+				benchmark.name, (double) bytes / benchmark.operations);
+	}
+
+	/**
+	 * Traces the samples of the image with the immutable math types.
+	 * 
+	 * @param camera
+	 *            the camera.
+	 * @param scene
+	 *            the scene.
+	 * @param light
+	 *            the position of the point light.
+	 * @param buffer
+	 *            the frame buffer in which the samples are accumulated.
+	 * @return the number of samples which hit the scene.
+	 */
+	private static long traceImmutable(Camera camera, Shape scene,
+			Point light, FrameBuffer buffer) {
+		long hits = 0;
+		Hit hit = new Hit();
+		for (int y = 0; y < buffer.yResolution; ++y) {
+			for (int x = 0; x < buffer.xResolution; ++x) {
+				Ray ray = camera.generateRay(new Sample(x + 0.5, y + 0.5));
+				RGBSpectrum radiance = RGBSpectrum.BLACK;
+				hit.reset();
+				if (scene.intersect(ray, 0, Double.POSITIVE_INFINITY, hit)) {
+					++hits;
+					Vector normal = new Vector(hit.nx, hit.ny, hit.nz);
+					double facing = normal.dot(ray.direction);
+					radiance = radiance.add(0.1 * Math.abs(facing)
+							/ ray.direction.length(), 0, 0);
+					Point point = new Point(hit.px, hit.py, hit.pz);
+					Vector l = light.subtract(point);
+					double cosine = normal.dot(l) / l.length();
+					if (facing > 0)
+						cosine = -cosine;
+					if (cosine > 0
+							&& !scene.occluded(new Ray(point, l), EPSILON, 1))
+						radiance = radiance.add(new RGBSpectrum(0.9 * cosine,
+								0, 0));
+				}
+				buffer.getPixel(x, y).add(radiance);
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Traces the samples of the image with the mutable math types.
+	 * 
+	 * @param camera
+	 *            the camera.
+	 * @param scene
+	 *            the scene.
+	 * @param light
+	 *            the position of the point light.
+	 * @param buffer
+	 *            the frame buffer in which the samples are accumulated.
+	 * @return the number of samples which hit the scene.
+	 */
+	private static long traceMutable(Camera camera, Shape scene, Point light,
+			FrameBuffer buffer) {
+		long hits = 0;
+		Hit hit = new Hit();
+		MutableRay ray = new MutableRay();
+		MutableRay shadow = new MutableRay();
+		MutableSpectrum radiance = new MutableSpectrum();
+		for (int y = 0; y < buffer.yResolution; ++y) {
+			for (int x = 0; x < buffer.xResolution; ++x) {
+				camera.generateRay(x + 0.5, y + 0.5, ray);
+				radiance.clear();
+				hit.reset();
+				if (scene.intersect(ray, 0, Double.POSITIVE_INFINITY, hit)) {
+					++hits;
+					MutableVector3 d = ray.direction;
+					double facing = hit.nx * d.x + hit.ny * d.y + hit.nz * d.z;
+					radiance.add(0.1 * Math.abs(facing) / d.length(), 0, 0);
+					MutableVector3 l = shadow.direction.set(light).subtract(
+							hit.px, hit.py, hit.pz);
+					double cosine = (hit.nx * l.x + hit.ny * l.y + hit.nz * l.z)
+							/ l.length();
+					if (facing > 0)
+						cosine = -cosine;
+					shadow.origin.set(hit.px, hit.py, hit.pz);
+					if (cosine > 0 && !scene.occluded(shadow, EPSILON, 1))
+						radiance.add(0.9 * cosine, 0, 0);
+				}
+				buffer.add(x, y, radiance);
+			}
+		}
+		return hits;
+	}
+}
@@ -0,0 +1,128 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import math.Point;
+import math.Ray;
+import math.Transformation;
+import math.Vector;
+import shape.Hit;
+import shape.Shape;
+import shape.Sphere;
+import acceleration.BVH;
+import acceleration.FlatBVH;
+import acceleration.WideBVH;
+
+/**
+ * Compares the traversal performance of the pointer based bounding volume
+ * hierarchy with the flattened and the 4-wide and 8-wide bounding volume
+ * hierarchies.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class BVHLayoutBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of spheres in the scene and the number of rays per
+	 *            execution (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 100000;
+		int rays = arguments.length > 1 ? Integer.parseInt(arguments[1])
+				: 100000;
+
+		List<Shape> spheres = createSpheres(count, 1);
+		final Ray[] sample = createRays(rays, 2);
+
+		BVH bvh = new BVH(spheres);
+		WideBVH wide4 = new WideBVH(bvh, 4);
+		WideBVH wide8 = new WideBVH(bvh, 8);
+		Shape[] scenes = { bvh, new FlatBVH(bvh), wide4, wide8 };
+		String[] names = { "BVH", "FlatBVH",
+				"WideBVH(4" + (wide4.isVectorized() ? ", vectorized)" : ")"),
+				"WideBVH(8" + (wide8.isVectorized() ? ", vectorized)" : ")") };
+
+		for (int i = 0; i < scenes.length; ++i) {
+			final Shape scene = scenes[i];
+			String name = names[i];
+			new Benchmark(name + " any hit", rays) {
+				@Override
+				protected long execute() {
+					long hits = 0;
+					for (Ray ray : sample)
+						if (scene.intersect(ray))
+							++hits;
+					return hits;
+				}
+			}.run();
+			new Benchmark(name + " closest hit", rays) {
+				@Override
+				protected long execute() {
+					long hits = 0;
+					Hit hit = new Hit();
+					for (Ray ray : sample) {
+						hit.reset();
+						if (scene.intersect(ray, hit))
+							++hits;
+					}
+					return hits;
+				}
+			}.run();
+		}
+	}
+
+	/**
+	 * Creates the given number of randomly placed, sized and rotated spheres.
+	 * 
+	 * @param count
+	 *            the number of spheres.
+	 * @param seed
+	 *            the seed of the random number generator.
+	 * @return a list of randomly placed, sized and rotated spheres.
+	 */
+	static List<Shape> createSpheres(int count, long seed) {
+		Random random = new Random(seed);
+		double size = Math.cbrt(count);
+		List<Shape> spheres = new ArrayList<Shape>(count);
+		for (int i = 0; i < count; ++i) {
+			double scale = 0.1 + 0.4 * random.nextDouble();
+			Transformation t = Transformation.translate(
+					size * (random.nextDouble() - 0.5),
+					size * (random.nextDouble() - 0.5),
+					size * (random.nextDouble() - 0.5)).append(
+					Transformation.scale(scale, scale, scale));
+			spheres.add(new Sphere(t));
+		}
+		return spheres;
+	}
+
+	/**
+	 * Creates the given number of rays from random positions near the center
+	 * of the scene in random directions.
+	 * 
+	 * @param count
+	 *            the number of rays.
+	 * @param seed
+	 *            the seed of the random number generator.
+	 * @return an array of random rays.
+	 */
+	static Ray[] createRays(int count, long seed) {
+		Random random = new Random(seed);
+		Ray[] rays = new Ray[count];
+		for (int i = 0; i < count; ++i) {
+			Point origin = new Point(random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian());
+			Vector direction = new Vector(random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian());
+			rays[i] = new Ray(origin, direction);
+		}
+		return rays;
+	}
+}
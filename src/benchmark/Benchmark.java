@@ -0,0 +1,97 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A minimal harness for micro benchmarks.
+ * 
+ * A benchmark is executed a number of times to warm up the virtual machine,
+ * after which the time of a number of measured executions is recorded. The
+ * median time per operation is reported. The results of the benchmarks are
+ * accumulated in a sink, such that the just-in-time compiler cannot eliminate
+ * the benchmarked code.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public abstract class Benchmark {
+	
+	/**
+	 * The number of executions to warm up the virtual machine.
+	 */
+	public static final int WARMUP = 5;
+
+	/**
+	 * The number of measured executions.
+	 */
+	public static final int ITERATIONS = 10;
+
+	/**
+	 * Accumulates the results of the benchmarks.
+	 */
+	private static volatile long sink;
+
+	/**
+	 * The name of this benchmark.
+	 */
+	public final String name;
+
+	/**
+	 * The number of operations performed by a single execution of this
+	 * benchmark.
+	 */
+	public final long operations;
+
+	/**
+	 * Creates a new benchmark with the given name, which performs the given
+	 * number of operations per execution.
+	 * 
+	 * @param name
+	 *            the name of the benchmark.
+	 * @param operations
+	 *            the number of operations per execution.
+	 * @throws IllegalArgumentException
+	 *             when the given number of operations is smaller than one.
+	 */
+	public Benchmark(String name, long operations)
+			throws IllegalArgumentException {
+		if (operations < 1)
+			throw new IllegalArgumentException(
+					"the number of operations must be at least one!");
+		this.name = name;
+		this.operations = operations;
+	}
+
+	/**
+	 * Executes the benchmarked code once.
+	 * 
+	 * @return a value which depends on the result of the benchmarked code.
+	 */
+	protected abstract long execute();
+
+	/**
+	 * Warms up and measures this benchmark and prints the median time per
+	 * operation.
+	 * 
+	 * @return the median time per operation in nanoseconds.
+	 */
+	public double run() {
+		for (int i = 0; i < WARMUP; ++i)
+			sink += execute();
+
+		double[] times = new double[ITERATIONS];
+		for (int i = 0; i < ITERATIONS; ++i) {
+			long start = System.nanoTime();
+			sink += execute();
+			times[i] = (double) (System.nanoTime() - start) / operations;
+		}
+		Arrays.sort(times);
+		double median = times[ITERATIONS / 2];
+
+		System.out.format(Locale.ENGLISH,
+				"%-40s %12.2f ns/op %14.0f op/s (min %.2f, max %.2f)\n", name,
+				median, 1e9 / median, times[0], times[ITERATIONS - 1]);
+		return median;
+	}
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import math.MutableRay;
+import math.Point;
+import math.Ray;
+import math.RayBatch;
+import math.Vector;
+import sampling.Sample;
+import camera.PerspectiveCamera;
+import film.Tile;
+
+/**
+ * Compares the generation of the primary rays of a 4K frame by allocating a
+ * new ray per pixel, by reusing a single mutable ray per pixel and by
+ * generating the rays of whole tiles at once.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class CameraBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the width and height of the frame and the width of the
+	 *            square tiles (optional).
+	 */
+	public static void main(String[] arguments) {
+		final int width = arguments.length > 0 ? Integer
+				.parseInt(arguments[0]) : 3840;
+		final int height = arguments.length > 1 ? Integer
+				.parseInt(arguments[1]) : 2160;
+		int size = arguments.length > 2 ? Integer.parseInt(arguments[2]) : 64;
+
+		final PerspectiveCamera camera = new PerspectiveCamera(width, height,
+				new Point(0, 0, 0), new Point(0, 0, -1), new Vector(0, 1, 0),
+				90);
+		final Tile[] tiles = new Tile(0, 0, width, height).subdivide(size,
+				size).toArray(new Tile[0]);
+		final RayBatch rays = new RayBatch(size * size);
+
+		new Benchmark("new ray per pixel", (long) width * height) {
+			@Override
+			protected long execute() {
+				long sum = 0;
+				for (int y = 0; y < height; ++y)
+					for (int x = 0; x < width; ++x) {
+						Ray ray = camera.generateRay(new Sample(x + 0.5,
+								y + 0.5));
+						sum += Double.doubleToRawLongBits(ray.direction.x);
+					}
+				return sum;
+			}
+		}.run();
+
+		new Benchmark("mutable ray per pixel", (long) width * height) {
+			@Override
+			protected long execute() {
+				long sum = 0;
+				MutableRay ray = new MutableRay();
+				for (Tile tile : tiles) {
+					rays.clear();
+					for (int y = tile.yStart; y < tile.yEnd; ++y)
+						for (int x = tile.xStart; x < tile.xEnd; ++x)
+							rays.add(camera.generateRay(x + 0.5, y + 0.5, ray),
+									0, Double.POSITIVE_INFINITY);
+					sum += Double.doubleToRawLongBits(rays.ix[0]);
+				}
+				return sum;
+			}
+		}.run();
+
+		new Benchmark("rays per tile", (long) width * height) {
+			@Override
+			protected long execute() {
+				long sum = 0;
+				for (Tile tile : tiles) {
+					rays.clear();
+					camera.generateRays(tile, rays);
+					sum += Double.doubleToRawLongBits(rays.ix[0]);
+				}
+				return sum;
+			}
+		}.run();
+	}
+}
@@ -0,0 +1,111 @@
+package benchmark;
+
+import java.util.Locale;
+import java.util.Random;
+
+import film.BoxFilter;
+import film.Filter;
+import film.GaussianFilter;
+import film.LanczosFilter;
+import film.MitchellFilter;
+import film.TentFilter;
+import film.Tile;
+import film.TileBuffer;
+
+/**
+ * Measures the cost of accumulating a sample in a tile buffer with a
+ * reconstruction filter, relative to adding it to a single pixel without a
+ * filter, and the cost of looking up the filter in its table relative to
+ * evaluating it directly.
+ * 
+ * The samples are jittered over a tile of 64 by 64 pixels, with four samples
+ * in every pixel. Since the splatting becomes polymorphic when several
+ * filters are used in the same virtual machine, every run measures a single
+ * filter.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class FilterBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the filter (box, tent, gaussian, mitchell or lanczos), or
+	 *            none to add every sample to its pixel (optional).
+	 */
+	public static void main(String[] arguments) {
+		String name = arguments.length > 0 ? arguments[0]
+				.toLowerCase(Locale.ENGLISH) : "box";
+		final Tile tile = new Tile(0, 0, 64, 64);
+		final int count = 4 * tile.getWidth() * tile.getHeight();
+		final double[] xs = new double[count];
+		final double[] ys = new double[count];
+		Random random = new Random(0);
+		for (int i = 0; i < count; ++i) {
+			xs[i] = tile.xStart + (i >> 2) % tile.getWidth()
+					+ random.nextDouble();
+			ys[i] = tile.yStart + (i >> 2) / tile.getWidth()
+					+ random.nextDouble();
+		}
+
+		if ("none".equals(name)) {
+			final TileBuffer buffer = new TileBuffer(tile, 0);
+			new Benchmark("add", count) {
+				@Override
+				protected long execute() {
+					buffer.clear();
+					for (int i = 0; i < count; ++i)
+						buffer.add((int) xs[i], (int) ys[i], 0.25, 0.5,
+								0.75, 1.0);
+					return count;
+				}
+			}.run();
+			return;
+		}
+
+		final Filter filter;
+		if ("tent".equals(name))
+			filter = new TentFilter();
+		else if ("gaussian".equals(name))
+			filter = new GaussianFilter();
+		else if ("mitchell".equals(name))
+			filter = new MitchellFilter();
+		else if ("lanczos".equals(name))
+			filter = new LanczosFilter();
+		else
+			filter = new BoxFilter();
+		final TileBuffer buffer = new TileBuffer(tile, filter);
+
+		new Benchmark(name + " splat", count) {
+			@Override
+			protected long execute() {
+				buffer.clear();
+				for (int i = 0; i < count; ++i)
+					buffer.splat(xs[i], ys[i], 0.25, 0.5, 0.75);
+				return count;
+			}
+		}.run();
+
+		new Benchmark(name + " lookup", count) {
+			@Override
+			protected long execute() {
+				double sum = 0;
+				for (int i = 0; i < count; ++i)
+					sum += filter.lookup(xs[i] - (int) xs[i] - 0.5);
+				return Double.doubleToLongBits(sum);
+			}
+		}.run();
+
+		new Benchmark(name + " evaluate", count) {
+			@Override
+			protected long execute() {
+				double sum = 0;
+				for (int i = 0; i < count; ++i)
+					sum += filter.evaluate(xs[i] - (int) xs[i] - 0.5);
+				return Double.doubleToLongBits(sum);
+			}
+		}.run();
+	}
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import film.FrameBuffer;
+import film.FrameBuffer.Layout;
+import film.Tile;
+
+/**
+ * Compares the layouts of a 4K frame buffer, with one pixel object per pixel,
+ * with flat channel arrays and mapped in a temporary file, in double and in
+ * single precision. For every
+ * layout, the heap footprint of the frame buffer is measured, followed by the
+ * throughput of accumulating a sample in every pixel in the order of the
+ * tiles of the renderer, both in place and through the pixel views.
+ * 
+ * The accumulation through the frame buffer becomes polymorphic when several
+ * layouts are used in the same virtual machine, which penalizes the layouts
+ * that are measured last. Every run therefore measures a single layout and
+ * precision.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class FrameBufferBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the layout (objects, arrays or mapped), the precision
+	 *            (double or float), the width and height of the frame and the
+	 *            width of the square tiles (optional).
+	 * @throws IOException
+	 *             when the temporary file of a mapped frame buffer cannot be
+	 *             created.
+	 */
+	public static void main(String[] arguments) throws IOException {
+		Layout layout = arguments.length > 0 ? Layout.valueOf(arguments[0]
+				.toUpperCase(Locale.ENGLISH)) : Layout.ARRAYS;
+		boolean singlePrecision = arguments.length > 1
+				&& "float".equals(arguments[1]);
+		final int width = arguments.length > 2 ? Integer
+				.parseInt(arguments[2]) : 3840;
+		final int height = arguments.length > 3 ? Integer
+				.parseInt(arguments[3]) : 2160;
+		int size = arguments.length > 4 ? Integer.parseInt(arguments[4]) : 64;
+		final Tile[] tiles = new Tile(0, 0, width, height).subdivide(size,
+				size).toArray(new Tile[0]);
+		String name = layout.toString().toLowerCase(Locale.ENGLISH)
+				+ (singlePrecision ? " float" : " double");
+
+		long before = usedMemory();
+		final FrameBuffer buffer;
+		if (layout == Layout.MAPPED) {
+			File file = File.createTempFile("framebuffer", ".bin");
+			file.deleteOnExit();
+			buffer = new FrameBuffer(file, width, height, singlePrecision);
+		} else
+			buffer = new FrameBuffer(width, height, singlePrecision, layout);
+		long footprint = usedMemory() - before;
+		System.out.format(Locale.ENGLISH,
+				"%-40s %12.2f bytes/pixel %10.1f MiB\n", name + " footprint",
+				(double) footprint / ((long) width * height), footprint
+						/ (1024.0 * 1024.0));
+
+		new Benchmark(name + " add", (long) width * height) {
+			@Override
+			protected long execute() {
+				for (Tile tile : tiles)
+					for (int y = tile.yStart; y < tile.yEnd; ++y)
+						for (int x = tile.xStart; x < tile.xEnd; ++x)
+							buffer.add(x, y, 0.25, 0.5, 0.75, 1.0);
+				return buffer.getPixel(0, 0).getSpectrum().hashCode();
+			}
+		}.run();
+
+		new Benchmark(name + " getPixel().add", (long) width * height) {
+			@Override
+			protected long execute() {
+				for (Tile tile : tiles)
+					for (int y = tile.yStart; y < tile.yEnd; ++y)
+						for (int x = tile.xStart; x < tile.xEnd; ++x)
+							buffer.getPixel(x, y).add(0.25, 0.5, 0.75, 1.0);
+				return buffer.getPixel(0, 0).getSpectrum().hashCode();
+			}
+		}.run();
+	}
+
+	/**
+	 * Returns the number of bytes in use on the heap after collecting the
+	 * garbage.
+	 * 
+	 * @return the number of bytes in use on the heap.
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; ++i)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,92 @@
+package benchmark;
+
+import java.util.List;
+import java.util.Locale;
+
+import math.Ray;
+import shape.Hit;
+import shape.Shape;
+import acceleration.BVH;
+import acceleration.BinnedSAHBuilder;
+import acceleration.FlatBVH;
+import acceleration.Grid;
+
+/**
+ * Compares the construction and traversal performance of the regular grid,
+ * the two-level grid and the flattened bounding volume hierarchy on a field
+ * of similarly sized spheres.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class GridBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of spheres in the scene and the number of rays per
+	 *            execution (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 100000;
+		int rays = arguments.length > 1 ? Integer.parseInt(arguments[1])
+				: 100000;
+
+		final List<Shape> spheres = BVHLayoutBenchmark.createSpheres(count, 1);
+		final Ray[] sample = BVHLayoutBenchmark.createRays(rays, 2);
+
+		long start = System.nanoTime();
+		FlatBVH bvh = new FlatBVH(new BVH(spheres, new BinnedSAHBuilder()));
+		report("FlatBVH", start);
+		start = System.nanoTime();
+		Grid grid = new Grid(spheres);
+		report("Grid", start);
+		start = System.nanoTime();
+		Grid hierarchical = new Grid(spheres, true);
+		report("Grid (two-level)", start);
+
+		Shape[] scenes = { bvh, grid, hierarchical };
+		String[] names = { "FlatBVH", "Grid", "Grid (two-level)" };
+		for (int i = 0; i < scenes.length; ++i) {
+			final Shape scene = scenes[i];
+			new Benchmark(names[i] + " any hit", rays) {
+				@Override
+				protected long execute() {
+					long hits = 0;
+					for (Ray ray : sample)
+						if (scene.intersect(ray))
+							++hits;
+					return hits;
+				}
+			}.run();
+			new Benchmark(names[i] + " closest hit", rays) {
+				@Override
+				protected long execute() {
+					long hits = 0;
+					Hit hit = new Hit();
+					for (Ray ray : sample) {
+						hit.reset();
+						if (scene.intersect(ray, hit))
+							++hits;
+					}
+					return hits;
+				}
+			}.run();
+		}
+	}
+
+	/**
+	 * Prints the time which has passed since the given start time.
+	 * 
+	 * @param name
+	 *            the name of the constructed acceleration structure.
+	 * @param start
+	 *            the start time of the construction in nanoseconds.
+	 */
+	private static void report(String name, long start) {
+		System.out.format(Locale.ENGLISH, "%-45s %10.2f ms build\n", name,
+				(System.nanoTime() - start) / 1e6);
+	}
+}
@@ -0,0 +1,136 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import math.Ray;
+import math.Transformation;
+import math.Vector;
+import shape.Hit;
+import shape.Instance;
+import shape.Shape;
+import shape.Sphere;
+import acceleration.FlatBVH;
+
+/**
+ * Compares the memory use and traversal performance of a scene in which a
+ * single asset is placed many times by instancing, with the same scene in
+ * which the primitives of the asset are copied for every placement.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class InstancingBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of spheres in the asset, the number of placements
+	 *            and the number of rays per execution (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 500;
+		int placements = arguments.length > 1 ? Integer
+				.parseInt(arguments[1]) : 200;
+		int rays = arguments.length > 2 ? Integer.parseInt(arguments[2])
+				: 100000;
+
+		List<Shape> spheres = BVHLayoutBenchmark.createSpheres(count, 1);
+		List<Transformation> transformations = createPlacements(placements,
+				Math.cbrt(count), 3);
+
+		// the asset is constructed once and shared by all the placements
+		long before = usedMemory();
+		FlatBVH asset = new FlatBVH(spheres);
+		List<Shape> instances = new ArrayList<Shape>(placements);
+		for (Transformation transformation : transformations)
+			instances.add(new Instance(asset, transformation));
+		FlatBVH instanced = new FlatBVH(instances);
+		long instancedMemory = usedMemory() - before;
+
+		// every placement copies the primitives of the asset
+		before = usedMemory();
+		List<Shape> copies = new ArrayList<Shape>(count * placements);
+		for (Transformation transformation : transformations)
+			for (Shape sphere : spheres)
+				copies.add(new Sphere(transformation
+						.append(((Sphere) sphere).transformation)));
+		FlatBVH flattened = new FlatBVH(copies);
+		long flattenedMemory = usedMemory() - before;
+
+		System.out.format(Locale.ENGLISH, "%-45s %10.2f MB\n", "instanced",
+				instancedMemory / 1e6);
+		System.out.format(Locale.ENGLISH, "%-45s %10.2f MB\n", "flattened",
+				flattenedMemory / 1e6);
+
+		final Ray[] sample = BVHLayoutBenchmark.createRays(rays, 2);
+		for (int i = 0; i < sample.length; ++i)
+			sample[i] = new Ray(sample[i].origin.scale(Math.cbrt(count
+					* placements) / 4), sample[i].direction);
+
+		Shape[] scenes = { instanced, flattened };
+		String[] names = { "instanced", "flattened" };
+		for (int i = 0; i < scenes.length; ++i) {
+			final Shape scene = scenes[i];
+			new Benchmark(names[i] + " closest hit", rays) {
+				@Override
+				protected long execute() {
+					long hits = 0;
+					Hit hit = new Hit();
+					for (Ray ray : sample) {
+						hit.reset();
+						if (scene.intersect(ray, hit))
+							++hits;
+					}
+					return hits;
+				}
+			}.run();
+		}
+	}
+
+	/**
+	 * Creates the given number of randomly placed and rotated placements of
+	 * an asset with the given size.
+	 * 
+	 * @param count
+	 *            the number of placements.
+	 * @param size
+	 *            the size of the asset.
+	 * @param seed
+	 *            the seed of the random number generator.
+	 * @return a list of random transformations.
+	 */
+	static List<Transformation> createPlacements(int count, double size,
+			long seed) {
+		Random random = new Random(seed);
+		double extent = 2 * size * Math.cbrt(count);
+		List<Transformation> transformations = new ArrayList<Transformation>(
+				count);
+		for (int i = 0; i < count; ++i) {
+			Vector axis = new Vector(random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian());
+			transformations.add(Transformation.translate(
+					extent * (random.nextDouble() - 0.5),
+					extent * (random.nextDouble() - 0.5),
+					extent * (random.nextDouble() - 0.5)).append(
+					Transformation.rotate(axis, 360 * random.nextDouble())));
+		}
+		return transformations;
+	}
+
+	/**
+	 * Returns the amount of memory which is in use after a garbage collection.
+	 * 
+	 * @return the amount of memory in use in bytes.
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; ++i)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
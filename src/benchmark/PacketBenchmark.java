@@ -0,0 +1,171 @@
+package benchmark;
+
+import java.util.List;
+
+import math.MutableRay;
+import math.Point;
+import math.Ray;
+import math.RayBatch;
+import math.Vector;
+import shape.Hit;
+import shape.HitBatch;
+import shape.Shape;
+import acceleration.BVH;
+import acceleration.BinnedSAHBuilder;
+import acceleration.FlatBVH;
+import camera.PerspectiveCamera;
+
+/**
+ * Compares the traversal of single primary rays with the traversal of packets
+ * of the primary rays through square blocks of 2x2 up to 16x16 pixels. The
+ * number of operations per second equals the number of rays per second.
+ * 
+ * The packets of random rays do not share their origin and are therefore
+ * traced one ray at a time, which shows the cost of detecting a diverging
+ * packet.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class PacketBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of spheres in the scene and the resolution of the
+	 *            image (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 100000;
+		int resolution = arguments.length > 1 ? Integer
+				.parseInt(arguments[1]) : 512;
+
+		List<Shape> spheres = BVHLayoutBenchmark.createSpheres(count, 1);
+		final FlatBVH bvh = new FlatBVH(new BVH(spheres,
+				new BinnedSAHBuilder()));
+		double size = Math.cbrt(count);
+		PerspectiveCamera camera = new PerspectiveCamera(resolution,
+				resolution, new Point(0, 0, size), new Point(0, 0, 0),
+				new Vector(0, 1, 0), 60);
+
+		// the primary rays in scanline order
+		final MutableRay[] primary = new MutableRay[resolution * resolution];
+		for (int y = 0; y < resolution; ++y)
+			for (int x = 0; x < resolution; ++x)
+				primary[y * resolution + x] = camera.generateRay(x + 0.5,
+						y + 0.5, new MutableRay());
+		new Benchmark("FlatBVH single rays", primary.length) {
+			@Override
+			protected long execute() {
+				long hits = 0;
+				Hit hit = new Hit();
+				for (MutableRay ray : primary) {
+					hit.reset();
+					if (bvh.intersect(ray, 0, Double.POSITIVE_INFINITY, hit))
+						++hits;
+				}
+				return hits;
+			}
+		}.run();
+
+		for (int width : new int[] { 2, 4, 8, 16 }) {
+			RayBatch[] packets = createPackets(camera, resolution, width);
+			run("FlatBVH packets of " + width + "x" + width, bvh, packets);
+		}
+
+		// packets of random rays, which diverge
+		Ray[] random = BVHLayoutBenchmark.createRays(resolution
+				* resolution, 2);
+		RayBatch[] batches = new RayBatch[random.length / 64];
+		MutableRay ray = new MutableRay();
+		for (int i = 0; i < batches.length; ++i) {
+			batches[i] = new RayBatch(64);
+			for (int j = 0; j < 64; ++j)
+				batches[i].add(ray.set(random[64 * i + j]), 0,
+						Double.POSITIVE_INFINITY);
+		}
+		final MutableRay[] single = new MutableRay[random.length];
+		for (int i = 0; i < random.length; ++i)
+			single[i] = new MutableRay(random[i]);
+		new Benchmark("FlatBVH random single rays", single.length) {
+			@Override
+			protected long execute() {
+				long hits = 0;
+				Hit hit = new Hit();
+				for (MutableRay ray : single) {
+					hit.reset();
+					if (bvh.intersect(ray, 0, Double.POSITIVE_INFINITY, hit))
+						++hits;
+				}
+				return hits;
+			}
+		}.run();
+		run("FlatBVH random packets of 64", bvh, batches);
+	}
+
+	/**
+	 * Creates the packets of the primary rays through the square blocks of
+	 * pixels of the given width.
+	 * 
+	 * @param camera
+	 *            the camera which generates the rays.
+	 * @param resolution
+	 *            the width and height of the image.
+	 * @param width
+	 *            the width of the blocks of pixels.
+	 * @return the packets of the primary rays.
+	 */
+	private static RayBatch[] createPackets(PerspectiveCamera camera,
+			int resolution, int width) {
+		int blocks = (resolution + width - 1) / width;
+		RayBatch[] packets = new RayBatch[blocks * blocks];
+		MutableRay ray = new MutableRay();
+		for (int by = 0; by < blocks; ++by)
+			for (int bx = 0; bx < blocks; ++bx) {
+				RayBatch packet = new RayBatch(width * width);
+				int yEnd = Math.min((by + 1) * width, resolution);
+				int xEnd = Math.min((bx + 1) * width, resolution);
+				for (int y = by * width; y < yEnd; ++y)
+					for (int x = bx * width; x < xEnd; ++x)
+						packet.add(camera.generateRay(x + 0.5, y + 0.5, ray),
+								0, Double.POSITIVE_INFINITY);
+				packets[by * blocks + bx] = packet;
+			}
+		return packets;
+	}
+
+	/**
+	 * Measures the closest hit intersection of the given packets of rays with
+	 * the given shape.
+	 * 
+	 * @param name
+	 *            the name of the benchmark.
+	 * @param shape
+	 *            the shape to intersect.
+	 * @param packets
+	 *            the packets of rays.
+	 */
+	private static void run(String name, final Shape shape,
+			final RayBatch[] packets) {
+		long rays = 0;
+		int capacity = 1;
+		for (RayBatch packet : packets) {
+			rays += packet.size();
+			capacity = Math.max(capacity, packet.capacity);
+		}
+		final HitBatch hits = new HitBatch(capacity);
+		new Benchmark(name, rays) {
+			@Override
+			protected long execute() {
+				long count = 0;
+				for (RayBatch packet : packets) {
+					hits.reset();
+					count += shape.intersect(packet, hits);
+				}
+				return count;
+			}
+		}.run();
+	}
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import math.Transformation;
+import shape.Shape;
+import shape.Sphere;
+import acceleration.BVH;
+import acceleration.BinnedSAHBuilder;
+import acceleration.DynamicBVH;
+import acceleration.FlatBVH;
+
+/**
+ * Compares the time to update a bounding volume hierarchy over moving spheres
+ * by refitting with the time to reconstruct it, and reports how the quality
+ * of the refitted hierarchy degrades over the frames of an animation.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class RefitBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of spheres in the scene and the number of frames
+	 *            (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 100000;
+		int frames = arguments.length > 1 ? Integer.parseInt(arguments[1])
+				: 20;
+
+		List<Shape> spheres = BVHLayoutBenchmark.createSpheres(count, 1);
+		Random random = new Random(2);
+		double speed = 0.05;
+		List<double[]> velocities = new ArrayList<double[]>(count);
+		for (int i = 0; i < count; ++i)
+			velocities.add(new double[] { speed * random.nextGaussian(),
+					speed * random.nextGaussian(),
+					speed * random.nextGaussian() });
+
+		DynamicBVH dynamic = new DynamicBVH(spheres);
+		double rebuildTime = 0;
+		double refitTime = 0;
+		for (int frame = 1; frame <= frames; ++frame) {
+			// move every sphere along its velocity by replacing it
+			for (int i = 0; i < count; ++i) {
+				Sphere sphere = (Sphere) spheres.get(i);
+				double[] v = velocities.get(i);
+				Sphere moved = new Sphere(Transformation.translate(v[0],
+						v[1], v[2]).append(sphere.transformation));
+				spheres.set(i, moved);
+				dynamic.set(i, moved);
+			}
+
+			long start = System.nanoTime();
+			boolean rebuilt = dynamic.update();
+			double update = (System.nanoTime() - start) / 1e6;
+
+			start = System.nanoTime();
+			FlatBVH reference = new FlatBVH(new BVH(spheres,
+					new BinnedSAHBuilder()));
+			double rebuild = (System.nanoTime() - start) / 1e6;
+			if (!rebuilt)
+				refitTime += update;
+			rebuildTime += rebuild;
+
+			System.out.format(Locale.ENGLISH, "frame %3d: %s %10.2f ms, "
+					+ "rebuild %10.2f ms, cost %.3f (rebuilt %.3f, "
+					+ "degradation %.2f)\n", frame, rebuilt ? "rebuilt"
+					: "refit  ", update, rebuild, dynamic.getCost(),
+					reference.getCost(), dynamic.getDegradation());
+		}
+		int refits = frames - dynamic.getRebuildCount();
+		System.out.format(Locale.ENGLISH, "%d refits (%.2f ms average), "
+				+ "%d rebuilds, full rebuild %.2f ms average\n", refits,
+				refits > 0 ? refitTime / refits : 0,
+				dynamic.getRebuildCount(), rebuildTime / frames);
+	}
+}
@@ -0,0 +1,132 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import math.Point;
+import math.Ray;
+import math.Vector;
+import shape.Hit;
+import shape.Shape;
+import acceleration.BVH;
+import acceleration.BinnedSAHBuilder;
+import acceleration.FlatBVH;
+import acceleration.Grid;
+import acceleration.WideBVH;
+
+/**
+ * Compares the occlusion query with the closest hit intersection for the
+ * shadow rays towards a point light on a field of spheres.
+ * 
+ * The shadow rays start at the visible points of an image in scanline order,
+ * such that consecutive rays are usually blocked by the same sphere. The same
+ * rays are also traced in a random order, which shows the benefit of trying
+ * the last occluder first.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class ShadowBenchmark {
+	
+	/**
+	 * The distance along a shadow ray below which intersections are ignored.
+	 */
+	private static final double EPSILON = 1e-4;
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of spheres in the scene and the resolution of the
+	 *            image (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 100000;
+		int resolution = arguments.length > 1 ? Integer
+				.parseInt(arguments[1]) : 320;
+
+		List<Shape> spheres = BVHLayoutBenchmark.createSpheres(count, 1);
+		FlatBVH bvh = new FlatBVH(new BVH(spheres, new BinnedSAHBuilder()));
+		WideBVH wide = new WideBVH(new BVH(spheres, new BinnedSAHBuilder()),
+				4);
+		Grid grid = new Grid(spheres);
+
+		double size = Math.cbrt(count);
+		List<Ray> rays = createShadowRays(bvh, resolution, size);
+		final Ray[] coherent = rays.toArray(new Ray[rays.size()]);
+		Collections.shuffle(rays, new Random(3));
+		final Ray[] shuffled = rays.toArray(new Ray[rays.size()]);
+
+		Shape[] scenes = { bvh, wide, grid };
+		String[] names = { "FlatBVH", "WideBVH (4)", "Grid" };
+		Ray[][] orders = { shuffled, coherent };
+		String[] labels = { "shuffled", "coherent" };
+		for (int i = 0; i < scenes.length; ++i) {
+			final Shape scene = scenes[i];
+			for (int j = 0; j < orders.length; ++j) {
+				final Ray[] sample = orders[j];
+				new Benchmark(names[i] + " closest hit (" + labels[j] + ")",
+						sample.length) {
+					@Override
+					protected long execute() {
+						long occluded = 0;
+						Hit hit = new Hit();
+						for (Ray ray : sample) {
+							hit.reset();
+							if (scene.intersect(ray, EPSILON, 1, hit))
+								++occluded;
+						}
+						return occluded;
+					}
+				}.run();
+				new Benchmark(names[i] + " occluded (" + labels[j] + ")",
+						sample.length) {
+					@Override
+					protected long execute() {
+						long occluded = 0;
+						for (Ray ray : sample)
+							if (scene.occluded(ray, EPSILON, 1))
+								++occluded;
+						return occluded;
+					}
+				}.run();
+			}
+		}
+	}
+
+	/**
+	 * Creates the shadow rays from the visible points of an image of the
+	 * given scene towards a point light at a corner of the scene. A shadow ray
+	 * reaches the light at distance one.
+	 * 
+	 * @param scene
+	 *            the scene.
+	 * @param resolution
+	 *            the width and height of the image.
+	 * @param size
+	 *            the extent of the scene along every axis.
+	 * @return the shadow rays in scanline order.
+	 */
+	private static List<Ray> createShadowRays(Shape scene, int resolution,
+			double size) {
+		Point eye = new Point(0, 0, size);
+		Point light = new Point(size, size, size);
+		List<Ray> rays = new ArrayList<Ray>();
+		Hit hit = new Hit();
+		for (int y = 0; y < resolution; ++y) {
+			for (int x = 0; x < resolution; ++x) {
+				Vector direction = new Vector((x + 0.5) / resolution - 0.5,
+						0.5 - (y + 0.5) / resolution, -1);
+				hit.reset();
+				if (scene.intersect(new Ray(eye, direction), hit)) {
+					Point point = new Point(hit.px, hit.py, hit.pz);
+					rays.add(new Ray(point, light.subtract(point)));
+				}
+			}
+		}
+		return rays;
+	}
+}
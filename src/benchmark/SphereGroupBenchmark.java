@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import math.MutableRay;
+import math.Ray;
+import shape.Hit;
+import shape.Shape;
+import shape.Sphere;
+import shape.SphereGroup;
+import acceleration.BVH;
+import acceleration.BinnedSAHBuilder;
+import acceleration.FlatBVH;
+
+/**
+ * Compares the intersection of groups of spheres for the scalar tester and
+ * the vectors of 128, 256 or 512 bits, and the hierarchies over single
+ * spheres and over groups of spheres.
+ * 
+ * The vector species share the code of the vector API, whose type profiles
+ * become polymorphic when several species are used in the same virtual
+ * machine, after which the vectors are no longer compiled into vector
+ * instructions. Every run therefore measures a single number of lanes, which
+ * is compared with the scalar tester.
+ * 
+ * Needs the jdk.incubator.vector module for the vector testers (i.e. the
+ * virtual machine has to be started with
+ * <code>--add-modules jdk.incubator.vector</code>).
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class SphereGroupBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of spheres in the scene, the number of rays per
+	 *            execution and the number of lanes (2, 4 or 8, or 0 for the
+	 *            widest vectors) (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 100000;
+		int rays = arguments.length > 1 ? Integer.parseInt(arguments[1])
+				: 100000;
+		int lanes = arguments.length > 2 ? Integer.parseInt(arguments[2]) : 0;
+
+		List<Shape> shapes = BVHLayoutBenchmark.createSpheres(count, 1);
+		Ray[] sample = BVHLayoutBenchmark.createRays(rays, 2);
+		final MutableRay[] mutable = new MutableRay[rays];
+		for (int i = 0; i < rays; ++i)
+			mutable[i] = new MutableRay(sample[i]);
+
+		// a single group of the spheres around the origin, which the rays
+		// start from
+		for (int size : new int[] { 8, 32, 128 }) {
+			List<Sphere> spheres = new ArrayList<Sphere>();
+			for (Shape shape : BVHLayoutBenchmark.createSpheres(size, 3))
+				spheres.add((Sphere) shape);
+			run(size + " spheres, scalar", new SphereGroup(spheres, 1),
+					mutable);
+			SphereGroup group = new SphereGroup(spheres, lanes);
+			run(size + " spheres, " + group.getLanes() + " lanes", group,
+					mutable);
+		}
+
+		// hierarchies over single spheres and over groups of spheres
+		run("FlatBVH", new FlatBVH(new BVH(shapes, new BinnedSAHBuilder())),
+				mutable);
+		for (int size : new int[] { 4, 8, 16 }) {
+			List<Shape> groups = SphereGroup.group(shapes, size, lanes);
+			run("FlatBVH, groups of " + size, new FlatBVH(new BVH(groups,
+					new BinnedSAHBuilder())), mutable);
+		}
+	}
+
+	/**
+	 * Runs the closest hit benchmark for the given shape and rays.
+	 * 
+	 * @param name
+	 *            the name of the benchmark.
+	 * @param shape
+	 *            the shape to intersect.
+	 * @param rays
+	 *            the rays to intersect the shape with.
+	 */
+	private static void run(String name, final Shape shape,
+			final MutableRay[] rays) {
+		new Benchmark(name + " closest hit", rays.length) {
+			@Override
+			protected long execute() {
+				long hits = 0;
+				Hit hit = new Hit();
+				for (MutableRay ray : rays) {
+					hit.reset();
+					if (shape.intersect(ray, 0, Double.POSITIVE_INFINITY, hit))
+						++hits;
+				}
+				return hits;
+			}
+		}.run();
+	}
+}
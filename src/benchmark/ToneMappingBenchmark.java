@@ -0,0 +1,81 @@
+package benchmark;
+
+import java.util.Random;
+
+import film.FrameBuffer;
+import film.FrameBuffer.Layout;
+import film.Tile;
+import film.ToneMapper;
+
+/**
+ * Compares the tone mapping of a 4K frame buffer by the spectra of its pixels,
+ * which allocates several spectra and evaluates the gamma correction by
+ * {@link Math#pow(double, double)} for every pixel, with the tone mapping
+ * directly on the sums of the frame buffer by a {@link ToneMapper}, both by a
+ * single thread and by the rows in parallel.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class ToneMappingBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the width and height of the frame (optional).
+	 */
+	public static void main(String[] arguments) {
+		final int width = arguments.length > 0 ? Integer
+				.parseInt(arguments[0]) : 3840;
+		final int height = arguments.length > 1 ? Integer
+				.parseInt(arguments[1]) : 2160;
+		final double sensitivity = 1.0;
+		final double gamma = 2.2;
+
+		final FrameBuffer buffer = new FrameBuffer(width, height, false,
+				Layout.ARRAYS);
+		Random random = new Random(0);
+		for (int y = 0; y < height; ++y)
+			for (int x = 0; x < width; ++x)
+				buffer.add(x, y, random.nextDouble() * 1.2,
+						random.nextDouble() * 1.2, random.nextDouble() * 1.2,
+						1.0);
+		final int[] data = new int[width * height];
+		final ToneMapper mapper = new ToneMapper(sensitivity, gamma);
+		final Tile frame = new Tile(0, 0, width, height);
+
+		new Benchmark("spectra", (long) width * height) {
+			@Override
+			protected long execute() {
+				double invSensitivity = 1.0 / sensitivity;
+				double invGamma = 1.0 / gamma;
+				for (int y = 0; y < height; ++y) {
+					int offset = (height - y - 1) * width;
+					for (int x = 0; x < width; ++x)
+						data[offset + x] = buffer.getPixel(x, y)
+								.getSpectrum().clamp(0, invSensitivity)
+								.scale(sensitivity).pow(invGamma)
+								.scale(255).toRGB();
+				}
+				return data[0];
+			}
+		}.run();
+
+		new Benchmark("tone mapper", (long) width * height) {
+			@Override
+			protected long execute() {
+				mapper.map(buffer, frame, data);
+				return data[0];
+			}
+		}.run();
+
+		new Benchmark("tone mapper parallel", (long) width * height) {
+			@Override
+			protected long execute() {
+				mapper.map(buffer, data);
+				return data[0];
+			}
+		}.run();
+	}
+}
@@ -0,0 +1,120 @@
+package benchmark;
+
+import java.util.Random;
+
+import math.Matrix;
+import math.Point;
+import math.Ray;
+import math.Transformation;
+import math.Vector;
+
+/**
+ * Compares the specialized routines of every class of transformations with
+ * the general matrix multiplication for points, rays and normals.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class TransformationBenchmark {
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param arguments
+	 *            the number of transformed objects per execution (optional).
+	 */
+	public static void main(String[] arguments) {
+		int count = arguments.length > 0 ? Integer.parseInt(arguments[0])
+				: 100000;
+
+		Random random = new Random(1);
+		final Point[] points = new Point[count];
+		final Vector[] vectors = new Vector[count];
+		final Ray[] rays = new Ray[count];
+		for (int i = 0; i < count; ++i) {
+			points[i] = new Point(random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian());
+			vectors[i] = new Vector(random.nextGaussian(),
+					random.nextGaussian(), random.nextGaussian());
+			rays[i] = new Ray(points[i], vectors[i]);
+		}
+
+		Transformation[] transformations = {
+				Transformation.IDENTITY,
+				Transformation.translate(1, 2, 3),
+				Transformation.translate(1, 2, 3).append(
+						Transformation.scale(2, 2, 2)),
+				Transformation.translate(1, 2, 3).append(
+						Transformation.rotate(new Vector(1, 2, 3), 30)),
+				Transformation.translate(1, 2, 3)
+						.append(Transformation.rotate(new Vector(1, 2, 3), 30))
+						.append(Transformation.scale(1, 2, 3)),
+				new Transformation(new Matrix(1, 0, 0, 0, 0, 1, 0, 0, 0, 0,
+						1, 0, 0, 0, -0.5, 4)) };
+
+		for (final Transformation transformation : transformations) {
+			final Matrix matrix = transformation.getTransformationMatrix();
+			final Matrix normalMatrix = transformation
+					.getInverseTransformationMatrix().transpose();
+			String name = transformation.getType().toString();
+
+			new Benchmark(name + " points (matrix)", count) {
+				@Override
+				protected long execute() {
+					double sum = 0;
+					for (Point point : points)
+						sum += matrix.transform(point).x;
+					return (long) sum;
+				}
+			}.run();
+			new Benchmark(name + " points (specialized)", count) {
+				@Override
+				protected long execute() {
+					double sum = 0;
+					for (Point point : points)
+						sum += transformation.transform(point).x;
+					return (long) sum;
+				}
+			}.run();
+			new Benchmark(name + " rays (matrix)", count) {
+				@Override
+				protected long execute() {
+					double sum = 0;
+					for (Ray ray : rays) {
+						Ray transformed = new Ray(matrix.transform(ray.origin),
+								matrix.transform(ray.direction));
+						sum += transformed.direction.x;
+					}
+					return (long) sum;
+				}
+			}.run();
+			new Benchmark(name + " rays (specialized)", count) {
+				@Override
+				protected long execute() {
+					double sum = 0;
+					for (Ray ray : rays)
+						sum += transformation.transform(ray).direction.x;
+					return (long) sum;
+				}
+			}.run();
+			new Benchmark(name + " normals (matrix)", count) {
+				@Override
+				protected long execute() {
+					double sum = 0;
+					for (Vector normal : vectors)
+						sum += normalMatrix.transform(normal).x;
+					return (long) sum;
+				}
+			}.run();
+			new Benchmark(name + " normals (specialized)", count) {
+				@Override
+				protected long execute() {
+					double sum = 0;
+					for (Vector normal : vectors)
+						sum += transformation.transformNormal(normal).x;
+					return (long) sum;
+				}
+			}.run();
+		}
+	}
+}
@@ -1,7 +1,10 @@
 package camera;
 
+import math.MutableRay;
 import math.Ray;
+import math.RayBatch;
 import sampling.Sample;
+import film.Tile;
 
 /**
  * An interface which allows the generation of rays in a three-dimensional
@@ -22,4 +25,64 @@ public interface Camera {
 	 * @return a new ray from the given sample.
 	 */
 	public Ray generateRay(Sample sample) throws NullPointerException;
+
+	/**
+	 * Generates a ray from the sample with the given coordinates and stores
+	 * it in the given mutable ray, such that the same ray can be reused for
+	 * all the samples.
+	 * 
+	 * Implementations should override this method to avoid allocating any
+	 * objects.
+	 * 
+	 * @param x
+	 *            x coordinate of the sample in the image.
+	 * @param y
+	 *            y coordinate of the sample in the image.
+	 * @param ray
+	 *            the ray in which the generated ray is stored.
+	 * @throws NullPointerException
+	 *             when the given ray is null.
+	 * @return the given ray.
+	 */
+	public default MutableRay generateRay(double x, double y, MutableRay ray)
+			throws NullPointerException {
+		if (ray == null)
+			throw new NullPointerException("the given ray is null!");
+		return ray.set(generateRay(new Sample(x, y)));
+	}
+
+	/**
+	 * Generates the rays through the centers of all the pixels of the given
+	 * tile in row order, and appends them with the interval [0, infinity) to
+	 * the given batch.
+	 * 
+	 * Implementations should override this method to share the computations
+	 * between the pixels of the same row and column.
+	 * 
+	 * @param tile
+	 *            the tile to generate the rays for.
+	 * @param rays
+	 *            the batch to which the rays are appended.
+	 * @throws NullPointerException
+	 *             when the given tile or batch is null.
+	 * @throws IllegalStateException
+	 *             when the rays of the tile do not fit in the batch.
+	 * @return the index of the ray through the first pixel in the batch.
+	 */
+	public default int generateRays(Tile tile, RayBatch rays)
+			throws NullPointerException, IllegalStateException {
+		if (tile == null)
+			throw new NullPointerException("the given tile is null!");
+		if (rays == null)
+			throw new NullPointerException("the given rays are null!");
+		if (tile.getWidth() * tile.getHeight() > rays.capacity - rays.size())
+			throw new IllegalStateException("the batch is full!");
+		int first = rays.size();
+		MutableRay ray = new MutableRay();
+		for (int y = tile.yStart; y < tile.yEnd; ++y)
+			for (int x = tile.xStart; x < tile.xEnd; ++x)
+				rays.add(generateRay(x + 0.5, y + 0.5, ray), 0,
+						Double.POSITIVE_INFINITY);
+		return first;
+	}
 }
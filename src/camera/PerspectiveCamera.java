@@ -1,10 +1,15 @@
 package camera;
 
+import java.util.Arrays;
+
+import math.MutableRay;
 import math.OrthonormalBasis;
 import math.Point;
 import math.Ray;
+import math.RayBatch;
 import math.Vector;
 import sampling.Sample;
+import film.Tile;
 
 /**
  * Implementation of a perspective camera.
@@ -150,4 +155,95 @@ public class PerspectiveCamera implements Camera {
 
 		return new Ray(origin, direction);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see camera.Camera#generateRay(double, double, math.MutableRay)
+	 */
+	@Override
+	public MutableRay generateRay(double x, double y, MutableRay ray)
+			throws NullPointerException {
+		if (ray == null)
+			throw new NullPointerException("the given ray is null!");
+		double u = width * (x * invxResolution - 0.5);
+		double v = height * (y * invyResolution - 0.5);
+
+		// the same order of operations as the immutable version
+		Vector bu = basis.u;
+		Vector bv = basis.v;
+		Vector bw = basis.w;
+		ray.origin.set(origin);
+		ray.direction.set(bu.x * u + bv.x * v - bw.x, bu.y * u + bv.y * v
+				- bw.y, bu.z * u + bv.z * v - bw.z);
+		return ray.update();
+	}
+
+	/**
+	 * Generates the rays of the whole tile at once, directly in the arrays of
+	 * the given batch, without allocating any objects.
+	 * 
+	 * The u terms of the columns and the v terms of the rows are computed
+	 * once per tile, such that the direction of a ray is the sum of the term
+	 * of its column, the term of its row and the view direction. This is the
+	 * same order of operations as {@link #generateRay(double, double,
+	 * MutableRay)}, hence the rays are identical. The terms are computed from
+	 * the pixel coordinates rather than accumulated incrementally, which
+	 * would let the rounding errors grow across the tile. The column terms
+	 * are kept in the slots of the inverse directions of the batch until
+	 * these are computed in a last pass.
+	 * 
+	 * @see camera.Camera#generateRays(film.Tile, math.RayBatch)
+	 */
+	@Override
+	public int generateRays(Tile tile, RayBatch rays)
+			throws NullPointerException, IllegalStateException {
+		if (tile == null)
+			throw new NullPointerException("the given tile is null!");
+		if (rays == null)
+			throw new NullPointerException("the given rays are null!");
+		int columns = tile.getWidth();
+		int count = columns * tile.getHeight();
+		int first = rays.reserve(count);
+		int end = first + count;
+		double[] dx = rays.dx, dy = rays.dy, dz = rays.dz;
+		double[] ix = rays.ix, iy = rays.iy, iz = rays.iz;
+		Vector bu = basis.u;
+		Vector bv = basis.v;
+		Vector bw = basis.w;
+
+		// the u terms of the columns
+		for (int c = 0; c < columns; ++c) {
+			double u = width * ((tile.xStart + c + 0.5) * invxResolution - 0.5);
+			ix[first + c] = bu.x * u;
+			iy[first + c] = bu.y * u;
+			iz[first + c] = bu.z * u;
+		}
+
+		// the directions of the rows from the v term of every row
+		for (int r = first, y = tile.yStart; r < end; r += columns, ++y) {
+			double v = height * ((y + 0.5) * invyResolution - 0.5);
+			double vx = bv.x * v;
+			double vy = bv.y * v;
+			double vz = bv.z * v;
+			for (int c = 0; c < columns; ++c) {
+				dx[r + c] = ix[first + c] + vx - bw.x;
+				dy[r + c] = iy[first + c] + vy - bw.y;
+				dz[r + c] = iz[first + c] + vz - bw.z;
+			}
+		}
+
+		// the common origin, the intervals and the inverse directions
+		Arrays.fill(rays.ox, first, end, origin.x);
+		Arrays.fill(rays.oy, first, end, origin.y);
+		Arrays.fill(rays.oz, first, end, origin.z);
+		Arrays.fill(rays.tMin, first, end, 0);
+		Arrays.fill(rays.tMax, first, end, Double.POSITIVE_INFINITY);
+		for (int i = first; i < end; ++i) {
+			ix[i] = 1.0 / dx[i];
+			iy[i] = 1.0 / dy[i];
+			iz[i] = 1.0 / dz[i];
+		}
+		return first;
+	}
 }
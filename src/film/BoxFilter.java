@@ -0,0 +1,43 @@
+package film;
+
+/**
+ * A box filter, which weighs all the pixels within its radius equally. With
+ * the default radius of half a pixel, a sample only contributes to the pixel
+ * which contains it.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class BoxFilter extends Filter {
+	
+	/**
+	 * Creates a new box filter with a radius of half a pixel.
+	 */
+	public BoxFilter() {
+		this(0.5);
+	}
+
+	/**
+	 * Creates a new box filter with the given radius.
+	 * 
+	 * @param radius
+	 *            the radius of the filter in pixels.
+	 * @throws IllegalArgumentException
+	 *             when the given radius is smaller than or equal to zero,
+	 *             infinite or NaN.
+	 */
+	public BoxFilter(double radius) throws IllegalArgumentException {
+		super(radius);
+		tabulate();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Filter#evaluate(double)
+	 */
+	@Override
+	public double evaluate(double x) {
+		return 1;
+	}
+}
@@ -0,0 +1,447 @@
+package film;
+
+/**
+ * The storage of the weighted sums of the pixels of a {@link FrameBuffer}.
+ * 
+ * The pixels are indexed in row order by default, i.e. the pixel at (x, y)
+ * has index y * xResolution + x, but a storage may order its pixels otherwise
+ * by overriding {@link #indexOf(int, int)}. A sample is accumulated in place by
+ * its index, without allocating any objects, while {@link #getPixel(int)}
+ * offers a {@link Pixel} view on a single index for the code which works with
+ * pixels.
+ * 
+ * A storage also records which of its tiles of {@link #TILE_SIZE} by
+ * {@link #TILE_SIZE} pixels have been finished by the renderer.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+abstract class Channels {
+	
+	/**
+	 * The base two logarithm of the width and height of the tiles.
+	 */
+	static final int TILE_SHIFT = 6;
+
+	/**
+	 * The width and height of the tiles whose completion is recorded.
+	 */
+	static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+	/**
+	 * The horizontal resolution of this storage.
+	 */
+	final int xResolution;
+
+	/**
+	 * The vertical resolution of this storage.
+	 */
+	final int yResolution;
+
+	/**
+	 * Whether this storage stores its sums in single precision.
+	 */
+	final boolean singlePrecision;
+
+	/**
+	 * The number of tiles in the horizontal and vertical direction.
+	 */
+	final int xTiles, yTiles;
+
+	/**
+	 * Whether the tiles in row order have been finished, which is unused
+	 * by the storages that record the completion themselves.
+	 */
+	private final boolean[] finished;
+
+	/**
+	 * Creates a new storage for the given number of black pixels.
+	 * 
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the sums are stored in single precision.
+	 */
+	Channels(int xResolution, int yResolution, boolean singlePrecision) {
+		this.xResolution = xResolution;
+		this.yResolution = yResolution;
+		this.singlePrecision = singlePrecision;
+		this.xTiles = (xResolution + TILE_SIZE - 1) >> TILE_SHIFT;
+		this.yTiles = (yResolution + TILE_SIZE - 1) >> TILE_SHIFT;
+		this.finished = new boolean[xTiles * yTiles];
+	}
+
+	/**
+	 * Returns the index of the pixel at the given coordinates, which lie
+	 * within this storage.
+	 * 
+	 * @param x
+	 *            the x coordinate.
+	 * @param y
+	 *            the y coordinate.
+	 * @return the index of the pixel at the given coordinates.
+	 */
+	int indexOf(int x, int y) {
+		return y * xResolution + x;
+	}
+
+	/**
+	 * Returns whether the tile with the given index in row order has been
+	 * finished.
+	 * 
+	 * @param tile
+	 *            the index of the tile.
+	 * @return whether the tile has been finished.
+	 */
+	boolean isFinished(int tile) {
+		return finished[tile];
+	}
+
+	/**
+	 * Records that the tile with the given index in row order has been
+	 * finished.
+	 * 
+	 * @param tile
+	 *            the index of the tile.
+	 */
+	void finish(int tile) {
+		finished[tile] = true;
+	}
+
+	/**
+	 * Writes the sums which have been accumulated so far to the underlying
+	 * storage device. Storages in memory have nothing to write.
+	 */
+	void flush() {
+	}
+
+	/**
+	 * Starts to merge the samples of the given tile, which change the pixels
+	 * within the given footprint, i.e. the tile together with its apron.
+	 * Together with {@link #commit()} and {@link #rollback()}, this allows a
+	 * storage on a disk to merge the samples of a tile and to record the tile
+	 * as finished in one atomic step, such that a crash cannot add them
+	 * twice. Storages in memory merge their tiles concurrently and do nothing.
+	 * 
+	 * @param tile
+	 *            the tile whose samples are merged.
+	 * @param xStart
+	 *            the first x coordinate of the footprint.
+	 * @param yStart
+	 *            the first y coordinate of the footprint.
+	 * @param xEnd
+	 *            the x coordinate after the footprint.
+	 * @param yEnd
+	 *            the y coordinate after the footprint.
+	 * @throws IllegalArgumentException
+	 *             when the footprint is too large to be merged atomically.
+	 */
+	void begin(Tile tile, int xStart, int yStart, int xEnd, int yEnd)
+			throws IllegalArgumentException {
+	}
+
+	/**
+	 * Completes the merge which has been started by
+	 * {@link #begin(Tile, int, int, int, int)}, once the samples have been
+	 * added and the tile has been recorded as finished.
+	 */
+	void commit() {
+	}
+
+	/**
+	 * Aborts the merge which has been started by
+	 * {@link #begin(Tile, int, int, int, int)}, and restores the pixels
+	 * within its footprint when the storage can.
+	 */
+	void rollback() {
+	}
+
+	/**
+	 * Returns whether the given tile covers the tile of this storage with the
+	 * given coordinates completely.
+	 * 
+	 * @param tile
+	 *            the tile.
+	 * @param x
+	 *            the horizontal coordinate of the tile of this storage.
+	 * @param y
+	 *            the vertical coordinate of the tile of this storage.
+	 * @return whether the given tile covers the tile of this storage.
+	 */
+	boolean covers(Tile tile, int x, int y) {
+		int xStart = x << TILE_SHIFT;
+		int yStart = y << TILE_SHIFT;
+		return tile.xStart <= xStart && tile.yStart <= yStart
+				&& tile.xEnd >= Math.min(xStart + TILE_SIZE, xResolution)
+				&& tile.yEnd >= Math.min(yStart + TILE_SIZE, yResolution);
+	}
+
+	/**
+	 * Returns the sum of the red color components of the pixel with the
+	 * given index.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @return the sum of the red color components.
+	 */
+	abstract double getRed(int index);
+
+	/**
+	 * Returns the sum of the green color components of the pixel with the
+	 * given index.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @return the sum of the green color components.
+	 */
+	abstract double getGreen(int index);
+
+	/**
+	 * Returns the sum of the blue color components of the pixel with the
+	 * given index.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @return the sum of the blue color components.
+	 */
+	abstract double getBlue(int index);
+
+	/**
+	 * Returns the sum of the weights of the pixel with the given index.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @return the sum of the weights.
+	 */
+	abstract double getWeight(int index);
+
+	/**
+	 * Replaces the sums of the pixel with the given index by the given sums,
+	 * which have been rounded to the precision of this storage.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @param red
+	 *            the sum of the red color components.
+	 * @param green
+	 *            the sum of the green color components.
+	 * @param blue
+	 *            the sum of the blue color components.
+	 * @param weight
+	 *            the sum of the weights.
+	 */
+	abstract void set(int index, double red, double green, double blue,
+			double weight);
+
+	/**
+	 * Rounds the given value to the precision in which this storage stores
+	 * its sums.
+	 * 
+	 * @param value
+	 *            the value to round.
+	 * @return the rounded value.
+	 */
+	abstract double round(double value);
+
+	/**
+	 * Adds the given color values to the pixel with the given index, weighted
+	 * by the given weight. The result is identical to
+	 * {@link Pixel#add(double, double, double, double)} on the pixel.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @param red
+	 *            the red color component (in radiance).
+	 * @param green
+	 *            the green color component (in radiance).
+	 * @param blue
+	 *            the blue color component (in radiance).
+	 * @param weight
+	 *            the weight for the color components.
+	 * @throws IllegalArgumentException
+	 *             when one of the weighted color components or one of the
+	 *             resulting sums is either infinite or NaN.
+	 */
+	void add(int index, double red, double green, double blue, double weight)
+			throws IllegalArgumentException {
+		red *= weight;
+		green *= weight;
+		blue *= weight;
+		Pixel.checkComponents(red, green, blue);
+		red = round(red + getRed(index));
+		green = round(green + getGreen(index));
+		blue = round(blue + getBlue(index));
+		Pixel.checkSums(red, green, blue);
+		set(index, red, green, blue, round(getWeight(index) + weight));
+	}
+
+	/**
+	 * Adds the given sums, which have been accumulated elsewhere, to the
+	 * pixel with the given index. No other thread may write to the pixel
+	 * concurrently.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @param red
+	 *            the sum of the weighted red color components.
+	 * @param green
+	 *            the sum of the weighted green color components.
+	 * @param blue
+	 *            the sum of the weighted blue color components.
+	 * @param weight
+	 *            the sum of the weights.
+	 * @throws IllegalArgumentException
+	 *             when one of the resulting sums is either infinite or NaN.
+	 */
+	void addSums(int index, double red, double green, double blue,
+			double weight) throws IllegalArgumentException {
+		red = round(red + getRed(index));
+		green = round(green + getGreen(index));
+		blue = round(blue + getBlue(index));
+		Pixel.checkSums(red, green, blue);
+		set(index, red, green, blue, round(getWeight(index) + weight));
+	}
+
+	/**
+	 * Adds the given sums, which have been accumulated elsewhere, to the
+	 * pixel with the given index, while other threads may add to the same
+	 * pixel. Every channel is updated by its own compare-and-set loop, such
+	 * that the threads do not lock, but a concurrent reader may observe a
+	 * pixel of which only some channels have been updated. The sums are
+	 * checked after they have been stored.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @param red
+	 *            the sum of the weighted red color components.
+	 * @param green
+	 *            the sum of the weighted green color components.
+	 * @param blue
+	 *            the sum of the weighted blue color components.
+	 * @param weight
+	 *            the sum of the weights.
+	 * @throws IllegalArgumentException
+	 *             when one of the resulting sums is either infinite or NaN.
+	 */
+	abstract void addSumsAtomically(int index, double red, double green,
+			double blue, double weight) throws IllegalArgumentException;
+
+	/**
+	 * Returns a pixel whose sums are those of the pixel with the given index
+	 * in this storage.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @return a view on the pixel with the given index.
+	 */
+	Pixel getPixel(int index) {
+		return new View(this, index);
+	}
+
+	/**
+	 * A pixel which reads and writes its sums in a storage, such that the
+	 * samples which are added through the view end up in the storage.
+	 * 
+	 * @author 	CGRG
+	 * @version 4.0.0
+	 */
+	private static final class View extends Pixel {
+		
+		/**
+		 * The storage of the sums.
+		 */
+		private final Channels channels;
+
+		/**
+		 * The index of the viewed pixel in the storage.
+		 */
+		private final int index;
+
+		/**
+		 * Creates a new view on the pixel with the given index in the given
+		 * storage.
+		 * 
+		 * @param channels
+		 *            the storage of the sums.
+		 * @param index
+		 *            the index of the viewed pixel.
+		 */
+		private View(Channels channels, int index) {
+			this.channels = channels;
+			this.index = index;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see film.Pixel#add(double, double, double, double)
+		 */
+		@Override
+		public void add(double red, double green, double blue, double weight)
+				throws IllegalArgumentException {
+			channels.add(index, red, green, blue, weight);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see film.Pixel#getRedSum()
+		 */
+		@Override
+		double getRedSum() {
+			return channels.getRed(index);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see film.Pixel#getGreenSum()
+		 */
+		@Override
+		double getGreenSum() {
+			return channels.getGreen(index);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see film.Pixel#getBlueSum()
+		 */
+		@Override
+		double getBlueSum() {
+			return channels.getBlue(index);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see film.Pixel#getWeightSum()
+		 */
+		@Override
+		double getWeightSum() {
+			return channels.getWeight(index);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see film.Pixel#setSums(double, double, double, double)
+		 */
+		@Override
+		void setSums(double red, double green, double blue, double weight) {
+			channels.set(index, red, green, blue, weight);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see film.Pixel#round(double)
+		 */
+		@Override
+		double round(double value) {
+			return channels.round(value);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package film;
+
+import java.util.Locale;
+
+/**
+ * A separable reconstruction filter, which weighs the contribution of a
+ * sample to the pixels whose centers lie within the radius of the filter
+ * around the sample. The weight of a pixel at the offset (x, y) from the
+ * sample is the product of the profile of the filter at x and at y.
+ * 
+ * The profile is tabulated at {@link #TABLE_SIZE} points in [0, radius] when
+ * the filter is constructed, such that splatting a sample costs a few table
+ * lookups instead of transcendental functions. The subclasses implement the
+ * profile in {@link #evaluate(double)} and call {@link #tabulate()} at the end
+ * of their constructors, once their parameters have been set.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public abstract class Filter {
+	
+	/**
+	 * The number of entries in the table of the profile.
+	 */
+	public static final int TABLE_SIZE = 256;
+
+	/**
+	 * The radius of this filter in pixels.
+	 */
+	public final double radius;
+
+	/**
+	 * The number of pixels around a tile in which the samples within the tile
+	 * are splatted, i.e. ceil(radius - 0.5).
+	 */
+	public final int apron;
+
+	/**
+	 * The number of table entries per pixel of distance.
+	 */
+	private final double scale;
+
+	/**
+	 * The profile at the midpoints of the intervals of the table.
+	 */
+	private final double[] table = new double[TABLE_SIZE];
+
+	/**
+	 * Creates a new filter with the given radius.
+	 * 
+	 * @param radius
+	 *            the radius of the filter in pixels.
+	 * @throws IllegalArgumentException
+	 *             when the given radius is smaller than or equal to zero,
+	 *             infinite or NaN.
+	 */
+	protected Filter(double radius) throws IllegalArgumentException {
+		if (!(radius > 0) || Double.isInfinite(radius))
+			throw new IllegalArgumentException(
+					"the radius of a filter must be positive and finite!");
+		this.radius = radius;
+		this.apron = (int) Math.ceil(radius - 0.5);
+		this.scale = TABLE_SIZE / radius;
+	}
+
+	/**
+	 * Evaluates the profile of this filter at the given offset from the
+	 * sample, which lies within the radius of this filter.
+	 * 
+	 * @param x
+	 *            the offset from the sample in pixels.
+	 * @return the profile of this filter at the given offset.
+	 */
+	public abstract double evaluate(double x);
+
+	/**
+	 * Tabulates the profile of this filter, which has to be called by the
+	 * constructors of the subclasses after setting their parameters.
+	 */
+	protected final void tabulate() {
+		for (int i = 0; i < TABLE_SIZE; ++i)
+			table[i] = evaluate((i + 0.5) / scale);
+	}
+
+	/**
+	 * Looks the profile of this filter up in the table at the given offset
+	 * from the sample.
+	 * 
+	 * @param x
+	 *            the offset from the sample in pixels.
+	 * @return the tabulated profile of this filter at the given offset, or
+	 *         zero when the offset lies outside the radius.
+	 */
+	public final double lookup(double x) {
+		x = Math.abs(x);
+		int i = (int) (x * scale);
+		if (i < TABLE_SIZE)
+			return table[i];
+		return x <= radius ? table[TABLE_SIZE - 1] : 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH, "[%s] radius %.3f",
+				getClass().getName(), radius);
+	}
+}
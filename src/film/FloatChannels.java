@@ -0,0 +1,167 @@
+package film;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A storage which keeps the sums of the pixels of a {@link FrameBuffer} in a
+ * single flat float array instead of in one object per pixel. Each pixel
+ * occupies 16 bytes, half of the memory of {@link DoubleChannels}.
+ * 
+ * The four channels (red, green, blue and weight) of a pixel are interleaved,
+ * such that a sample touches a single run of memory. With a separate array per
+ * channel, every row of a tile would touch four distant runs, which is
+ * measurably slower when the samples are accumulated tile by tile.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+final class FloatChannels extends Channels {
+	
+	/**
+	 * The handle for the atomic updates of the elements of the sums.
+	 */
+	private static final VarHandle SUMS = MethodHandles
+			.arrayElementVarHandle(float[].class);
+
+	/**
+	 * The interleaved sums of the red, green and blue color components and
+	 * of the weights of the pixels in row order.
+	 */
+	final float[] sums;
+
+	/**
+	 * Creates a new storage for the given number of black pixels.
+	 * 
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 */
+	FloatChannels(int xResolution, int yResolution) {
+		super(xResolution, yResolution, true);
+		this.sums = new float[4 * xResolution * yResolution];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getRed(int)
+	 */
+	@Override
+	double getRed(int index) {
+		return sums[4 * index];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getGreen(int)
+	 */
+	@Override
+	double getGreen(int index) {
+		return sums[4 * index + 1];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getBlue(int)
+	 */
+	@Override
+	double getBlue(int index) {
+		return sums[4 * index + 2];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getWeight(int)
+	 */
+	@Override
+	double getWeight(int index) {
+		return sums[4 * index + 3];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#set(int, double, double, double, double)
+	 */
+	@Override
+	void set(int index, double red, double green, double blue, double weight) {
+		sums[4 * index] = (float) red;
+		sums[4 * index + 1] = (float) green;
+		sums[4 * index + 2] = (float) blue;
+		sums[4 * index + 3] = (float) weight;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#round(double)
+	 */
+	@Override
+	double round(double value) {
+		return (float) value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#add(int, double, double, double, double)
+	 */
+	@Override
+	void add(int index, double red, double green, double blue, double weight)
+			throws IllegalArgumentException {
+		red *= weight;
+		green *= weight;
+		blue *= weight;
+		Pixel.checkComponents(red, green, blue);
+		int i = 4 * index;
+		red = (float) (red + sums[i]);
+		green = (float) (green + sums[i + 1]);
+		blue = (float) (blue + sums[i + 2]);
+		Pixel.checkSums(red, green, blue);
+		sums[i] = (float) red;
+		sums[i + 1] = (float) green;
+		sums[i + 2] = (float) blue;
+		sums[i + 3] += weight;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#addSumsAtomically(int, double, double, double,
+	 * double)
+	 */
+	@Override
+	void addSumsAtomically(int index, double red, double green, double blue,
+			double weight) throws IllegalArgumentException {
+		int i = 4 * index;
+		red = addAtomically(i, red);
+		green = addAtomically(i + 1, green);
+		blue = addAtomically(i + 2, blue);
+		addAtomically(i + 3, weight);
+		Pixel.checkSums(red, green, blue);
+	}
+
+	/**
+	 * Adds the given value to the element of the sums with the given index by
+	 * a compare-and-set loop.
+	 * 
+	 * @param i
+	 *            the index of the element.
+	 * @param value
+	 *            the value to add.
+	 * @return the new value of the element.
+	 */
+	private double addAtomically(int i, double value) {
+		float current, next;
+		do {
+			current = (float) SUMS.getVolatile(sums, i);
+			next = (float) (current + value);
+		} while (!SUMS.weakCompareAndSet(sums, i, current, next));
+		return next;
+	}
+}
@@ -0,0 +1,24 @@
+package film;
+
+/**
+ * The sums of a pixel in single precision, which are kept in one object per
+ * pixel by the single precision {@link ObjectChannels}. Unlike a
+ * {@link Pixel}, which stores its sums in double precision, this object
+ * carries no other fields than the four floats, and is returned to the
+ * users of the frame buffer through a view only.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+final class FloatPixel {
+	
+	/**
+	 * The sums of the color components of all the spectra.
+	 */
+	float red, green, blue;
+
+	/**
+	 * The sum of the weights.
+	 */
+	float weightSum;
+}
@@ -2,23 +2,65 @@ package film;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 
 /**
  * A wrapper for a two-dimensional array of pixels.
  * 
+ * By default the sums of the pixels are stored in a flat primitive array in
+ * which the channels (red, green, blue and weight) of a pixel are interleaved,
+ * and in which the samples are accumulated in place by
+ * {@link #add(int, int, double, double, double, double)}. The
+ * pixels returned by {@link #getPixel(int, int)} are then views on these
+ * arrays. The previous layout with one {@link Pixel} object per pixel can still
+ * be selected by {@link Layout#OBJECTS}.
+ * 
+ * Frames whose sums do not fit in the heap are stored in a memory-mapped file
+ * instead (see {@link #FrameBuffer(File, int, int, boolean)}), in which the
+ * pixels of a tile are contiguous. The file also records which tiles have
+ * been committed (see {@link #commit(TileBuffer)}), such that it holds the
+ * partial result of a render which has crashed and can be opened again by
+ * {@link #FrameBuffer(File)} to resume the render.
+ * 
  * @author 	CGRG
  * @version 4.0.0
  */
 public class FrameBuffer {
 	
 	/**
-	 * Two-dimensional array of pixels. The pixels are stored in row order. When
+	 * The layouts in which a frame buffer can store the sums of its pixels.
+	 */
+	public static enum Layout {
+		/**
+		 * One {@link Pixel} object per pixel, which costs an object header and
+		 * a reference per pixel on top of the sums.
+		 */
+		OBJECTS,
+
+		/**
+		 * A flat primitive array of the interleaved channels of the pixels,
+		 * such that the sums of neighboring pixels are contiguous in memory.
+		 */
+		ARRAYS,
+
+		/**
+		 * A memory-mapped file in which the pixels of a tile are contiguous,
+		 * such that only the tiles which are being rendered have to be
+		 * resident in memory.
+		 */
+		MAPPED
+	}
+
+	/**
+	 * The sums of the pixels. The pixels are stored in row order. When
 	 * iterating over the pixels, one should first iterate over the y
 	 * coordinates, followed by the x coordinates for optimal performance.
 	 */
-	private final Pixel[][] frameBuffer;
+	final Channels channels;
 
 	/**
 	 * The horizontal resolution of this frame buffer.
@@ -30,6 +72,17 @@ public class FrameBuffer {
 	 */
 	public final int yResolution;
 
+	/**
+	 * Whether the pixels of this frame buffer store their sums in single
+	 * precision.
+	 */
+	public final boolean singlePrecision;
+
+	/**
+	 * The layout in which this frame buffer stores the sums of its pixels.
+	 */
+	public final Layout layout;
+
 	/**
 	 * Creates a new black frame buffer with the given dimension initialized
 	 * with black pixels.
@@ -43,19 +96,228 @@ public class FrameBuffer {
 	 */
 	public FrameBuffer(int xResolution, int yResolution)
 			throws IllegalArgumentException {
+		this(xResolution, yResolution, false);
+	}
+
+	/**
+	 * Creates a new black frame buffer with the given dimension, whose pixels
+	 * store their sums in single or in double precision in a flat array.
+	 * 
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the pixels store their sums in single precision.
+	 * @throws IllegalArgumentException
+	 *             when either resolution is smaller than or equal to zero.
+	 */
+	public FrameBuffer(int xResolution, int yResolution,
+			boolean singlePrecision) throws IllegalArgumentException {
+		this(xResolution, yResolution, singlePrecision, Layout.ARRAYS);
+	}
+
+	/**
+	 * Creates a new black frame buffer with the given dimension, whose pixels
+	 * store their sums in single or in double precision in the given layout.
+	 * 
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the pixels store their sums in single precision.
+	 * @param layout
+	 *            the layout in which the sums are stored.
+	 * @throws IllegalArgumentException
+	 *             when either resolution is smaller than or equal to zero.
+	 * @throws IllegalArgumentException
+	 *             when the number of pixels exceeds the largest array.
+	 * @throws IllegalArgumentException
+	 *             when the given layout is {@link Layout#MAPPED}, which needs
+	 *             a file.
+	 * @throws NullPointerException
+	 *             when the given layout is null.
+	 */
+	public FrameBuffer(int xResolution, int yResolution,
+			boolean singlePrecision, Layout layout)
+			throws IllegalArgumentException, NullPointerException {
+		this(allocate(xResolution, yResolution, singlePrecision, layout),
+				layout);
+	}
+
+	/**
+	 * Creates a new black frame buffer with the given dimension in the given
+	 * file, which is overwritten when it exists. The sums of the pixels are
+	 * mapped in the file, such that the frame buffer does not occupy the heap.
+	 * 
+	 * @param file
+	 *            the file in which the sums are mapped.
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the pixels store their sums in single precision.
+	 * @throws NullPointerException
+	 *             when the given file is null.
+	 * @throws IllegalArgumentException
+	 *             when either resolution is smaller than or equal to zero.
+	 * @throws IllegalArgumentException
+	 *             when the frame buffer has too many pixels to be indexed.
+	 * @throws IOException
+	 *             when the file cannot be created or mapped.
+	 */
+	public FrameBuffer(File file, int xResolution, int yResolution,
+			boolean singlePrecision) throws NullPointerException,
+			IllegalArgumentException, IOException {
+		this(map(file, xResolution, yResolution, singlePrecision),
+				Layout.MAPPED);
+	}
+
+	/**
+	 * Opens the frame buffer in the given file, which has been created by
+	 * {@link #FrameBuffer(File, int, int, boolean)}, with the sums and the
+	 * finished tiles which it contains.
+	 * 
+	 * @param file
+	 *            the file in which the sums are mapped.
+	 * @throws NullPointerException
+	 *             when the given file is null.
+	 * @throws IOException
+	 *             when the file cannot be read or mapped, or when it does not
+	 *             contain a frame buffer.
+	 */
+	public FrameBuffer(File file) throws NullPointerException, IOException {
+		this(open(file), Layout.MAPPED);
+	}
+
+	/**
+	 * Creates a new frame buffer which stores its sums in the given storage.
+	 * 
+	 * @param channels
+	 *            the storage of the sums.
+	 * @param layout
+	 *            the layout of the storage.
+	 */
+	private FrameBuffer(Channels channels, Layout layout) {
+		this.xResolution = channels.xResolution;
+		this.yResolution = channels.yResolution;
+		this.singlePrecision = channels.singlePrecision;
+		this.layout = layout;
+		this.channels = channels;
+	}
+
+	/**
+	 * Allocates the storage of a black frame buffer on the heap.
+	 * 
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the pixels store their sums in single precision.
+	 * @param layout
+	 *            the layout in which the sums are stored.
+	 * @throws IllegalArgumentException
+	 *             when either resolution is smaller than or equal to zero.
+	 * @throws IllegalArgumentException
+	 *             when the number of pixels exceeds the largest array.
+	 * @throws IllegalArgumentException
+	 *             when the given layout is {@link Layout#MAPPED}.
+	 * @throws NullPointerException
+	 *             when the given layout is null.
+	 * @return the storage of the sums.
+	 */
+	private static Channels allocate(int xResolution, int yResolution,
+			boolean singlePrecision, Layout layout)
+			throws IllegalArgumentException, NullPointerException {
+		checkResolution(xResolution, yResolution);
+		if ((long) xResolution * yResolution > (Integer.MAX_VALUE - 8) / 4)
+			throw new IllegalArgumentException(
+					"the frame buffer has too many pixels!");
+		if (layout == null)
+			throw new NullPointerException("the given layout is null!");
+
+		if (layout == Layout.MAPPED)
+			throw new IllegalArgumentException(
+					"a mapped frame buffer needs a file!");
+		if (layout == Layout.OBJECTS)
+			return new ObjectChannels(xResolution, yResolution,
+					singlePrecision);
+		if (singlePrecision)
+			return new FloatChannels(xResolution, yResolution);
+		return new DoubleChannels(xResolution, yResolution);
+	}
+
+	/**
+	 * Creates the storage of a black frame buffer in the given file.
+	 * 
+	 * @param file
+	 *            the file in which the sums are mapped.
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the pixels store their sums in single precision.
+	 * @throws NullPointerException
+	 *             when the given file is null.
+	 * @throws IllegalArgumentException
+	 *             when either resolution is smaller than or equal to zero.
+	 * @throws IllegalArgumentException
+	 *             when the frame buffer has too many pixels to be indexed.
+	 * @throws IOException
+	 *             when the file cannot be created or mapped.
+	 * @return the storage of the sums.
+	 */
+	private static Channels map(File file, int xResolution, int yResolution,
+			boolean singlePrecision) throws NullPointerException,
+			IllegalArgumentException, IOException {
+		if (file == null)
+			throw new NullPointerException("the given file is null!");
+		checkResolution(xResolution, yResolution);
+		return MappedChannels.create(file, xResolution, yResolution,
+				singlePrecision);
+	}
+
+	/**
+	 * Opens the storage of the frame buffer in the given file.
+	 * 
+	 * @param file
+	 *            the file in which the sums are mapped.
+	 * @throws NullPointerException
+	 *             when the given file is null.
+	 * @throws IOException
+	 *             when the file cannot be read or mapped, or when it does not
+	 *             contain a frame buffer.
+	 * @return the storage of the sums.
+	 */
+	private static Channels open(File file) throws NullPointerException,
+			IOException {
+		if (file == null)
+			throw new NullPointerException("the given file is null!");
+		return MappedChannels.open(file);
+	}
+
+	/**
+	 * Checks the given resolution.
+	 * 
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @throws IllegalArgumentException
+	 *             when either resolution is smaller than or equal to zero.
+	 */
+	private static void checkResolution(int xResolution, int yResolution)
+			throws IllegalArgumentException {
 		if (xResolution <= 0)
 			throw new IllegalArgumentException(
 					"the horizontal resolution must be larger than zero!");
 		if (yResolution <= 0)
 			throw new IllegalArgumentException(
 					"the vertical resolution must be larger than zero!");
-		this.xResolution = xResolution;
-		this.yResolution = yResolution;
-		this.frameBuffer = new Pixel[yResolution][xResolution];
-
-		for (int y = 0; y < yResolution; ++y)
-			for (int x = 0; x < xResolution; ++x)
-				this.frameBuffer[y][x] = new Pixel();
 	}
 
 	/**
@@ -94,7 +356,182 @@ public class FrameBuffer {
 	 * @return the {@link Pixel} at the given coordinates.
 	 */
 	public Pixel getPixel(int x, int y) throws ArrayIndexOutOfBoundsException {
-		return frameBuffer[y][x];
+		return channels.getPixel(indexOf(x, y));
+	}
+
+	/**
+	 * Adds the given color values to the pixel at the given coordinates,
+	 * weighted by the given weight. The sums are accumulated in place without
+	 * allocating any objects, also not the view of {@link #getPixel(int, int)}.
+	 * 
+	 * @param x
+	 *            the x coordinate.
+	 * @param y
+	 *            the y coordinate.
+	 * @param red
+	 *            the red color component (in radiance).
+	 * @param green
+	 *            the green color component (in radiance).
+	 * @param blue
+	 *            the blue color component (in radiance).
+	 * @param weight
+	 *            the weight for the color components.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given coordinates lie outside this frame buffer.
+	 * @throws IllegalArgumentException
+	 *             when one of the weighted color components or one of the
+	 *             resulting sums is either infinite or NaN.
+	 */
+	public void add(int x, int y, double red, double green, double blue,
+			double weight) throws ArrayIndexOutOfBoundsException,
+			IllegalArgumentException {
+		channels.add(indexOf(x, y), red, green, blue, weight);
+	}
+
+	/**
+	 * Adds the given mutable spectrum with a weight of 1.0 to the pixel at the
+	 * given coordinates, without allocating any objects.
+	 * 
+	 * @param x
+	 *            the x coordinate.
+	 * @param y
+	 *            the y coordinate.
+	 * @param spectrum
+	 *            the spectrum to add.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given coordinates lie outside this frame buffer.
+	 * @throws IllegalArgumentException
+	 *             when one of the color components is either infinite or NaN.
+	 */
+	public void add(int x, int y, MutableSpectrum spectrum)
+			throws NullPointerException, ArrayIndexOutOfBoundsException,
+			IllegalArgumentException {
+		if (spectrum == null)
+			throw new NullPointerException("the given spectrum is null!");
+		channels.add(indexOf(x, y), spectrum.red, spectrum.green,
+				spectrum.blue, 1.0);
+	}
+
+	/**
+	 * Adds the samples which have been accumulated in the given tile buffer
+	 * to this frame buffer in one step.
+	 * 
+	 * The pixels of the tile which lie farther from its border than the width
+	 * of the apron belong to the tile alone and are added without any
+	 * synchronization. The other pixels of the tile and the pixels of its
+	 * apron are shared with the aprons of the neighboring tiles, and are
+	 * added atomically without locking. This requires that the tiles which
+	 * are merged concurrently do not overlap and have aprons of the same
+	 * width, and that their pixels are not written otherwise meanwhile. The
+	 * pixels of the apron which lie outside this frame buffer are discarded.
+	 * 
+	 * The samples are added pixel by pixel, such that a crash in a mapped
+	 * frame buffer can leave them added in part. A renderer which resumes its
+	 * render should therefore merge its tiles by {@link #commit(TileBuffer)}.
+	 * 
+	 * @param buffer
+	 *            the buffer of the tile which has been finished.
+	 * @throws NullPointerException
+	 *             when the given buffer is null.
+	 * @throws IllegalArgumentException
+	 *             when one of the resulting sums is either infinite or NaN.
+	 */
+	public void merge(TileBuffer buffer) throws NullPointerException,
+			IllegalArgumentException {
+		if (buffer == null)
+			throw new NullPointerException("the given buffer is null!");
+		Tile tile = buffer.tile;
+		int apron = buffer.apron;
+		double[] sums = buffer.sums;
+		int xStart = Math.max(buffer.xStart, 0);
+		int yStart = Math.max(buffer.yStart, 0);
+		int xEnd = Math.min(buffer.xStart + buffer.width, xResolution);
+		int yEnd = Math.min(buffer.yStart + buffer.height, yResolution);
+
+		for (int y = yStart; y < yEnd; ++y) {
+			boolean shared = y < tile.yStart + apron || y >= tile.yEnd - apron;
+			int i = 4 * ((y - buffer.yStart) * buffer.width + xStart
+					- buffer.xStart);
+			for (int x = xStart; x < xEnd; ++x, i += 4) {
+				double red = sums[i];
+				double green = sums[i + 1];
+				double blue = sums[i + 2];
+				double weight = sums[i + 3];
+
+				// the pixels without samples, mostly in the apron
+				if (red == 0 && green == 0 && blue == 0 && weight == 0)
+					continue;
+				int index = channels.indexOf(x, y);
+				if (shared || x < tile.xStart + apron
+						|| x >= tile.xEnd - apron)
+					channels.addSumsAtomically(index, red, green, blue, weight);
+				else
+					channels.addSums(index, red, green, blue, weight);
+			}
+		}
+	}
+
+	/**
+	 * Adds the samples which have been accumulated in the given tile buffer
+	 * to this frame buffer and records its tile as finished (see
+	 * {@link #merge(TileBuffer)} and {@link #finish(Tile)}), in one step.
+	 * 
+	 * In a mapped frame buffer, the tiles are committed one at a time. The
+	 * previous sums of the tile and its apron are written to a journal in the
+	 * file first, and the sums and the finished tile are written to the disk
+	 * before the journal is discarded. When the renderer or the operating
+	 * system crashes meanwhile, opening the file restores the previous sums
+	 * from the journal, such that the tile is neither finished nor added,
+	 * and resuming the render does not add its samples twice. When the
+	 * samples cannot be added, the previous sums are restored as well. In a
+	 * frame buffer on the heap, the tiles are committed concurrently.
+	 * 
+	 * @param buffer
+	 *            the buffer of the tile which has been finished.
+	 * @throws NullPointerException
+	 *             when the given buffer is null.
+	 * @throws IllegalArgumentException
+	 *             when one of the resulting sums is either infinite or NaN.
+	 * @throws IllegalArgumentException
+	 *             when the tile and its apron are too large to be committed
+	 *             to a mapped frame buffer in one step.
+	 */
+	public void commit(TileBuffer buffer) throws NullPointerException,
+			IllegalArgumentException {
+		if (buffer == null)
+			throw new NullPointerException("the given buffer is null!");
+		channels.begin(buffer.tile, Math.max(buffer.xStart, 0), Math.max(
+				buffer.yStart, 0), Math.min(buffer.xStart + buffer.width,
+				xResolution), Math.min(buffer.yStart + buffer.height,
+				yResolution));
+		try {
+			merge(buffer);
+		} catch (RuntimeException e) {
+			channels.rollback();
+			throw e;
+		}
+		finish(buffer.tile);
+		channels.commit();
+	}
+
+	/**
+	 * Returns the index of the pixel at the given coordinates in the storage.
+	 * 
+	 * @param x
+	 *            the x coordinate.
+	 * @param y
+	 *            the y coordinate.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given coordinates lie outside this frame buffer.
+	 * @return the index of the pixel at the given coordinates.
+	 */
+	private int indexOf(int x, int y) throws ArrayIndexOutOfBoundsException {
+		if (x < 0 || x >= xResolution || y < 0 || y >= yResolution)
+			throw new ArrayIndexOutOfBoundsException("the pixel (" + x + ", "
+					+ y + ") lies outside the frame buffer!");
+		return channels.indexOf(x, y);
 	}
 
 	/**
@@ -115,6 +552,66 @@ public class FrameBuffer {
 				.subdivide(width, height);
 	}
 
+	/**
+	 * Records that the given tile has been rendered completely. The tiles of
+	 * the storage are {@value Channels#TILE_SIZE} pixels wide and high, and
+	 * only the tiles of the storage which the given tile covers completely
+	 * are recorded. In a mapped frame buffer, the finished tiles are recorded
+	 * in the file, but only {@link #commit(TileBuffer)} writes them together
+	 * with the sums of the tile.
+	 * 
+	 * @param tile
+	 *            the tile which has been rendered.
+	 * @throws NullPointerException
+	 *             when the given tile is null.
+	 */
+	public void finish(Tile tile) throws NullPointerException {
+		if (tile == null)
+			throw new NullPointerException("the given tile is null!");
+		int shift = Channels.TILE_SHIFT;
+		int xLast = (Math.min(tile.xEnd, xResolution) - 1) >> shift;
+		int yLast = (Math.min(tile.yEnd, yResolution) - 1) >> shift;
+		for (int y = Math.max(tile.yStart, 0) >> shift; y <= yLast; ++y)
+			for (int x = Math.max(tile.xStart, 0) >> shift; x <= xLast; ++x)
+				if (channels.covers(tile, x, y))
+					channels.finish(y * channels.xTiles + x);
+	}
+
+	/**
+	 * Returns whether the given tile has been rendered completely, i.e.
+	 * whether all the tiles of the storage which it overlaps have been
+	 * finished. This allows to resume a render in a mapped frame buffer which
+	 * has been opened from its file.
+	 * 
+	 * @param tile
+	 *            the tile to check.
+	 * @throws NullPointerException
+	 *             when the given tile is null.
+	 * @return whether the given tile has been rendered completely.
+	 */
+	public boolean isFinished(Tile tile) throws NullPointerException {
+		if (tile == null)
+			throw new NullPointerException("the given tile is null!");
+		int shift = Channels.TILE_SHIFT;
+		int xLast = (Math.min(tile.xEnd, xResolution) - 1) >> shift;
+		int yLast = (Math.min(tile.yEnd, yResolution) - 1) >> shift;
+		for (int y = Math.max(tile.yStart, 0) >> shift; y <= yLast; ++y)
+			for (int x = Math.max(tile.xStart, 0) >> shift; x <= xLast; ++x)
+				if (!channels.isFinished(y * channels.xTiles + x))
+					return false;
+		return true;
+	}
+
+	/**
+	 * Writes the sums and the finished tiles of a mapped frame buffer to the
+	 * disk, such that they survive a crash of the operating system. Without
+	 * flushing, they survive a crash of the renderer only. A frame buffer on
+	 * the heap has nothing to write.
+	 */
+	public void flush() {
+		channels.flush();
+	}
+
 	/**
 	 * Converts this frame buffer object to a buffered image.
 	 * 
@@ -127,7 +624,8 @@ public class FrameBuffer {
 	 * given sensitivity. The radiance values are then divided by the given
 	 * sensitivity in order for all values to be within the range of [0,1].
 	 * Gamma correction is applied to these values before being multiplied and
-	 * rounded to the nearest integer in the range [0, 255].
+	 * rounded to the nearest integer in the range [0, 255]. The rows are
+	 * converted in parallel by a {@link ToneMapper}.
 	 * 
 	 * @param sensitivity
 	 *            the sensitivity value to apply to the radiance values stored
@@ -147,47 +645,44 @@ public class FrameBuffer {
 	 */
 	public BufferedImage toBufferedImage(double sensitivity, double gamma)
 			throws IllegalArgumentException {
-		if (sensitivity <= 0)
-			throw new IllegalArgumentException(
-					"the sensitivity must be larger than zero!");
-		if (Double.isInfinite(sensitivity))
-			throw new IllegalArgumentException(
-					"the sensitivity cannot be infinite!");
-		if (Double.isNaN(sensitivity))
-			throw new IllegalArgumentException("the sensitivity cannot be NaN!");
-
-		if (gamma <= 0)
-			throw new IllegalArgumentException(
-					"the gamma must be larger than zero!");
-		if (Double.isInfinite(gamma))
-			throw new IllegalArgumentException("the gamma cannot be infinite!");
-		if (Double.isNaN(gamma))
-			throw new IllegalArgumentException("the gamma cannot be NaN!");
-
-		double invSensitivity = 1.0 / sensitivity;
-		double invGamma = 1.0 / gamma;
+		ToneMapper mapper = new ToneMapper(sensitivity, gamma);
 
 		BufferedImage image = new BufferedImage(xResolution, yResolution,
 				BufferedImage.TYPE_INT_ARGB);
 
 		WritableRaster raster = image.getRaster();
 		DataBufferInt rasterBuffer = (DataBufferInt) raster.getDataBuffer();
-		int[] rasterData = rasterBuffer.getData();
-
-		for (int y = 0; y < yResolution; ++y) {
-			int yOffset = (yResolution - y - 1) * xResolution;
-
-			for (int x = 0; x < xResolution; ++x) {
-				Pixel pixel = getPixel(x, y);
-				RGBSpectrum spectrum = pixel.getSpectrum();
-
-				int rgb = spectrum.clamp(0, invSensitivity).scale(sensitivity)
-						.pow(invGamma).scale(255).toRGB();
-
-				rasterData[x + yOffset] = rgb;
-			}
-		}
+		mapper.map(this, rasterBuffer.getData());
 
 		return image;
 	}
+
+	/**
+	 * Returns an image of this {@link FrameBuffer} which is tone mapped on
+	 * demand, in bands of rows, in the same way as by
+	 * {@link #toBufferedImage(double, double)}.
+	 * 
+	 * Unlike a {@link BufferedImage}, the returned image does not store the
+	 * colors of all the pixels, such that it can be written by an image writer
+	 * even when this frame buffer is mapped in a file which is larger than the
+	 * heap. The image reflects the contents of this frame buffer at the time
+	 * its rows are read.
+	 * 
+	 * @param sensitivity
+	 *            the sensitivity value to apply to the radiance values stored
+	 *            in this {@link FrameBuffer}.
+	 * @param gamma
+	 *            the gamma correction to apply.
+	 * @throws IllegalArgumentException
+	 *             when either the given exposure or gamma is smaller than or
+	 *             equal to zero.
+	 * @throws IllegalArgumentException
+	 *             when either the given exposure or gamma is infinite or NaN.
+	 * @return an image of this {@link FrameBuffer} which is tone mapped on
+	 *         demand.
+	 */
+	public RenderedImage toRenderedImage(double sensitivity, double gamma)
+			throws IllegalArgumentException {
+		return new ToneMappedImage(this, new ToneMapper(sensitivity, gamma));
+	}
 }
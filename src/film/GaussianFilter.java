@@ -0,0 +1,65 @@
+package film;
+
+/**
+ * A Gaussian filter, which is shifted down by its value at the radius such
+ * that it falls off to zero at the radius.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class GaussianFilter extends Filter {
+	
+	/**
+	 * The falloff of the Gaussian, where a larger falloff gives a narrower
+	 * and sharper filter.
+	 */
+	public final double alpha;
+
+	/**
+	 * The value of the Gaussian at the radius.
+	 */
+	private final double offset;
+
+	/**
+	 * Creates a new Gaussian filter with a radius of 1.5 pixels and a falloff
+	 * of 2.
+	 */
+	public GaussianFilter() {
+		this(1.5, 2);
+	}
+
+	/**
+	 * Creates a new Gaussian filter with the given radius and falloff.
+	 * 
+	 * @param radius
+	 *            the radius of the filter in pixels.
+	 * @param alpha
+	 *            the falloff of the Gaussian.
+	 * @throws IllegalArgumentException
+	 *             when the given radius is smaller than or equal to zero,
+	 *             infinite or NaN.
+	 * @throws IllegalArgumentException
+	 *             when the given falloff is smaller than or equal to zero,
+	 *             infinite or NaN.
+	 */
+	public GaussianFilter(double radius, double alpha)
+			throws IllegalArgumentException {
+		super(radius);
+		if (!(alpha > 0) || Double.isInfinite(alpha))
+			throw new IllegalArgumentException(
+					"the falloff must be positive and finite!");
+		this.alpha = alpha;
+		this.offset = Math.exp(-alpha * radius * radius);
+		tabulate();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Filter#evaluate(double)
+	 */
+	@Override
+	public double evaluate(double x) {
+		return Math.max(0, Math.exp(-alpha * x * x) - offset);
+	}
+}
@@ -0,0 +1,110 @@
+package film;
+
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+
+/**
+ * The difference between two images of equal dimensions, which is used to
+ * verify the quality of an image against a reference image, such as an
+ * image rendered in single precision against the same image rendered in
+ * double precision.
+ * 
+ * The differences are measured per color component, in the 8-bit values of
+ * the images.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class ImageDifference {
+	
+	/**
+	 * The number of pixels of the images.
+	 */
+	public final int pixels;
+
+	/**
+	 * The number of pixels which differ in at least one color component.
+	 */
+	public final int differing;
+
+	/**
+	 * The largest absolute difference of a color component.
+	 */
+	public final int maximum;
+
+	/**
+	 * The mean absolute difference of the color components.
+	 */
+	public final double mean;
+
+	/**
+	 * The peak signal-to-noise ratio in decibels, which is infinite for
+	 * identical images.
+	 */
+	public final double psnr;
+
+	/**
+	 * Computes the difference between the given images.
+	 * 
+	 * @param reference
+	 *            the reference image.
+	 * @param image
+	 *            the image to compare with the reference image.
+	 * @throws NullPointerException
+	 *             when either image is null.
+	 * @throws IllegalArgumentException
+	 *             when the images have different dimensions.
+	 */
+	public ImageDifference(BufferedImage reference, BufferedImage image)
+			throws NullPointerException, IllegalArgumentException {
+		if (reference == null)
+			throw new NullPointerException("the reference image is null!");
+		if (image == null)
+			throw new NullPointerException("the given image is null!");
+		int width = reference.getWidth();
+		int height = reference.getHeight();
+		if (image.getWidth() != width || image.getHeight() != height)
+			throw new IllegalArgumentException(
+					"the images have different dimensions!");
+
+		int differing = 0;
+		int maximum = 0;
+		long sum = 0;
+		long squares = 0;
+		for (int y = 0; y < height; ++y)
+			for (int x = 0; x < width; ++x) {
+				int a = reference.getRGB(x, y);
+				int b = image.getRGB(x, y);
+				if ((a & 0xffffff) == (b & 0xffffff))
+					continue;
+				++differing;
+				for (int shift = 0; shift < 24; shift += 8) {
+					int d = Math.abs(((a >> shift) & 0xff)
+							- ((b >> shift) & 0xff));
+					maximum = Math.max(maximum, d);
+					sum += d;
+					squares += d * d;
+				}
+			}
+
+		int components = 3 * width * height;
+		this.pixels = width * height;
+		this.differing = differing;
+		this.maximum = maximum;
+		this.mean = (double) sum / components;
+		this.psnr = squares == 0 ? Double.POSITIVE_INFINITY : 10 * Math
+				.log10(255.0 * 255.0 * components / squares);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH, "%d of %d pixels differ, "
+				+ "maximum difference %d, mean difference %.4f, "
+				+ "PSNR %.2f dB", differing, pixels, maximum, mean, psnr);
+	}
+}
@@ -0,0 +1,62 @@
+package film;
+
+/**
+ * A Lanczos filter, i.e. a sinc which is windowed by the central lobe of a
+ * sinc which is stretched to the radius. The number of lobes equals the
+ * radius. The negative lobes sharpen the image, but may also give negative
+ * sums of weights in pixels with few samples.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class LanczosFilter extends Filter {
+	
+	/**
+	 * Creates a new Lanczos filter with a radius of two pixels.
+	 */
+	public LanczosFilter() {
+		this(2);
+	}
+
+	/**
+	 * Creates a new Lanczos filter with the given radius.
+	 * 
+	 * @param radius
+	 *            the radius of the filter in pixels.
+	 * @throws IllegalArgumentException
+	 *             when the given radius is smaller than or equal to zero,
+	 *             infinite or NaN.
+	 */
+	public LanczosFilter(double radius) throws IllegalArgumentException {
+		super(radius);
+		tabulate();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Filter#evaluate(double)
+	 */
+	@Override
+	public double evaluate(double x) {
+		x = Math.abs(x);
+		if (x >= radius)
+			return 0;
+		return sinc(x) * sinc(x / radius);
+	}
+
+	/**
+	 * Returns the normalized sinc of the given value, i.e.
+	 * sin(pi x) / (pi x).
+	 * 
+	 * @param x
+	 *            the value.
+	 * @return the normalized sinc of the given value.
+	 */
+	private static double sinc(double x) {
+		if (x < 1e-5)
+			return 1;
+		double t = Math.PI * x;
+		return Math.sin(t) / t;
+	}
+}
@@ -0,0 +1,637 @@
+package film;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A storage which keeps the sums of the pixels of a {@link FrameBuffer} in a
+ * memory-mapped file instead of on the heap, for frames whose sums do not fit
+ * in the heap (a frame of 40000 by 40000 pixels takes 25.6 GB in single
+ * precision).
+ * 
+ * The pixels of a tile of {@link #TILE_SIZE} by {@link #TILE_SIZE} pixels are
+ * stored contiguously, with the channels (red, green, blue and weight) of a
+ * pixel interleaved, and the tiles follow each other in row order. A tile
+ * therefore spans only a few pages of the file, such that only the pages of
+ * the tiles which are being rendered have to be resident, while the operating
+ * system writes the others back to the file and evicts them. The pages which
+ * are never written do not even occupy the disk, since the file is created
+ * sparse.
+ * 
+ * The file starts with a header, which describes the frame buffer in little
+ * endian integers (the magic number "CGFB", the version, the horizontal and
+ * vertical resolution, the size of the tiles and the number of bytes per
+ * channel) and the state of the journal, followed by a byte per tile which
+ * records whether the renderer has finished the tile. The sums start at the
+ * next page boundary. Since the operating system owns the written pages, the
+ * file holds the partial result when the renderer crashes, and it can be
+ * opened again to inspect or to resume the render. {@link #flush()} writes
+ * the pages to the disk, which also protects the result against a crash of
+ * the operating system.
+ * 
+ * The tiles are merged one at a time (see
+ * {@link #begin(Tile, int, int, int, int)}). The previous sums of the
+ * footprint of a tile are copied to the journal after the sums, and the
+ * journal is marked as valid in the header, before the samples are added.
+ * The journal is only discarded once the sums and the finished tile have
+ * been written to the disk, in that order. When the file is opened with a
+ * valid journal, a merge has been interrupted, and the previous sums are
+ * restored and its tile is marked as unfinished again.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+final class MappedChannels extends Channels {
+	
+	/**
+	 * The magic number at the start of the file, i.e. "CGFB" in little endian
+	 * order.
+	 */
+	static final int MAGIC = 0x42464743;
+
+	/**
+	 * The version of the layout of the file.
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * The handles for the atomic updates of the sums in double and in single
+	 * precision, which are aligned to their size in the mappings.
+	 */
+	private static final VarHandle DOUBLES = MethodHandles
+			.byteBufferViewVarHandle(double[].class, ByteOrder.LITTLE_ENDIAN),
+			FLOATS = MethodHandles.byteBufferViewVarHandle(float[].class,
+					ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * The offset in the header of the state of the journal, which is followed
+	 * by the coordinates of the tile and of the footprint of the merge which
+	 * it journals.
+	 */
+	private static final int JOURNAL = 24;
+
+	/**
+	 * The number of bytes of the header, before the finished tiles.
+	 */
+	private static final int HEADER = 64;
+
+	/**
+	 * The number of pixels which the journal can hold, i.e. the footprint of
+	 * a tile of {@link #TILE_SIZE} by {@link #TILE_SIZE} pixels with an apron
+	 * which is as wide as the tile.
+	 */
+	private static final int JOURNAL_SIZE = 9 << 2 * TILE_SHIFT;
+
+	/**
+	 * The size of a page, to which the start of the sums is aligned.
+	 */
+	private static final int PAGE = 4096;
+
+	/**
+	 * The base two logarithm of the number of bytes of a mapping, since a
+	 * single mapping cannot exceed 2 GB.
+	 */
+	private static final int CHUNK_SHIFT = 30;
+
+	/**
+	 * The number of bytes of a channel.
+	 */
+	private final int channelBytes;
+
+	/**
+	 * The base two logarithm of the number of bytes of a pixel.
+	 */
+	private final int pixelShift;
+
+	/**
+	 * The base two logarithm of the number of pixels per mapping.
+	 */
+	private final int chunkShift;
+
+	/**
+	 * The mask which selects the pixel within its mapping from an index.
+	 */
+	private final int chunkMask;
+
+	/**
+	 * The mapping of the header and the finished tiles.
+	 */
+	private final MappedByteBuffer header;
+
+	/**
+	 * The mappings of consecutive parts of the sums.
+	 */
+	private final MappedByteBuffer[] chunks;
+
+	/**
+	 * The mapping of the previous sums of the footprint of the tile which is
+	 * being merged.
+	 */
+	private final MappedByteBuffer journal;
+
+	/**
+	 * The lock which merges the tiles one at a time.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Maps the sums of a frame buffer with the given resolution in the given
+	 * file, which is either created or opened.
+	 * 
+	 * @param file
+	 *            the file in which the sums are mapped.
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the sums are stored in single precision.
+	 * @param create
+	 *            whether to create a new black frame buffer in the file.
+	 * @throws IllegalArgumentException
+	 *             when the frame buffer has too many pixels to be indexed.
+	 * @throws IOException
+	 *             when the file cannot be mapped, or when an existing file
+	 *             does not have the length of its frame buffer.
+	 */
+	private MappedChannels(RandomAccessFile file, int xResolution,
+			int yResolution, boolean singlePrecision, boolean create)
+			throws IllegalArgumentException, IOException {
+		super(xResolution, yResolution, singlePrecision);
+		long pixels = (long) xTiles * yTiles << 2 * TILE_SHIFT;
+		if (pixels > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(
+					"the frame buffer has too many pixels!");
+		this.channelBytes = singlePrecision ? 4 : 8;
+		this.pixelShift = singlePrecision ? 4 : 5;
+		this.chunkShift = CHUNK_SHIFT - pixelShift;
+		this.chunkMask = (1 << chunkShift) - 1;
+
+		long data = (HEADER + xTiles * yTiles + PAGE - 1) / PAGE * PAGE;
+		long sums = data + (pixels << pixelShift);
+		long length = sums + ((long) JOURNAL_SIZE << pixelShift);
+		if (create) {
+			// truncate the file first, such that it is sparse and black
+			file.setLength(0);
+			file.setLength(length);
+		} else if (file.length() != length)
+			throw new IOException(
+					"the file does not have the length of its frame buffer!");
+
+		FileChannel channel = file.getChannel();
+		header = channel.map(MapMode.READ_WRITE, 0, data);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		if (create) {
+			header.putInt(0, MAGIC);
+			header.putInt(4, VERSION);
+			header.putInt(8, xResolution);
+			header.putInt(12, yResolution);
+			header.putInt(16, TILE_SIZE);
+			header.putInt(20, channelBytes);
+		}
+
+		int count = (int) ((pixels + chunkMask) >> chunkShift);
+		chunks = new MappedByteBuffer[count];
+		for (int i = 0; i < chunks.length; ++i) {
+			long start = data + ((long) i << CHUNK_SHIFT);
+			chunks[i] = channel.map(MapMode.READ_WRITE, start,
+					Math.min(1L << CHUNK_SHIFT, sums - start));
+			chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+		}
+		journal = channel.map(MapMode.READ_WRITE, sums, length - sums);
+
+		// undo the merge which has been interrupted by a crash
+		if (header.getInt(JOURNAL) != 0) {
+			restore();
+			Tile tile = new Tile(header.getInt(JOURNAL + 4),
+					header.getInt(JOURNAL + 8), header.getInt(JOURNAL + 12),
+					header.getInt(JOURNAL + 16));
+			for (int y = tile.yStart >> TILE_SHIFT; y < yTiles
+					&& y << TILE_SHIFT < tile.yEnd; ++y)
+				for (int x = tile.xStart >> TILE_SHIFT; x < xTiles
+						&& x << TILE_SHIFT < tile.xEnd; ++x)
+					if (covers(tile, x, y))
+						header.put(HEADER + y * xTiles + x, (byte) 0);
+			flush();
+			header.putInt(JOURNAL, 0);
+			header.force();
+		}
+	}
+
+	/**
+	 * Creates a new black frame buffer with the given resolution in the given
+	 * file, which is overwritten when it exists.
+	 * 
+	 * @param file
+	 *            the file in which the sums are mapped.
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the sums are stored in single precision.
+	 * @throws IllegalArgumentException
+	 *             when the frame buffer has too many pixels to be indexed.
+	 * @throws IOException
+	 *             when the file cannot be created or mapped.
+	 * @return the storage which is mapped in the given file.
+	 */
+	static MappedChannels create(File file, int xResolution,
+			int yResolution, boolean singlePrecision)
+			throws IllegalArgumentException, IOException {
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		try {
+			return new MappedChannels(access, xResolution, yResolution,
+					singlePrecision, true);
+		} finally {
+			// the mappings remain valid after closing the file
+			access.close();
+		}
+	}
+
+	/**
+	 * Opens the frame buffer in the given file, which has been created by
+	 * {@link #create(File, int, int, boolean)}, together with its sums and
+	 * finished tiles.
+	 * 
+	 * @param file
+	 *            the file in which the sums are mapped.
+	 * @throws IOException
+	 *             when the file cannot be read or mapped, or when it does not
+	 *             contain a frame buffer of this version.
+	 * @return the storage which is mapped in the given file.
+	 */
+	static MappedChannels open(File file) throws IOException {
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER).order(
+					ByteOrder.LITTLE_ENDIAN);
+			FileChannel channel = access.getChannel();
+			while (buffer.hasRemaining()
+					&& channel.read(buffer, buffer.position()) >= 0)
+				;
+			if (buffer.hasRemaining() || buffer.getInt(0) != MAGIC)
+				throw new IOException("the file \"" + file
+						+ "\" does not contain a frame buffer!");
+			if (buffer.getInt(4) != VERSION)
+				throw new IOException("the version " + buffer.getInt(4)
+						+ " of the frame buffer is not supported!");
+			int xResolution = buffer.getInt(8);
+			int yResolution = buffer.getInt(12);
+			int channelBytes = buffer.getInt(20);
+			if (xResolution <= 0 || yResolution <= 0
+					|| buffer.getInt(16) != TILE_SIZE
+					|| (channelBytes != 4 && channelBytes != 8))
+				throw new IOException("the header of the frame buffer in \""
+						+ file + "\" is corrupt!");
+			return new MappedChannels(access, xResolution, yResolution,
+					channelBytes == 4, false);
+		} finally {
+			access.close();
+		}
+	}
+
+	/**
+	 * Returns the offset of the first channel of the pixel with the given
+	 * index in its mapping.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @return the offset of the pixel in its mapping.
+	 */
+	private int offsetOf(int index) {
+		return (index & chunkMask) << pixelShift;
+	}
+
+	/**
+	 * Returns the given channel of the pixel with the given index.
+	 * 
+	 * @param index
+	 *            the index of the pixel.
+	 * @param channel
+	 *            the channel (0 to 3 for red, green, blue and weight).
+	 * @return the sum in the given channel of the pixel.
+	 */
+	private double get(int index, int channel) {
+		ByteBuffer chunk = chunks[index >>> chunkShift];
+		int offset = offsetOf(index) + channel * channelBytes;
+		return singlePrecision ? chunk.getFloat(offset) : chunk
+				.getDouble(offset);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#indexOf(int, int)
+	 */
+	@Override
+	int indexOf(int x, int y) {
+		int tile = (y >> TILE_SHIFT) * xTiles + (x >> TILE_SHIFT);
+		return tile << 2 * TILE_SHIFT | (y & TILE_SIZE - 1) << TILE_SHIFT
+				| x & TILE_SIZE - 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getRed(int)
+	 */
+	@Override
+	double getRed(int index) {
+		return get(index, 0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getGreen(int)
+	 */
+	@Override
+	double getGreen(int index) {
+		return get(index, 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getBlue(int)
+	 */
+	@Override
+	double getBlue(int index) {
+		return get(index, 2);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getWeight(int)
+	 */
+	@Override
+	double getWeight(int index) {
+		return get(index, 3);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#set(int, double, double, double, double)
+	 */
+	@Override
+	void set(int index, double red, double green, double blue, double weight) {
+		ByteBuffer chunk = chunks[index >>> chunkShift];
+		int offset = offsetOf(index);
+		if (singlePrecision) {
+			chunk.putFloat(offset, (float) red);
+			chunk.putFloat(offset + 4, (float) green);
+			chunk.putFloat(offset + 8, (float) blue);
+			chunk.putFloat(offset + 12, (float) weight);
+		} else {
+			chunk.putDouble(offset, red);
+			chunk.putDouble(offset + 8, green);
+			chunk.putDouble(offset + 16, blue);
+			chunk.putDouble(offset + 24, weight);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#add(int, double, double, double, double)
+	 */
+	@Override
+	void add(int index, double red, double green, double blue, double weight)
+			throws IllegalArgumentException {
+		red *= weight;
+		green *= weight;
+		blue *= weight;
+		Pixel.checkComponents(red, green, blue);
+		ByteBuffer chunk = chunks[index >>> chunkShift];
+		int offset = offsetOf(index);
+		if (singlePrecision) {
+			red = (float) (red + chunk.getFloat(offset));
+			green = (float) (green + chunk.getFloat(offset + 4));
+			blue = (float) (blue + chunk.getFloat(offset + 8));
+			weight = (float) (weight + chunk.getFloat(offset + 12));
+		} else {
+			red += chunk.getDouble(offset);
+			green += chunk.getDouble(offset + 8);
+			blue += chunk.getDouble(offset + 16);
+			weight += chunk.getDouble(offset + 24);
+		}
+		Pixel.checkSums(red, green, blue);
+		set(index, red, green, blue, weight);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#addSumsAtomically(int, double, double, double,
+	 * double)
+	 */
+	@Override
+	void addSumsAtomically(int index, double red, double green, double blue,
+			double weight) throws IllegalArgumentException {
+		ByteBuffer chunk = chunks[index >>> chunkShift];
+		int offset = offsetOf(index);
+		red = addAtomically(chunk, offset, red);
+		green = addAtomically(chunk, offset + channelBytes, green);
+		blue = addAtomically(chunk, offset + 2 * channelBytes, blue);
+		addAtomically(chunk, offset + 3 * channelBytes, weight);
+		Pixel.checkSums(red, green, blue);
+	}
+
+	/**
+	 * Adds the given value to the sum at the given offset in the given
+	 * mapping by a compare-and-set loop.
+	 * 
+	 * @param chunk
+	 *            the mapping which contains the sum.
+	 * @param offset
+	 *            the offset of the sum in the mapping.
+	 * @param value
+	 *            the value to add.
+	 * @return the new value of the sum.
+	 */
+	private double addAtomically(ByteBuffer chunk, int offset, double value) {
+		if (singlePrecision) {
+			float current, next;
+			do {
+				current = (float) FLOATS.getVolatile(chunk, offset);
+				next = (float) (current + value);
+			} while (!FLOATS.weakCompareAndSet(chunk, offset, current, next));
+			return next;
+		}
+		double current, next;
+		do {
+			current = (double) DOUBLES.getVolatile(chunk, offset);
+			next = current + value;
+		} while (!DOUBLES.weakCompareAndSet(chunk, offset, current, next));
+		return next;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#round(double)
+	 */
+	@Override
+	double round(double value) {
+		return singlePrecision ? (float) value : value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#isFinished(int)
+	 */
+	@Override
+	boolean isFinished(int tile) {
+		return header.get(HEADER + tile) != 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#finish(int)
+	 */
+	@Override
+	void finish(int tile) {
+		header.put(HEADER + tile, (byte) 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#flush()
+	 */
+	@Override
+	void flush() {
+		for (MappedByteBuffer chunk : chunks)
+			chunk.force();
+		header.force();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#begin(film.Tile, int, int, int, int)
+	 */
+	@Override
+	void begin(Tile tile, int xStart, int yStart, int xEnd, int yEnd)
+			throws IllegalArgumentException {
+		if ((long) (xEnd - xStart) * (yEnd - yStart) > JOURNAL_SIZE)
+			throw new IllegalArgumentException(
+					"the tile is too large to be merged atomically!");
+		lock.lock();
+
+		// journal the previous sums of the footprint, before marking the
+		// journal as valid
+		int pixelBytes = 1 << pixelShift;
+		int offset = 0;
+		for (int y = yStart; y < yEnd; ++y)
+			for (int x = xStart; x < xEnd; ++x, offset += pixelBytes) {
+				int index = indexOf(x, y);
+				ByteBuffer chunk = chunks[index >>> chunkShift];
+				int source = offsetOf(index);
+				for (int b = 0; b < pixelBytes; b += 8)
+					journal.putLong(offset + b, chunk.getLong(source + b));
+			}
+		journal.force();
+		header.putInt(JOURNAL + 4, tile.xStart);
+		header.putInt(JOURNAL + 8, tile.yStart);
+		header.putInt(JOURNAL + 12, tile.xEnd);
+		header.putInt(JOURNAL + 16, tile.yEnd);
+		header.putInt(JOURNAL + 20, xStart);
+		header.putInt(JOURNAL + 24, yStart);
+		header.putInt(JOURNAL + 28, xEnd);
+		header.putInt(JOURNAL + 32, yEnd);
+		header.force();
+		header.putInt(JOURNAL, 1);
+		header.force();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#commit()
+	 */
+	@Override
+	void commit() {
+		try {
+			// write the sums and then the finished tile, before discarding
+			// the journal
+			forceFootprint();
+			header.force();
+			header.putInt(JOURNAL, 0);
+			header.force();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#rollback()
+	 */
+	@Override
+	void rollback() {
+		try {
+			restore();
+			forceFootprint();
+			header.putInt(JOURNAL, 0);
+			header.force();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Copies the previous sums of the footprint in the journal back.
+	 */
+	private void restore() {
+		int xStart = header.getInt(JOURNAL + 20);
+		int yStart = header.getInt(JOURNAL + 24);
+		int xEnd = header.getInt(JOURNAL + 28);
+		int yEnd = header.getInt(JOURNAL + 32);
+		int pixelBytes = 1 << pixelShift;
+		int offset = 0;
+		for (int y = yStart; y < yEnd; ++y)
+			for (int x = xStart; x < xEnd; ++x, offset += pixelBytes) {
+				int index = indexOf(x, y);
+				ByteBuffer chunk = chunks[index >>> chunkShift];
+				int target = offsetOf(index);
+				for (int b = 0; b < pixelBytes; b += 8)
+					chunk.putLong(target + b, journal.getLong(offset + b));
+			}
+	}
+
+	/**
+	 * Writes the tiles of this storage which the footprint in the journal
+	 * overlaps to the disk.
+	 */
+	private void forceFootprint() {
+		int xStart = header.getInt(JOURNAL + 20);
+		int yStart = header.getInt(JOURNAL + 24);
+		int xEnd = header.getInt(JOURNAL + 28);
+		int yEnd = header.getInt(JOURNAL + 32);
+		if (xStart >= xEnd || yStart >= yEnd)
+			return;
+		int length = 1 << 2 * TILE_SHIFT + pixelShift;
+		for (int y = yStart >> TILE_SHIFT; y <= (yEnd - 1) >> TILE_SHIFT; ++y)
+			for (int x = xStart >> TILE_SHIFT; x <= (xEnd - 1) >> TILE_SHIFT;
+					++x) {
+				int index = (y * xTiles + x) << 2 * TILE_SHIFT;
+				chunks[index >>> chunkShift].force(offsetOf(index), length);
+			}
+	}
+}
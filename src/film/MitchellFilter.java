@@ -0,0 +1,66 @@
+package film;
+
+/**
+ * The family of cubic filters of Mitchell and Netravali (Mitchell and
+ * Netravali, "Reconstruction Filters in Computer Graphics", 1988), which is
+ * parameterized by B and C. The recommended B = C = 1/3 balances ringing
+ * against blurring. The negative lobes sharpen the image, but may also give
+ * negative sums of weights in pixels with few samples.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class MitchellFilter extends Filter {
+	
+	/**
+	 * The parameters of the cubic.
+	 */
+	public final double b, c;
+
+	/**
+	 * Creates a new Mitchell filter with a radius of two pixels and
+	 * B = C = 1/3.
+	 */
+	public MitchellFilter() {
+		this(2, 1.0 / 3.0, 1.0 / 3.0);
+	}
+
+	/**
+	 * Creates a new Mitchell filter with the given radius and parameters.
+	 * 
+	 * @param radius
+	 *            the radius of the filter in pixels.
+	 * @param b
+	 *            the parameter B of the cubic.
+	 * @param c
+	 *            the parameter C of the cubic.
+	 * @throws IllegalArgumentException
+	 *             when the given radius is smaller than or equal to zero,
+	 *             infinite or NaN.
+	 */
+	public MitchellFilter(double radius, double b, double c)
+			throws IllegalArgumentException {
+		super(radius);
+		this.b = b;
+		this.c = c;
+		tabulate();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Filter#evaluate(double)
+	 */
+	@Override
+	public double evaluate(double x) {
+		// the cubic is defined on [-2, 2]
+		x = Math.abs(2 * x / radius);
+		if (x >= 2)
+			return 0;
+		if (x > 1)
+			return ((-b - 6 * c) * x * x * x + (6 * b + 30 * c) * x * x
+					+ (-12 * b - 48 * c) * x + (8 * b + 24 * c)) / 6;
+		return ((12 - 9 * b - 6 * c) * x * x * x
+				+ (-18 + 12 * b + 6 * c) * x * x + (6 - 2 * b)) / 6;
+	}
+}
@@ -0,0 +1,189 @@
+package film;
+
+import java.util.Locale;
+
+/**
+ * A spectrum storing a red, green and blue component with radiance as unit,
+ * which is modified in place.
+ * 
+ * In contrast to {@link RGBSpectrum}, the operations of this class do not
+ * allocate a new spectrum, such that the radiance of a sample can be
+ * accumulated without creating any objects. The components are not validated
+ * for every operation; they are validated when they are added to a pixel or
+ * converted to an {@link RGBSpectrum}.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class MutableSpectrum {
+	
+	/**
+	 * The red color component (in radiance).
+	 */
+	public double red;
+
+	/**
+	 * The green color component (in radiance).
+	 */
+	public double green;
+
+	/**
+	 * The blue color component (in radiance).
+	 */
+	public double blue;
+
+	/**
+	 * Creates a new black spectrum.
+	 */
+	public MutableSpectrum() {
+	}
+
+	/**
+	 * Creates a new mutable copy of the given spectrum.
+	 * 
+	 * @param spectrum
+	 *            the spectrum to copy.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 */
+	public MutableSpectrum(RGBSpectrum spectrum) throws NullPointerException {
+		set(spectrum);
+	}
+
+	/**
+	 * Sets the color components of this spectrum.
+	 * 
+	 * @param red
+	 *            the red color component (in radiance).
+	 * @param green
+	 *            the green color component (in radiance).
+	 * @param blue
+	 *            the blue color component (in radiance).
+	 * @return this spectrum.
+	 */
+	public MutableSpectrum set(double red, double green, double blue) {
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		return this;
+	}
+
+	/**
+	 * Sets the color components of this spectrum to those of the given
+	 * spectrum.
+	 * 
+	 * @param spectrum
+	 *            the spectrum to copy.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @return this spectrum.
+	 */
+	public MutableSpectrum set(RGBSpectrum spectrum)
+			throws NullPointerException {
+		return set(spectrum.red, spectrum.green, spectrum.blue);
+	}
+
+	/**
+	 * Sets all the color components of this spectrum to zero.
+	 * 
+	 * @return this spectrum.
+	 */
+	public MutableSpectrum clear() {
+		return set(0, 0, 0);
+	}
+
+	/**
+	 * Adds the given color components to this spectrum.
+	 * 
+	 * @param red
+	 *            the red color component to add.
+	 * @param green
+	 *            the green color component to add.
+	 * @param blue
+	 *            the blue color component to add.
+	 * @return this spectrum.
+	 */
+	public MutableSpectrum add(double red, double green, double blue) {
+		return set(this.red + red, this.green + green, this.blue + blue);
+	}
+
+	/**
+	 * Adds the given spectrum to this spectrum.
+	 * 
+	 * @param spectrum
+	 *            the spectrum to add.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @return this spectrum.
+	 */
+	public MutableSpectrum add(MutableSpectrum spectrum)
+			throws NullPointerException {
+		return add(spectrum.red, spectrum.green, spectrum.blue);
+	}
+
+	/**
+	 * Adds the given spectrum scaled by the given scalar to this spectrum.
+	 * 
+	 * @param scalar
+	 *            the scalar to scale the given spectrum with.
+	 * @param spectrum
+	 *            the spectrum to add.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @return this spectrum.
+	 */
+	public MutableSpectrum add(double scalar, MutableSpectrum spectrum)
+			throws NullPointerException {
+		return add(scalar * spectrum.red, scalar * spectrum.green, scalar
+				* spectrum.blue);
+	}
+
+	/**
+	 * Scales this spectrum by the given scalar.
+	 * 
+	 * @param scalar
+	 *            the scalar to scale with.
+	 * @return this spectrum.
+	 */
+	public MutableSpectrum scale(double scalar) {
+		return set(scalar * red, scalar * green, scalar * blue);
+	}
+
+	/**
+	 * Multiplies the components of this spectrum with those of the given
+	 * spectrum.
+	 * 
+	 * @param spectrum
+	 *            the spectrum to multiply with.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @return this spectrum.
+	 */
+	public MutableSpectrum multiply(MutableSpectrum spectrum)
+			throws NullPointerException {
+		return set(red * spectrum.red, green * spectrum.green, blue
+				* spectrum.blue);
+	}
+
+	/**
+	 * Returns an immutable copy of this spectrum.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             when one of the color components is infinite or not a number.
+	 * @return an immutable copy of this spectrum.
+	 */
+	public RGBSpectrum toSpectrum() throws IllegalArgumentException {
+		return new RGBSpectrum(red, green, blue);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH, "[%s]: (%.6f, %.6f, %.6f)",
+				getClass().getName(), red, green, blue);
+	}
+}
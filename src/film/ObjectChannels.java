@@ -0,0 +1,168 @@
+package film;
+
+/**
+ * A storage which keeps the sums of the pixels of a {@link FrameBuffer} in one
+ * object per pixel, which was the only layout of a frame buffer before the
+ * channel arrays. Besides the sums, every pixel pays for an object header and
+ * a reference, and the pixels are scattered over the heap. It is kept to
+ * compare the layouts against each other.
+ * 
+ * In double precision, the objects are the {@link Pixel}s themselves. In
+ * single precision, they are {@link FloatPixel}s, which are returned through
+ * views.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+final class ObjectChannels extends Channels {
+	
+	/**
+	 * The pixels in row order in double precision, or null in single
+	 * precision.
+	 */
+	private final Pixel[] pixels;
+
+	/**
+	 * The pixels in row order in single precision, or null in double
+	 * precision.
+	 */
+	private final FloatPixel[] floats;
+
+	/**
+	 * Creates a new storage for the given number of black pixels.
+	 * 
+	 * @param xResolution
+	 *            the horizontal resolution.
+	 * @param yResolution
+	 *            the vertical resolution.
+	 * @param singlePrecision
+	 *            whether the pixels store their sums in single precision.
+	 */
+	ObjectChannels(int xResolution, int yResolution, boolean singlePrecision) {
+		super(xResolution, yResolution, singlePrecision);
+		int size = xResolution * yResolution;
+		if (singlePrecision) {
+			this.pixels = null;
+			this.floats = new FloatPixel[size];
+			for (int i = 0; i < size; ++i)
+				floats[i] = new FloatPixel();
+		} else {
+			this.pixels = new Pixel[size];
+			this.floats = null;
+			for (int i = 0; i < size; ++i)
+				pixels[i] = new Pixel();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getRed(int)
+	 */
+	@Override
+	double getRed(int index) {
+		return singlePrecision ? floats[index].red : pixels[index]
+				.getRedSum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getGreen(int)
+	 */
+	@Override
+	double getGreen(int index) {
+		return singlePrecision ? floats[index].green : pixels[index]
+				.getGreenSum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getBlue(int)
+	 */
+	@Override
+	double getBlue(int index) {
+		return singlePrecision ? floats[index].blue : pixels[index]
+				.getBlueSum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getWeight(int)
+	 */
+	@Override
+	double getWeight(int index) {
+		return singlePrecision ? floats[index].weightSum : pixels[index]
+				.getWeightSum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#set(int, double, double, double, double)
+	 */
+	@Override
+	void set(int index, double red, double green, double blue, double weight) {
+		if (singlePrecision) {
+			FloatPixel pixel = floats[index];
+			pixel.red = (float) red;
+			pixel.green = (float) green;
+			pixel.blue = (float) blue;
+			pixel.weightSum = (float) weight;
+		} else
+			pixels[index].setSums(red, green, blue, weight);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#round(double)
+	 */
+	@Override
+	double round(double value) {
+		return singlePrecision ? (float) value : value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#add(int, double, double, double, double)
+	 */
+	@Override
+	void add(int index, double red, double green, double blue, double weight)
+			throws IllegalArgumentException {
+		if (singlePrecision)
+			super.add(index, red, green, blue, weight);
+		else
+			pixels[index].add(red, green, blue, weight);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#addSumsAtomically(int, double, double, double,
+	 * double)
+	 */
+	@Override
+	void addSumsAtomically(int index, double red, double green, double blue,
+			double weight) throws IllegalArgumentException {
+		// the fields of the pixel objects cannot be updated atomically, such
+		// that this layout locks the pixel instead
+		Object pixel = singlePrecision ? floats[index] : pixels[index];
+		synchronized (pixel) {
+			addSums(index, red, green, blue, weight);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Channels#getPixel(int)
+	 */
+	@Override
+	Pixel getPixel(int index) {
+		return singlePrecision ? super.getPixel(index) : pixels[index];
+	}
+}
@@ -5,26 +5,99 @@ import java.util.Locale;
 /**
  * A pixel which stores a weighted sum of spectra.
  * 
+ * The sum is accumulated in place in double precision, such that adding a
+ * sample to a pixel does not allocate any objects. The pixels which are
+ * returned by a {@link FrameBuffer} may also be views on the storage in which
+ * the frame buffer keeps its sums, which override the accessors of the sums
+ * within this package.
+ * 
  * @author 	CGRG
  * @version 4.0.0
  */
 public class Pixel {
 	
 	/**
-	 * The sum of all the spectra.
+	 * The sums of the color components of all the spectra.
 	 */
-	private RGBSpectrum color;
+	private double red, green, blue;
 
 	/**
 	 * The sum of the weights.
 	 */
-	private double weightSum = 0;
+	private double weightSum;
 
 	/**
 	 * Creates a new black pixel.
 	 */
 	public Pixel() {
-		this.color = RGBSpectrum.BLACK;
+	}
+
+	/**
+	 * Returns the sum of the red color components of all the spectra.
+	 * 
+	 * @return the sum of the red color components.
+	 */
+	double getRedSum() {
+		return red;
+	}
+
+	/**
+	 * Returns the sum of the green color components of all the spectra.
+	 * 
+	 * @return the sum of the green color components.
+	 */
+	double getGreenSum() {
+		return green;
+	}
+
+	/**
+	 * Returns the sum of the blue color components of all the spectra.
+	 * 
+	 * @return the sum of the blue color components.
+	 */
+	double getBlueSum() {
+		return blue;
+	}
+
+	/**
+	 * Returns the sum of the weights of all the spectra.
+	 * 
+	 * @return the sum of the weights.
+	 */
+	double getWeightSum() {
+		return weightSum;
+	}
+
+	/**
+	 * Replaces the sums of this pixel by the given sums, which have been
+	 * rounded to the precision of this pixel.
+	 * 
+	 * @param red
+	 *            the sum of the red color components.
+	 * @param green
+	 *            the sum of the green color components.
+	 * @param blue
+	 *            the sum of the blue color components.
+	 * @param weight
+	 *            the sum of the weights.
+	 */
+	void setSums(double red, double green, double blue, double weight) {
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.weightSum = weight;
+	}
+
+	/**
+	 * Rounds the given value to the precision in which this pixel stores its
+	 * sums.
+	 * 
+	 * @param value
+	 *            the value to round.
+	 * @return the rounded value.
+	 */
+	double round(double value) {
+		return value;
 	}
 
 	/**
@@ -45,8 +118,15 @@ public class Pixel {
 	 */
 	public void add(double red, double green, double blue, double weight)
 			throws IllegalArgumentException {
-		this.color = color.add(red * weight, green * weight, blue * weight);
-		this.weightSum += weight;
+		red *= weight;
+		green *= weight;
+		blue *= weight;
+		checkComponents(red, green, blue);
+		red = round(red + getRedSum());
+		green = round(green + getGreenSum());
+		blue = round(blue + getBlueSum());
+		checkSums(red, green, blue);
+		setSums(red, green, blue, round(getWeightSum() + weight));
 	}
 
 	/**
@@ -101,15 +181,150 @@ public class Pixel {
 		add(spectrum.red, spectrum.green, spectrum.blue);
 	}
 
+	/**
+	 * Adds the given mutable spectrum to this pixel weighted by the given
+	 * weight parameter.
+	 * 
+	 * @param spectrum
+	 *            the spectrum to add to this pixel.
+	 * @param weight
+	 *            the weight for the color components.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @throws IllegalArgumentException
+	 *             when one of the weighted color components is either infinite
+	 *             or NaN.
+	 */
+	public void add(MutableSpectrum spectrum, double weight)
+			throws NullPointerException, IllegalArgumentException {
+		if (spectrum == null)
+			throw new NullPointerException("the given spectrum is null!");
+		add(spectrum.red, spectrum.green, spectrum.blue, weight);
+	}
+
+	/**
+	 * Adds the given mutable spectrum to this pixel.
+	 * 
+	 * @param spectrum
+	 *            the spectrum to add to this pixel.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @throws IllegalArgumentException
+	 *             when one of the color components is either infinite or NaN.
+	 */
+	public void add(MutableSpectrum spectrum) throws NullPointerException,
+			IllegalArgumentException {
+		if (spectrum == null)
+			throw new NullPointerException("the given spectrum is null!");
+		add(spectrum.red, spectrum.green, spectrum.blue);
+	}
+
 	/**
 	 * Returns the spectrum of this pixel.
 	 * 
+	 * The negative lobes of a filter can leave the sum of the weights of a
+	 * pixel with few samples at or below zero, which would flip the sign of
+	 * its color or blow it up. Such a pixel is black, and the color components
+	 * of the other pixels are clamped to zero, as in pbrt.
+	 * 
 	 * @return the spectrum of this pixel.
 	 */
 	public RGBSpectrum getSpectrum() {
-		if (weightSum == 0)
+		double weightSum = getWeightSum();
+		if (weightSum <= 0)
 			return RGBSpectrum.BLACK;
-		return color.divide(weightSum);
+		double scalar = 1.0 / weightSum;
+		return new RGBSpectrum(Math.max(scalar * getRedSum(), 0), Math.max(
+				scalar * getGreenSum(), 0), Math.max(scalar * getBlueSum(), 0));
+	}
+
+	/**
+	 * Stores the spectrum of this pixel in the given mutable spectrum,
+	 * without allocating any objects. Like {@link #getSpectrum()}, a pixel
+	 * whose sum of weights is not positive is black, and the color
+	 * components are clamped to zero.
+	 * 
+	 * @param spectrum
+	 *            the spectrum in which the spectrum of this pixel is stored.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @return the given spectrum.
+	 */
+	public MutableSpectrum getSpectrum(MutableSpectrum spectrum)
+			throws NullPointerException {
+		if (spectrum == null)
+			throw new NullPointerException("the given spectrum is null!");
+		double weightSum = getWeightSum();
+		if (weightSum <= 0)
+			return spectrum.clear();
+		double scalar = 1.0 / weightSum;
+		return spectrum.set(Math.max(scalar * getRedSum(), 0), Math.max(
+				scalar * getGreenSum(), 0), Math.max(scalar * getBlueSum(), 0));
+	}
+
+	/**
+	 * Returns whether the given value is a valid color component, i.e.
+	 * whether it is neither infinite nor NaN.
+	 * 
+	 * @param value
+	 *            the value to check.
+	 * @return true when the given value is a valid color component.
+	 */
+	private static boolean isValid(double value) {
+		return !Double.isInfinite(value) && !Double.isNaN(value);
+	}
+
+	/**
+	 * Checks whether the given weighted color components of a sample are
+	 * valid numbers.
+	 * 
+	 * @param red
+	 *            the weighted red color component.
+	 * @param green
+	 *            the weighted green color component.
+	 * @param blue
+	 *            the weighted blue color component.
+	 * @throws IllegalArgumentException
+	 *             when one of the given color components is either infinite
+	 *             or NaN.
+	 */
+	static void checkComponents(double red, double green, double blue)
+			throws IllegalArgumentException {
+		if (!isValid(red))
+			throw new IllegalArgumentException(
+					"the given red color component is not a valid number!");
+		if (!isValid(green))
+			throw new IllegalArgumentException(
+					"the given green color component is not a valid number!");
+		if (!isValid(blue))
+			throw new IllegalArgumentException(
+					"the given blue color component is not a valid number!");
+	}
+
+	/**
+	 * Checks whether the given accumulated sums of the color components are
+	 * valid numbers.
+	 * 
+	 * @param red
+	 *            the sum of the red color components.
+	 * @param green
+	 *            the sum of the green color components.
+	 * @param blue
+	 *            the sum of the blue color components.
+	 * @throws IllegalArgumentException
+	 *             when one of the given sums is either infinite or NaN.
+	 */
+	static void checkSums(double red, double green, double blue)
+			throws IllegalArgumentException {
+		if (!isValid(red))
+			throw new IllegalArgumentException(
+					"the red component is not a valid number! " + red);
+		if (!isValid(green))
+			throw new IllegalArgumentException(
+					"the green component is not a valid number!" + green);
+		if (!isValid(blue))
+			throw new IllegalArgumentException(
+					"the blue component is not a valid number!" + blue);
 	}
 
 	/*
@@ -0,0 +1,42 @@
+package film;
+
+/**
+ * A tent filter, whose weight falls off linearly from the sample to zero at
+ * its radius.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class TentFilter extends Filter {
+	
+	/**
+	 * Creates a new tent filter with a radius of one pixel.
+	 */
+	public TentFilter() {
+		this(1);
+	}
+
+	/**
+	 * Creates a new tent filter with the given radius.
+	 * 
+	 * @param radius
+	 *            the radius of the filter in pixels.
+	 * @throws IllegalArgumentException
+	 *             when the given radius is smaller than or equal to zero,
+	 *             infinite or NaN.
+	 */
+	public TentFilter(double radius) throws IllegalArgumentException {
+		super(radius);
+		tabulate();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see film.Filter#evaluate(double)
+	 */
+	@Override
+	public double evaluate(double x) {
+		return Math.max(0, radius - Math.abs(x));
+	}
+}
@@ -0,0 +1,325 @@
+package film;
+
+import java.util.Arrays;
+
+/**
+ * A private accumulation buffer for the samples of a single tile, which is
+ * merged into a {@link FrameBuffer} in one step when the tile has been
+ * finished (see {@link FrameBuffer#merge(TileBuffer)}).
+ * 
+ * The buffer is padded with an apron of pixels around the tile, in which the
+ * samples near the border of the tile are splatted by a reconstruction filter
+ * which is wider than a pixel. The apron of a tile overlaps the neighboring
+ * tiles, which are rendered by other threads. Since every thread accumulates
+ * in its own buffer, the threads never write to the same cache lines while
+ * rendering, and only the pixels within the width of the apron from the
+ * border of the tile have to be merged atomically.
+ * 
+ * A buffer which has been created for a reconstruction filter splats the
+ * samples at their positions with the weights of the filter (see
+ * {@link #splat(double, double, double, double, double)}), while
+ * {@link #add(int, int, double, double, double, double)} adds a sample to a
+ * single pixel as before.
+ * 
+ * The sums are stored in double precision, with the channels (red, green,
+ * blue and weight) of a pixel interleaved.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class TileBuffer {
+	
+	/**
+	 * The tile whose samples are accumulated.
+	 */
+	public final Tile tile;
+
+	/**
+	 * The width of the apron around the tile in pixels.
+	 */
+	public final int apron;
+
+	/**
+	 * The reconstruction filter with which the samples are splatted, or null
+	 * when the samples are added to single pixels only.
+	 */
+	public final Filter filter;
+
+	/**
+	 * The coordinates of the first pixel of the apron.
+	 */
+	final int xStart, yStart;
+
+	/**
+	 * The width and height of the tile together with its apron.
+	 */
+	final int width, height;
+
+	/**
+	 * The interleaved sums of the red, green and blue color components and
+	 * of the weights of the pixels in row order.
+	 */
+	final double[] sums;
+
+	/**
+	 * The weights of the filter for the columns and rows of a splat.
+	 */
+	private final double[] columnWeights, rowWeights;
+
+	/**
+	 * Creates a new black buffer for the given tile with an apron of the given
+	 * width.
+	 * 
+	 * @param tile
+	 *            the tile whose samples are accumulated.
+	 * @param apron
+	 *            the width of the apron around the tile in pixels.
+	 * @throws NullPointerException
+	 *             when the given tile is null.
+	 * @throws IllegalArgumentException
+	 *             when the given apron is smaller than zero.
+	 */
+	public TileBuffer(Tile tile, int apron) throws NullPointerException,
+			IllegalArgumentException {
+		this(tile, apron, null);
+	}
+
+	/**
+	 * Creates a new black buffer for the given tile, in which the samples are
+	 * splatted with the given filter. The apron is as wide as the pixels
+	 * which the samples within the tile reach (see {@link Filter#apron}).
+	 * 
+	 * @param tile
+	 *            the tile whose samples are accumulated.
+	 * @param filter
+	 *            the reconstruction filter.
+	 * @throws NullPointerException
+	 *             when the given tile is null.
+	 * @throws NullPointerException
+	 *             when the given filter is null.
+	 */
+	public TileBuffer(Tile tile, Filter filter) throws NullPointerException {
+		this(tile, apronOf(filter), filter);
+	}
+
+	/**
+	 * Creates a new black buffer for the given tile with an apron of the given
+	 * width, in which the samples are splatted with the given filter.
+	 * 
+	 * @param tile
+	 *            the tile whose samples are accumulated.
+	 * @param apron
+	 *            the width of the apron around the tile in pixels.
+	 * @param filter
+	 *            the reconstruction filter, or null when there is none.
+	 * @throws NullPointerException
+	 *             when the given tile is null.
+	 * @throws IllegalArgumentException
+	 *             when the given apron is smaller than zero.
+	 */
+	private TileBuffer(Tile tile, int apron, Filter filter)
+			throws NullPointerException, IllegalArgumentException {
+		if (tile == null)
+			throw new NullPointerException("the given tile is null!");
+		if (apron < 0)
+			throw new IllegalArgumentException(
+					"the apron cannot be smaller than zero!");
+		this.tile = tile;
+		this.apron = apron;
+		this.filter = filter;
+		this.xStart = tile.xStart - apron;
+		this.yStart = tile.yStart - apron;
+		this.width = tile.getWidth() + 2 * apron;
+		this.height = tile.getHeight() + 2 * apron;
+		this.sums = new double[4 * width * height];
+
+		int span = filter == null ? 0 : (int) Math.ceil(2 * filter.radius) + 1;
+		this.columnWeights = new double[span];
+		this.rowWeights = new double[span];
+	}
+
+	/**
+	 * Returns the apron of the given filter.
+	 * 
+	 * @param filter
+	 *            the reconstruction filter.
+	 * @throws NullPointerException
+	 *             when the given filter is null.
+	 * @return the apron of the given filter.
+	 */
+	private static int apronOf(Filter filter) throws NullPointerException {
+		if (filter == null)
+			throw new NullPointerException("the given filter is null!");
+		return filter.apron;
+	}
+
+	/**
+	 * Adds the given color values to the pixel at the given coordinates,
+	 * weighted by the given weight.
+	 * 
+	 * @param x
+	 *            the x coordinate in the frame.
+	 * @param y
+	 *            the y coordinate in the frame.
+	 * @param red
+	 *            the red color component (in radiance).
+	 * @param green
+	 *            the green color component (in radiance).
+	 * @param blue
+	 *            the blue color component (in radiance).
+	 * @param weight
+	 *            the weight for the color components.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given coordinates lie outside the tile and its
+	 *             apron.
+	 * @throws IllegalArgumentException
+	 *             when one of the weighted color components or one of the
+	 *             resulting sums is either infinite or NaN.
+	 */
+	public void add(int x, int y, double red, double green, double blue,
+			double weight) throws ArrayIndexOutOfBoundsException,
+			IllegalArgumentException {
+		int column = x - xStart;
+		int row = y - yStart;
+		if (column < 0 || column >= width || row < 0 || row >= height)
+			throw new ArrayIndexOutOfBoundsException("the pixel (" + x + ", "
+					+ y + ") lies outside the tile and its apron!");
+		red *= weight;
+		green *= weight;
+		blue *= weight;
+		Pixel.checkComponents(red, green, blue);
+		int i = 4 * (row * width + column);
+		red += sums[i];
+		green += sums[i + 1];
+		blue += sums[i + 2];
+		Pixel.checkSums(red, green, blue);
+		sums[i] = red;
+		sums[i + 1] = green;
+		sums[i + 2] = blue;
+		sums[i + 3] += weight;
+	}
+
+	/**
+	 * Adds the given mutable spectrum with a weight of 1.0 to the pixel at the
+	 * given coordinates.
+	 * 
+	 * @param x
+	 *            the x coordinate in the frame.
+	 * @param y
+	 *            the y coordinate in the frame.
+	 * @param spectrum
+	 *            the spectrum to add.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given coordinates lie outside the tile and its
+	 *             apron.
+	 * @throws IllegalArgumentException
+	 *             when one of the color components is either infinite or NaN.
+	 */
+	public void add(int x, int y, MutableSpectrum spectrum)
+			throws NullPointerException, ArrayIndexOutOfBoundsException,
+			IllegalArgumentException {
+		if (spectrum == null)
+			throw new NullPointerException("the given spectrum is null!");
+		add(x, y, spectrum.red, spectrum.green, spectrum.blue, 1.0);
+	}
+
+	/**
+	 * Splats the given color values of a sample at the given position into
+	 * the pixels whose centers lie within the radius of the filter, weighted
+	 * by the filter. The weights are looked up in the table of the filter
+	 * once per column and once per row, such that a splat costs a
+	 * multiplication per pixel on top of the accumulation. The sums are
+	 * checked when the buffer is merged.
+	 * 
+	 * @param x
+	 *            the x coordinate of the sample in the frame.
+	 * @param y
+	 *            the y coordinate of the sample in the frame.
+	 * @param red
+	 *            the red color component (in radiance).
+	 * @param green
+	 *            the green color component (in radiance).
+	 * @param blue
+	 *            the blue color component (in radiance).
+	 * @throws IllegalStateException
+	 *             when this buffer has no filter.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given position lies outside the tile.
+	 * @throws IllegalArgumentException
+	 *             when one of the color components is either infinite or NaN.
+	 */
+	public void splat(double x, double y, double red, double green,
+			double blue) throws IllegalStateException,
+			ArrayIndexOutOfBoundsException, IllegalArgumentException {
+		if (filter == null)
+			throw new IllegalStateException("the buffer has no filter!");
+		if (!(x >= tile.xStart && x < tile.xEnd && y >= tile.yStart
+				&& y < tile.yEnd))
+			throw new ArrayIndexOutOfBoundsException("the sample (" + x
+					+ ", " + y + ") lies outside the tile!");
+		Pixel.checkComponents(red, green, blue);
+
+		// the pixels whose centers lie at offsets in (-radius, radius], such
+		// that a box filter of half a pixel covers the pixel of the sample
+		// only, even when the sample lies on the border of the pixel
+		double radius = filter.radius;
+		int x0 = (int) Math.floor(x - 0.5 - radius) + 1;
+		int x1 = (int) Math.floor(x - 0.5 + radius);
+		int y0 = (int) Math.floor(y - 0.5 - radius) + 1;
+		int y1 = (int) Math.floor(y - 0.5 + radius);
+		for (int column = x0; column <= x1; ++column)
+			columnWeights[column - x0] = filter.lookup(column + 0.5 - x);
+		for (int row = y0; row <= y1; ++row)
+			rowWeights[row - y0] = filter.lookup(row + 0.5 - y);
+
+		for (int row = y0; row <= y1; ++row) {
+			double rowWeight = rowWeights[row - y0];
+			if (rowWeight == 0)
+				continue;
+			int i = 4 * ((row - yStart) * width + x0 - xStart);
+			for (int column = x0; column <= x1; ++column, i += 4) {
+				double weight = rowWeight * columnWeights[column - x0];
+				sums[i] += weight * red;
+				sums[i + 1] += weight * green;
+				sums[i + 2] += weight * blue;
+				sums[i + 3] += weight;
+			}
+		}
+	}
+
+	/**
+	 * Splats the given mutable spectrum of a sample at the given position
+	 * into the pixels within the radius of the filter.
+	 * 
+	 * @param x
+	 *            the x coordinate of the sample in the frame.
+	 * @param y
+	 *            the y coordinate of the sample in the frame.
+	 * @param spectrum
+	 *            the spectrum of the sample.
+	 * @throws NullPointerException
+	 *             when the given spectrum is null.
+	 * @throws IllegalStateException
+	 *             when this buffer has no filter.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given position lies outside the tile.
+	 * @throws IllegalArgumentException
+	 *             when one of the color components is either infinite or NaN.
+	 */
+	public void splat(double x, double y, MutableSpectrum spectrum)
+			throws NullPointerException, IllegalStateException,
+			ArrayIndexOutOfBoundsException, IllegalArgumentException {
+		if (spectrum == null)
+			throw new NullPointerException("the given spectrum is null!");
+		splat(x, y, spectrum.red, spectrum.green, spectrum.blue);
+	}
+
+	/**
+	 * Resets all the pixels of this buffer to black.
+	 */
+	public void clear() {
+		Arrays.fill(sums, 0);
+	}
+}
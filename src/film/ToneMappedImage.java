@@ -0,0 +1,339 @@
+package film;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * An image of a {@link FrameBuffer} which is tone mapped on demand, one band
+ * of rows at a time, rather than stored as a whole.
+ * 
+ * Image writers such as the PNG writer of {@link javax.imageio.ImageIO} read
+ * a rendered image row by row. Every band of {@value Channels#TILE_SIZE} rows
+ * of the frame buffer is tone mapped into a single array, which is reused for
+ * the next band, such that the image of a frame buffer which is mapped in a
+ * file can be written with a heap of the size of a band only. The bands are
+ * aligned with the tiles of the storage of the frame buffer.
+ * 
+ * To the image, the bands are exposed as tiles of
+ * {@value Channels#TILE_SIZE} rows from the top of the image, since the rows
+ * of the frame buffer are stored upside down.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+final class ToneMappedImage implements RenderedImage {
+	
+	/**
+	 * The number of rows of a band.
+	 */
+	private static final int BAND_HEIGHT = Channels.TILE_SIZE;
+
+	/**
+	 * The frame buffer of this image.
+	 */
+	private final FrameBuffer buffer;
+
+	/**
+	 * The tone mapper which converts the pixels.
+	 */
+	private final ToneMapper mapper;
+
+	/**
+	 * The width and height of this image.
+	 */
+	private final int width, height;
+
+	/**
+	 * The color model of the 32-bit colors.
+	 */
+	private final ColorModel colorModel = ColorModel.getRGBdefault();
+
+	/**
+	 * The colors of the band which has been tone mapped last, with the last
+	 * row of the band first.
+	 */
+	private final int[] band;
+
+	/**
+	 * The colors of a single row, which are copied from the band.
+	 */
+	private final int[] row;
+
+	/**
+	 * The index of the band which has been tone mapped last, or -1.
+	 */
+	private int current = -1;
+
+	/**
+	 * Creates a new image of the given frame buffer which is tone mapped by
+	 * the given tone mapper.
+	 * 
+	 * @param buffer
+	 *            the frame buffer.
+	 * @param mapper
+	 *            the tone mapper.
+	 */
+	ToneMappedImage(FrameBuffer buffer, ToneMapper mapper) {
+		this.buffer = buffer;
+		this.mapper = mapper;
+		this.width = buffer.xResolution;
+		this.height = buffer.yResolution;
+		this.band = new int[width * Math.min(BAND_HEIGHT, height)];
+		this.row = new int[width];
+	}
+
+	/**
+	 * Tone maps the band with the given index, unless it has been tone mapped
+	 * last.
+	 * 
+	 * @param index
+	 *            the index of the band, i.e. of the rows of the frame buffer
+	 *            within [index * {@value #BAND_HEIGHT}, (index + 1) *
+	 *            {@value #BAND_HEIGHT}).
+	 */
+	private void load(int index) {
+		if (index == current)
+			return;
+		int yStart = index * BAND_HEIGHT;
+		int yEnd = Math.min(yStart + BAND_HEIGHT, height);
+		mapper.map(buffer, new Tile(0, yStart, width, yEnd), band, 0, width);
+		current = index;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#copyData(java.awt.image.WritableRaster)
+	 */
+	@Override
+	public synchronized WritableRaster copyData(WritableRaster raster) {
+		if (raster == null)
+			raster = colorModel.createCompatibleWritableRaster(width, height);
+		Rectangle bounds = raster.getBounds().intersection(
+				new Rectangle(0, 0, width, height));
+		for (int r = bounds.y; r < bounds.y + bounds.height; ++r) {
+			// the row of the image is a row of the frame buffer from the
+			// bottom, which is stored in its band from the bottom as well
+			int y = height - 1 - r;
+			int index = y / BAND_HEIGHT;
+			load(index);
+			int yEnd = Math.min((index + 1) * BAND_HEIGHT, height);
+			System.arraycopy(band, (yEnd - 1 - y) * width + bounds.x, row, 0,
+					bounds.width);
+			raster.setDataElements(bounds.x, r, bounds.width, 1, row);
+		}
+		return raster;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getData(java.awt.Rectangle)
+	 */
+	@Override
+	public Raster getData(Rectangle rectangle) {
+		SampleModel model = colorModel.createCompatibleSampleModel(
+				rectangle.width, rectangle.height);
+		return copyData(Raster.createWritableRaster(model, new Point(
+				rectangle.x, rectangle.y)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getData()
+	 */
+	@Override
+	public Raster getData() {
+		return getData(new Rectangle(0, 0, width, height));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getTile(int, int)
+	 */
+	@Override
+	public Raster getTile(int tileX, int tileY) {
+		int y = tileY * BAND_HEIGHT;
+		return getData(new Rectangle(0, y, width, Math.min(BAND_HEIGHT,
+				height - y)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getSources()
+	 */
+	@Override
+	public Vector<RenderedImage> getSources() {
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getProperty(java.lang.String)
+	 */
+	@Override
+	public Object getProperty(String name) {
+		return Image.UndefinedProperty;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getPropertyNames()
+	 */
+	@Override
+	public String[] getPropertyNames() {
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getColorModel()
+	 */
+	@Override
+	public ColorModel getColorModel() {
+		return colorModel;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getSampleModel()
+	 */
+	@Override
+	public SampleModel getSampleModel() {
+		return colorModel.createCompatibleSampleModel(width, BAND_HEIGHT);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getWidth()
+	 */
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getHeight()
+	 */
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getMinX()
+	 */
+	@Override
+	public int getMinX() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getMinY()
+	 */
+	@Override
+	public int getMinY() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getNumXTiles()
+	 */
+	@Override
+	public int getNumXTiles() {
+		return 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getNumYTiles()
+	 */
+	@Override
+	public int getNumYTiles() {
+		return (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getMinTileX()
+	 */
+	@Override
+	public int getMinTileX() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getMinTileY()
+	 */
+	@Override
+	public int getMinTileY() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getTileWidth()
+	 */
+	@Override
+	public int getTileWidth() {
+		return width;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getTileHeight()
+	 */
+	@Override
+	public int getTileHeight() {
+		return BAND_HEIGHT;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getTileGridXOffset()
+	 */
+	@Override
+	public int getTileGridXOffset() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.awt.image.RenderedImage#getTileGridYOffset()
+	 */
+	@Override
+	public int getTileGridYOffset() {
+		return 0;
+	}
+}
@@ -0,0 +1,421 @@
+package film;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts the radiance of the pixels of a {@link FrameBuffer} to 32-bit
+ * colors which can be displayed.
+ * 
+ * The radiance is clamped between zero and the inverse of the sensitivity and
+ * multiplied by the sensitivity, such that it lies within [0, 1]. This value
+ * is gamma corrected, multiplied by 255 and rounded to the nearest integer.
+ * 
+ * Since there are only 256 levels, the gamma correction is not evaluated by
+ * {@link Math#pow(double, double)} for every color component. Instead, the
+ * values within [0, 1] at which the level is rounded up are computed once.
+ * A table of {@value #TABLE_SIZE} entries stores the levels at the evenly
+ * spaced values within [0, 1], which bound the level of a value in between
+ * from below and from above. The level is found by a binary search between
+ * these bounds, which are equal for most values. The result is therefore
+ * equal to the direct evaluation, without rounding errors of the table.
+ * 
+ * The conversion works directly on the sums of the storage of the frame
+ * buffer and allocates no objects per pixel. The rows of a frame are
+ * converted in parallel.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class ToneMapper {
+	
+	/**
+	 * The base two logarithm of the number of entries in the table.
+	 */
+	private static final int TABLE_SHIFT = 12;
+
+	/**
+	 * The number of intervals into which the values within [0, 1] are divided
+	 * by the table.
+	 */
+	public static final int TABLE_SIZE = 1 << TABLE_SHIFT;
+
+	/**
+	 * The number of rows which are converted together by a single task.
+	 */
+	private static final int BAND_HEIGHT = 16;
+
+	/**
+	 * The sensitivity with which the radiance is scaled.
+	 */
+	public final double sensitivity;
+
+	/**
+	 * The gamma with which the scaled radiance is corrected.
+	 */
+	public final double gamma;
+
+	/**
+	 * The smallest values within [0, 1] which are rounded to the levels, where
+	 * the first and last elements bound the search.
+	 */
+	private final double[] thresholds = new double[257];
+
+	/**
+	 * The levels of the values at the borders of the intervals of the table.
+	 */
+	private final int[] levels = new int[TABLE_SIZE + 1];
+
+	/**
+	 * Creates a new tone mapper with the given sensitivity and gamma.
+	 * 
+	 * @param sensitivity
+	 *            the sensitivity to scale the radiance with. Higher
+	 *            sensitivity means a higher contribution of the lower radiance
+	 *            values, but results in high radiance values being clamped.
+	 * @param gamma
+	 *            the gamma correction to apply.
+	 * @throws IllegalArgumentException
+	 *             when either the given sensitivity or gamma is smaller than
+	 *             or equal to zero.
+	 * @throws IllegalArgumentException
+	 *             when either the given sensitivity or gamma is infinite or
+	 *             NaN.
+	 */
+	public ToneMapper(double sensitivity, double gamma)
+			throws IllegalArgumentException {
+		if (sensitivity <= 0)
+			throw new IllegalArgumentException(
+					"the sensitivity must be larger than zero!");
+		if (Double.isInfinite(sensitivity))
+			throw new IllegalArgumentException(
+					"the sensitivity cannot be infinite!");
+		if (Double.isNaN(sensitivity))
+			throw new IllegalArgumentException(
+					"the sensitivity cannot be NaN!");
+
+		if (gamma <= 0)
+			throw new IllegalArgumentException(
+					"the gamma must be larger than zero!");
+		if (Double.isInfinite(gamma))
+			throw new IllegalArgumentException("the gamma cannot be infinite!");
+		if (Double.isNaN(gamma))
+			throw new IllegalArgumentException("the gamma cannot be NaN!");
+
+		this.sensitivity = sensitivity;
+		this.gamma = gamma;
+
+		// a value is rounded to the level k when its gamma corrected value
+		// is at least (k - 0.5) / 255
+		thresholds[0] = Double.NEGATIVE_INFINITY;
+		for (int k = 1; k < 256; ++k)
+			thresholds[k] = Math.pow((k - 0.5) / 255.0, gamma);
+		thresholds[256] = Double.POSITIVE_INFINITY;
+
+		int level = 0;
+		for (int i = 0; i <= TABLE_SIZE; ++i) {
+			double value = (double) i / TABLE_SIZE;
+			while (value >= thresholds[level + 1])
+				++level;
+			levels[i] = level;
+		}
+	}
+
+	/**
+	 * Returns the level within [0, 255] of the given radiance.
+	 * 
+	 * @param radiance
+	 *            the radiance of a color component.
+	 * @return the level of the given radiance.
+	 */
+	private int level(double radiance) {
+		double value = radiance * sensitivity;
+		if (!(value < 1.0))
+			return 255;
+		if (!(value > 0.0))
+			return 0;
+
+		// the multiplication by a power of two is exact, such that the value
+		// lies between the borders of the interval
+		int i = (int) (value * TABLE_SIZE);
+		int low = levels[i];
+		int high = levels[i + 1];
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (value >= thresholds[middle])
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Converts the given radiance to a 32-bit color.
+	 * 
+	 * @param red
+	 *            the red color component (in radiance).
+	 * @param green
+	 *            the green color component (in radiance).
+	 * @param blue
+	 *            the blue color component (in radiance).
+	 * @return the given radiance as a 32-bit color.
+	 */
+	public int toRGB(double red, double green, double blue) {
+		return (255 << 24) + (level(red) << 16) + (level(green) << 8)
+				+ level(blue);
+	}
+
+	/**
+	 * Converts the pixels of the given frame buffer within the given tile to
+	 * 32-bit colors, which are stored in the given array in the order of the
+	 * rows of a {@link java.awt.image.BufferedImage}, i.e. with the last row
+	 * of the frame buffer first. The parts of the tile outside the frame
+	 * buffer are ignored.
+	 * 
+	 * @param buffer
+	 *            the frame buffer to convert.
+	 * @param tile
+	 *            the tile of the pixels to convert.
+	 * @param data
+	 *            the colors of the image of the frame buffer.
+	 * @throws NullPointerException
+	 *             when the given frame buffer is null.
+	 * @throws NullPointerException
+	 *             when the given tile is null.
+	 * @throws NullPointerException
+	 *             when the given array is null.
+	 * @throws IllegalArgumentException
+	 *             when the given array is smaller than the frame buffer.
+	 */
+	public void map(FrameBuffer buffer, Tile tile, int[] data)
+			throws NullPointerException, IllegalArgumentException {
+		if (buffer == null)
+			throw new NullPointerException("the given frame buffer is null!");
+		if (tile == null)
+			throw new NullPointerException("the given tile is null!");
+		if (data == null)
+			throw new NullPointerException("the given array is null!");
+		int xResolution = buffer.xResolution;
+		int yResolution = buffer.yResolution;
+		if (data.length < (long) xResolution * yResolution)
+			throw new IllegalArgumentException(
+					"the given array is smaller than the frame buffer!");
+
+		map(buffer, tile, data, 0, yResolution - 1, xResolution);
+	}
+
+	/**
+	 * Converts the pixels of the given frame buffer within the given tile to
+	 * 32-bit colors, which are stored in the given array as an image of the
+	 * tile, whose first element is at the given offset and whose rows are the
+	 * given number of elements apart. As in a
+	 * {@link java.awt.image.BufferedImage}, the last row of the tile comes
+	 * first. The parts of the tile outside the frame buffer are ignored.
+	 * 
+	 * This allows to convert a frame buffer which does not fit in the heap as
+	 * an image, one band of rows at a time.
+	 * 
+	 * @param buffer
+	 *            the frame buffer to convert.
+	 * @param tile
+	 *            the tile of the pixels to convert.
+	 * @param data
+	 *            the colors of the image of the tile.
+	 * @param offset
+	 *            the index of the first element of the image of the tile.
+	 * @param scanline
+	 *            the distance between the rows of the image of the tile.
+	 * @throws NullPointerException
+	 *             when the given frame buffer is null.
+	 * @throws NullPointerException
+	 *             when the given tile is null.
+	 * @throws NullPointerException
+	 *             when the given array is null.
+	 * @throws IllegalArgumentException
+	 *             when the given offset is smaller than zero or the given
+	 *             scanline is smaller than the width of the tile.
+	 * @throws IllegalArgumentException
+	 *             when the image of the tile does not fit in the given array.
+	 */
+	public void map(FrameBuffer buffer, Tile tile, int[] data, int offset,
+			int scanline) throws NullPointerException,
+			IllegalArgumentException {
+		if (buffer == null)
+			throw new NullPointerException("the given frame buffer is null!");
+		if (tile == null)
+			throw new NullPointerException("the given tile is null!");
+		if (data == null)
+			throw new NullPointerException("the given array is null!");
+		if (offset < 0)
+			throw new IllegalArgumentException(
+					"the offset cannot be smaller than zero!");
+		if (scanline < tile.getWidth())
+			throw new IllegalArgumentException(
+					"the scanline cannot be smaller than the width of the "
+							+ "tile!");
+		if (tile.getHeight() > 0
+				&& offset + (long) (tile.getHeight() - 1) * scanline
+						+ tile.getWidth() > data.length)
+			throw new IllegalArgumentException(
+					"the image of the tile does not fit in the given array!");
+		map(buffer, tile, data, offset - tile.xStart, tile.yEnd - 1, scanline);
+	}
+
+	/**
+	 * Converts the pixels of the given frame buffer within the given tile to
+	 * 32-bit colors, where the pixel at (x, y) is stored at the index
+	 * origin + (top - y) * scanline + x of the given array.
+	 * 
+	 * @param buffer
+	 *            the frame buffer to convert.
+	 * @param tile
+	 *            the tile of the pixels to convert.
+	 * @param data
+	 *            the colors.
+	 * @param origin
+	 *            the index of the pixel at (0, top).
+	 * @param top
+	 *            the y coordinate of the pixel which is stored first.
+	 * @param scanline
+	 *            the distance between the rows in the given array.
+	 */
+	private void map(FrameBuffer buffer, Tile tile, int[] data, int origin,
+			int top, int scanline) {
+		Channels channels = buffer.channels;
+		int xStart = Math.max(tile.xStart, 0);
+		int xEnd = Math.min(tile.xEnd, buffer.xResolution);
+		int yEnd = Math.min(tile.yEnd, buffer.yResolution);
+		for (int y = Math.max(tile.yStart, 0); y < yEnd; ++y) {
+			int offset = origin + (top - y) * scanline;
+
+			for (int x = xStart; x < xEnd; ++x) {
+				int index = channels.indexOf(x, y);
+				double weight = channels.getWeight(index);
+				// the negative lobes of a filter can leave a sum of weights
+				// at or below zero, which is black
+				int rgb = 255 << 24;
+				if (weight > 0) {
+					double inverse = 1.0 / weight;
+					rgb = toRGB(channels.getRed(index) * inverse,
+							channels.getGreen(index) * inverse,
+							channels.getBlue(index) * inverse);
+				}
+				data[offset + x] = rgb;
+			}
+		}
+	}
+
+	/**
+	 * Converts all the pixels of the given frame buffer to 32-bit colors (see
+	 * {@link #map(FrameBuffer, Tile, int[])}). The bands of
+	 * {@value #BAND_HEIGHT} rows are converted in parallel in the common
+	 * {@link ForkJoinPool}, which rethrows the exception of a band which
+	 * fails.
+	 * 
+	 * @param buffer
+	 *            the frame buffer to convert.
+	 * @param data
+	 *            the colors of the image of the frame buffer.
+	 * @throws NullPointerException
+	 *             when the given frame buffer is null.
+	 * @throws NullPointerException
+	 *             when the given array is null.
+	 * @throws IllegalArgumentException
+	 *             when the given array is smaller than the frame buffer.
+	 */
+	public void map(FrameBuffer buffer, int[] data)
+			throws NullPointerException, IllegalArgumentException {
+		if (buffer == null)
+			throw new NullPointerException("the given frame buffer is null!");
+		if (data == null)
+			throw new NullPointerException("the given array is null!");
+		if (data.length < (long) buffer.xResolution * buffer.yResolution)
+			throw new IllegalArgumentException(
+					"the given array is smaller than the frame buffer!");
+
+		int bands = (buffer.yResolution + BAND_HEIGHT - 1) / BAND_HEIGHT;
+		ForkJoinPool.commonPool().invoke(new Conversion(buffer, data, 0,
+				bands));
+	}
+
+	/**
+	 * A task which converts a range of bands of {@value #BAND_HEIGHT} rows of
+	 * a frame buffer, where the halves of the range are converted in
+	 * parallel.
+	 */
+	private class Conversion extends RecursiveAction {
+		/**
+		 * A unique id required for serialization.
+		 */
+		private static final long serialVersionUID = 5728349610276145139L;
+
+		/**
+		 * The frame buffer to convert.
+		 */
+		private final FrameBuffer buffer;
+
+		/**
+		 * The colors of the image of the frame buffer.
+		 */
+		private final int[] data;
+
+		/**
+		 * The index of the first band and of the band after the range.
+		 */
+		private final int first, last;
+
+		/**
+		 * Creates a new task which converts the bands within the given range
+		 * of the given frame buffer.
+		 * 
+		 * @param buffer
+		 *            the frame buffer to convert.
+		 * @param data
+		 *            the colors of the image of the frame buffer.
+		 * @param first
+		 *            the index of the first band.
+		 * @param last
+		 *            the index of the band after the range.
+		 */
+		private Conversion(FrameBuffer buffer, int[] data, int first,
+				int last) {
+			this.buffer = buffer;
+			this.data = data;
+			this.first = first;
+			this.last = last;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (last - first == 1) {
+				int yStart = first * BAND_HEIGHT;
+				map(buffer, new Tile(0, yStart, buffer.xResolution,
+						Math.min(yStart + BAND_HEIGHT, buffer.yResolution)),
+						data, 0, buffer.yResolution - 1, buffer.xResolution);
+				return;
+			}
+			int middle = (first + last) >>> 1;
+			invokeAll(new Conversion(buffer, data, first, middle),
+					new Conversion(buffer, data, middle, last));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH,
+				"[%s] sensitivity %.6f, gamma %.6f", getClass().getName(),
+				sensitivity, gamma);
+	}
+}
@@ -29,9 +29,9 @@ import java.util.concurrent.locks.ReentrantLock;
 import javax.swing.JPanel;
 
 import film.FrameBuffer;
-import film.Pixel;
 import film.RGBSpectrum;
 import film.Tile;
+import film.ToneMapper;
 
 /**
  * A panel which shows the progress of the rendered image.
@@ -65,6 +65,12 @@ public class ImagePanel extends JPanel implements ComponentListener,
 	 */
 	private double sensitivity;
 
+	/**
+	 * The tone mapper with the current sensitivity and gamma, which is
+	 * replaced whenever either of them changes.
+	 */
+	private volatile ToneMapper mapper;
+
 	/**
 	 * The amount of zoom to draw the image.
 	 */
@@ -146,8 +152,9 @@ public class ImagePanel extends JPanel implements ComponentListener,
 		this.image = new BufferedImage(buffer.xResolution, buffer.yResolution,
 				BufferedImage.TYPE_INT_ARGB);
 
-		setSensitivity(sensitivity);
-		setGamma(gamma);
+		this.mapper = new ToneMapper(sensitivity, gamma);
+		this.sensitivity = sensitivity;
+		this.gamma = gamma;
 
 		addComponentListener(this);
 		addMouseListener(this);
@@ -206,6 +213,7 @@ public class ImagePanel extends JPanel implements ComponentListener,
 		lock.lock();
 		try {
 			this.sensitivity = sensitivity;
+			this.mapper = new ToneMapper(sensitivity, gamma);
 			update();
 		} finally {
 			lock.unlock();
@@ -249,6 +257,7 @@ public class ImagePanel extends JPanel implements ComponentListener,
 		lock.lock();
 		try {
 			this.gamma = gamma;
+			this.mapper = new ToneMapper(sensitivity, gamma);
 			update();
 		} finally {
 			lock.unlock();
@@ -532,27 +541,9 @@ public class ImagePanel extends JPanel implements ComponentListener,
 	private void update(Tile tile) throws NullPointerException {
 		if (tile == null)
 			throw new NullPointerException("the given tile is null!");
-		double invSensitivity = 1.0 / sensitivity;
-		double invGamma = 1.0 / gamma;
-
 		WritableRaster raster = image.getRaster();
 		DataBufferInt rasterBuffer = (DataBufferInt) raster.getDataBuffer();
-		int[] data = rasterBuffer.getData();
-
-		// update the finished pixels
-		for (int y = tile.yStart; y < tile.yEnd; ++y) {
-			int yOffset = (image.getHeight() - y - 1) * image.getWidth();
-
-			for (int x = tile.xStart; x < tile.xEnd; ++x) {
-				Pixel pixel = buffer.getPixel(x, y);
-				RGBSpectrum spectrum = pixel.getSpectrum();
-
-				int rgb = spectrum.clamp(0, invSensitivity).scale(sensitivity)
-						.pow(invGamma).scale(255).toRGB();
-
-				data[x + yOffset] = rgb;
-			}
-		}
+		mapper.map(buffer, tile, rasterBuffer.getData());
 	}
 
 	/**
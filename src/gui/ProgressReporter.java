@@ -166,6 +166,20 @@ public class ProgressReporter {
 		lock.unlock();
 	}
 
+	/**
+	 * Prints the given message on a separate line when this progress reporter
+	 * is not quiet.
+	 * 
+	 * @param message
+	 *            the message to print.
+	 */
+	public void report(String message) {
+		lock.lock();
+		if (!quiet)
+			System.out.println(message);
+		lock.unlock();
+	}
+
 	/**
 	 * Indicates to this progress reporter that the work is done.
 	 */
@@ -6,22 +6,48 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
 
+import acceleration.BVH;
+import acceleration.BVHBuilder;
+import acceleration.BVHNode;
+import acceleration.BinnedSAHBuilder;
+import acceleration.FlatBVH;
+import acceleration.Grid;
+import acceleration.LinearBVHBuilder;
+import acceleration.SAHBuilder;
+import acceleration.WideBVH;
+import math.MutableRay;
+import math.MutableVector3;
 import math.Point;
-import math.Ray;
+import math.RayBatch;
 import math.Transformation;
 import math.Vector;
-import sampling.Sample;
+import sampling.StratifiedSampler;
+import shape.FloatSphere;
+import shape.HitBatch;
+import shape.Instance;
 import shape.Shape;
 import shape.Sphere;
+import shape.SphereGroup;
 import camera.PerspectiveCamera;
+import film.BoxFilter;
+import film.Filter;
 import film.FrameBuffer;
+import film.GaussianFilter;
+import film.ImageDifference;
+import film.LanczosFilter;
+import film.MitchellFilter;
+import film.MutableSpectrum;
+import film.TentFilter;
 import film.Tile;
+import film.TileBuffer;
 import gui.ProgressReporter;
 import gui.RenderFrame;
 
@@ -33,6 +59,15 @@ import gui.RenderFrame;
  */
 public class Renderer {
 	
+	/**
+	 * The distance along a shadow ray below which intersections are ignored,
+	 * such that a surface does not shadow itself due to rounding errors. The
+	 * shadow rays span the interval [0, 1) between a surface and the light.
+	 * In single precision, the origins of the shadow rays are moved off the
+	 * surfaces instead.
+	 */
+	private static final double SHADOW_EPSILON = 1e-4;
+
 	/**
 	 * Entry point of your renderer.
 	 * 
@@ -53,6 +88,18 @@ public class Renderer {
 		Vector lookup = new Vector(0, 1, 0);
 		double fov = 90;
 		String filename = "output" + System.currentTimeMillis() + ".png";
+		String construction = "binned";
+		int branching = 2;
+		String accelerator = "bvh";
+		boolean instancing = false;
+		int group = 0;
+		int packet = 8;
+		String precision = "double";
+		String reference = null;
+		String film = null;
+		String reconstruction = "box";
+		int strata = 1;
+		Point light = new Point(10, 10, 0);
 
 		/**********************************************************************
 		 * Parse the command line arguments
@@ -85,6 +132,11 @@ public class Renderer {
 						double y = Double.parseDouble(arguments[++i]);
 						double z = Double.parseDouble(arguments[++i]);
 						destination = new Point(x, y, z);
+					} else if ("-light".equals(flag)) {
+						double x = Double.parseDouble(arguments[++i]);
+						double y = Double.parseDouble(arguments[++i]);
+						double z = Double.parseDouble(arguments[++i]);
+						light = new Point(x, y, z);
 					} else if ("-lookup".equals(flag)) {
 						double x = Double.parseDouble(arguments[++i]);
 						double y = Double.parseDouble(arguments[++i]);
@@ -94,6 +146,28 @@ public class Renderer {
 						fov = Double.parseDouble(arguments[++i]);
 					} else if ("-output".equals(flag)) {
 						filename = arguments[++i];
+					} else if ("-builder".equals(flag)) {
+						construction = arguments[++i];
+					} else if ("-accelerator".equals(flag)) {
+						accelerator = arguments[++i];
+					} else if ("-instancing".equals(flag)) {
+						instancing = Boolean.parseBoolean(arguments[++i]);
+					} else if ("-branching".equals(flag)) {
+						branching = Integer.parseInt(arguments[++i]);
+					} else if ("-group".equals(flag)) {
+						group = Integer.parseInt(arguments[++i]);
+					} else if ("-packet".equals(flag)) {
+						packet = Integer.parseInt(arguments[++i]);
+					} else if ("-precision".equals(flag)) {
+						precision = arguments[++i];
+					} else if ("-reference".equals(flag)) {
+						reference = arguments[++i];
+					} else if ("-film".equals(flag)) {
+						film = arguments[++i];
+					} else if ("-filter".equals(flag)) {
+						reconstruction = arguments[++i];
+					} else if ("-samples".equals(flag)) {
+						strata = Integer.parseInt(arguments[++i]);
 					} else if ("-help".equals(flag)) {
 						System.out
 								.println("usage: java -jar cgpracticum.jar\n"
@@ -104,7 +178,26 @@ public class Renderer {
 										+ "  -origin <point>       origin for the camera\n"
 										+ "  -destination <point>  destination for the camera\n"
 										+ "  -lookup <vector>      up direction for the camera\n"
+										+ "  -light <point>        position of the point light\n"
 										+ "  -output <string>      filename for the image\n"
+										+ "  -accelerator <string> acceleration structure\n"
+										+ "                        (bvh, grid or hgrid)\n"
+										+ "  -builder <string>     acceleration structure builder\n"
+										+ "                        (sah, binned or linear)\n"
+										+ "  -branching <integer>  children per node (2, 4 or 8)\n"
+										+ "  -instancing <boolean> whether to place a shared sphere\n"
+										+ "  -group <integer>      spheres per leaf group (0 for none)\n"
+										+ "  -packet <integer>     width of the packets of primary rays\n"
+										+ "                        (1 to 16 pixels)\n"
+										+ "  -precision <string>   precision of the geometry and film\n"
+										+ "                        (double or float)\n"
+										+ "  -reference <string>   image to report the difference with\n"
+										+ "  -film <string>        file to map the frame buffer in, which\n"
+										+ "                        resumes the render when it exists\n"
+										+ "  -filter <string>      reconstruction filter (box, tent,\n"
+										+ "                        gaussian, mitchell or lanczos)\n"
+										+ "  -samples <integer>    strata per axis of a pixel, for n*n\n"
+										+ "                        jittered samples per pixel\n"
 										+ "  -gui <boolean>        whether to start a graphical user interface\n"
 										+ "  -quiet <boolean>      whether to print the progress bar");
 						return;
@@ -146,6 +239,42 @@ public class Renderer {
 		if (filename.isEmpty())
 			throw new IllegalArgumentException("the filename cannot be the "
 					+ "empty string!");
+		if (!"sah".equals(construction) && !"binned".equals(construction)
+				&& !"linear".equals(construction))
+			throw new IllegalArgumentException("the builder must be sah, "
+					+ "binned or linear!");
+		if (!"bvh".equals(accelerator) && !"grid".equals(accelerator)
+				&& !"hgrid".equals(accelerator))
+			throw new IllegalArgumentException("the acceleration structure "
+					+ "must be bvh, grid or hgrid!");
+		if (branching != 2 && branching != 4 && branching != 8)
+			throw new IllegalArgumentException("the branching factor must be "
+					+ "2, 4 or 8!");
+		if (group < 0)
+			throw new IllegalArgumentException("the size of a sphere group "
+					+ "cannot be smaller than zero!");
+		if (packet < 1 || packet > 16)
+			throw new IllegalArgumentException("the width of a packet must "
+					+ "lie between 1 and 16!");
+		if (!"double".equals(precision) && !"float".equals(precision))
+			throw new IllegalArgumentException("the precision must be double "
+					+ "or float!");
+		if (reference != null && reference.isEmpty())
+			throw new IllegalArgumentException("the filename of the reference "
+					+ "image cannot be the empty string!");
+		if (film != null && film.isEmpty())
+			throw new IllegalArgumentException("the filename of the film "
+					+ "cannot be the empty string!");
+		if (!"box".equals(reconstruction) && !"tent".equals(reconstruction)
+				&& !"gaussian".equals(reconstruction)
+				&& !"mitchell".equals(reconstruction)
+				&& !"lanczos".equals(reconstruction))
+			throw new IllegalArgumentException("the filter must be box, tent, "
+					+ "gaussian, mitchell or lanczos!");
+		if (strata < 1)
+			throw new IllegalArgumentException("the number of strata cannot "
+					+ "be smaller than one!");
+		final boolean singlePrecision = "float".equals(precision);
 
 		/**********************************************************************
 		 * Initialize the camera and graphical user interface
@@ -154,8 +283,34 @@ public class Renderer {
 		final PerspectiveCamera camera = new PerspectiveCamera(width, height,
 				origin, destination, lookup, fov);
 
-		// initialize the frame buffer
-		final FrameBuffer buffer = new FrameBuffer(width, height);
+		final Point lightPosition = light;
+
+		// initialize the frame buffer, which is mapped in the film when the
+		// frame does not have to fit in the heap, and which resumes the
+		// render when the film already exists
+		FrameBuffer frameBuffer = null;
+		boolean resumed = film != null && new File(film).exists();
+		if (film == null)
+			frameBuffer = new FrameBuffer(width, height, singlePrecision);
+		else {
+			File file = new File(film);
+			try {
+				if (resumed)
+					frameBuffer = new FrameBuffer(file);
+				else
+					frameBuffer = new FrameBuffer(file, width, height,
+							singlePrecision);
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+			if (frameBuffer.xResolution != width
+					|| frameBuffer.yResolution != height
+					|| frameBuffer.singlePrecision != singlePrecision)
+				throw new IllegalArgumentException("the film does not match "
+						+ "the resolution and precision of the image!");
+		}
+		final FrameBuffer buffer = frameBuffer;
 
 		// initialize the progress reporter
 		final ProgressReporter reporter = new ProgressReporter("Rendering", 40,
@@ -192,11 +347,81 @@ public class Renderer {
 				Transformation.scale(4, 4, 4));
 
 		final List<Shape> shapes = new ArrayList<Shape>();
-		shapes.add(new Sphere(t1));
-		shapes.add(new Sphere(t2));
-		shapes.add(new Sphere(t3));
-		shapes.add(new Sphere(t4));
-		shapes.add(new Sphere(t5));
+		if (instancing) {
+			// place a single shared sphere with each of the transformations
+			Shape sphere = singlePrecision ? new FloatSphere(
+					Transformation.IDENTITY) : new Sphere(
+					Transformation.IDENTITY);
+			shapes.add(new Instance(sphere, t1));
+			shapes.add(new Instance(sphere, t2));
+			shapes.add(new Instance(sphere, t3));
+			shapes.add(new Instance(sphere, t4));
+			shapes.add(new Instance(sphere, t5));
+		} else if (singlePrecision) {
+			shapes.add(new FloatSphere(t1));
+			shapes.add(new FloatSphere(t2));
+			shapes.add(new FloatSphere(t3));
+			shapes.add(new FloatSphere(t4));
+			shapes.add(new FloatSphere(t5));
+		} else {
+			shapes.add(new Sphere(t1));
+			shapes.add(new Sphere(t2));
+			shapes.add(new Sphere(t3));
+			shapes.add(new Sphere(t4));
+			shapes.add(new Sphere(t5));
+		}
+
+		// intersect the spheres which lie close together as a single
+		// primitive
+		final List<Shape> primitives = group > 0 ? SphereGroup.group(shapes,
+				group) : shapes;
+
+		// construct an acceleration structure over the shapes
+		final ProgressReporter buildReporter = new ProgressReporter(
+				"Building", 40, primitives.size(), quiet);
+		final Shape scene;
+		if ("bvh".equals(accelerator)) {
+			BVHBuilder builder;
+			if ("sah".equals(construction))
+				builder = new SAHBuilder();
+			else if ("linear".equals(construction))
+				builder = new LinearBVHBuilder();
+			else
+				builder = new BinnedSAHBuilder(4, buildReporter);
+			buildReporter.start();
+			BVH bvh = new BVH(primitives, builder);
+			buildReporter.done();
+
+			BVHNode root = bvh.getRoot();
+			buildReporter.report(String.format(Locale.ENGLISH,
+					"%d primitives, %d nodes, %d leaves, depth %d, "
+							+ "SAH cost %.3f", primitives.size(),
+					root.getNodeCount(), root.getLeafCount(),
+					root.getDepth(), root.getCost(SAHBuilder.TRAVERSAL_COST)));
+
+			// store the hierarchy in a cache friendly layout for the traversal
+			if (branching == 2)
+				scene = new FlatBVH(bvh);
+			else {
+				WideBVH wide = new WideBVH(bvh, branching);
+				buildReporter.report(String.format(Locale.ENGLISH, "%d-wide "
+						+ "hierarchy with %s box tests", branching,
+						wide.isVectorized() ? "vectorized" : "scalar"));
+				scene = wide;
+			}
+		} else {
+			buildReporter.start();
+			Grid grid = new Grid(primitives, "hgrid".equals(accelerator));
+			buildReporter.done();
+
+			buildReporter.report(String.format(Locale.ENGLISH,
+					"%d primitives, %dx%dx%d cells, %d refined cells, "
+							+ "%d references", primitives.size(),
+					grid.getResolution(0), grid.getResolution(1),
+					grid.getResolution(2), grid.getRefinedCellCount(),
+					grid.getReferenceCount()));
+			scene = grid;
+		}
 
 		/**********************************************************************
 		 * Multi-threaded rendering of the scene
@@ -205,6 +430,29 @@ public class Renderer {
 		final ExecutorService service = Executors.newFixedThreadPool(Runtime
 				.getRuntime().availableProcessors());
 
+		// the width of the blocks of pixels whose rays are traced together
+		final int size = packet;
+
+		// the start of the shadow rays, which leave from a moved point in
+		// single precision
+		final double tMin = singlePrecision ? 0 : SHADOW_EPSILON;
+
+		// the positions of the samples in the pixels, and the filter with
+		// which they are splatted into the pixels around them
+		final StratifiedSampler sampler = new StratifiedSampler(strata);
+		final Filter filter;
+		if ("tent".equals(reconstruction))
+			filter = new TentFilter();
+		else if ("gaussian".equals(reconstruction))
+			filter = new GaussianFilter();
+		else if ("mitchell".equals(reconstruction))
+			filter = new MitchellFilter();
+		else if ("lanczos".equals(reconstruction))
+			filter = new LanczosFilter();
+		else
+			filter = new BoxFilter();
+		final int samplesPerBlock = size * size * sampler.getSamplesPerPixel();
+
 		// subdivide the buffer in equal sized tiles
 		for (final Tile tile : buffer.subdivide(64, 64)) {
 			// create a thread which renders the specific tile
@@ -216,31 +464,112 @@ public class Renderer {
 				 */
 				@Override
 				public void run() {
+					// keep the tiles which have been finished before the
+					// render was resumed
+					if (buffer.isFinished(tile)) {
+						if (frame != null)
+							frame.panel.finished(tile);
+						reporter.update(tile.getWidth() * tile.getHeight());
+						return;
+					}
+
 					try {
-						// iterate over the contents of the tile
-						for (int y = tile.yStart; y < tile.yEnd; ++y) {
-							for (int x = tile.xStart; x < tile.xEnd; ++x) {
-								// create a ray through the center of the
-								// pixel.
-								Ray ray = camera.generateRay(new Sample(
-										x + 0.5, y + 0.5));
-
-								// test the scene on intersections
-								boolean hit = false;
-								for (Shape shape : shapes)
-									if (shape.intersect(ray)) {
-										hit = true;
-										break;
-									}
-
-								// add a color contribution to the pixel
-								if (hit)
-									buffer.getPixel(x, y).add(1, 0, 0);
-								else
-									buffer.getPixel(x, y).add(0, 0, 0);
+						// the samples of this tile, which are merged into
+						// the frame buffer once the tile has been finished,
+						// such that an interrupted tile leaves no samples
+						TileBuffer samples = new TileBuffer(tile, filter);
+
+						// the positions of the samples, which are jittered
+						// reproducibly for every tile
+						Random random = new Random(((long) tile.yStart << 32)
+								+ tile.xStart);
+						double[] xs = new double[samplesPerBlock];
+						double[] ys = new double[samplesPerBlock];
+
+						// the batches, rays and radiance which are reused
+						// for all the samples of this tile
+						RayBatch rays = new RayBatch(samplesPerBlock);
+						HitBatch hits = new HitBatch(samplesPerBlock);
+						MutableRay ray = new MutableRay();
+						MutableRay shadow = new MutableRay();
+						MutableSpectrum radiance = new MutableSpectrum();
+
+						// iterate over the square blocks of the tile, whose
+						// coherent primary rays are traced as a packet
+						for (Tile block : tile.subdivide(size, size)) {
+							// create the rays through the samples, where
+							// the rays through the centers of the pixels
+							// are generated at once
+							int count = sampler.generate(block, random, xs,
+									ys);
+							rays.clear();
+							if (sampler.strata == 1)
+								camera.generateRays(block, rays);
+							else
+								for (int i = 0; i < count; ++i)
+									rays.add(camera.generateRay(xs[i],
+											ys[i], ray), 0,
+											Double.POSITIVE_INFINITY);
+
+							// find the closest intersections
+							hits.reset();
+							scene.intersect(rays, hits);
+
+							for (int i = 0; i < rays.size(); ++i) {
+								radiance.clear();
+								if (hits.isHit(i)) {
+									double nx = hits.nx[i];
+									double ny = hits.ny[i];
+									double nz = hits.nz[i];
+
+									// a small ambient term with the
+									// cosine between the normal and the
+									// ray
+									double dx = rays.dx[i];
+									double dy = rays.dy[i];
+									double dz = rays.dz[i];
+									double facing = nx * dx + ny * dy
+											+ nz * dz;
+									double r = 0.1 * Math.abs(facing)
+											/ Math.sqrt(dx * dx + dy * dy
+													+ dz * dz);
+
+									// the direct light when the light
+									// lies in front of the visible side
+									// and the shadow ray is not occluded,
+									// where a point computed in single
+									// precision is moved off the visible
+									// side instead of ignoring the
+									// intersections close to it
+									shadow.origin.set(hits.px[i],
+											hits.py[i], hits.pz[i]);
+									double side = facing > 0 ? -1 : 1;
+									if (singlePrecision)
+										shadow.origin.offset(side * nx,
+												side * ny, side * nz);
+									MutableVector3 l = shadow.direction
+											.set(lightPosition.x,
+													lightPosition.y,
+													lightPosition.z)
+											.subtract(shadow.origin);
+									double cosine = (nx * l.x + ny * l.y
+											+ nz * l.z) / l.length();
+									if (facing > 0)
+										cosine = -cosine;
+									if (cosine > 0
+											&& !scene.occluded(shadow,
+													tMin, 1))
+										r += 0.9 * cosine;
+									radiance.set(r, 0, 0);
+								}
+								samples.splat(xs[i], ys[i], radiance);
 							}
 						}
 
+						// merge the tile and record it in the film in one
+						// step, such that a crash cannot add it twice
+						buffer.commit(samples);
+
 						// update the graphical user interface
 						if (frame != null)
 							frame.panel.finished(tile);
@@ -279,15 +608,39 @@ public class Renderer {
 		// signal the reporter that the task is done
 		reporter.done();
 
+		// write the film to the disk
+		buffer.flush();
+
 		/**********************************************************************
 		 * Export the result
 		 *********************************************************************/
 
-		BufferedImage result = buffer.toBufferedImage(sensitivity, gamma);
+		// the image is tone mapped in bands of rows while it is written, such
+		// that a film which is larger than the heap can be exported as well
 		try {
-			ImageIO.write(result, "png", new File(filename));
+			ImageIO.write(buffer.toRenderedImage(sensitivity, gamma), "png",
+					new File(filename));
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		// compare the result with the reference image, which has typically
+		// been rendered in double precision
+		if (reference != null) {
+			BufferedImage result = buffer.toBufferedImage(sensitivity, gamma);
+			try {
+				BufferedImage image = ImageIO.read(new File(reference));
+				if (image == null)
+					System.err.format("could not read the reference image "
+							+ "\"%s\"!\n", reference);
+				else
+					System.out.println("difference with " + reference + ": "
+							+ new ImageDifference(image, result));
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+			}
+		}
 	}
 }
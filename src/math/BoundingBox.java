@@ -0,0 +1,277 @@
+package math;
+
+import java.util.Locale;
+
+/**
+ * An axis aligned bounding box in three dimensional space, spanned between a
+ * minimum and a maximum corner.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class BoundingBox {
+	
+	/**
+	 * Reference to the empty bounding box. The union of the empty bounding box
+	 * with any other bounding box is equal to that other bounding box.
+	 */
+	public static final BoundingBox EMPTY = new BoundingBox(new Point(
+			Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+			Double.POSITIVE_INFINITY), new Point(Double.NEGATIVE_INFINITY,
+			Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY), false);
+
+	/**
+	 * The corner of this bounding box with the smallest coordinates.
+	 */
+	public final Point minimum;
+
+	/**
+	 * The corner of this bounding box with the largest coordinates.
+	 */
+	public final Point maximum;
+
+	/**
+	 * Creates a new bounding box which tightly encloses the two given points.
+	 * 
+	 * @param a
+	 *            the first point.
+	 * @param b
+	 *            the second point.
+	 * @throws NullPointerException
+	 *             when one of the given points is null.
+	 */
+	public BoundingBox(Point a, Point b) throws NullPointerException {
+		if (a == null)
+			throw new NullPointerException("the first point is null!");
+		if (b == null)
+			throw new NullPointerException("the second point is null!");
+		this.minimum = new Point(Math.min(a.x, b.x), Math.min(a.y, b.y),
+				Math.min(a.z, b.z));
+		this.maximum = new Point(Math.max(a.x, b.x), Math.max(a.y, b.y),
+				Math.max(a.z, b.z));
+	}
+
+	/**
+	 * Creates a new bounding box with the given corners without sorting their
+	 * coordinates.
+	 * 
+	 * @param minimum
+	 *            the minimum corner.
+	 * @param maximum
+	 *            the maximum corner.
+	 * @param unused
+	 *            parameter to distinguish this constructor.
+	 */
+	private BoundingBox(Point minimum, Point maximum, boolean unused) {
+		this.minimum = minimum;
+		this.maximum = maximum;
+	}
+
+	/**
+	 * Returns whether this bounding box is empty.
+	 * 
+	 * @return true when this bounding box does not contain any point.
+	 */
+	public boolean isEmpty() {
+		return minimum.x > maximum.x || minimum.y > maximum.y
+				|| minimum.z > maximum.z;
+	}
+
+	/**
+	 * Returns the smallest bounding box which encloses both this and the given
+	 * bounding box.
+	 * 
+	 * @param box
+	 *            the bounding box to enclose.
+	 * @throws NullPointerException
+	 *             when the given bounding box is null.
+	 * @return the union of this and the given bounding box.
+	 */
+	public BoundingBox union(BoundingBox box) throws NullPointerException {
+		if (box.isEmpty())
+			return this;
+		if (isEmpty())
+			return box;
+		return new BoundingBox(new Point(Math.min(minimum.x, box.minimum.x),
+				Math.min(minimum.y, box.minimum.y), Math.min(minimum.z,
+						box.minimum.z)), new Point(Math.max(maximum.x,
+				box.maximum.x), Math.max(maximum.y, box.maximum.y), Math.max(
+				maximum.z, box.maximum.z)), false);
+	}
+
+	/**
+	 * Returns the smallest bounding box which encloses both this bounding box
+	 * and the given point.
+	 * 
+	 * @param point
+	 *            the point to enclose.
+	 * @throws NullPointerException
+	 *             when the given point is null.
+	 * @return the union of this bounding box and the given point.
+	 */
+	public BoundingBox union(Point point) throws NullPointerException {
+		return union(new BoundingBox(point, point));
+	}
+
+	/**
+	 * Returns the center of this bounding box.
+	 * 
+	 * @return the center of this bounding box.
+	 */
+	public Point getCentroid() {
+		return new Point(0.5 * (minimum.x + maximum.x),
+				0.5 * (minimum.y + maximum.y), 0.5 * (minimum.z + maximum.z));
+	}
+
+	/**
+	 * Returns the extent of this bounding box along the given axis.
+	 * 
+	 * @param axis
+	 *            the axis (0=x, 1=y, 2=z axis).
+	 * @throws IllegalArgumentException
+	 *             when the given axis is smaller than zero or larger than two.
+	 * @return the extent of this bounding box along the given axis.
+	 */
+	public double getExtent(int axis) throws IllegalArgumentException {
+		return Math.max(0, maximum.get(axis) - minimum.get(axis));
+	}
+
+	/**
+	 * Returns the axis along which this bounding box has the largest extent.
+	 * 
+	 * @return the axis along which this bounding box has the largest extent
+	 *         (0=x, 1=y, 2=z axis).
+	 */
+	public int getMaximumExtent() {
+		double x = getExtent(0);
+		double y = getExtent(1);
+		double z = getExtent(2);
+		if (x > y && x > z)
+			return 0;
+		else if (y > z)
+			return 1;
+		else
+			return 2;
+	}
+
+	/**
+	 * Returns the surface area of this bounding box. The surface area of an
+	 * empty bounding box is zero.
+	 * 
+	 * @return the surface area of this bounding box.
+	 */
+	public double getSurfaceArea() {
+		if (isEmpty())
+			return 0;
+		double x = maximum.x - minimum.x;
+		double y = maximum.y - minimum.y;
+		double z = maximum.z - minimum.z;
+		return 2.0 * (x * y + y * z + z * x);
+	}
+
+	/**
+	 * Returns whether the ray starting at the given origin with the given
+	 * inverse direction overlaps this bounding box within the given interval.
+	 * 
+	 * The inverse direction is passed in, rather than the direction, such that
+	 * it only has to be computed once per ray during the traversal of an
+	 * acceleration structure.
+	 * 
+	 * @param origin
+	 *            the origin of the ray.
+	 * @param inverseDirection
+	 *            the component wise inverse of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray.
+	 * @param tMax
+	 *            the end of the interval along the ray.
+	 * @throws NullPointerException
+	 *             when the given origin or inverse direction is null.
+	 * @return true when the ray overlaps this bounding box within the given
+	 *         interval.
+	 */
+	public boolean intersect(Point origin, Vector inverseDirection,
+			double tMin, double tMax) throws NullPointerException {
+		return intersect(origin.x, origin.y, origin.z, inverseDirection.x,
+				inverseDirection.y, inverseDirection.z, tMin, tMax);
+	}
+
+	/**
+	 * Returns whether the ray starting at the given origin with the given
+	 * inverse direction overlaps this bounding box within the given interval,
+	 * where the origin and inverse direction are passed as coordinates.
+	 * 
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param ix
+	 *            the inverse of the x coordinate of the direction of the ray.
+	 * @param iy
+	 *            the inverse of the y coordinate of the direction of the ray.
+	 * @param iz
+	 *            the inverse of the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray.
+	 * @param tMax
+	 *            the end of the interval along the ray.
+	 * @return true when the ray overlaps this bounding box within the given
+	 *         interval.
+	 */
+	public boolean intersect(double ox, double oy, double oz, double ix,
+			double iy, double iz, double tMin, double tMax) {
+		double t0 = (minimum.x - ox) * ix;
+		double t1 = (maximum.x - ox) * ix;
+		if (t0 > t1) {
+			double tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		// comparisons with NaN are false, which leaves the interval untouched
+		if (t0 > tMin)
+			tMin = t0;
+		if (t1 < tMax)
+			tMax = t1;
+
+		t0 = (minimum.y - oy) * iy;
+		t1 = (maximum.y - oy) * iy;
+		if (t0 > t1) {
+			double tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		if (t0 > tMin)
+			tMin = t0;
+		if (t1 < tMax)
+			tMax = t1;
+
+		t0 = (minimum.z - oz) * iz;
+		t1 = (maximum.z - oz) * iz;
+		if (t0 > t1) {
+			double tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		if (t0 > tMin)
+			tMin = t0;
+		if (t1 < tMax)
+			tMax = t1;
+
+		return tMin <= tMax;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH,
+				"[%s]: (%g %g %g) - (%g %g %g)", getClass().getName(),
+				minimum.x, minimum.y, minimum.z, maximum.x, maximum.y,
+				maximum.z);
+	}
+}
@@ -6,12 +6,20 @@ import java.util.Locale;
 /**
  * Implementation of a 4 x 4 matrix.
  * 
+ * The elements are stored in a single array in row-major order, such that
+ * element (row, column) is found at index 4 * row + column. The products,
+ * the transpose, the inverse and the transformations of points and vectors
+ * are fully unrolled.
+ * 
  * @author 	CGRG
  * @version 4.0.0
  */
 public class Matrix {
 	
-	private final double[][] matrix = new double[4][4];
+	/**
+	 * The elements of this matrix in row-major order.
+	 */
+	private final double[] elements = new double[16];
 
 	/**
 	 * Reference to the identity matrix.
@@ -46,8 +54,7 @@ public class Matrix {
 	 */
 	public Matrix(double... elements) throws NullPointerException,
 			ArrayIndexOutOfBoundsException {
-		for (int i = 0; i < 16; ++i)
-			set(i / 4, i % 4, elements[i]);
+		System.arraycopy(elements, 0, this.elements, 0, 16);
 	}
 
 	/**
@@ -59,9 +66,7 @@ public class Matrix {
 	 *             when the given matrix is null.
 	 */
 	public Matrix(Matrix matrix) throws NullPointerException {
-		for (int row = 0; row < 4; ++row)
-			for (int column = 0; column < 4; ++column)
-				set(row, column, matrix.get(row, column));
+		System.arraycopy(matrix.elements, 0, elements, 0, 16);
 	}
 
 	/**
@@ -78,7 +83,7 @@ public class Matrix {
 	 */
 	public double get(int row, int column)
 			throws ArrayIndexOutOfBoundsException {
-		return matrix[row][column];
+		return elements[index(row, column)];
 	}
 
 	/**
@@ -97,7 +102,28 @@ public class Matrix {
 	 */
 	protected void set(int row, int column, double value)
 			throws ArrayIndexOutOfBoundsException {
-		matrix[row][column] = value;
+		elements[index(row, column)] = value;
+	}
+
+	/**
+	 * Returns the index of the element at the given row and column in the
+	 * array of elements.
+	 * 
+	 * @param row
+	 *            the row of the element.
+	 * @param column
+	 *            the column of the element.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given row or column is smaller than zero or larger
+	 *             than the four.
+	 * @return the index of the element in the array of elements.
+	 */
+	private static int index(int row, int column)
+			throws ArrayIndexOutOfBoundsException {
+		if ((row & ~3) != 0 || (column & ~3) != 0)
+			throw new ArrayIndexOutOfBoundsException("the element (" + row
+					+ ", " + column + ") lies outside the matrix!");
+		return 4 * row + column;
 	}
 
 	/**
@@ -106,12 +132,9 @@ public class Matrix {
 	 * @return true when this matrix is exactly equal to the identity matrix.
 	 */
 	public boolean isIdentity() {
-		for (int row = 0; row < 4; ++row)
-			for (int column = 0; column < 4; ++column)
-				if (row == column && get(row, column) != 1.0)
-					return false;
-				else if (row != column && get(row, column) != 0.0)
-					return false;
+		for (int i = 0; i < 16; ++i)
+			if (elements[i] != (i % 5 == 0 ? 1.0 : 0.0))
+				return false;
 		return true;
 	}
 
@@ -127,10 +150,8 @@ public class Matrix {
 	 */
 	public Matrix add(Matrix matrix) throws NullPointerException {
 		Matrix result = new Matrix();
-		for (int row = 0; row < 4; ++row)
-			for (int column = 0; column < 4; ++column)
-				result.set(row, column,
-						get(row, column) + matrix.get(row, column));
+		for (int i = 0; i < 16; ++i)
+			result.elements[i] = elements[i] + matrix.elements[i];
 		return result;
 	}
 
@@ -147,10 +168,8 @@ public class Matrix {
 	 */
 	public Matrix subtract(Matrix matrix) throws NullPointerException {
 		Matrix result = new Matrix();
-		for (int row = 0; row < 4; ++row)
-			for (int column = 0; column < 4; ++column)
-				result.set(row, column,
-						get(row, column) - matrix.get(row, column));
+		for (int i = 0; i < 16; ++i)
+			result.elements[i] = elements[i] - matrix.elements[i];
 		return result;
 	}
 
@@ -165,9 +184,8 @@ public class Matrix {
 	 */
 	public Matrix multiply(double scalar) {
 		Matrix result = new Matrix();
-		for (int row = 0; row < 4; ++row)
-			for (int column = 0; column < 4; ++column)
-				result.set(row, column, get(row, column) * scalar);
+		for (int i = 0; i < 16; ++i)
+			result.elements[i] = elements[i] * scalar;
 		return result;
 	}
 
@@ -182,14 +200,28 @@ public class Matrix {
 	 * @return this matrix multiplied with this matrix.
 	 */
 	public Matrix multiply(Matrix matrix) throws NullPointerException {
+		double[] a = elements;
+		double[] b = matrix.elements;
 		Matrix result = new Matrix();
-		for (int i = 0; i < 4; ++i)
-			for (int j = 0; j < 4; ++j) {
-				double value = 0;
-				for (int k = 0; k < 4; ++k)
-					value += get(i, k) * matrix.get(k, j);
-				result.set(i, j, value);
-			}
+		double[] r = result.elements;
+		// @formatter:off
+		r[0] = a[0] * b[0] + a[1] * b[4] + a[2] * b[8] + a[3] * b[12];
+		r[1] = a[0] * b[1] + a[1] * b[5] + a[2] * b[9] + a[3] * b[13];
+		r[2] = a[0] * b[2] + a[1] * b[6] + a[2] * b[10] + a[3] * b[14];
+		r[3] = a[0] * b[3] + a[1] * b[7] + a[2] * b[11] + a[3] * b[15];
+		r[4] = a[4] * b[0] + a[5] * b[4] + a[6] * b[8] + a[7] * b[12];
+		r[5] = a[4] * b[1] + a[5] * b[5] + a[6] * b[9] + a[7] * b[13];
+		r[6] = a[4] * b[2] + a[5] * b[6] + a[6] * b[10] + a[7] * b[14];
+		r[7] = a[4] * b[3] + a[5] * b[7] + a[6] * b[11] + a[7] * b[15];
+		r[8] = a[8] * b[0] + a[9] * b[4] + a[10] * b[8] + a[11] * b[12];
+		r[9] = a[8] * b[1] + a[9] * b[5] + a[10] * b[9] + a[11] * b[13];
+		r[10] = a[8] * b[2] + a[9] * b[6] + a[10] * b[10] + a[11] * b[14];
+		r[11] = a[8] * b[3] + a[9] * b[7] + a[10] * b[11] + a[11] * b[15];
+		r[12] = a[12] * b[0] + a[13] * b[4] + a[14] * b[8] + a[15] * b[12];
+		r[13] = a[12] * b[1] + a[13] * b[5] + a[14] * b[9] + a[15] * b[13];
+		r[14] = a[12] * b[2] + a[13] * b[6] + a[14] * b[10] + a[15] * b[14];
+		r[15] = a[12] * b[3] + a[13] * b[7] + a[14] * b[11] + a[15] * b[15];
+		// @formatter:on
 		return result;
 	}
 
@@ -199,10 +231,99 @@ public class Matrix {
 	 * @return the transpose of this matrix.
 	 */
 	public Matrix transpose() {
+		double[] m = elements;
 		Matrix result = new Matrix();
-		for (int row = 0; row < 4; ++row)
-			for (int column = 0; column < 4; ++column)
-				result.set(column, row, get(row, column));
+		double[] r = result.elements;
+		r[0] = m[0];
+		r[4] = m[1];
+		r[8] = m[2];
+		r[12] = m[3];
+		r[1] = m[4];
+		r[5] = m[5];
+		r[9] = m[6];
+		r[13] = m[7];
+		r[2] = m[8];
+		r[6] = m[9];
+		r[10] = m[10];
+		r[14] = m[11];
+		r[3] = m[12];
+		r[7] = m[13];
+		r[11] = m[14];
+		r[15] = m[15];
+		return result;
+	}
+
+	/**
+	 * Returns the determinant of this matrix.
+	 * 
+	 * @return the determinant of this matrix.
+	 */
+	public double determinant() {
+		double[] m = elements;
+		// the determinants of the 2 x 2 minors of the lower two rows
+		double s0 = m[8] * m[13] - m[9] * m[12];
+		double s1 = m[8] * m[14] - m[10] * m[12];
+		double s2 = m[8] * m[15] - m[11] * m[12];
+		double s3 = m[9] * m[14] - m[10] * m[13];
+		double s4 = m[9] * m[15] - m[11] * m[13];
+		double s5 = m[10] * m[15] - m[11] * m[14];
+		return m[0] * (m[5] * s5 - m[6] * s4 + m[7] * s3) - m[1]
+				* (m[4] * s5 - m[6] * s2 + m[7] * s1) + m[2]
+				* (m[4] * s4 - m[5] * s2 + m[7] * s0) - m[3]
+				* (m[4] * s3 - m[5] * s1 + m[6] * s0);
+	}
+
+	/**
+	 * Returns the inverse of this matrix, which is computed with the adjugate
+	 * matrix from the 2 x 2 minors of the upper and lower two rows.
+	 * 
+	 * @throws IllegalStateException
+	 *             when this matrix is singular.
+	 * @return the inverse of this matrix.
+	 */
+	public Matrix inverse() throws IllegalStateException {
+		double[] m = elements;
+		// the determinants of the 2 x 2 minors of the upper two rows
+		double s0 = m[0] * m[5] - m[4] * m[1];
+		double s1 = m[0] * m[6] - m[4] * m[2];
+		double s2 = m[0] * m[7] - m[4] * m[3];
+		double s3 = m[1] * m[6] - m[5] * m[2];
+		double s4 = m[1] * m[7] - m[5] * m[3];
+		double s5 = m[2] * m[7] - m[6] * m[3];
+
+		// the determinants of the 2 x 2 minors of the lower two rows
+		double c5 = m[10] * m[15] - m[14] * m[11];
+		double c4 = m[9] * m[15] - m[13] * m[11];
+		double c3 = m[9] * m[14] - m[13] * m[10];
+		double c2 = m[8] * m[15] - m[12] * m[11];
+		double c1 = m[8] * m[14] - m[12] * m[10];
+		double c0 = m[8] * m[13] - m[12] * m[9];
+
+		double determinant = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1
+				+ s5 * c0;
+		if (determinant == 0 || Double.isNaN(determinant)
+				|| Double.isInfinite(determinant))
+			throw new IllegalStateException("the matrix is singular!");
+		double d = 1.0 / determinant;
+
+		Matrix result = new Matrix();
+		double[] r = result.elements;
+		r[0] = (m[5] * c5 - m[6] * c4 + m[7] * c3) * d;
+		r[1] = (-m[1] * c5 + m[2] * c4 - m[3] * c3) * d;
+		r[2] = (m[13] * s5 - m[14] * s4 + m[15] * s3) * d;
+		r[3] = (-m[9] * s5 + m[10] * s4 - m[11] * s3) * d;
+		r[4] = (-m[4] * c5 + m[6] * c2 - m[7] * c1) * d;
+		r[5] = (m[0] * c5 - m[2] * c2 + m[3] * c1) * d;
+		r[6] = (-m[12] * s5 + m[14] * s2 - m[15] * s1) * d;
+		r[7] = (m[8] * s5 - m[10] * s2 + m[11] * s1) * d;
+		r[8] = (m[4] * c4 - m[5] * c2 + m[7] * c0) * d;
+		r[9] = (-m[0] * c4 + m[1] * c2 - m[3] * c0) * d;
+		r[10] = (m[12] * s4 - m[13] * s2 + m[15] * s0) * d;
+		r[11] = (-m[8] * s4 + m[9] * s2 - m[11] * s0) * d;
+		r[12] = (-m[4] * c3 + m[5] * c1 - m[6] * c0) * d;
+		r[13] = (m[0] * c3 - m[1] * c1 + m[2] * c0) * d;
+		r[14] = (-m[12] * s3 + m[13] * s1 - m[14] * s0) * d;
+		r[15] = (m[8] * s3 - m[9] * s1 + m[10] * s0) * d;
 		return result;
 	}
 
@@ -216,15 +337,16 @@ public class Matrix {
 	 * @return the given point transformed by this matrix.
 	 */
 	public Point transform(Point point) throws NullPointerException {
+		double[] m = elements;
 		// @formatter:off
-		double x = get(0, 0) * point.x + get(0, 1) * point.y +
-				   get(0, 2) * point.z + get(0, 3);
-		double y = get(1, 0) * point.x + get(1, 1) * point.y +
-				   get(1, 2) * point.z + get(1, 3);
-		double z = get(2, 0) * point.x + get(2, 1) * point.y +
-				   get(2, 2) * point.z + get(2, 3);
-		double w = get(3, 0) * point.x + get(3, 1) * point.y + 
-				   get(3, 2) * point.z + get(3, 3);
+		double x = m[0] * point.x + m[1] * point.y +
+				   m[2] * point.z + m[3];
+		double y = m[4] * point.x + m[5] * point.y +
+				   m[6] * point.z + m[7];
+		double z = m[8] * point.x + m[9] * point.y +
+				   m[10] * point.z + m[11];
+		double w = m[12] * point.x + m[13] * point.y +
+				   m[14] * point.z + m[15];
 		double invW = 1.0 / w;
 		// @formatter:on
 
@@ -241,13 +363,14 @@ public class Matrix {
 	 * @return the given point transformed by this matrix.
 	 */
 	public Vector transform(Vector vector) throws NullPointerException {
+		double[] m = elements;
 		// @formatter:off
-		double x = get(0, 0) * vector.x + get(0, 1) * vector.y +
-				   get(0, 2) * vector.z;
-		double y = get(1, 0) * vector.x + get(1, 1) * vector.y +
-				   get(1, 2) * vector.z;
-		double z = get(2, 0) * vector.x + get(2, 1) * vector.y +
-				   get(2, 2) * vector.z;
+		double x = m[0] * vector.x + m[1] * vector.y +
+				   m[2] * vector.z;
+		double y = m[4] * vector.x + m[5] * vector.y +
+				   m[6] * vector.z;
+		double z = m[8] * vector.x + m[9] * vector.y +
+				   m[10] * vector.z;
 		// @formatter:on
 
 		return new Vector(x, y, z);
@@ -260,7 +383,7 @@ public class Matrix {
 	 */
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(matrix);
+		return Arrays.hashCode(elements);
 	}
 
 	/*
@@ -277,7 +400,7 @@ public class Matrix {
 		if (getClass() != obj.getClass())
 			return false;
 		Matrix other = (Matrix) obj;
-		return Arrays.equals(matrix, other.matrix);
+		return Arrays.equals(elements, other.elements);
 	}
 
 	/*
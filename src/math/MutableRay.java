@@ -0,0 +1,219 @@
+package math;
+
+/**
+ * A mutable ray, of which the origin and direction are modified in place.
+ * 
+ * A thread keeps a few mutable rays and reuses them for all its samples,
+ * rather than allocating a new {@link Ray} with a new origin and direction
+ * for every camera or shadow ray.
+ * 
+ * The ray also caches the quantities which the traversal of an acceleration
+ * structure and the intersection tests derive from its direction: the
+ * inverse direction and its signs for the slab tests of bounding boxes, and
+ * the dominant axis and shear of the direction for watertight ray/triangle
+ * tests (Woop et al., "Watertight Ray/Triangle Intersection", 2013). These
+ * are computed by {@link #update()}, which the camera and the
+ * transformations call after generating or transforming a ray, and which the
+ * acceleration structures call before a traversal. The cache remembers the
+ * direction it was computed for, such that these later calls return
+ * immediately unless the direction has been modified in place since, as for
+ * the shadow rays.
+ * 
+ * The intervals along the rays are not cached, since they are passed
+ * explicitly to the intersection methods of the shapes and are stored per ray
+ * in a {@link RayBatch}.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class MutableRay {
+	
+	/**
+	 * The origin of the ray.
+	 */
+	public final MutableVector3 origin = new MutableVector3();
+
+	/**
+	 * The direction the ray extends to.
+	 */
+	public final MutableVector3 direction = new MutableVector3();
+
+	/**
+	 * The ray in which a transformed copy of this ray is stored, which is
+	 * created when it is first needed.
+	 */
+	private MutableRay scratch;
+
+	/**
+	 * The inverse of the coordinates of the direction, which are infinite
+	 * for the coordinates which are zero. These are only valid after
+	 * {@link #update()} and must not be modified.
+	 */
+	public double inverseX, inverseY, inverseZ;
+
+	/**
+	 * The signs of the inverse direction, where the bits 0, 1 and 2 are set
+	 * when the x, y and z coordinate is negative respectively. This is only
+	 * valid after {@link #update()} and must not be modified.
+	 */
+	public int sign;
+
+	/**
+	 * The axis along which the direction is largest in magnitude, followed
+	 * by the other two axes in the order which preserves the winding of the
+	 * triangles. These are only valid after {@link #update()} and must not be
+	 * modified.
+	 */
+	public int kx, ky, kz;
+
+	/**
+	 * The shear which maps the direction onto the unit vector along the z
+	 * axis after permuting the axes to kx, ky and kz. These are only valid
+	 * after {@link #update()} and must not be modified.
+	 */
+	public double shearX, shearY, shearZ;
+
+	/**
+	 * The bits of the coordinates of the direction for which the cached
+	 * quantities have been computed, which initially do not match any
+	 * direction.
+	 */
+	private long bitsX = -1, bitsY = -1, bitsZ = -1;
+
+	/**
+	 * Creates a new ray at the origin without a direction.
+	 */
+	public MutableRay() {
+	}
+
+	/**
+	 * Creates a new mutable copy of the given ray.
+	 * 
+	 * @param ray
+	 *            the ray to copy.
+	 * @throws NullPointerException
+	 *             when the given ray is null.
+	 */
+	public MutableRay(Ray ray) throws NullPointerException {
+		set(ray);
+	}
+
+	/**
+	 * Sets the origin and direction of this ray to those of the given ray.
+	 * 
+	 * @param ray
+	 *            the ray to copy.
+	 * @throws NullPointerException
+	 *             when the given ray is null.
+	 * @return this ray.
+	 */
+	public MutableRay set(Ray ray) throws NullPointerException {
+		origin.set(ray.origin);
+		direction.set(ray.direction);
+		return update();
+	}
+
+	/**
+	 * Sets the origin and direction of this ray to those of the given ray.
+	 * 
+	 * @param ray
+	 *            the ray to copy.
+	 * @throws NullPointerException
+	 *             when the given ray is null.
+	 * @return this ray.
+	 */
+	public MutableRay set(MutableRay ray) throws NullPointerException {
+		origin.set(ray.origin);
+		direction.set(ray.direction);
+		return update();
+	}
+
+	/**
+	 * Recomputes the cached inverse direction, signs, dominant axis and shear
+	 * of this ray when its direction has changed since they were last
+	 * computed. The bits of the coordinates are compared rather than their
+	 * values, such that a change from positive to negative zero is noticed.
+	 * 
+	 * @return this ray.
+	 */
+	public MutableRay update() {
+		long x = Double.doubleToRawLongBits(direction.x);
+		long y = Double.doubleToRawLongBits(direction.y);
+		long z = Double.doubleToRawLongBits(direction.z);
+		if (x != bitsX || y != bitsY || z != bitsZ) {
+			bitsX = x;
+			bitsY = y;
+			bitsZ = z;
+			compute();
+		}
+		return this;
+	}
+
+	/**
+	 * Computes the cached quantities from the current direction.
+	 */
+	private void compute() {
+		double dx = direction.x;
+		double dy = direction.y;
+		double dz = direction.z;
+		inverseX = 1.0 / dx;
+		inverseY = 1.0 / dy;
+		inverseZ = 1.0 / dz;
+		sign = (inverseX < 0 ? 1 : 0) | (inverseY < 0 ? 2 : 0)
+				| (inverseZ < 0 ? 4 : 0);
+
+		// the dominant axis becomes the z axis, and the other two axes are
+		// swapped when it points backwards to preserve the winding
+		double ax = Math.abs(dx);
+		double ay = Math.abs(dy);
+		double az = Math.abs(dz);
+		kz = ax > ay ? (ax > az ? 0 : 2) : (ay > az ? 1 : 2);
+		kx = kz == 2 ? 0 : kz + 1;
+		ky = kx == 2 ? 0 : kx + 1;
+		double dk = direction.get(kz);
+		if (dk < 0) {
+			int k = kx;
+			kx = ky;
+			ky = k;
+		}
+		shearZ = 1.0 / dk;
+		shearX = direction.get(kx) * shearZ;
+		shearY = direction.get(ky) * shearZ;
+	}
+
+	/**
+	 * Returns the scratch ray of this ray, in which a transformed copy of
+	 * this ray can be stored, e.g. the ray in the space of an instanced
+	 * shape. The scratch ray is created when it is first needed and is reused
+	 * afterwards, hence it belongs to the thread which owns this ray. The
+	 * scratch ray has a scratch ray of its own for nested transformations.
+	 * 
+	 * @return the scratch ray of this ray.
+	 */
+	public MutableRay scratch() {
+		if (scratch == null)
+			scratch = new MutableRay();
+		return scratch;
+	}
+
+	/**
+	 * Returns an immutable copy of this ray.
+	 * 
+	 * @return an immutable copy of this ray.
+	 */
+	public Ray toRay() {
+		return new Ray(origin.toPoint(), direction.toVector());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("[MutableRay] from %s %s %s in direction %s %s %s",
+				origin.x, origin.y, origin.z, direction.x, direction.y,
+				direction.z);
+	}
+}
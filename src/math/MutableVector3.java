@@ -0,0 +1,394 @@
+package math;
+
+import java.util.Locale;
+
+/**
+ * A mutable triple of coordinates in three dimensions, which is used as a
+ * point or a vector in the inner loops of the renderer.
+ * 
+ * In contrast to {@link Point} and {@link Vector}, the operations of this
+ * class modify this triple in place and return it, such that a thread can
+ * reuse a single instance for all its samples instead of allocating a new
+ * object for every intermediate result.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class MutableVector3 {
+	
+	/**
+	 * The magnitude below which a coordinate is offset by a fixed distance
+	 * rather than by a number of units in the last place.
+	 */
+	private static final float OFFSET_ORIGIN = 1f / 32f;
+
+	/**
+	 * The fixed distance by which a coordinate close to zero is offset.
+	 */
+	private static final float OFFSET_SCALE = 1f / 65536f;
+
+	/**
+	 * The number of units in the last place by which a coordinate is offset
+	 * along a unit normal.
+	 */
+	private static final float OFFSET_ULPS = 256f;
+
+	/**
+	 * x coordinate of this triple.
+	 */
+	public double x;
+
+	/**
+	 * y coordinate of this triple.
+	 */
+	public double y;
+
+	/**
+	 * z coordinate of this triple.
+	 */
+	public double z;
+
+	/**
+	 * Creates a new triple at the origin.
+	 */
+	public MutableVector3() {
+	}
+
+	/**
+	 * Creates a new triple with the given coordinates.
+	 * 
+	 * @param x
+	 *            the x coordinate.
+	 * @param y
+	 *            the y coordinate.
+	 * @param z
+	 *            the z coordinate.
+	 */
+	public MutableVector3(double x, double y, double z) {
+		set(x, y, z);
+	}
+
+	/**
+	 * Creates a new triple with the coordinates of the given point.
+	 * 
+	 * @param point
+	 *            the point to copy.
+	 * @throws NullPointerException
+	 *             when the given point is null.
+	 */
+	public MutableVector3(Point point) throws NullPointerException {
+		set(point);
+	}
+
+	/**
+	 * Creates a new triple with the coordinates of the given vector.
+	 * 
+	 * @param vector
+	 *            the vector to copy.
+	 * @throws NullPointerException
+	 *             when the given vector is null.
+	 */
+	public MutableVector3(Vector vector) throws NullPointerException {
+		set(vector);
+	}
+
+	/**
+	 * Sets the coordinates of this triple.
+	 * 
+	 * @param x
+	 *            the x coordinate.
+	 * @param y
+	 *            the y coordinate.
+	 * @param z
+	 *            the z coordinate.
+	 * @return this triple.
+	 */
+	public MutableVector3 set(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	/**
+	 * Sets the coordinates of this triple to the coordinates of the given
+	 * point.
+	 * 
+	 * @param point
+	 *            the point to copy.
+	 * @throws NullPointerException
+	 *             when the given point is null.
+	 * @return this triple.
+	 */
+	public MutableVector3 set(Point point) throws NullPointerException {
+		return set(point.x, point.y, point.z);
+	}
+
+	/**
+	 * Sets the coordinates of this triple to the coordinates of the given
+	 * vector.
+	 * 
+	 * @param vector
+	 *            the vector to copy.
+	 * @throws NullPointerException
+	 *             when the given vector is null.
+	 * @return this triple.
+	 */
+	public MutableVector3 set(Vector vector) throws NullPointerException {
+		return set(vector.x, vector.y, vector.z);
+	}
+
+	/**
+	 * Sets the coordinates of this triple to the coordinates of the given
+	 * triple.
+	 * 
+	 * @param triple
+	 *            the triple to copy.
+	 * @throws NullPointerException
+	 *             when the given triple is null.
+	 * @return this triple.
+	 */
+	public MutableVector3 set(MutableVector3 triple)
+			throws NullPointerException {
+		return set(triple.x, triple.y, triple.z);
+	}
+
+	/**
+	 * Returns the coordinate of this triple along the given axis.
+	 * 
+	 * @param axis
+	 *            axis to retrieve the coordinate of (0=x, 1=y, 2=z axis).
+	 * @throws IllegalArgumentException
+	 *             when the given axis is smaller than zero or larger than two.
+	 * @return the coordinate of this triple along the given axis.
+	 */
+	public double get(int axis) throws IllegalArgumentException {
+		switch (axis) {
+		case 0:
+			return x;
+		case 1:
+			return y;
+		case 2:
+			return z;
+		default:
+			throw new IllegalArgumentException(
+					"the given axis is out of bounds!");
+		}
+	}
+
+	/**
+	 * Adds the given coordinates to this triple.
+	 * 
+	 * @param x
+	 *            the x coordinate to add.
+	 * @param y
+	 *            the y coordinate to add.
+	 * @param z
+	 *            the z coordinate to add.
+	 * @return this triple.
+	 */
+	public MutableVector3 add(double x, double y, double z) {
+		return set(this.x + x, this.y + y, this.z + z);
+	}
+
+	/**
+	 * Adds the given triple to this triple.
+	 * 
+	 * @param triple
+	 *            the triple to add.
+	 * @throws NullPointerException
+	 *             when the given triple is null.
+	 * @return this triple.
+	 */
+	public MutableVector3 add(MutableVector3 triple)
+			throws NullPointerException {
+		return add(triple.x, triple.y, triple.z);
+	}
+
+	/**
+	 * Adds the given triple scaled by the given scalar to this triple.
+	 * 
+	 * @param scalar
+	 *            the scalar to scale the given triple with.
+	 * @param triple
+	 *            the triple to add.
+	 * @throws NullPointerException
+	 *             when the given triple is null.
+	 * @return this triple.
+	 */
+	public MutableVector3 add(double scalar, MutableVector3 triple)
+			throws NullPointerException {
+		return add(scalar * triple.x, scalar * triple.y, scalar * triple.z);
+	}
+
+	/**
+	 * Subtracts the given coordinates from this triple.
+	 * 
+	 * @param x
+	 *            the x coordinate to subtract.
+	 * @param y
+	 *            the y coordinate to subtract.
+	 * @param z
+	 *            the z coordinate to subtract.
+	 * @return this triple.
+	 */
+	public MutableVector3 subtract(double x, double y, double z) {
+		return set(this.x - x, this.y - y, this.z - z);
+	}
+
+	/**
+	 * Subtracts the given triple from this triple.
+	 * 
+	 * @param triple
+	 *            the triple to subtract.
+	 * @throws NullPointerException
+	 *             when the given triple is null.
+	 * @return this triple.
+	 */
+	public MutableVector3 subtract(MutableVector3 triple)
+			throws NullPointerException {
+		return subtract(triple.x, triple.y, triple.z);
+	}
+
+	/**
+	 * Scales this triple by the given scalar.
+	 * 
+	 * @param scalar
+	 *            the scalar to scale with.
+	 * @return this triple.
+	 */
+	public MutableVector3 scale(double scalar) {
+		return set(scalar * x, scalar * y, scalar * z);
+	}
+
+	/**
+	 * Replaces this triple by the cross product of this triple and the given
+	 * triple.
+	 * 
+	 * @param triple
+	 *            the right hand side of the cross product.
+	 * @throws NullPointerException
+	 *             when the given triple is null.
+	 * @return this triple.
+	 */
+	public MutableVector3 cross(MutableVector3 triple)
+			throws NullPointerException {
+		return set(y * triple.z - z * triple.y, z * triple.x - x * triple.z, x
+				* triple.y - y * triple.x);
+	}
+
+	/**
+	 * Returns the dot product of this triple and the given triple.
+	 * 
+	 * @param triple
+	 *            the triple to compute the dot product with.
+	 * @throws NullPointerException
+	 *             when the given triple is null.
+	 * @return the dot product of this triple and the given triple.
+	 */
+	public double dot(MutableVector3 triple) throws NullPointerException {
+		return x * triple.x + y * triple.y + z * triple.z;
+	}
+
+	/**
+	 * Returns the squared length of this triple.
+	 * 
+	 * @return the squared length of this triple.
+	 */
+	public double lengthSquared() {
+		return x * x + y * y + z * z;
+	}
+
+	/**
+	 * Returns the length of this triple.
+	 * 
+	 * @return the length of this triple.
+	 */
+	public double length() {
+		return Math.sqrt(lengthSquared());
+	}
+
+	/**
+	 * Normalizes this triple.
+	 * 
+	 * @return this triple.
+	 */
+	public MutableVector3 normalize() {
+		return scale(1.0 / length());
+	}
+
+	/**
+	 * Moves this point, which lies on a surface computed in single
+	 * precision, away from the surface along the given normal, such that a
+	 * ray which starts at the moved point does not intersect the same
+	 * surface again due to rounding errors.
+	 * 
+	 * Every coordinate is moved by a number of units in the last place of
+	 * its float, proportional to the corresponding coordinate of the normal,
+	 * which scales the offset with the magnitude of the coordinate and
+	 * thereby with its rounding error. Coordinates close to zero, whose units
+	 * in the last place become arbitrarily small, are moved by a fixed
+	 * distance instead (Waechter and Binder, "A Fast and Robust Method for
+	 * Avoiding Self-Intersection", 2019).
+	 * 
+	 * @param nx
+	 *            the x coordinate of the normal on the side to move to.
+	 * @param ny
+	 *            the y coordinate of the normal on the side to move to.
+	 * @param nz
+	 *            the z coordinate of the normal on the side to move to.
+	 * @return this triple.
+	 */
+	public MutableVector3 offset(double nx, double ny, double nz) {
+		x = offset((float) x, nx);
+		y = offset((float) y, ny);
+		z = offset((float) z, nz);
+		return this;
+	}
+
+	/**
+	 * Moves the given coordinate by the given coordinate of the normal.
+	 * 
+	 * @param p
+	 *            the coordinate of the point.
+	 * @param n
+	 *            the coordinate of the normal.
+	 * @return the moved coordinate.
+	 */
+	private static float offset(float p, double n) {
+		if (Math.abs(p) < OFFSET_ORIGIN)
+			return p + (float) (OFFSET_SCALE * n);
+		int ulps = (int) (OFFSET_ULPS * n);
+		return Float.intBitsToFloat(Float.floatToIntBits(p)
+				+ (p < 0 ? -ulps : ulps));
+	}
+
+	/**
+	 * Returns a point with the coordinates of this triple.
+	 * 
+	 * @return a point with the coordinates of this triple.
+	 */
+	public Point toPoint() {
+		return new Point(x, y, z);
+	}
+
+	/**
+	 * Returns a vector with the coordinates of this triple.
+	 * 
+	 * @return a vector with the coordinates of this triple.
+	 */
+	public Vector toVector() {
+		return new Vector(x, y, z);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH, "[%s]:\n%g %g %g", getClass()
+				.getName(), x, y, z);
+	}
+}
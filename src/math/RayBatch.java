@@ -0,0 +1,221 @@
+package math;
+
+/**
+ * A batch of rays, which is stored as a structure of arrays: the coordinates
+ * of the origins, the coordinates of the directions and the intervals along
+ * the rays are each stored in a separate array of primitives.
+ * 
+ * Tracing a batch of rays at once lets the loops over the rays access memory
+ * sequentially, such that the just-in-time compiler can vectorize them. A
+ * batch is typically created once per thread and refilled for every group of
+ * rays.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class RayBatch {
+	
+	/**
+	 * The maximum number of rays in this batch.
+	 */
+	public final int capacity;
+
+	/**
+	 * The x coordinates of the origins of the rays.
+	 */
+	public final double[] ox;
+
+	/**
+	 * The y coordinates of the origins of the rays.
+	 */
+	public final double[] oy;
+
+	/**
+	 * The z coordinates of the origins of the rays.
+	 */
+	public final double[] oz;
+
+	/**
+	 * The x coordinates of the directions of the rays.
+	 */
+	public final double[] dx;
+
+	/**
+	 * The y coordinates of the directions of the rays.
+	 */
+	public final double[] dy;
+
+	/**
+	 * The z coordinates of the directions of the rays.
+	 */
+	public final double[] dz;
+
+	/**
+	 * The inverse of the x coordinates of the directions of the rays, which
+	 * are copied from the cache of the added rays (see
+	 * {@link MutableRay#inverseX}).
+	 */
+	public final double[] ix;
+
+	/**
+	 * The inverse of the y coordinates of the directions of the rays.
+	 */
+	public final double[] iy;
+
+	/**
+	 * The inverse of the z coordinates of the directions of the rays.
+	 */
+	public final double[] iz;
+
+	/**
+	 * The start of the interval along every ray (inclusive).
+	 */
+	public final double[] tMin;
+
+	/**
+	 * The end of the interval along every ray (exclusive).
+	 */
+	public final double[] tMax;
+
+	/**
+	 * The number of rays in this batch.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new empty batch which can store the given number of rays.
+	 * 
+	 * @param capacity
+	 *            the maximum number of rays in the batch.
+	 * @throws IllegalArgumentException
+	 *             when the given capacity is smaller than one.
+	 */
+	public RayBatch(int capacity) throws IllegalArgumentException {
+		if (capacity < 1)
+			throw new IllegalArgumentException(
+					"the capacity of a batch must be at least one!");
+		this.capacity = capacity;
+		this.ox = new double[capacity];
+		this.oy = new double[capacity];
+		this.oz = new double[capacity];
+		this.dx = new double[capacity];
+		this.dy = new double[capacity];
+		this.dz = new double[capacity];
+		this.ix = new double[capacity];
+		this.iy = new double[capacity];
+		this.iz = new double[capacity];
+		this.tMin = new double[capacity];
+		this.tMax = new double[capacity];
+	}
+
+	/**
+	 * Returns the number of rays in this batch.
+	 * 
+	 * @return the number of rays in this batch.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether this batch contains as many rays as its capacity.
+	 * 
+	 * @return true when no more rays can be added to this batch.
+	 */
+	public boolean isFull() {
+		return size == capacity;
+	}
+
+	/**
+	 * Removes all the rays from this batch.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Adds the given ray with the interval [tMin, tMax) to this batch.
+	 * 
+	 * @param ray
+	 *            the ray to add.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @throws NullPointerException
+	 *             when the given ray is null.
+	 * @throws IllegalStateException
+	 *             when this batch is full.
+	 * @return the index of the ray in this batch.
+	 */
+	public int add(MutableRay ray, double tMin, double tMax)
+			throws NullPointerException, IllegalStateException {
+		if (ray == null)
+			throw new NullPointerException("the given ray is null!");
+		if (size == capacity)
+			throw new IllegalStateException("the batch is full!");
+		int index = size++;
+		ox[index] = ray.origin.x;
+		oy[index] = ray.origin.y;
+		oz[index] = ray.origin.z;
+		dx[index] = ray.direction.x;
+		dy[index] = ray.direction.y;
+		dz[index] = ray.direction.z;
+		ray.update();
+		ix[index] = ray.inverseX;
+		iy[index] = ray.inverseY;
+		iz[index] = ray.inverseZ;
+		this.tMin[index] = tMin;
+		this.tMax[index] = tMax;
+		return index;
+	}
+
+	/**
+	 * Appends the given number of rays to this batch without initializing
+	 * them, such that a camera can fill the arrays of this batch directly.
+	 * The caller has to set all the arrays, including the inverse directions,
+	 * of the appended rays.
+	 * 
+	 * @param count
+	 *            the number of rays to append.
+	 * @throws IllegalArgumentException
+	 *             when the given number of rays is negative.
+	 * @throws IllegalStateException
+	 *             when the rays do not fit in this batch.
+	 * @return the index of the first appended ray in this batch.
+	 */
+	public int reserve(int count) throws IllegalArgumentException,
+			IllegalStateException {
+		if (count < 0)
+			throw new IllegalArgumentException(
+					"the number of rays cannot be negative!");
+		if (count > capacity - size)
+			throw new IllegalStateException("the batch is full!");
+		int index = size;
+		size += count;
+		return index;
+	}
+
+	/**
+	 * Copies the ray with the given index to the given mutable ray.
+	 * 
+	 * @param index
+	 *            the index of the ray in this batch.
+	 * @param ray
+	 *            the ray in which the ray of the batch is stored.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the given index lies outside this batch.
+	 * @throws NullPointerException
+	 *             when the given ray is null.
+	 * @return the given ray.
+	 */
+	public MutableRay get(int index, MutableRay ray)
+			throws ArrayIndexOutOfBoundsException, NullPointerException {
+		if (index < 0 || index >= size)
+			throw new ArrayIndexOutOfBoundsException("the ray " + index
+					+ " lies outside the batch!");
+		ray.origin.set(ox[index], oy[index], oz[index]);
+		ray.direction.set(dx[index], dy[index], dz[index]);
+		return ray;
+	}
+}
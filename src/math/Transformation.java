@@ -4,11 +4,60 @@ package math;
  * A wrapper for transformation matrix which allows to apply transformation and
  * inverse transformation on three-dimensional objects.
  * 
+ * A transformation classifies its matrix when it is created (see
+ * {@link Type}) and transforms points, vectors, rays and normals with a
+ * straight-line routine for its class, which skips the multiplications by the
+ * elements which are known to be zero or one. A transformation is created
+ * together with its inverse, such that the inverse transformations use the
+ * same routines.
+ * 
  * @author 	CGRG
  * @version 4.0.0
  */
 public class Transformation {
 	
+	/**
+	 * The classes of transformation matrices, ordered from the most to the
+	 * least specialized.
+	 */
+	public static enum Type {
+		/**
+		 * The identity transformation.
+		 */
+		IDENTITY,
+
+		/**
+		 * A translation.
+		 */
+		TRANSLATION,
+
+		/**
+		 * A scale along the coordinate axes, followed by a translation.
+		 */
+		SCALE,
+
+		/**
+		 * A rotation or reflection, followed by a translation.
+		 */
+		RIGID,
+
+		/**
+		 * Any other affine transformation.
+		 */
+		AFFINE,
+
+		/**
+		 * A transformation of which the last row differs from (0, 0, 0, 1).
+		 */
+		PROJECTIVE
+	}
+
+	/**
+	 * The tolerance within which the linear part of a transformation matrix
+	 * must be orthonormal for the transformation to be classified as rigid.
+	 */
+	private static final double RIGID_TOLERANCE = 1e-12;
+
 	/**
 	 * The transformation matrix.
 	 */
@@ -19,12 +68,97 @@ public class Transformation {
 	 */
 	private final Matrix inverse;
 
+	/**
+	 * The inverse of this transformation.
+	 */
+	private final Transformation inverted;
+
+	/**
+	 * The class of the transformation matrix.
+	 */
+	private final Type type;
+
+	/**
+	 * The elements of the transformation matrix, which are cached to apply
+	 * the transformation without bounds checks.
+	 */
+	private final double m00, m01, m02, m03, m10, m11, m12, m13, m20, m21,
+			m22, m23, m30, m31, m32, m33;
+
 	/**
 	 * Reference to the identity transformation.
 	 */
 	public static final Transformation IDENTITY = new Transformation(
 			Matrix.IDENTITY, Matrix.IDENTITY);
 
+	/**
+	 * Creates a new transformation with the given matrix, of which the inverse
+	 * is computed. This allows to create transformations from arbitrary
+	 * matrices, e.g. matrices which are read from a scene description.
+	 * 
+	 * @param matrix
+	 *            the transformation matrix.
+	 * @throws NullPointerException
+	 *             when the given matrix is null.
+	 * @throws IllegalArgumentException
+	 *             when the given matrix is singular.
+	 */
+	public Transformation(Matrix matrix) throws NullPointerException,
+			IllegalArgumentException {
+		this(copy(matrix), invert(matrix));
+	}
+
+	/**
+	 * Returns a copy of the given matrix, such that the transformation does
+	 * not change when the given matrix is modified by a subclass.
+	 * 
+	 * @param matrix
+	 *            the matrix to copy.
+	 * @throws NullPointerException
+	 *             when the given matrix is null.
+	 * @return a copy of the given matrix.
+	 */
+	private static Matrix copy(Matrix matrix) throws NullPointerException {
+		if (matrix == null)
+			throw new NullPointerException("the given matrix is null!");
+		return new Matrix(matrix);
+	}
+
+	/**
+	 * Returns the inverse of the given matrix.
+	 * 
+	 * @param matrix
+	 *            the matrix to invert.
+	 * @throws NullPointerException
+	 *             when the given matrix is null.
+	 * @throws IllegalArgumentException
+	 *             when the given matrix is singular.
+	 * @return the inverse of the given matrix.
+	 */
+	private static Matrix invert(Matrix matrix) throws NullPointerException,
+			IllegalArgumentException {
+		if (matrix == null)
+			throw new NullPointerException("the given matrix is null!");
+		Matrix inverse;
+		try {
+			inverse = matrix.inverse();
+		} catch (IllegalStateException e) {
+			throw new IllegalArgumentException(
+					"the given matrix is singular!", e);
+		}
+
+		// the inverse of an affine matrix is affine, but the rounding errors
+		// of the general inverse would classify it as projective
+		if (matrix.get(3, 0) == 0 && matrix.get(3, 1) == 0
+				&& matrix.get(3, 2) == 0 && matrix.get(3, 3) == 1) {
+			inverse.set(3, 0, 0);
+			inverse.set(3, 1, 0);
+			inverse.set(3, 2, 0);
+			inverse.set(3, 3, 1);
+		}
+		return inverse;
+	}
+
 	/**
 	 * Creates a new transformation for three dimensional objects.
 	 * 
@@ -34,8 +168,86 @@ public class Transformation {
 	 *            the inverse of the given transformation.
 	 */
 	private Transformation(Matrix matrix, Matrix inverse) {
+		this(matrix, inverse, null);
+	}
+
+	/**
+	 * Creates a new transformation for three dimensional objects, of which
+	 * the inverse transformation has already been created.
+	 * 
+	 * @param matrix
+	 *            the matrix transformation.
+	 * @param inverse
+	 *            the inverse of the given transformation.
+	 * @param inverted
+	 *            the inverse transformation, or null to create it.
+	 */
+	private Transformation(Matrix matrix, Matrix inverse,
+			Transformation inverted) {
 		this.matrix = matrix;
 		this.inverse = inverse;
+		this.type = classify(matrix);
+		this.m00 = matrix.get(0, 0);
+		this.m01 = matrix.get(0, 1);
+		this.m02 = matrix.get(0, 2);
+		this.m03 = matrix.get(0, 3);
+		this.m10 = matrix.get(1, 0);
+		this.m11 = matrix.get(1, 1);
+		this.m12 = matrix.get(1, 2);
+		this.m13 = matrix.get(1, 3);
+		this.m20 = matrix.get(2, 0);
+		this.m21 = matrix.get(2, 1);
+		this.m22 = matrix.get(2, 2);
+		this.m23 = matrix.get(2, 3);
+		this.m30 = matrix.get(3, 0);
+		this.m31 = matrix.get(3, 1);
+		this.m32 = matrix.get(3, 2);
+		this.m33 = matrix.get(3, 3);
+		this.inverted = inverted != null ? inverted : new Transformation(
+				inverse, matrix, this);
+	}
+
+	/**
+	 * Returns the class of the given transformation matrix.
+	 * 
+	 * @param m
+	 *            the transformation matrix.
+	 * @return the class of the given transformation matrix.
+	 */
+	private static Type classify(Matrix m) {
+		if (m.get(3, 0) != 0 || m.get(3, 1) != 0 || m.get(3, 2) != 0
+				|| m.get(3, 3) != 1)
+			return Type.PROJECTIVE;
+		boolean diagonal = m.get(0, 1) == 0 && m.get(0, 2) == 0
+				&& m.get(1, 0) == 0 && m.get(1, 2) == 0 && m.get(2, 0) == 0
+				&& m.get(2, 1) == 0;
+		if (diagonal && m.get(0, 0) == 1 && m.get(1, 1) == 1
+				&& m.get(2, 2) == 1) {
+			if (m.get(0, 3) == 0 && m.get(1, 3) == 0 && m.get(2, 3) == 0)
+				return Type.IDENTITY;
+			return Type.TRANSLATION;
+		}
+		if (diagonal)
+			return Type.SCALE;
+
+		// the columns of the linear part must be orthonormal
+		for (int i = 0; i < 3; ++i)
+			for (int j = i; j < 3; ++j) {
+				double dot = m.get(0, i) * m.get(0, j) + m.get(1, i)
+						* m.get(1, j) + m.get(2, i) * m.get(2, j);
+				if (Math.abs(dot - (i == j ? 1 : 0)) > RIGID_TOLERANCE)
+					return Type.AFFINE;
+			}
+		return Type.RIGID;
+	}
+
+	/**
+	 * Returns the class of the matrix of this transformation.
+	 * 
+	 * @return the class of the matrix of this transformation.
+	 */
+	public Type getType() {
+		return type;
 	}
 
 	/**
@@ -62,7 +274,7 @@ public class Transformation {
 	 * @return the inverse of this transformation.
 	 */
 	public Transformation invert() {
-		return new Transformation(inverse, matrix);
+		return inverted;
 	}
 
 	/**
@@ -92,7 +304,39 @@ public class Transformation {
 	 * @return the given point transformed by this transformation.
 	 */
 	public Point transform(Point point) throws NullPointerException {
-		return matrix.transform(point);
+		double x = point.x;
+		double y = point.y;
+		double z = point.z;
+		double px, py, pz;
+		switch (type) {
+		case IDENTITY:
+			px = x;
+			py = y;
+			pz = z;
+			break;
+		case TRANSLATION:
+		case SCALE:
+			// the diagonal elements of a translation equal one, hence the
+			// products are exact
+			px = m00 * x + m03;
+			py = m11 * y + m13;
+			pz = m22 * z + m23;
+			break;
+		default:
+			px = m00 * x + m01 * y + m02 * z + m03;
+			py = m10 * x + m11 * y + m12 * z + m13;
+			pz = m20 * x + m21 * y + m22 * z + m23;
+			if (type == Type.PROJECTIVE) {
+				double invW = 1.0 / (m30 * x + m31 * y + m32 * z + m33);
+				px *= invW;
+				py *= invW;
+				pz *= invW;
+			}
+		}
+
+		// a single allocation site allows the just-in-time compiler to
+		// eliminate the allocation when the result does not escape
+		return new Point(px, py, pz);
 	}
 
 	/**
@@ -106,7 +350,7 @@ public class Transformation {
 	 *         transformation.
 	 */
 	public Point transformInverse(Point point) throws NullPointerException {
-		return inverse.transform(point);
+		return inverted.transform(point);
 	}
 
 	/**
@@ -119,7 +363,28 @@ public class Transformation {
 	 * @return the given vector transformed by this transformation.
 	 */
 	public Vector transform(Vector vector) throws NullPointerException {
-		return matrix.transform(vector);
+		double x = vector.x;
+		double y = vector.y;
+		double z = vector.z;
+		double vx, vy, vz;
+		switch (type) {
+		case IDENTITY:
+		case TRANSLATION:
+			vx = x;
+			vy = y;
+			vz = z;
+			break;
+		case SCALE:
+			vx = m00 * x;
+			vy = m11 * y;
+			vz = m22 * z;
+			break;
+		default:
+			vx = m00 * x + m01 * y + m02 * z;
+			vy = m10 * x + m11 * y + m12 * z;
+			vz = m20 * x + m21 * y + m22 * z;
+		}
+		return new Vector(vx, vy, vz);
 	}
 
 	/**
@@ -133,7 +398,67 @@ public class Transformation {
 	 *         transformation.
 	 */
 	public Vector transformInverse(Vector vector) throws NullPointerException {
-		return inverse.transform(vector);
+		return inverted.transform(vector);
+	}
+
+	/**
+	 * Transforms the given surface normal with this transformation, i.e. with
+	 * the transpose of the inverse of the linear part of the transformation
+	 * matrix. The transformed normal is not normalized, except for rigid
+	 * transformations, which preserve its length.
+	 * 
+	 * @param normal
+	 *            the normal to transform.
+	 * @throws NullPointerException
+	 *             when the given normal is null.
+	 * @return the given normal transformed by this transformation.
+	 */
+	public Vector transformNormal(Vector normal) throws NullPointerException {
+		double x = normal.x;
+		double y = normal.y;
+		double z = normal.z;
+		Transformation i = inverted;
+		double nx, ny, nz;
+		switch (type) {
+		case IDENTITY:
+		case TRANSLATION:
+			nx = x;
+			ny = y;
+			nz = z;
+			break;
+		case SCALE:
+			nx = i.m00 * x;
+			ny = i.m11 * y;
+			nz = i.m22 * z;
+			break;
+		case RIGID:
+			// the transpose of the inverse equals the rotation itself
+			nx = m00 * x + m01 * y + m02 * z;
+			ny = m10 * x + m11 * y + m12 * z;
+			nz = m20 * x + m21 * y + m22 * z;
+			break;
+		default:
+			nx = i.m00 * x + i.m10 * y + i.m20 * z;
+			ny = i.m01 * x + i.m11 * y + i.m21 * z;
+			nz = i.m02 * x + i.m12 * y + i.m22 * z;
+		}
+		return new Vector(nx, ny, nz);
+	}
+
+	/**
+	 * Transforms the given surface normal with the inverse of this
+	 * transformation.
+	 * 
+	 * @param normal
+	 *            the normal to transform.
+	 * @throws NullPointerException
+	 *             when the given normal is null.
+	 * @return the given normal transformed by the inverse of this
+	 *         transformation.
+	 */
+	public Vector transformInverseNormal(Vector normal)
+			throws NullPointerException {
+		return inverted.transformNormal(normal);
 	}
 
 	/**
@@ -146,6 +471,8 @@ public class Transformation {
 	 * @return the given ray Ray} transformed by this transformation.
 	 */
 	public Ray transform(Ray ray) throws NullPointerException {
+		if (ray == null)
+			throw new NullPointerException("the given ray is null!");
 		Point point = transform(ray.origin);
 		Vector direction = transform(ray.direction);
 		return new Ray(point, direction);
@@ -161,9 +488,168 @@ public class Transformation {
 	 * @return the given ray transformed by the inverse of this transformation.
 	 */
 	public Ray transformInverse(Ray ray) throws NullPointerException {
-		Point point = transformInverse(ray.origin);
-		Vector direction = transformInverse(ray.direction);
-		return new Ray(point, direction);
+		return inverted.transform(ray);
+	}
+
+	/**
+	 * Transforms the given point with this transformation and stores the
+	 * result in the given destination, without allocating any objects. The
+	 * source and destination may be the same object.
+	 * 
+	 * @param point
+	 *            the point to transform.
+	 * @param destination
+	 *            the triple in which the transformed point is stored.
+	 * @throws NullPointerException
+	 *             when the given point or destination is null.
+	 * @return the given destination.
+	 */
+	public MutableVector3 transformPoint(MutableVector3 point,
+			MutableVector3 destination) throws NullPointerException {
+		double x = point.x;
+		double y = point.y;
+		double z = point.z;
+		double px, py, pz;
+		switch (type) {
+		case IDENTITY:
+			px = x;
+			py = y;
+			pz = z;
+			break;
+		case TRANSLATION:
+		case SCALE:
+			px = m00 * x + m03;
+			py = m11 * y + m13;
+			pz = m22 * z + m23;
+			break;
+		default:
+			px = m00 * x + m01 * y + m02 * z + m03;
+			py = m10 * x + m11 * y + m12 * z + m13;
+			pz = m20 * x + m21 * y + m22 * z + m23;
+			if (type == Type.PROJECTIVE) {
+				double invW = 1.0 / (m30 * x + m31 * y + m32 * z + m33);
+				px *= invW;
+				py *= invW;
+				pz *= invW;
+			}
+		}
+		return destination.set(px, py, pz);
+	}
+
+	/**
+	 * Transforms the given vector with this transformation and stores the
+	 * result in the given destination, without allocating any objects. The
+	 * source and destination may be the same object.
+	 * 
+	 * @param vector
+	 *            the vector to transform.
+	 * @param destination
+	 *            the triple in which the transformed vector is stored.
+	 * @throws NullPointerException
+	 *             when the given vector or destination is null.
+	 * @return the given destination.
+	 */
+	public MutableVector3 transformVector(MutableVector3 vector,
+			MutableVector3 destination) throws NullPointerException {
+		double x = vector.x;
+		double y = vector.y;
+		double z = vector.z;
+		double vx, vy, vz;
+		switch (type) {
+		case IDENTITY:
+		case TRANSLATION:
+			vx = x;
+			vy = y;
+			vz = z;
+			break;
+		case SCALE:
+			vx = m00 * x;
+			vy = m11 * y;
+			vz = m22 * z;
+			break;
+		default:
+			vx = m00 * x + m01 * y + m02 * z;
+			vy = m10 * x + m11 * y + m12 * z;
+			vz = m20 * x + m21 * y + m22 * z;
+		}
+		return destination.set(vx, vy, vz);
+	}
+
+	/**
+	 * Transforms the given mutable ray with this transformation and stores
+	 * the result in the given destination, without allocating any objects.
+	 * The source and destination may be the same object.
+	 * 
+	 * @param ray
+	 *            the ray to transform.
+	 * @param destination
+	 *            the ray in which the transformed ray is stored.
+	 * @throws NullPointerException
+	 *             when the given ray or destination is null.
+	 * @return the given destination.
+	 */
+	public MutableRay transform(MutableRay ray, MutableRay destination)
+			throws NullPointerException {
+		if (ray == null)
+			throw new NullPointerException("the given ray is null!");
+		if (destination == null)
+			throw new NullPointerException("the given destination is null!");
+		transformPoint(ray.origin, destination.origin);
+		transformVector(ray.direction, destination.direction);
+		return destination.update();
+	}
+
+	/**
+	 * Transforms the given mutable ray with the inverse of this
+	 * transformation and stores the result in the given destination, without
+	 * allocating any objects. The source and destination may be the same
+	 * object.
+	 * 
+	 * @param ray
+	 *            the ray to transform.
+	 * @param destination
+	 *            the ray in which the transformed ray is stored.
+	 * @throws NullPointerException
+	 *             when the given ray or destination is null.
+	 * @return the given destination.
+	 */
+	public MutableRay transformInverse(MutableRay ray, MutableRay destination)
+			throws NullPointerException {
+		return inverted.transform(ray, destination);
+	}
+
+	/**
+	 * Transforms the given bounding box with this transformation and returns
+	 * the bounding box which tightly encloses the transformed box.
+	 * 
+	 * Rather than transforming the eight corners of the box, the minimum and
+	 * maximum along every axis are accumulated per element of the linear part
+	 * of the transformation matrix.
+	 * 
+	 * @param box
+	 *            the bounding box to transform.
+	 * @throws NullPointerException
+	 *             when the given bounding box is null.
+	 * @return the bounding box which encloses the transformed bounding box.
+	 */
+	public BoundingBox transform(BoundingBox box) throws NullPointerException {
+		if (box.isEmpty())
+			return box;
+		double[] min = { box.minimum.x, box.minimum.y, box.minimum.z };
+		double[] max = { box.maximum.x, box.maximum.y, box.maximum.z };
+		double[] a = new double[3];
+		double[] b = new double[3];
+		for (int row = 0; row < 3; ++row) {
+			a[row] = b[row] = matrix.get(row, 3);
+			for (int column = 0; column < 3; ++column) {
+				double e = matrix.get(row, column) * min[column];
+				double f = matrix.get(row, column) * max[column];
+				a[row] += Math.min(e, f);
+				b[row] += Math.max(e, f);
+			}
+		}
+		return new BoundingBox(new Point(a[0], a[1], a[2]), new Point(b[0],
+				b[1], b[2]));
 	}
 
 	/**
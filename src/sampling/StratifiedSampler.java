@@ -0,0 +1,106 @@
+package sampling;
+
+import java.util.Random;
+
+import film.Tile;
+
+/**
+ * Generates the positions of the samples in the pixels of a tile by dividing
+ * every pixel in n by n strata and placing a sample at a random position in
+ * every stratum (jittering). The strata spread the samples more evenly over
+ * a pixel than independent random positions, which reduces the variance of
+ * the antialiased image. A single stratum is sampled at the center of the
+ * pixel, such that the rays of a single sample per pixel are those through
+ * the centers of the pixels.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class StratifiedSampler {
+	
+	/**
+	 * The number of strata along each axis of a pixel.
+	 */
+	public final int strata;
+
+	/**
+	 * Creates a new sampler which divides every pixel in the given number of
+	 * strata along each axis.
+	 * 
+	 * @param strata
+	 *            the number of strata along each axis of a pixel.
+	 * @throws IllegalArgumentException
+	 *             when the given number of strata is smaller than one.
+	 */
+	public StratifiedSampler(int strata) throws IllegalArgumentException {
+		if (strata < 1)
+			throw new IllegalArgumentException(
+					"the number of strata cannot be smaller than one!");
+		this.strata = strata;
+	}
+
+	/**
+	 * Returns the number of samples per pixel.
+	 * 
+	 * @return the number of samples per pixel.
+	 */
+	public int getSamplesPerPixel() {
+		return strata * strata;
+	}
+
+	/**
+	 * Generates the positions of the samples in the pixels of the given tile,
+	 * where the pixels are visited in row order and the samples of a pixel are
+	 * consecutive.
+	 * 
+	 * @param tile
+	 *            the tile whose pixels are sampled.
+	 * @param random
+	 *            the random generator of the positions within the strata,
+	 *            which is typically seeded per tile for reproducible images.
+	 * @param xs
+	 *            the array in which the x coordinates are stored.
+	 * @param ys
+	 *            the array in which the y coordinates are stored.
+	 * @throws NullPointerException
+	 *             when the given tile, random generator or arrays are null.
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             when the samples of the tile do not fit in the arrays.
+	 * @return the number of samples.
+	 */
+	public int generate(Tile tile, Random random, double[] xs, double[] ys)
+			throws NullPointerException, ArrayIndexOutOfBoundsException {
+		if (tile == null)
+			throw new NullPointerException("the given tile is null!");
+		if (random == null)
+			throw new NullPointerException(
+					"the given random generator is null!");
+		if (xs == null || ys == null)
+			throw new NullPointerException("the given arrays are null!");
+		int count = tile.getWidth() * tile.getHeight() * strata * strata;
+		if (count > xs.length || count > ys.length)
+			throw new ArrayIndexOutOfBoundsException(
+					"the samples do not fit in the given arrays!");
+
+		int i = 0;
+		double inverse = 1.0 / strata;
+		for (int y = tile.yStart; y < tile.yEnd; ++y)
+			for (int x = tile.xStart; x < tile.xEnd; ++x)
+				if (strata == 1) {
+					xs[i] = x + 0.5;
+					ys[i++] = y + 0.5;
+				} else {
+					// the rounding may not push a sample into the next pixel
+					double xLast = Math.nextDown(x + 1.0);
+					double yLast = Math.nextDown(y + 1.0);
+					for (int v = 0; v < strata; ++v)
+						for (int u = 0; u < strata; ++u) {
+							xs[i] = Math.min(xLast, x
+									+ (u + random.nextDouble()) * inverse);
+							ys[i++] = Math.min(yLast, y
+									+ (v + random.nextDouble()) * inverse);
+						}
+				}
+		return count;
+	}
+}
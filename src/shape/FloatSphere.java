@@ -0,0 +1,336 @@
+package shape;
+
+import math.BoundingBox;
+import math.Matrix;
+import math.MutableRay;
+import math.Point;
+import math.Transformation;
+
+/**
+ * A sphere which is intersected in single precision, as the counterpart of
+ * {@link Sphere} for the single precision rendering mode.
+ * 
+ * The center, radius and cached matrices are stored as floats, and the rays
+ * are converted to floats before they are intersected. The quadratic
+ * equation is solved with the discriminant computed from the distance between
+ * the center and the ray, rather than from b * b - 4 * a * c, which loses all
+ * the significant digits of a float when the sphere is small compared to its
+ * distance to the origin of the ray. The intersection point is projected back
+ * onto the surface of the sphere, such that its error is a few units in the
+ * last place of its coordinates, which is what the offset of the secondary
+ * rays accounts for (see {@link math.MutableVector3#offset(double, double,
+ * double)}).
+ * 
+ * The bounding box is widened by a few units in the last place of a float,
+ * such that it encloses the sphere as it is represented in single precision.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class FloatSphere implements Shape {
+	
+	/**
+	 * The number of units in the last place of a float by which the bounding
+	 * box is widened.
+	 */
+	private static final int BOUNDS_ULPS = 4;
+
+	/**
+	 * The transformation which is applied to the sphere to place it in the
+	 * scene.
+	 */
+	public final Transformation transformation;
+
+	/**
+	 * The bounding box of the transformed sphere in world space.
+	 */
+	private final BoundingBox boundingBox;
+
+	/**
+	 * The elements of the upper three rows of the transformation matrix.
+	 */
+	private final float m00, m01, m02, m03, m10, m11, m12, m13, m20, m21,
+			m22, m23;
+
+	/**
+	 * The elements of the upper three rows of the inverse transformation
+	 * matrix.
+	 */
+	private final float i00, i01, i02, i03, i10, i11, i12, i13, i20, i21,
+			i22, i23;
+
+	/**
+	 * Whether the transformation of this sphere is a similarity
+	 * transformation, such that the rays are intersected in world space.
+	 */
+	private final boolean similarity;
+
+	/**
+	 * The center of the transformed sphere in world space, which is only
+	 * valid for a similarity transformation.
+	 */
+	private final float cx, cy, cz;
+
+	/**
+	 * The radius and squared radius of the transformed sphere in world space,
+	 * which are only valid for a similarity transformation.
+	 */
+	private final float radius, radiusSquared;
+
+	/**
+	 * Creates a new unit sphere at the origin, transformed by the given
+	 * transformation, which is intersected in single precision.
+	 * 
+	 * @param transformation
+	 *            the transformation applied to this sphere.
+	 * @throws NullPointerException
+	 *             when the transformation is null.
+	 */
+	public FloatSphere(Transformation transformation)
+			throws NullPointerException {
+		if (transformation == null)
+			throw new NullPointerException("the given transformation is null!");
+		this.transformation = transformation;
+		this.boundingBox = widen(Sphere.computeBoundingBox(transformation));
+
+		Matrix m = transformation.getTransformationMatrix();
+		m00 = (float) m.get(0, 0);
+		m01 = (float) m.get(0, 1);
+		m02 = (float) m.get(0, 2);
+		m03 = (float) m.get(0, 3);
+		m10 = (float) m.get(1, 0);
+		m11 = (float) m.get(1, 1);
+		m12 = (float) m.get(1, 2);
+		m13 = (float) m.get(1, 3);
+		m20 = (float) m.get(2, 0);
+		m21 = (float) m.get(2, 1);
+		m22 = (float) m.get(2, 2);
+		m23 = (float) m.get(2, 3);
+
+		Matrix inverse = transformation.getInverseTransformationMatrix();
+		i00 = (float) inverse.get(0, 0);
+		i01 = (float) inverse.get(0, 1);
+		i02 = (float) inverse.get(0, 2);
+		i03 = (float) inverse.get(0, 3);
+		i10 = (float) inverse.get(1, 0);
+		i11 = (float) inverse.get(1, 1);
+		i12 = (float) inverse.get(1, 2);
+		i13 = (float) inverse.get(1, 3);
+		i20 = (float) inverse.get(2, 0);
+		i21 = (float) inverse.get(2, 1);
+		i22 = (float) inverse.get(2, 2);
+		i23 = (float) inverse.get(2, 3);
+
+		similarity = Sphere.isSimilarity(m);
+		cx = m03;
+		cy = m13;
+		cz = m23;
+		double r2 = m.get(0, 0) * m.get(0, 0) + m.get(1, 0) * m.get(1, 0)
+				+ m.get(2, 0) * m.get(2, 0);
+		radius = (float) Math.sqrt(r2);
+		radiusSquared = (float) r2;
+	}
+
+	/**
+	 * Returns whether the transformation of this sphere is a similarity
+	 * transformation, in which case the rays are intersected in world space.
+	 * 
+	 * @return true when the transformation of this sphere is a similarity
+	 *         transformation.
+	 */
+	public boolean isSimilarity() {
+		return similarity;
+	}
+
+	/**
+	 * Widens the given bounding box by a few units in the last place of a
+	 * float on every side.
+	 * 
+	 * @param box
+	 *            the bounding box to widen.
+	 * @return the widened bounding box.
+	 */
+	private static BoundingBox widen(BoundingBox box) {
+		Point min = box.minimum;
+		Point max = box.maximum;
+		return new BoundingBox(new Point(min.x - ulps(min.x), min.y
+				- ulps(min.y), min.z - ulps(min.z)), new Point(max.x
+				+ ulps(max.x), max.y + ulps(max.y), max.z + ulps(max.z)));
+	}
+
+	/**
+	 * Returns the size of a few units in the last place of the float nearest
+	 * to the given value.
+	 * 
+	 * @param value
+	 *            the value.
+	 * @return the margin around the given value.
+	 */
+	private static double ulps(double value) {
+		return BOUNDS_ULPS * Math.ulp((float) value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
+	 */
+	@Override
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
+		if (ray == null)
+			return false;
+		return distance(ray, (float) tMin, tMax) < Float.POSITIVE_INFINITY;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null)
+			return false;
+		float t = distance(ray, (float) tMin, tMax);
+		if (t == Float.POSITIVE_INFINITY)
+			return false;
+
+		float x = (float) ray.origin.x;
+		float y = (float) ray.origin.y;
+		float z = (float) ray.origin.z;
+		float u = (float) ray.direction.x;
+		float v = (float) ray.direction.y;
+		float w = (float) ray.direction.z;
+		if (similarity) {
+			// project the point onto the sphere, where the normal points
+			// from the center towards the point
+			float nx = x - cx + t * u;
+			float ny = y - cy + t * v;
+			float nz = z - cz + t * w;
+			float inverseLength = 1f / (float) Math.sqrt(nx * nx + ny * ny
+					+ nz * nz);
+			nx *= inverseLength;
+			ny *= inverseLength;
+			nz *= inverseLength;
+			hit.px = cx + radius * nx;
+			hit.py = cy + radius * ny;
+			hit.pz = cz + radius * nz;
+			hit.nx = nx;
+			hit.ny = ny;
+			hit.nz = nz;
+		} else {
+			// project the point onto the unit sphere in object space, which
+			// is transformed to world space, and whose normal is transformed
+			// by the transpose of the inverse
+			float ox = i00 * x + i01 * y + i02 * z + i03;
+			float oy = i10 * x + i11 * y + i12 * z + i13;
+			float oz = i20 * x + i21 * y + i22 * z + i23;
+			float dx = i00 * u + i01 * v + i02 * w;
+			float dy = i10 * u + i11 * v + i12 * w;
+			float dz = i20 * u + i21 * v + i22 * w;
+			float sx = ox + t * dx;
+			float sy = oy + t * dy;
+			float sz = oz + t * dz;
+			float inverseLength = 1f / (float) Math.sqrt(sx * sx + sy * sy
+					+ sz * sz);
+			sx *= inverseLength;
+			sy *= inverseLength;
+			sz *= inverseLength;
+			hit.px = m00 * sx + m01 * sy + m02 * sz + m03;
+			hit.py = m10 * sx + m11 * sy + m12 * sz + m13;
+			hit.pz = m20 * sx + m21 * sy + m22 * sz + m23;
+			float nx = i00 * sx + i10 * sy + i20 * sz;
+			float ny = i01 * sx + i11 * sy + i21 * sz;
+			float nz = i02 * sx + i12 * sy + i22 * sz;
+			inverseLength = 1f / (float) Math.sqrt(nx * nx + ny * ny + nz
+					* nz);
+			hit.nx = nx * inverseLength;
+			hit.ny = ny * inverseLength;
+			hit.nz = nz * inverseLength;
+		}
+		hit.t = t;
+		hit.shape = this;
+		hit.id = -1;
+		return true;
+	}
+
+	/**
+	 * Returns the distance along the given ray to the closest intersection
+	 * with this sphere within the interval [tMin, tMax), computed in single
+	 * precision.
+	 * 
+	 * @param ray
+	 *            the ray to intersect with.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @return the distance to the closest intersection, or
+	 *         {@link Float#POSITIVE_INFINITY} when there is none.
+	 */
+	private float distance(MutableRay ray, float tMin, double tMax) {
+		float x = (float) ray.origin.x;
+		float y = (float) ray.origin.y;
+		float z = (float) ray.origin.z;
+		float u = (float) ray.direction.x;
+		float v = (float) ray.direction.y;
+		float w = (float) ray.direction.z;
+		float ox, oy, oz, dx, dy, dz, r2;
+		if (similarity) {
+			ox = x - cx;
+			oy = y - cy;
+			oz = z - cz;
+			dx = u;
+			dy = v;
+			dz = w;
+			r2 = radiusSquared;
+		} else {
+			ox = i00 * x + i01 * y + i02 * z + i03;
+			oy = i10 * x + i11 * y + i12 * z + i13;
+			oz = i20 * x + i21 * y + i22 * z + i23;
+			dx = i00 * u + i01 * v + i02 * w;
+			dy = i10 * u + i11 * v + i12 * w;
+			dz = i20 * u + i21 * v + i22 * w;
+			r2 = 1f;
+		}
+
+		// the discriminant equals a times the squared radius minus the
+		// squared distance between the center and the line of the ray
+		float a = dx * dx + dy * dy + dz * dz;
+		float b = -(dx * ox + dy * oy + dz * oz);
+		float c = ox * ox + oy * oy + oz * oz - r2;
+		float s = b / a;
+		float lx = ox + s * dx;
+		float ly = oy + s * dy;
+		float lz = oz + s * dz;
+		float d = r2 - (lx * lx + ly * ly + lz * lz);
+		if (d < 0)
+			return Float.POSITIVE_INFINITY;
+
+		float q = b + Math.copySign((float) Math.sqrt(a * d), b);
+		float t0 = c / q;
+		float t1 = q / a;
+		if (t0 > t1) {
+			float tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		float t = t0 >= tMin ? t0 : t1;
+		if (!(t >= tMin && t < tMax))
+			return Float.POSITIVE_INFINITY;
+		return t;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+}
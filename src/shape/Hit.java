@@ -0,0 +1,96 @@
+package shape;
+
+import java.util.Locale;
+
+/**
+ * A record of the closest intersection found along a ray.
+ * 
+ * A hit is owned by the caller of the intersection routines, which typically
+ * keeps a single hit per thread and reuses it for all the rays it traces. The
+ * intersection routines write into the hit, such that they do not have to
+ * allocate any objects.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class Hit {
+	
+	/**
+	 * The distance along the ray to the closest intersection found so far, or
+	 * positive infinity when nothing has been intersected yet.
+	 */
+	public double t = Double.POSITIVE_INFINITY;
+
+	/**
+	 * The x coordinate of the intersection point in world space.
+	 */
+	public double px;
+
+	/**
+	 * The y coordinate of the intersection point in world space.
+	 */
+	public double py;
+
+	/**
+	 * The z coordinate of the intersection point in world space.
+	 */
+	public double pz;
+
+	/**
+	 * The x coordinate of the normalized surface normal in world space.
+	 */
+	public double nx;
+
+	/**
+	 * The y coordinate of the normalized surface normal in world space.
+	 */
+	public double ny;
+
+	/**
+	 * The z coordinate of the normalized surface normal in world space.
+	 */
+	public double nz;
+
+	/**
+	 * The shape which has been intersected, or null when nothing has been
+	 * intersected yet.
+	 */
+	public Shape shape;
+
+	/**
+	 * The index of the intersected shape in the list from which the outermost
+	 * aggregate has been constructed, or -1 when the shape has been
+	 * intersected directly.
+	 */
+	public int id = -1;
+
+	/**
+	 * Resets this hit such that it can be reused for a new ray.
+	 */
+	public void reset() {
+		t = Double.POSITIVE_INFINITY;
+		shape = null;
+		id = -1;
+	}
+
+	/**
+	 * Returns whether a shape has been intersected.
+	 * 
+	 * @return true when a shape has been intersected.
+	 */
+	public boolean isHit() {
+		return shape != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ENGLISH, "[Hit] at distance %s in "
+				+ "(%g %g %g) with normal (%g %g %g) with %s (id %d)", t, px,
+				py, pz, nx, ny, nz, shape, id);
+	}
+}
@@ -0,0 +1,171 @@
+package shape;
+
+import java.util.Arrays;
+
+/**
+ * The closest intersections found along the rays of a
+ * {@link math.RayBatch}, which are stored as a structure of arrays in the
+ * same order as the rays.
+ * 
+ * Like a {@link Hit}, a batch of hits is owned by the caller of the
+ * intersection routines, which resets it before it traces a new batch of
+ * rays.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class HitBatch {
+	
+	/**
+	 * The maximum number of hits in this batch.
+	 */
+	public final int capacity;
+
+	/**
+	 * The distances along the rays to the closest intersections found so
+	 * far, or positive infinity when nothing has been intersected yet.
+	 */
+	public final double[] t;
+
+	/**
+	 * The x coordinates of the intersection points in world space.
+	 */
+	public final double[] px;
+
+	/**
+	 * The y coordinates of the intersection points in world space.
+	 */
+	public final double[] py;
+
+	/**
+	 * The z coordinates of the intersection points in world space.
+	 */
+	public final double[] pz;
+
+	/**
+	 * The x coordinates of the normalized surface normals in world space.
+	 */
+	public final double[] nx;
+
+	/**
+	 * The y coordinates of the normalized surface normals in world space.
+	 */
+	public final double[] ny;
+
+	/**
+	 * The z coordinates of the normalized surface normals in world space.
+	 */
+	public final double[] nz;
+
+	/**
+	 * The shapes which have been intersected, or null when nothing has been
+	 * intersected yet.
+	 */
+	public final Shape[] shapes;
+
+	/**
+	 * The indices of the intersected shapes in the list from which the
+	 * outermost aggregate has been constructed (see {@link Hit#id}).
+	 */
+	public final int[] ids;
+
+	/**
+	 * Scratch space in which the shapes collect the indices of the rays they
+	 * intersect.
+	 */
+	final int[] indices;
+
+	/**
+	 * Creates a new batch which can store the given number of hits.
+	 * 
+	 * @param capacity
+	 *            the maximum number of hits in the batch.
+	 * @throws IllegalArgumentException
+	 *             when the given capacity is smaller than one.
+	 */
+	public HitBatch(int capacity) throws IllegalArgumentException {
+		if (capacity < 1)
+			throw new IllegalArgumentException(
+					"the capacity of a batch must be at least one!");
+		this.capacity = capacity;
+		this.t = new double[capacity];
+		this.px = new double[capacity];
+		this.py = new double[capacity];
+		this.pz = new double[capacity];
+		this.nx = new double[capacity];
+		this.ny = new double[capacity];
+		this.nz = new double[capacity];
+		this.shapes = new Shape[capacity];
+		this.ids = new int[capacity];
+		this.indices = new int[capacity];
+		reset();
+	}
+
+	/**
+	 * Resets all the hits of this batch such that it can be reused for a new
+	 * batch of rays.
+	 */
+	public void reset() {
+		Arrays.fill(t, Double.POSITIVE_INFINITY);
+		Arrays.fill(shapes, null);
+		Arrays.fill(ids, -1);
+	}
+
+	/**
+	 * Returns whether a shape has been intersected by the ray with the given
+	 * index.
+	 * 
+	 * @param index
+	 *            the index of the ray.
+	 * @return true when a shape has been intersected.
+	 */
+	public boolean isHit(int index) {
+		return shapes[index] != null;
+	}
+
+	/**
+	 * Copies the hit with the given index to the given hit.
+	 * 
+	 * @param index
+	 *            the index of the hit in this batch.
+	 * @param hit
+	 *            the hit in which the hit of the batch is stored.
+	 * @throws NullPointerException
+	 *             when the given hit is null.
+	 * @return the given hit.
+	 */
+	public Hit get(int index, Hit hit) throws NullPointerException {
+		hit.t = t[index];
+		hit.px = px[index];
+		hit.py = py[index];
+		hit.pz = pz[index];
+		hit.nx = nx[index];
+		hit.ny = ny[index];
+		hit.nz = nz[index];
+		hit.shape = shapes[index];
+		hit.id = ids[index];
+		return hit;
+	}
+
+	/**
+	 * Copies the given hit to the hit with the given index.
+	 * 
+	 * @param index
+	 *            the index of the hit in this batch.
+	 * @param hit
+	 *            the hit to copy.
+	 * @throws NullPointerException
+	 *             when the given hit is null.
+	 */
+	public void set(int index, Hit hit) throws NullPointerException {
+		t[index] = hit.t;
+		px[index] = hit.px;
+		py[index] = hit.py;
+		pz[index] = hit.pz;
+		nx[index] = hit.nx;
+		ny[index] = hit.ny;
+		nz[index] = hit.nz;
+		shapes[index] = hit.shape;
+		ids[index] = hit.id;
+	}
+}
@@ -0,0 +1,144 @@
+package shape;
+
+import math.BoundingBox;
+import math.Matrix;
+import math.MutableRay;
+import math.Transformation;
+
+/**
+ * A placement of a shared shape in the scene by a transformation.
+ * 
+ * The shared shape is typically an acceleration structure over the primitives
+ * of an asset (the bottom level), which is constructed only once, regardless of
+ * the number of times the asset is placed in the scene. Constructing an
+ * acceleration structure over the instances themselves (the top level) results
+ * in a two-level hierarchy whose memory grows with the number of unique assets
+ * rather than with the number of placements.
+ * 
+ * The ray is transformed into the space of the shared shape. Since the
+ * direction of the ray is not normalized by the transformation, the distances
+ * along the ray are equal in both spaces. Because the primitives of the shared
+ * shape are not unique in the scene, the instance itself is reported as the
+ * intersected shape. The ray in the space of the shared shape is stored in
+ * the scratch ray of the given ray (see {@link MutableRay#scratch()}), such
+ * that no objects are allocated per intersection test.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class Instance implements Shape {
+	
+	/**
+	 * The shared shape which is placed in the scene.
+	 */
+	public final Shape shape;
+
+	/**
+	 * The transformation which places the shared shape in the scene.
+	 */
+	public final Transformation transformation;
+
+	/**
+	 * The bounding box of the transformed shape in world space.
+	 */
+	private final BoundingBox boundingBox;
+
+	/**
+	 * The elements of the linear part of the inverse transformation matrix,
+	 * which are cached to transform the normals without allocating any
+	 * objects.
+	 */
+	private final double i00, i01, i02, i10, i11, i12, i20, i21, i22;
+
+	/**
+	 * Creates a new instance which places the given shape in the scene by the
+	 * given transformation.
+	 * 
+	 * @param shape
+	 *            the shared shape.
+	 * @param transformation
+	 *            the transformation which places the shape in the scene.
+	 * @throws NullPointerException
+	 *             when the given shape is null.
+	 * @throws NullPointerException
+	 *             when the given transformation is null.
+	 */
+	public Instance(Shape shape, Transformation transformation)
+			throws NullPointerException {
+		if (shape == null)
+			throw new NullPointerException("the given shape is null!");
+		if (transformation == null)
+			throw new NullPointerException("the given transformation is null!");
+		this.shape = shape;
+		this.transformation = transformation;
+		this.boundingBox = transformation.transform(shape.getBoundingBox());
+
+		Matrix inverse = transformation.getInverseTransformationMatrix();
+		i00 = inverse.get(0, 0);
+		i01 = inverse.get(0, 1);
+		i02 = inverse.get(0, 2);
+		i10 = inverse.get(1, 0);
+		i11 = inverse.get(1, 1);
+		i12 = inverse.get(1, 2);
+		i20 = inverse.get(2, 0);
+		i21 = inverse.get(2, 1);
+		i22 = inverse.get(2, 2);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
+	 */
+	@Override
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
+		if (ray == null)
+			return false;
+		return shape.occluded(
+				transformation.transformInverse(ray, ray.scratch()), tMin,
+				tMax);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null)
+			return false;
+		if (!shape.intersect(
+				transformation.transformInverse(ray, ray.scratch()), tMin,
+				tMax, hit))
+			return false;
+
+		// transform the intersection back to world space, where the normal is
+		// transformed by the transpose of the inverse
+		hit.px = ray.origin.x + hit.t * ray.direction.x;
+		hit.py = ray.origin.y + hit.t * ray.direction.y;
+		hit.pz = ray.origin.z + hit.t * ray.direction.z;
+		double nx = i00 * hit.nx + i10 * hit.ny + i20 * hit.nz;
+		double ny = i01 * hit.nx + i11 * hit.ny + i21 * hit.nz;
+		double nz = i02 * hit.nx + i12 * hit.ny + i22 * hit.nz;
+		double inverseLength = 1.0 / Math.sqrt(nx * nx + ny * ny + nz * nz);
+		hit.nx = nx * inverseLength;
+		hit.ny = ny * inverseLength;
+		hit.nz = nz * inverseLength;
+		hit.shape = this;
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+}
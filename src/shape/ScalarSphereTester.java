@@ -0,0 +1,107 @@
+package shape;
+
+/**
+ * Tests the spheres of a group one after the other.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+class ScalarSphereTester implements SphereTester {
+	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.SphereTester#lanes()
+	 */
+	@Override
+	public int lanes() {
+		return 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.SphereTester#intersect(double[], int, double, double,
+	 * double, double, double, double, double, double, boolean)
+	 */
+	@Override
+	public int intersect(double[] spheres, int stride, double ox, double oy,
+			double oz, double dx, double dy, double dz, double tMin,
+			double tMax, boolean any) {
+		int closest = -1;
+		for (int i = 0; i < stride; ++i) {
+			double t = distance(spheres, stride, i, ox, oy, oz, dx, dy, dz,
+					tMin, tMax);
+			if (t < tMax) {
+				tMax = t;
+				closest = i;
+				if (any)
+					break;
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Returns the distance along the given ray to the closest intersection
+	 * with the sphere with the given index within the interval [tMin, tMax).
+	 * 
+	 * The vector testers use this method to locate the intersected sphere
+	 * within the lanes of a vector. The distance is computed with the same
+	 * operations in the same order as {@link Sphere} does, such that it is
+	 * identical.
+	 * 
+	 * @param spheres
+	 *            the array containing the spheres.
+	 * @param stride
+	 *            the length of the blocks of the array.
+	 * @param i
+	 *            the index of the sphere.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param dx
+	 *            the x coordinate of the direction of the ray.
+	 * @param dy
+	 *            the y coordinate of the direction of the ray.
+	 * @param dz
+	 *            the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @return the distance to the closest intersection, or positive infinity
+	 *         when the ray does not intersect the sphere within the interval.
+	 */
+	static double distance(double[] spheres, int stride, int i, double ox,
+			double oy, double oz, double dx, double dy, double dz,
+			double tMin, double tMax) {
+		double px = ox - spheres[i];
+		double py = oy - spheres[stride + i];
+		double pz = oz - spheres[2 * stride + i];
+		double a = dx * dx + dy * dy + dz * dz;
+		double b = 2.0 * (dx * px + dy * py + dz * pz);
+		double c = px * px + py * py + pz * pz - spheres[3 * stride + i];
+
+		double d = b * b - 4.0 * a * c;
+		if (d < 0)
+			return Double.POSITIVE_INFINITY;
+		double dr = Math.sqrt(d);
+		double q = -0.5 * (b < 0 ? (b - dr) : (b + dr));
+
+		double t0 = q / a;
+		double t1 = c / q;
+		if (t0 > t1) {
+			double tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+		double t = t0 >= tMin ? t0 : t1;
+		if (t < tMin || t >= tMax)
+			return Double.POSITIVE_INFINITY;
+		return t;
+	}
+}
@@ -0,0 +1,48 @@
+package shape;
+
+import math.MutableRay;
+import math.Ray;
+
+/**
+ * Holds the mutable rays to which the immutable rays given to a
+ * {@link Shape} are copied before they are intersected.
+ * 
+ * Every thread has its own mutable ray. The shapes never intersect an
+ * immutable ray from within an intersection method, hence a single ray per
+ * thread suffices.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+final class Scratch {
+	
+	/**
+	 * The mutable ray of every thread.
+	 */
+	private static final ThreadLocal<MutableRay> rays =
+			new ThreadLocal<MutableRay>() {
+				@Override
+				protected MutableRay initialValue() {
+					return new MutableRay();
+				}
+			};
+
+	/**
+	 * This class only contains static members.
+	 */
+	private Scratch() {
+	}
+
+	/**
+	 * Copies the given ray to the mutable ray of the calling thread.
+	 * 
+	 * @param ray
+	 *            the ray to copy.
+	 * @throws NullPointerException
+	 *             when the given ray is null.
+	 * @return the mutable ray of the calling thread.
+	 */
+	static MutableRay ray(Ray ray) throws NullPointerException {
+		return rays.get().set(ray);
+	}
+}
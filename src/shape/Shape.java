@@ -1,10 +1,18 @@
 package shape;
 
+import math.BoundingBox;
+import math.MutableRay;
 import math.Ray;
+import math.RayBatch;
 
 /**
  * Interface which should be implemented by all shapes.
  * 
+ * Shapes intersect {@link MutableRay}s, such that the inner loops of the
+ * renderer can reuse the same ray for all their samples. The methods which
+ * accept an immutable {@link Ray} copy it to a mutable ray of the calling
+ * thread first.
+ * 
  * @author 	CGRG
  * @version 4.0.0
  */
@@ -18,5 +26,178 @@ public interface Shape {
 	 *            the ray to intersect with.
 	 * @return true when the given ray intersects this shape.
 	 */
-	public boolean intersect(Ray ray);
+	public default boolean intersect(Ray ray) {
+		return occluded(ray, 0, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Returns whether the given ray intersects this shape anywhere within the
+	 * interval [tMin, tMax), e.g. whether a shadow ray towards a light source
+	 * is blocked. Returns false when the given ray is null.
+	 * 
+	 * Implementations stop at the first intersection they find and do not
+	 * compute any information about it, such that this query is cheaper than
+	 * finding the closest intersection.
+	 * 
+	 * @param ray
+	 *            the ray to intersect with.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @return true when the given ray intersects this shape within the given
+	 *         interval.
+	 */
+	public default boolean occluded(Ray ray, double tMin, double tMax) {
+		if (ray == null)
+			return false;
+		return occluded(Scratch.ray(ray), tMin, tMax);
+	}
+
+	/**
+	 * Returns whether the given mutable ray intersects this shape anywhere
+	 * within the interval [tMin, tMax). Returns false when the given ray is
+	 * null.
+	 * 
+	 * Implementations must not modify the origin or direction of the given
+	 * ray.
+	 * 
+	 * @param ray
+	 *            the ray to intersect with.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @return true when the given ray intersects this shape within the given
+	 *         interval.
+	 */
+	public boolean occluded(MutableRay ray, double tMin, double tMax);
+
+	/**
+	 * Intersects the given ray with this shape and updates the given hit when
+	 * this shape is intersected closer to the origin of the ray than the
+	 * distance which is currently stored in the hit. Returns false when the
+	 * given ray is null.
+	 * 
+	 * @param ray
+	 *            the ray to intersect with.
+	 * @param hit
+	 *            the closest hit found so far, which is updated when a closer
+	 *            intersection is found.
+	 * @throws NullPointerException
+	 *             when the given hit is null.
+	 * @return true when the given hit has been updated.
+	 */
+	public default boolean intersect(Ray ray, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		return intersect(ray, 0, hit.t, hit);
+	}
+
+	/**
+	 * Finds the intersection of the given ray with this shape which is closest
+	 * to the origin of the ray within the interval [tMin, tMax), and stores
+	 * its distance, point, normal and shape in the given hit. The hit is left
+	 * untouched when there is no such intersection. Returns false when the
+	 * given ray is null.
+	 * 
+	 * Implementations must not allocate any objects, such that this method
+	 * can be called for every ray without loading the garbage collector.
+	 * 
+	 * @param ray
+	 *            the ray to intersect with.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @param hit
+	 *            the hit in which the intersection is stored.
+	 * @throws NullPointerException
+	 *             when the given hit is null.
+	 * @return true when an intersection has been stored in the given hit.
+	 */
+	public default boolean intersect(Ray ray, double tMin, double tMax,
+			Hit hit) throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null)
+			return false;
+		return intersect(Scratch.ray(ray), tMin, tMax, hit);
+	}
+
+	/**
+	 * Finds the intersection of the given mutable ray with this shape which
+	 * is closest to the origin of the ray within the interval [tMin, tMax),
+	 * and stores it in the given hit. The hit is left untouched when there is
+	 * no such intersection. Returns false when the given ray is null.
+	 * 
+	 * Implementations must neither modify the origin or direction of the
+	 * given ray nor allocate any objects.
+	 * 
+	 * @param ray
+	 *            the ray to intersect with.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @param hit
+	 *            the hit in which the intersection is stored.
+	 * @throws NullPointerException
+	 *             when the given hit is null.
+	 * @return true when an intersection has been stored in the given hit.
+	 */
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException;
+
+	/**
+	 * Intersects every ray of the given batch with this shape within its
+	 * interval, and updates the hit with the same index in the given batch of
+	 * hits when this shape is intersected closer to the origin of the ray
+	 * than the distance which is currently stored in that hit.
+	 * 
+	 * The default implementation intersects the rays one at a time. Shapes
+	 * which can intersect several rays at once, such as primitives, should
+	 * override this method with a loop over the arrays of the batch.
+	 * 
+	 * @param rays
+	 *            the rays to intersect with.
+	 * @param hits
+	 *            the closest hits found so far, which are updated when closer
+	 *            intersections are found.
+	 * @throws NullPointerException
+	 *             when the given batch of rays or hits is null.
+	 * @throws IllegalArgumentException
+	 *             when the batch of hits is smaller than the batch of rays.
+	 * @return the number of hits which have been updated.
+	 */
+	public default int intersect(RayBatch rays, HitBatch hits)
+			throws NullPointerException, IllegalArgumentException {
+		if (rays == null)
+			throw new NullPointerException("the given rays are null!");
+		if (hits == null)
+			throw new NullPointerException("the given hits are null!");
+		if (hits.capacity < rays.size())
+			throw new IllegalArgumentException(
+					"the hit batch is smaller than the ray batch!");
+		MutableRay ray = new MutableRay();
+		Hit hit = new Hit();
+		int count = 0;
+		for (int i = 0; i < rays.size(); ++i) {
+			hits.get(i, hit);
+			if (intersect(rays.get(i, ray), rays.tMin[i], Math.min(
+					rays.tMax[i], hit.t), hit)) {
+				hits.set(i, hit);
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the bounding box of this shape in world space.
+	 * 
+	 * @return the bounding box of this shape in world space.
+	 */
+	public BoundingBox getBoundingBox();
 }
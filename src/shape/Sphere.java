@@ -1,24 +1,80 @@
 package shape;
 
-import math.Ray;
+import math.BoundingBox;
+import math.Matrix;
+import math.MutableRay;
+import math.Point;
+import math.RayBatch;
 import math.Transformation;
-import math.Vector;
 
 /**
  * Represents a three-dimensional sphere with radius one, centered at the
  * origin, which is transformed by a transformation.
  * 
+ * When the transformation is a similarity transformation (a combination of
+ * translations, rotations, reflections and uniform scales), the transformed
+ * shape is again a sphere. Its center and radius in world space are then
+ * computed once, and the rays are intersected with it directly in world
+ * space. Otherwise, the rays are transformed to object space by the cached
+ * inverse transformation matrix.
+ * 
  * @author 	CGRG
  * @version 4.0.0
  */
 public class Sphere implements Shape {
 	
+	/**
+	 * The relative tolerance within which the columns of the linear part of a
+	 * transformation matrix must be orthogonal and of equal length for the
+	 * transformation to be treated as a similarity transformation.
+	 */
+	private static final double SIMILARITY_TOLERANCE = 1e-12;
+
 	/**
 	 * The transformation which is applied to the sphere to place it in the
 	 * scene.
 	 */
 	public final Transformation transformation;
 
+	/**
+	 * The bounding box of the transformed sphere in world space.
+	 */
+	private final BoundingBox boundingBox;
+
+	/**
+	 * The elements of the upper three rows of the inverse transformation
+	 * matrix, which are cached to transform the rays without allocating any
+	 * objects.
+	 */
+	private final double i00, i01, i02, i03, i10, i11, i12, i13, i20, i21,
+			i22, i23;
+
+	/**
+	 * Whether the transformation of this sphere is a similarity
+	 * transformation, such that the rays are intersected in world space.
+	 */
+	private final boolean similarity;
+
+	/**
+	 * The center of the transformed sphere in world space, which is only
+	 * valid for a similarity transformation. It is also read by the
+	 * {@link SphereGroup}s which contain this sphere.
+	 */
+	final double cx, cy, cz;
+
+	/**
+	 * The squared radius of the transformed sphere in world space, which is
+	 * only valid for a similarity transformation. It is also read by the
+	 * {@link SphereGroup}s which contain this sphere.
+	 */
+	final double radiusSquared;
+
+	/**
+	 * The radius of the transformed sphere in world space, which is only
+	 * valid for a similarity transformation.
+	 */
+	private final double radius;
+
 	/**
 	 * Creates a new unit sphere at the origin, transformed by the given
 	 * transformation.
@@ -32,29 +88,285 @@ public class Sphere implements Shape {
 		if (transformation == null)
 			throw new NullPointerException("the given transformation is null!");
 		this.transformation = transformation;
+		this.boundingBox = computeBoundingBox(transformation);
+
+		Matrix inverse = transformation.getInverseTransformationMatrix();
+		i00 = inverse.get(0, 0);
+		i01 = inverse.get(0, 1);
+		i02 = inverse.get(0, 2);
+		i03 = inverse.get(0, 3);
+		i10 = inverse.get(1, 0);
+		i11 = inverse.get(1, 1);
+		i12 = inverse.get(1, 2);
+		i13 = inverse.get(1, 3);
+		i20 = inverse.get(2, 0);
+		i21 = inverse.get(2, 1);
+		i22 = inverse.get(2, 2);
+		i23 = inverse.get(2, 3);
+
+		Matrix m = transformation.getTransformationMatrix();
+		similarity = isSimilarity(m);
+		cx = m.get(0, 3);
+		cy = m.get(1, 3);
+		cz = m.get(2, 3);
+		radiusSquared = m.get(0, 0) * m.get(0, 0) + m.get(1, 0)
+				* m.get(1, 0) + m.get(2, 0) * m.get(2, 0);
+		radius = Math.sqrt(radiusSquared);
+	}
+
+	/**
+	 * Returns whether the transformation of this sphere is a similarity
+	 * transformation, in which case the rays are intersected in world space.
+	 * 
+	 * @return true when the transformation of this sphere is a similarity
+	 *         transformation.
+	 */
+	public boolean isSimilarity() {
+		return similarity;
+	}
+
+	/**
+	 * Returns whether the given affine transformation matrix represents a
+	 * similarity transformation, i.e. whether the columns of its linear part
+	 * are mutually orthogonal and of equal length.
+	 * 
+	 * @param m
+	 *            the transformation matrix.
+	 * @return true when the given matrix represents a similarity
+	 *         transformation.
+	 */
+	static boolean isSimilarity(Matrix m) {
+		if (m.get(3, 0) != 0 || m.get(3, 1) != 0 || m.get(3, 2) != 0
+				|| m.get(3, 3) != 1)
+			return false;
+		double[] gram = new double[9];
+		for (int i = 0; i < 3; ++i)
+			for (int j = 0; j < 3; ++j)
+				gram[3 * i + j] = m.get(0, i) * m.get(0, j) + m.get(1, i)
+						* m.get(1, j) + m.get(2, i) * m.get(2, j);
+		double scale = gram[0];
+		if (!(scale > 0) || Double.isInfinite(scale))
+			return false;
+		double tolerance = SIMILARITY_TOLERANCE * scale;
+		for (int i = 0; i < 3; ++i)
+			for (int j = 0; j < 3; ++j) {
+				double expected = i == j ? scale : 0;
+				if (Math.abs(gram[3 * i + j] - expected) > tolerance)
+					return false;
+			}
+		return true;
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see shape.Shape#intersect(geometry3d.Ray3D)
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
 	 */
 	@Override
-	public boolean intersect(Ray ray) {
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
 		if (ray == null)
 			return false;
-		Ray transformed = transformation.transformInverse(ray);
+		return distance(ray, tMin, tMax) < Double.POSITIVE_INFINITY;
+	}
 
-		Vector o = transformed.origin.toVector();
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null)
+			return false;
+		double t = distance(ray, tMin, tMax);
+		if (t == Double.POSITIVE_INFINITY)
+			return false;
+
+		double dx = ray.direction.x;
+		double dy = ray.direction.y;
+		double dz = ray.direction.z;
+		double px = ray.origin.x + t * dx;
+		double py = ray.origin.y + t * dy;
+		double pz = ray.origin.z + t * dz;
+
+		hit.t = t;
+		hit.px = px;
+		hit.py = py;
+		hit.pz = pz;
+		if (similarity) {
+			// the normal points from the center towards the point
+			double inverseRadius = 1.0 / radius;
+			hit.nx = (px - cx) * inverseRadius;
+			hit.ny = (py - cy) * inverseRadius;
+			hit.nz = (pz - cz) * inverseRadius;
+		} else {
+			// the normal of the unit sphere equals the point in object space,
+			// which is transformed to world space by the transpose of the
+			// inverse
+			double ox = i00 * px + i01 * py + i02 * pz + i03;
+			double oy = i10 * px + i11 * py + i12 * pz + i13;
+			double oz = i20 * px + i21 * py + i22 * pz + i23;
+			double nx = i00 * ox + i10 * oy + i20 * oz;
+			double ny = i01 * ox + i11 * oy + i21 * oz;
+			double nz = i02 * ox + i12 * oy + i22 * oz;
+			double inverseLength = 1.0 / Math.sqrt(nx * nx + ny * ny + nz
+					* nz);
+			hit.nx = nx * inverseLength;
+			hit.ny = ny * inverseLength;
+			hit.nz = nz * inverseLength;
+		}
+		hit.shape = this;
+		hit.id = -1;
+		return true;
+	}
 
-		double a = transformed.direction.lengthSquared();
-		double b = 2.0 * (transformed.direction.dot(o));
-		double c = o.dot(o) - 1.0;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.RayBatch, shape.HitBatch)
+	 */
+	@Override
+	public int intersect(RayBatch rays, HitBatch hits)
+			throws NullPointerException, IllegalArgumentException {
+		if (rays == null)
+			throw new NullPointerException("the given rays are null!");
+		if (hits == null)
+			throw new NullPointerException("the given hits are null!");
+		int size = rays.size();
+		if (hits.capacity < size)
+			throw new IllegalArgumentException(
+					"the hit batch is smaller than the ray batch!");
+		double[] ox = rays.ox, oy = rays.oy, oz = rays.oz;
+		double[] dx = rays.dx, dy = rays.dy, dz = rays.dz;
+		double[] t = hits.t;
+		int[] found = hits.indices;
+
+		// first find the distances along all the rays, such that this loop
+		// is not interrupted by the computation of the points and normals
+		int count = 0;
+		for (int i = 0; i < size; ++i) {
+			double d = distance(ox[i], oy[i], oz[i], dx[i], dy[i], dz[i],
+					rays.tMin[i], Math.min(rays.tMax[i], t[i]));
+			if (d < t[i]) {
+				t[i] = d;
+				found[count++] = i;
+			}
+		}
+
+		// complete the hits of the intersected rays
+		for (int k = 0; k < count; ++k) {
+			int i = found[k];
+			double px = ox[i] + t[i] * dx[i];
+			double py = oy[i] + t[i] * dy[i];
+			double pz = oz[i] + t[i] * dz[i];
+			hits.px[i] = px;
+			hits.py[i] = py;
+			hits.pz[i] = pz;
+			double nx, ny, nz;
+			if (similarity) {
+				nx = px - cx;
+				ny = py - cy;
+				nz = pz - cz;
+				double inverseRadius = 1.0 / radius;
+				hits.nx[i] = nx * inverseRadius;
+				hits.ny[i] = ny * inverseRadius;
+				hits.nz[i] = nz * inverseRadius;
+			} else {
+				double sx = i00 * px + i01 * py + i02 * pz + i03;
+				double sy = i10 * px + i11 * py + i12 * pz + i13;
+				double sz = i20 * px + i21 * py + i22 * pz + i23;
+				nx = i00 * sx + i10 * sy + i20 * sz;
+				ny = i01 * sx + i11 * sy + i21 * sz;
+				nz = i02 * sx + i12 * sy + i22 * sz;
+				double inverseLength = 1.0 / Math.sqrt(nx * nx + ny * ny + nz
+						* nz);
+				hits.nx[i] = nx * inverseLength;
+				hits.ny[i] = ny * inverseLength;
+				hits.nz[i] = nz * inverseLength;
+			}
+			hits.shapes[i] = this;
+			hits.ids[i] = -1;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the distance along the given ray to the closest intersection
+	 * with this sphere within the interval [tMin, tMax), without allocating
+	 * any objects.
+	 * 
+	 * @param ray
+	 *            the ray to intersect with.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @return the distance to the closest intersection, or positive infinity
+	 *         when the ray does not intersect this sphere within the interval.
+	 */
+	private double distance(MutableRay ray, double tMin, double tMax) {
+		return distance(ray.origin.x, ray.origin.y, ray.origin.z,
+				ray.direction.x, ray.direction.y, ray.direction.z, tMin, tMax);
+	}
+
+	/**
+	 * Returns the distance along the ray with the given origin and direction
+	 * to the closest intersection with this sphere within the interval [tMin,
+	 * tMax).
+	 * 
+	 * @param x
+	 *            the x coordinate of the origin of the ray.
+	 * @param y
+	 *            the y coordinate of the origin of the ray.
+	 * @param z
+	 *            the z coordinate of the origin of the ray.
+	 * @param u
+	 *            the x coordinate of the direction of the ray.
+	 * @param v
+	 *            the y coordinate of the direction of the ray.
+	 * @param w
+	 *            the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @return the distance to the closest intersection, or positive infinity
+	 *         when the ray does not intersect this sphere within the interval.
+	 */
+	private double distance(double x, double y, double z, double u,
+			double v, double w, double tMin, double tMax) {
+		double ox, oy, oz, dx, dy, dz, r2;
+		if (similarity) {
+			// intersect the sphere in world space
+			ox = x - cx;
+			oy = y - cy;
+			oz = z - cz;
+			dx = u;
+			dy = v;
+			dz = w;
+			r2 = radiusSquared;
+		} else {
+			// intersect the unit sphere in object space
+			ox = i00 * x + i01 * y + i02 * z + i03;
+			oy = i10 * x + i11 * y + i12 * z + i13;
+			oz = i20 * x + i21 * y + i22 * z + i23;
+			dx = i00 * u + i01 * v + i02 * w;
+			dy = i10 * u + i11 * v + i12 * w;
+			dz = i20 * u + i21 * v + i22 * w;
+			r2 = 1.0;
+		}
+
+		double a = dx * dx + dy * dy + dz * dz;
+		double b = 2.0 * (dx * ox + dy * oy + dz * oz);
+		double c = ox * ox + oy * oy + oz * oz - r2;
 
 		double d = b * b - 4.0 * a * c;
 
 		if (d < 0)
-			return false;
+			return Double.POSITIVE_INFINITY;
 		double dr = Math.sqrt(d);
 
 		// numerically solve the equation a*t^2 + b * t + c = 0
@@ -62,7 +374,55 @@ public class Sphere implements Shape {
 
 		double t0 = q / a;
 		double t1 = c / q;
+		if (t0 > t1) {
+			double tmp = t0;
+			t0 = t1;
+			t1 = tmp;
+		}
+
+		// the direction of the ray is not normalized by the transformation,
+		// hence the distance in object space equals the distance in world
+		// space for both paths.
+		double t = t0 >= tMin ? t0 : t1;
+		if (t < tMin || t >= tMax)
+			return Double.POSITIVE_INFINITY;
+		return t;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+
+	/**
+	 * Computes the world space bounding box of the unit sphere transformed by
+	 * the given affine transformation.
+	 * 
+	 * The extent of the transformed sphere along an axis equals the length of
+	 * the corresponding row of the linear part of the transformation matrix,
+	 * which results in a tight bounding box, also under rotations.
+	 * 
+	 * @param transformation
+	 *            the transformation which places the sphere in the scene.
+	 * @return the world space bounding box of the transformed sphere.
+	 */
+	static BoundingBox computeBoundingBox(Transformation transformation) {
+		Matrix m = transformation.getTransformationMatrix();
+		Point center = transformation.transform(new Point());
+
+		double ex = Math.sqrt(m.get(0, 0) * m.get(0, 0) + m.get(0, 1)
+				* m.get(0, 1) + m.get(0, 2) * m.get(0, 2));
+		double ey = Math.sqrt(m.get(1, 0) * m.get(1, 0) + m.get(1, 1)
+				* m.get(1, 1) + m.get(1, 2) * m.get(1, 2));
+		double ez = Math.sqrt(m.get(2, 0) * m.get(2, 0) + m.get(2, 1)
+				* m.get(2, 1) + m.get(2, 2) * m.get(2, 2));
 
-		return t0 >= 0 || t1 >= 0;
+		return new BoundingBox(center.add(-ex, -ey, -ez), center.add(ex, ey,
+				ez));
 	}
 }
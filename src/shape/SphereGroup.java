@@ -0,0 +1,366 @@
+package shape;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import math.BoundingBox;
+import math.MutableRay;
+
+/**
+ * A group of spheres which are intersected together, as a single primitive
+ * in the leaves of an acceleration structure.
+ * 
+ * Only spheres with a similarity transformation can be grouped, since their
+ * centers and radii in world space are stored as a structure of arrays (see
+ * {@link SphereTester}). The spheres of a group are tested with the vector
+ * instructions of the processor when the vector API is available, and one
+ * after the other otherwise. The intersected sphere itself completes the hit,
+ * such that the hits are the same as without the group.
+ * 
+ * The group copies the centers and radii of its spheres when it is created.
+ * Since spheres are immutable, the copies never become stale: spheres are
+ * moved by creating new spheres, and hence a new group which replaces the old
+ * one (see {@link acceleration.DynamicBVH#set(int, Shape)}).
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class SphereGroup implements Shape {
+	
+	/**
+	 * The spheres of this group.
+	 */
+	private final Sphere[] spheres;
+
+	/**
+	 * The centers and squared radii of the spheres, padded to a multiple of
+	 * the number of lanes of the tester.
+	 */
+	private final double[] data;
+
+	/**
+	 * The length of every block of the data array.
+	 */
+	private final int stride;
+
+	/**
+	 * The tester which intersects a ray with all the spheres at once.
+	 */
+	private final SphereTester tester;
+
+	/**
+	 * The bounding box of all the spheres.
+	 */
+	private final BoundingBox boundingBox;
+
+	/**
+	 * Creates a new group of the given spheres, which are tested with the
+	 * widest vectors the processor supports.
+	 * 
+	 * @param spheres
+	 *            the spheres of the group.
+	 * @throws NullPointerException
+	 *             when the given list or one of its spheres is null.
+	 * @throws IllegalArgumentException
+	 *             when the given list is empty or one of its spheres does not
+	 *             have a similarity transformation.
+	 */
+	public SphereGroup(List<Sphere> spheres) throws NullPointerException,
+			IllegalArgumentException {
+		this(spheres, createTester(0));
+	}
+
+	/**
+	 * Creates a new group of the given spheres, which are tested the given
+	 * number at a time. One lane selects the scalar tester, whereas two, four
+	 * and eight lanes select the vectors of 128, 256 and 512 bits.
+	 * 
+	 * @param spheres
+	 *            the spheres of the group.
+	 * @param lanes
+	 *            the number of spheres which are tested together, or zero
+	 *            for the widest vectors the processor supports.
+	 * @throws NullPointerException
+	 *             when the given list or one of its spheres is null.
+	 * @throws IllegalArgumentException
+	 *             when the given list is empty or one of its spheres does not
+	 *             have a similarity transformation.
+	 * @throws IllegalArgumentException
+	 *             when the number of lanes is not 0, 1, 2, 4 or 8, or when
+	 *             the vector API is not available for more than one lane.
+	 */
+	public SphereGroup(List<Sphere> spheres, int lanes)
+			throws NullPointerException, IllegalArgumentException {
+		this(spheres, createTester(lanes));
+	}
+
+	/**
+	 * Creates a new group of the given spheres which are tested by the given
+	 * tester.
+	 * 
+	 * @param spheres
+	 *            the spheres of the group.
+	 * @param tester
+	 *            the tester.
+	 * @throws NullPointerException
+	 *             when the given list or one of its spheres is null.
+	 * @throws IllegalArgumentException
+	 *             when the given list is empty or one of its spheres does not
+	 *             have a similarity transformation.
+	 */
+	private SphereGroup(List<Sphere> spheres, SphereTester tester)
+			throws NullPointerException, IllegalArgumentException {
+		if (spheres == null)
+			throw new NullPointerException(
+					"the given list of spheres is null!");
+		if (spheres.isEmpty())
+			throw new IllegalArgumentException(
+					"a group must contain at least one sphere!");
+		this.spheres = spheres.toArray(new Sphere[spheres.size()]);
+		this.tester = tester;
+
+		int lanes = tester.lanes();
+		this.stride = (this.spheres.length + lanes - 1) / lanes * lanes;
+		this.data = new double[4 * stride];
+		Arrays.fill(data, Double.NaN);
+		BoundingBox box = BoundingBox.EMPTY;
+		for (int i = 0; i < this.spheres.length; ++i) {
+			Sphere sphere = this.spheres[i];
+			if (sphere == null)
+				throw new NullPointerException("the given sphere is null!");
+			if (!sphere.isSimilarity())
+				throw new IllegalArgumentException("the given sphere does not "
+						+ "have a similarity transformation!");
+			data[i] = sphere.cx;
+			data[stride + i] = sphere.cy;
+			data[2 * stride + i] = sphere.cz;
+			data[3 * stride + i] = sphere.radiusSquared;
+			box = box.union(sphere.getBoundingBox());
+		}
+		this.boundingBox = box;
+	}
+
+	/**
+	 * Creates a tester which tests the given number of spheres together,
+	 * which uses the vector API when it is available.
+	 * 
+	 * @param lanes
+	 *            the number of spheres which are tested together, or zero
+	 *            for the widest vectors the processor supports.
+	 * @throws IllegalArgumentException
+	 *             when the number of lanes is not 0, 1, 2, 4 or 8, or when
+	 *             the vector API is not available for more than one lane.
+	 * @return a tester which tests the given number of spheres together.
+	 */
+	private static SphereTester createTester(int lanes)
+			throws IllegalArgumentException {
+		if (lanes != 0 && lanes != 1 && lanes != 2 && lanes != 4 && lanes != 8)
+			throw new IllegalArgumentException(
+					"the number of lanes must be 1, 2, 4 or 8!");
+		if (lanes == 1)
+			return new ScalarSphereTester();
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				// load the class reflectively, such that it is never linked
+				// when the module is not available
+				Class<?> type = Class.forName("shape.VectorSphereTester");
+				if (lanes == 0)
+					lanes = (Integer) type.getDeclaredMethod("preferredLanes")
+							.invoke(null);
+				if (lanes > 1)
+					return (SphereTester) type.getDeclaredConstructor(
+							int.class).newInstance(lanes);
+			} catch (ReflectiveOperationException e) {
+				// fall back on the scalar implementation
+			} catch (LinkageError e) {
+				// fall back on the scalar implementation
+			}
+		}
+		if (lanes > 1)
+			throw new IllegalArgumentException(
+					"the vector API is not available!");
+		return new ScalarSphereTester();
+	}
+
+	/**
+	 * Replaces the spheres with a similarity transformation among the given
+	 * shapes by groups of at most the given number of spheres which lie close
+	 * together. The spheres are split recursively at the median of their
+	 * centers along the axis with the largest extent. The other shapes are
+	 * kept as they are, as are the spheres which would form a group on their
+	 * own.
+	 * 
+	 * @param shapes
+	 *            the shapes to group.
+	 * @param size
+	 *            the maximum number of spheres per group.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null.
+	 * @throws IllegalArgumentException
+	 *             when the given size is smaller than one.
+	 * @return the list of groups and other shapes.
+	 */
+	public static List<Shape> group(List<? extends Shape> shapes, int size)
+			throws NullPointerException, IllegalArgumentException {
+		return group(shapes, size, 0);
+	}
+
+	/**
+	 * Replaces the spheres with a similarity transformation among the given
+	 * shapes by groups of at most the given number of spheres, which are
+	 * tested the given number at a time (see {@link #group(List, int)} and
+	 * {@link #SphereGroup(List, int)}).
+	 * 
+	 * @param shapes
+	 *            the shapes to group.
+	 * @param size
+	 *            the maximum number of spheres per group.
+	 * @param lanes
+	 *            the number of spheres which are tested together, or zero
+	 *            for the widest vectors the processor supports.
+	 * @throws NullPointerException
+	 *             when the given list of shapes is null.
+	 * @throws IllegalArgumentException
+	 *             when the given size is smaller than one.
+	 * @throws IllegalArgumentException
+	 *             when the number of lanes is not 0, 1, 2, 4 or 8, or when
+	 *             the vector API is not available for more than one lane.
+	 * @return the list of groups and other shapes.
+	 */
+	public static List<Shape> group(List<? extends Shape> shapes, int size,
+			int lanes) throws NullPointerException, IllegalArgumentException {
+		if (shapes == null)
+			throw new NullPointerException("the given list of shapes is null!");
+		if (size < 1)
+			throw new IllegalArgumentException(
+					"the size of a group must be at least one!");
+		List<Shape> result = new ArrayList<Shape>();
+		List<Sphere> spheres = new ArrayList<Sphere>();
+		for (Shape shape : shapes) {
+			if (shape instanceof Sphere && ((Sphere) shape).isSimilarity())
+				spheres.add((Sphere) shape);
+			else
+				result.add(shape);
+		}
+		group(spheres, size, createTester(lanes), result);
+		return result;
+	}
+
+	/**
+	 * Splits the given spheres into groups of at most the given size and adds
+	 * them to the given list.
+	 * 
+	 * @param spheres
+	 *            the spheres to group.
+	 * @param size
+	 *            the maximum number of spheres per group.
+	 * @param tester
+	 *            the tester of the groups.
+	 * @param result
+	 *            the list to which the groups are added.
+	 */
+	private static void group(List<Sphere> spheres, int size,
+			SphereTester tester, List<Shape> result) {
+		if (spheres.size() <= size) {
+			if (spheres.size() == 1)
+				result.add(spheres.get(0));
+			else if (!spheres.isEmpty())
+				result.add(new SphereGroup(spheres, tester));
+			return;
+		}
+
+		// split at the median along the axis with the largest extent
+		BoundingBox centers = BoundingBox.EMPTY;
+		for (Sphere sphere : spheres)
+			centers = centers.union(sphere.getBoundingBox().getCentroid());
+		final int axis = centers.getMaximumExtent();
+		Collections.sort(spheres, new Comparator<Sphere>() {
+			@Override
+			public int compare(Sphere a, Sphere b) {
+				return Double.compare(center(a, axis), center(b, axis));
+			}
+		});
+		int half = spheres.size() / 2;
+		group(new ArrayList<Sphere>(spheres.subList(0, half)), size, tester,
+				result);
+		group(new ArrayList<Sphere>(spheres.subList(half, spheres.size())),
+				size, tester, result);
+	}
+
+	/**
+	 * Returns the coordinate of the center of the given sphere along the
+	 * given axis.
+	 * 
+	 * @param sphere
+	 *            the sphere.
+	 * @param axis
+	 *            the axis (0=x, 1=y, 2=z axis).
+	 * @return the coordinate of the center along the given axis.
+	 */
+	private static double center(Sphere sphere, int axis) {
+		return axis == 0 ? sphere.cx : axis == 1 ? sphere.cy : sphere.cz;
+	}
+
+	/**
+	 * Returns the number of spheres in this group.
+	 * 
+	 * @return the number of spheres in this group.
+	 */
+	public int size() {
+		return spheres.length;
+	}
+
+	/**
+	 * Returns the number of spheres which are tested together.
+	 * 
+	 * @return the number of spheres which are tested together.
+	 */
+	public int getLanes() {
+		return tester.lanes();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#occluded(math.MutableRay, double, double)
+	 */
+	@Override
+	public boolean occluded(MutableRay ray, double tMin, double tMax) {
+		if (ray == null)
+			return false;
+		return tester.intersect(data, stride, ray.origin.x, ray.origin.y,
+				ray.origin.z, ray.direction.x, ray.direction.y,
+				ray.direction.z, tMin, tMax, true) >= 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#intersect(math.MutableRay, double, double, shape.Hit)
+	 */
+	@Override
+	public boolean intersect(MutableRay ray, double tMin, double tMax, Hit hit)
+			throws NullPointerException {
+		if (hit == null)
+			throw new NullPointerException("the given hit is null!");
+		if (ray == null)
+			return false;
+		int i = tester.intersect(data, stride, ray.origin.x, ray.origin.y,
+				ray.origin.z, ray.direction.x, ray.direction.y,
+				ray.direction.z, tMin, tMax, false);
+		return i >= 0 && spheres[i].intersect(ray, tMin, tMax, hit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.Shape#getBoundingBox()
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		return boundingBox;
+	}
+}
@@ -0,0 +1,58 @@
+package shape;
+
+/**
+ * Intersects a ray with all the spheres of a {@link SphereGroup} at once.
+ * 
+ * The spheres are stored as a structure of arrays: the x coordinates of the
+ * centers of all the spheres, followed by the y and z coordinates of the
+ * centers and the squared radii. Each of these blocks has the same length,
+ * the stride, which is a multiple of the number of lanes of the tester. The
+ * padding at the end of the blocks contains spheres whose center is not a
+ * number, which are never intersected.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+interface SphereTester {
+	
+	/**
+	 * Returns the number of spheres which are tested together.
+	 * 
+	 * @return the number of spheres which are tested together.
+	 */
+	public int lanes();
+
+	/**
+	 * Finds the sphere which the given ray intersects closest to its origin
+	 * within the interval [tMin, tMax). When only any intersection is
+	 * requested, the tester may stop at the first sphere it finds.
+	 * 
+	 * @param spheres
+	 *            the array containing the spheres.
+	 * @param stride
+	 *            the length of the blocks of the array.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param dx
+	 *            the x coordinate of the direction of the ray.
+	 * @param dy
+	 *            the y coordinate of the direction of the ray.
+	 * @param dz
+	 *            the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @param any
+	 *            whether any intersected sphere suffices.
+	 * @return the index of the intersected sphere, or -1 when the ray does
+	 *         not intersect any sphere within the interval.
+	 */
+	public int intersect(double[] spheres, int stride, double ox, double oy,
+			double oz, double dx, double dy, double dz, double tMin,
+			double tMax, boolean any);
+}
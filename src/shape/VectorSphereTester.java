@@ -0,0 +1,315 @@
+package shape;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Tests the spheres of a group together with the vector instructions of the
+ * processor, through the incubating vector API.
+ * 
+ * Every lane of a vector computes the discriminant of the quadratic equation
+ * of one sphere, with the same operations as the scalar tester. Most spheres
+ * of a group are missed by the line through the ray, hence only the vectors
+ * which contain a non-negative discriminant are tested again one lane at a
+ * time by the scalar tester, which computes the distances and locates the
+ * closest sphere. This keeps the square roots and divisions, which have a
+ * long latency, out of the vector loop, as well as the lane-wise minimum and
+ * the reduction across lanes, which are not always compiled into vector
+ * instructions for doubles.
+ * 
+ * This class may only be loaded when the jdk.incubator.vector module has been
+ * resolved (i.e. when the virtual machine is started with
+ * <code>--add-modules jdk.incubator.vector</code>).
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+class VectorSphereTester implements SphereTester {
+	
+	/**
+	 * The species with two lanes.
+	 */
+	private static final VectorSpecies<Double> TWO = DoubleVector.SPECIES_128;
+
+	/**
+	 * The species with four lanes.
+	 */
+	private static final VectorSpecies<Double> FOUR = DoubleVector.SPECIES_256;
+
+	/**
+	 * The species with eight lanes.
+	 */
+	private static final VectorSpecies<Double> EIGHT = DoubleVector.SPECIES_512;
+
+	/**
+	 * The number of spheres which are tested together. Every species is only
+	 * used through its constant within a single method, such that the
+	 * compiler can map the operations onto vector instructions without boxing
+	 * the vectors.
+	 */
+	private final int lanes;
+
+	/**
+	 * Creates a new tester which tests the given number of spheres together.
+	 * 
+	 * @param lanes
+	 *            the number of spheres which are tested together, which must
+	 *            be two, four or eight.
+	 * @throws IllegalArgumentException
+	 *             when the given number of lanes is not supported.
+	 */
+	VectorSphereTester(int lanes) throws IllegalArgumentException {
+		if (lanes != 2 && lanes != 4 && lanes != 8)
+			throw new IllegalArgumentException(
+					"the number of lanes must be 2, 4 or 8!");
+		this.lanes = lanes;
+	}
+
+	/**
+	 * Returns the number of lanes of the widest species which the processor
+	 * supports, limited to eight.
+	 * 
+	 * @return the preferred number of lanes.
+	 */
+	static int preferredLanes() {
+		return Math.min(8, DoubleVector.SPECIES_PREFERRED.length());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.SphereTester#lanes()
+	 */
+	@Override
+	public int lanes() {
+		return lanes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see shape.SphereTester#intersect(double[], int, double, double,
+	 * double, double, double, double, double, double, boolean)
+	 */
+	@Override
+	public int intersect(double[] spheres, int stride, double ox, double oy,
+			double oz, double dx, double dy, double dz, double tMin,
+			double tMax, boolean any) {
+		switch (lanes) {
+		case 2:
+			return intersectTwo(spheres, stride, ox, oy, oz, dx, dy, dz, tMin,
+					tMax, any);
+		case 4:
+			return intersectFour(spheres, stride, ox, oy, oz, dx, dy, dz,
+					tMin, tMax, any);
+		default:
+			return intersectEight(spheres, stride, ox, oy, oz, dx, dy, dz,
+					tMin, tMax, any);
+		}
+	}
+
+	/**
+	 * Finds the sphere which the given ray intersects closest to its origin
+	 * within the interval [tMin, tMax), by testing two spheres at a time.
+	 * 
+	 * @param spheres
+	 *            the array containing the spheres.
+	 * @param stride
+	 *            the length of the blocks of the array.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param dx
+	 *            the x coordinate of the direction of the ray.
+	 * @param dy
+	 *            the y coordinate of the direction of the ray.
+	 * @param dz
+	 *            the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @param any
+	 *            whether any intersected sphere suffices.
+	 * @return the index of the intersected sphere, or -1 when the ray does
+	 *         not intersect any sphere within the interval.
+	 */
+	private int intersectTwo(double[] spheres, int stride, double ox,
+			double oy, double oz, double dx, double dy, double dz,
+			double tMin, double tMax, boolean any) {
+		double a = dx * dx + dy * dy + dz * dz;
+		double a4 = 4.0 * a;
+		int closest = -1;
+		for (int i = 0; i < stride; i += TWO.length()) {
+			DoubleVector px = DoubleVector.broadcast(TWO, ox).sub(
+					DoubleVector.fromArray(TWO, spheres, i));
+			DoubleVector py = DoubleVector.broadcast(TWO, oy).sub(
+					DoubleVector.fromArray(TWO, spheres, stride + i));
+			DoubleVector pz = DoubleVector.broadcast(TWO, oz).sub(
+					DoubleVector.fromArray(TWO, spheres, 2 * stride + i));
+			DoubleVector b = px.mul(dx).add(py.mul(dy)).add(pz.mul(dz))
+					.mul(2.0);
+			DoubleVector c = px.mul(px).add(py.mul(py)).add(pz.mul(pz)).sub(
+					DoubleVector.fromArray(TWO, spheres, 3 * stride + i));
+
+			// the discriminant is negative for the missed spheres and not a
+			// number for the padding
+			if (!b.mul(b).sub(c.mul(a4)).compare(VectorOperators.GE, 0.0)
+					.anyTrue())
+				continue;
+
+			// locate the closest sphere within the lanes
+			for (int j = i; j < i + TWO.length(); ++j) {
+				double distance = ScalarSphereTester.distance(spheres, stride,
+						j, ox, oy, oz, dx, dy, dz, tMin, tMax);
+				if (distance < tMax) {
+					tMax = distance;
+					closest = j;
+					if (any)
+						return closest;
+				}
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Finds the sphere which the given ray intersects closest to its origin
+	 * within the interval [tMin, tMax), by testing four spheres at a time.
+	 * 
+	 * @param spheres
+	 *            the array containing the spheres.
+	 * @param stride
+	 *            the length of the blocks of the array.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param dx
+	 *            the x coordinate of the direction of the ray.
+	 * @param dy
+	 *            the y coordinate of the direction of the ray.
+	 * @param dz
+	 *            the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @param any
+	 *            whether any intersected sphere suffices.
+	 * @return the index of the intersected sphere, or -1 when the ray does
+	 *         not intersect any sphere within the interval.
+	 */
+	private int intersectFour(double[] spheres, int stride, double ox,
+			double oy, double oz, double dx, double dy, double dz,
+			double tMin, double tMax, boolean any) {
+		double a = dx * dx + dy * dy + dz * dz;
+		double a4 = 4.0 * a;
+		int closest = -1;
+		for (int i = 0; i < stride; i += FOUR.length()) {
+			DoubleVector px = DoubleVector.broadcast(FOUR, ox).sub(
+					DoubleVector.fromArray(FOUR, spheres, i));
+			DoubleVector py = DoubleVector.broadcast(FOUR, oy).sub(
+					DoubleVector.fromArray(FOUR, spheres, stride + i));
+			DoubleVector pz = DoubleVector.broadcast(FOUR, oz).sub(
+					DoubleVector.fromArray(FOUR, spheres, 2 * stride + i));
+			DoubleVector b = px.mul(dx).add(py.mul(dy)).add(pz.mul(dz))
+					.mul(2.0);
+			DoubleVector c = px.mul(px).add(py.mul(py)).add(pz.mul(pz)).sub(
+					DoubleVector.fromArray(FOUR, spheres, 3 * stride + i));
+
+			// the discriminant is negative for the missed spheres and not a
+			// number for the padding
+			if (!b.mul(b).sub(c.mul(a4)).compare(VectorOperators.GE, 0.0)
+					.anyTrue())
+				continue;
+
+			// locate the closest sphere within the lanes
+			for (int j = i; j < i + FOUR.length(); ++j) {
+				double distance = ScalarSphereTester.distance(spheres, stride,
+						j, ox, oy, oz, dx, dy, dz, tMin, tMax);
+				if (distance < tMax) {
+					tMax = distance;
+					closest = j;
+					if (any)
+						return closest;
+				}
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Finds the sphere which the given ray intersects closest to its origin
+	 * within the interval [tMin, tMax), by testing eight spheres at a time.
+	 * 
+	 * @param spheres
+	 *            the array containing the spheres.
+	 * @param stride
+	 *            the length of the blocks of the array.
+	 * @param ox
+	 *            the x coordinate of the origin of the ray.
+	 * @param oy
+	 *            the y coordinate of the origin of the ray.
+	 * @param oz
+	 *            the z coordinate of the origin of the ray.
+	 * @param dx
+	 *            the x coordinate of the direction of the ray.
+	 * @param dy
+	 *            the y coordinate of the direction of the ray.
+	 * @param dz
+	 *            the z coordinate of the direction of the ray.
+	 * @param tMin
+	 *            the start of the interval along the ray (inclusive).
+	 * @param tMax
+	 *            the end of the interval along the ray (exclusive).
+	 * @param any
+	 *            whether any intersected sphere suffices.
+	 * @return the index of the intersected sphere, or -1 when the ray does
+	 *         not intersect any sphere within the interval.
+	 */
+	private int intersectEight(double[] spheres, int stride, double ox,
+			double oy, double oz, double dx, double dy, double dz,
+			double tMin, double tMax, boolean any) {
+		double a = dx * dx + dy * dy + dz * dz;
+		double a4 = 4.0 * a;
+		int closest = -1;
+		for (int i = 0; i < stride; i += EIGHT.length()) {
+			DoubleVector px = DoubleVector.broadcast(EIGHT, ox).sub(
+					DoubleVector.fromArray(EIGHT, spheres, i));
+			DoubleVector py = DoubleVector.broadcast(EIGHT, oy).sub(
+					DoubleVector.fromArray(EIGHT, spheres, stride + i));
+			DoubleVector pz = DoubleVector.broadcast(EIGHT, oz).sub(
+					DoubleVector.fromArray(EIGHT, spheres, 2 * stride + i));
+			DoubleVector b = px.mul(dx).add(py.mul(dy)).add(pz.mul(dz))
+					.mul(2.0);
+			DoubleVector c = px.mul(px).add(py.mul(py)).add(pz.mul(pz)).sub(
+					DoubleVector.fromArray(EIGHT, spheres, 3 * stride + i));
+
+			// the discriminant is negative for the missed spheres and not a
+			// number for the padding
+			if (!b.mul(b).sub(c.mul(a4)).compare(VectorOperators.GE, 0.0)
+					.anyTrue())
+				continue;
+
+			// locate the closest sphere within the lanes
+			for (int j = i; j < i + EIGHT.length(); ++j) {
+				double distance = ScalarSphereTester.distance(spheres, stride,
+						j, ox, oy, oz, dx, dy, dz, tMin, tMax);
+				if (distance < tMax) {
+					tMax = distance;
+					closest = j;
+					if (any)
+						return closest;
+				}
+			}
+		}
+		return closest;
+	}
+}
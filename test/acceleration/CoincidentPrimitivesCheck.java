@@ -0,0 +1,83 @@
+package acceleration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import math.Transformation;
+import shape.Shape;
+import shape.Sphere;
+
+/**
+ * Checks that the builders of a {@link BVH} keep the hierarchy shallow over
+ * many coincident primitives, for which all the splits of the surface area
+ * heuristic cost the same, and that a refined {@link Grid} keeps the number
+ * of references of these primitives linear.
+ * 
+ * A builder which peels off a single primitive per level builds a hierarchy
+ * as deep as the number of primitives, in quadratic time, and overflows the
+ * stack. A grid which refines the cell of the coincident primitives lets
+ * every primitive overlap all the cells of the refinement, and runs out of
+ * memory. The check exits with a non-zero status when it fails.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class CoincidentPrimitivesCheck {
+	
+	/**
+	 * The number of coincident spheres.
+	 */
+	private static final int COUNT = 20000;
+
+	/**
+	 * The maximum depth of the hierarchy.
+	 */
+	private static final int MAXIMUM_DEPTH = 64;
+
+	/**
+	 * Runs the check.
+	 * 
+	 * @param arguments
+	 *            the arguments, which are ignored.
+	 */
+	public static void main(String[] arguments) {
+		List<Shape> shapes = new ArrayList<Shape>();
+		Transformation transformation = Transformation.translate(0, 0, -5);
+		for (int i = 0; i < COUNT; ++i)
+			shapes.add(new Sphere(transformation));
+
+		BVHBuilder[] builders = { new SAHBuilder(), new BinnedSAHBuilder(),
+				new LinearBVHBuilder() };
+		for (BVHBuilder builder : builders) {
+			int depth = new BVH(shapes, builder).getRoot().getDepth();
+			check(depth <= MAXIMUM_DEPTH, "the "
+					+ builder.getClass().getSimpleName()
+					+ " builds a hierarchy of depth " + depth);
+		}
+
+		// a single outlier puts the coincident spheres in a single cell
+		shapes.add(new Sphere(Transformation.translate(100, 100, -100)));
+		long references = new Grid(shapes, Grid.DENSITY, true)
+				.getReferenceCount();
+		check(references <= (long) Grid.REFINEMENT_GROWTH * shapes.size(),
+				"the grid stores " + references + " references");
+		System.out.println("CoincidentPrimitivesCheck passed");
+	}
+
+	/**
+	 * Fails the check with the given message when the given condition does
+	 * not hold.
+	 * 
+	 * @param condition
+	 *            the condition which should hold.
+	 * @param message
+	 *            the message which describes the failure.
+	 */
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			System.err.println("CoincidentPrimitivesCheck failed: "
+					+ message + "!");
+			System.exit(1);
+		}
+	}
+}
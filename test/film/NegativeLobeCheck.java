@@ -0,0 +1,66 @@
+package film;
+
+/**
+ * Checks that a pixel whose sum of weights has become negative through the
+ * negative lobes of a {@link MitchellFilter} resolves to black instead of to
+ * a negative or a blown up color.
+ * 
+ * A single sample is splatted 1.5 pixels to the right of the center of a
+ * pixel, where the Mitchell filter is negative, such that the pixel only
+ * receives a negative weight. The check exits with a non-zero status when it
+ * fails.
+ * 
+ * @author 	CGRG
+ * @version 4.0.0
+ */
+public class NegativeLobeCheck {
+	
+	/**
+	 * Runs the check.
+	 * 
+	 * @param arguments
+	 *            the arguments, which are ignored.
+	 */
+	public static void main(String[] arguments) {
+		FrameBuffer buffer = new FrameBuffer(8, 8);
+		TileBuffer samples = new TileBuffer(new Tile(0, 0, 8, 8),
+				new MitchellFilter());
+		samples.splat(5.0, 4.5, 1, 1, 1);
+		buffer.commit(samples);
+
+		// the pixel at (3, 4), whose center lies at (3.5, 4.5)
+		Pixel pixel = buffer.getPixel(3, 4);
+		check(pixel.getWeightSum() < 0,
+				"the sample does not lie in a negative lobe");
+		RGBSpectrum spectrum = pixel.getSpectrum();
+		check(spectrum.red == 0 && spectrum.green == 0 && spectrum.blue == 0,
+				"the spectrum " + spectrum + " is not black");
+		MutableSpectrum mutable = pixel.getSpectrum(new MutableSpectrum());
+		check(mutable.red == 0 && mutable.green == 0 && mutable.blue == 0,
+				"the mutable spectrum is not black");
+		int rgb = buffer.toBufferedImage(1, 2.2).getRGB(3, 8 - 1 - 4);
+		check(rgb == 0xff000000, "the tone mapped color "
+				+ Integer.toHexString(rgb) + " is not black");
+
+		// the pixel of the sample itself keeps its color
+		check(buffer.getPixel(5, 4).getSpectrum().red > 0,
+				"the pixel of the sample is black");
+		System.out.println("NegativeLobeCheck passed");
+	}
+
+	/**
+	 * Fails the check with the given message when the given condition does
+	 * not hold.
+	 * 
+	 * @param condition
+	 *            the condition which should hold.
+	 * @param message
+	 *            the message which describes the failure.
+	 */
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			System.err.println("NegativeLobeCheck failed: " + message + "!");
+			System.exit(1);
+		}
+	}
+}